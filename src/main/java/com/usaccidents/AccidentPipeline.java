@@ -0,0 +1,501 @@
+package com.usaccidents;
+
+import com.usaccidents.io.ByteCSVTokenizer;
+import com.usaccidents.io.CSVChunkReader;
+import com.usaccidents.io.CSVColumnMap;
+import com.usaccidents.io.CSVParser;
+import com.usaccidents.io.HDFSUtils;
+import com.usaccidents.model.AccidentBatch;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Staged read → parse → aggregate execution of CSV input.
+ *
+ * One I/O thread reads each file in chunks of whole records, N parse workers decode
+ * chunks into {@link AccidentBatch}es, and M aggregation workers fold batches into
+ * per-worker partial results, which are combined once the input is exhausted. The
+ * stages are connected by bounded queues, so a slow stage blocks the stages feeding
+ * it instead of letting buffered input grow. Each parse worker recycles a fixed pool
+ * of batches, which also bounds the number of batches in flight.
+ *
+ * For every stage the pipeline tracks the items processed and the time its threads
+ * spent working versus waiting on a queue, along with the current and maximum depth of
+ * its output queue. A stage that is busy close to 100% while its input queue is full
+ * is the bottleneck; its thread count is the one to raise.
+ */
+public class AccidentPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(AccidentPipeline.class);
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int BATCHES_PER_PARSE_WORKER = 4;
+
+    private final CSVParser parser;
+    private final int parseWorkers;
+    private final int aggregateWorkers;
+    private final int queueCapacity;
+    private final int chunkSize;
+    private final int batchSize;
+
+    private final StageStats readStats = new StageStats("read", 1);
+    private final StageStats parseStats;
+    private final StageStats aggregateStats;
+
+    /**
+     * A file or stream to read
+     */
+    private interface Source {
+        String getName();
+
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Records of one source ready to be parsed
+     */
+    private static final class Chunk {
+        private static final Chunk END = new Chunk(null, null, null);
+
+        private final String sourceName;
+        private final CSVColumnMap columns;
+        private final CSVChunkReader.RawChunk raw;
+
+        private Chunk(String sourceName, CSVColumnMap columns, CSVChunkReader.RawChunk raw) {
+            this.sourceName = sourceName;
+            this.columns = columns;
+            this.raw = raw;
+        }
+    }
+
+    /**
+     * A parsed batch and the pool it returns to once aggregated
+     */
+    private static final class ParsedBatch {
+        private static final ParsedBatch END = new ParsedBatch(null, null);
+
+        private final AccidentBatch batch;
+        private final BlockingQueue<AccidentBatch> pool;
+
+        private ParsedBatch(AccidentBatch batch, BlockingQueue<AccidentBatch> pool) {
+            this.batch = batch;
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * Throughput and timing of one pipeline stage
+     */
+    public static class StageStats {
+        private final String name;
+        private final int threads;
+        private final LongAdder items = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+        private volatile BlockingQueue<?> outputQueue;
+
+        StageStats(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Chunks read, chunks parsed or batches aggregated
+         */
+        public long getItems() {
+            return items.sum();
+        }
+
+        /**
+         * Time the stage's threads spent working, summed over threads
+         */
+        public long getBusyNanos() {
+            return busyNanos.sum();
+        }
+
+        /**
+         * Time the stage's threads spent blocked on a queue, summed over threads
+         */
+        public long getWaitNanos() {
+            return waitNanos.sum();
+        }
+
+        /**
+         * Current number of items in the stage's output queue
+         */
+        public int getQueueDepth() {
+            BlockingQueue<?> queue = outputQueue;
+            return queue == null ? 0 : queue.size();
+        }
+
+        /**
+         * Largest number of items seen in the stage's output queue
+         */
+        public int getMaxQueueDepth() {
+            return maxQueueDepth.get();
+        }
+
+        /**
+         * Fraction of the stage's thread time spent working
+         */
+        public double getUtilization() {
+            long total = getBusyNanos() + getWaitNanos();
+            return total == 0 ? 0.0 : (double) getBusyNanos() / total;
+        }
+
+        private void reset(BlockingQueue<?> outputQueue) {
+            items.reset();
+            busyNanos.reset();
+            waitNanos.reset();
+            maxQueueDepth.set(0);
+            this.outputQueue = outputQueue;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d threads, %d items, busy %d ms, waiting %d ms, utilization %.0f%%, "
+                            + "max queue depth %d", name, threads, getItems(), getBusyNanos() / 1_000_000,
+                    getWaitNanos() / 1_000_000, getUtilization() * 100, getMaxQueueDepth());
+        }
+    }
+
+    /**
+     * Splits the running time of one stage thread into time blocked on queues and time
+     * working, adding both to the stage statistics as they accrue
+     */
+    private static final class StageTimer {
+        private final StageStats stats;
+        private long mark = System.nanoTime();
+
+        private StageTimer(StageStats stats) {
+            this.stats = stats;
+        }
+
+        private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+            startWaiting();
+            try {
+                return queue.take();
+            } finally {
+                stopWaiting();
+            }
+        }
+
+        private <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+            startWaiting();
+            try {
+                queue.put(item);
+            } finally {
+                stopWaiting();
+            }
+            int depth = queue.size();
+            if (depth > stats.maxQueueDepth.get()) {
+                stats.maxQueueDepth.accumulateAndGet(depth, Math::max);
+            }
+        }
+
+        private void startWaiting() {
+            long now = System.nanoTime();
+            stats.busyNanos.add(now - mark);
+            mark = now;
+        }
+
+        private void stopWaiting() {
+            long now = System.nanoTime();
+            stats.waitNanos.add(now - mark);
+            mark = now;
+        }
+
+        private void finish() {
+            stats.busyNanos.add(System.nanoTime() - mark);
+        }
+    }
+
+    public AccidentPipeline(CSVParser parser, int parseWorkers, int aggregateWorkers) {
+        this(parser, parseWorkers, aggregateWorkers, DEFAULT_QUEUE_CAPACITY, DEFAULT_CHUNK_SIZE,
+                AccidentBatch.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity capacity of each queue between stages
+     * @param chunkSize     target size in bytes of the chunks read by the I/O stage
+     * @param batchSize     rows per batch handed to the aggregation stage
+     */
+    public AccidentPipeline(CSVParser parser, int parseWorkers, int aggregateWorkers, int queueCapacity,
+                            int chunkSize, int batchSize) {
+        if (parseWorkers <= 0 || aggregateWorkers <= 0) {
+            throw new IllegalArgumentException("Each stage needs at least one worker");
+        }
+        this.parser = parser;
+        this.parseWorkers = parseWorkers;
+        this.aggregateWorkers = aggregateWorkers;
+        this.queueCapacity = queueCapacity;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        this.parseStats = new StageStats("parse", parseWorkers);
+        this.aggregateStats = new StageStats("aggregate", aggregateWorkers);
+    }
+
+    /**
+     * Statistics of the read, parse and aggregate stages of the current or last run
+     */
+    public List<StageStats> getStats() {
+        return Arrays.asList(readStats, parseStats, aggregateStats);
+    }
+
+    /**
+     * Run local CSV files through the pipeline.
+     *
+     * Each aggregation worker folds batches into its own partial result created by
+     * partialFactory; the partials are reduced with combiner at the end. Batches are
+     * recycled once accumulator returns, so it must not retain them.
+     */
+    public <P> P process(List<File> files, Supplier<P> partialFactory, BiConsumer<P, AccidentBatch> accumulator,
+                         BinaryOperator<P> combiner) {
+        List<Source> sources = new ArrayList<>(files.size());
+        for (File file : files) {
+            sources.add(new Source() {
+                @Override
+                public String getName() {
+                    return file.getName();
+                }
+
+                @Override
+                public InputStream open() throws IOException {
+                    return new FileInputStream(file);
+                }
+            });
+        }
+        return run(sources, partialFactory, accumulator, combiner);
+    }
+
+    /**
+     * Run CSV files in HDFS, plain or compressed, through the pipeline
+     *
+     * @see #process(List, Supplier, BiConsumer, BinaryOperator)
+     */
+    public <P> P processHDFS(List<Path> hdfsPaths, HDFSUtils hdfsUtils, Supplier<P> partialFactory,
+                             BiConsumer<P, AccidentBatch> accumulator, BinaryOperator<P> combiner) {
+        List<Source> sources = new ArrayList<>(hdfsPaths.size());
+        for (Path hdfsPath : hdfsPaths) {
+            sources.add(new Source() {
+                @Override
+                public String getName() {
+                    return hdfsPath.toString();
+                }
+
+                @Override
+                public InputStream open() throws IOException {
+                    return hdfsUtils.openDecompressed(hdfsPath);
+                }
+            });
+        }
+        return run(sources, partialFactory, accumulator, combiner);
+    }
+
+    private <P> P run(List<Source> sources, Supplier<P> partialFactory, BiConsumer<P, AccidentBatch> accumulator,
+                      BinaryOperator<P> combiner) {
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<ParsedBatch> batches = new ArrayBlockingQueue<>(queueCapacity);
+        readStats.reset(chunks);
+        parseStats.reset(batches);
+        aggregateStats.reset(null);
+
+        AtomicInteger runningParsers = new AtomicInteger(parseWorkers);
+        List<P> partials = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(1 + parseWorkers + aggregateWorkers, runnable -> {
+            Thread thread = new Thread(runnable, "accident-pipeline-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Void> stages = new ExecutorCompletionService<>(threads);
+        long start = System.nanoTime();
+        try {
+            stages.submit(stage(() -> read(sources, chunks)));
+            for (int i = 0; i < parseWorkers; i++) {
+                stages.submit(stage(() -> parse(chunks, batches, runningParsers)));
+            }
+            for (int i = 0; i < aggregateWorkers; i++) {
+                stages.submit(stage(() -> partials.add(aggregate(batches, partialFactory, accumulator))));
+            }
+
+            // Fail fast: the first failed stage cancels all others
+            for (int i = 0; i < 1 + parseWorkers + aggregateWorkers; i++) {
+                stages.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running the pipeline", e);
+        } catch (ExecutionException e) {
+            logger.error("Pipeline stage failed", e.getCause());
+            throw new RuntimeException("Pipeline stage failed", e.getCause());
+        } finally {
+            threads.shutdownNow();
+        }
+
+        logger.info("Pipeline processed {} files in {} ms", sources.size(), (System.nanoTime() - start) / 1_000_000);
+        for (StageStats stats : getStats()) {
+            logger.info("  {}", stats);
+        }
+        return partials.stream().reduce(combiner).orElseGet(partialFactory);
+    }
+
+    private interface StageBody {
+        void run() throws Exception;
+    }
+
+    private static Callable<Void> stage(StageBody body) {
+        return () -> {
+            body.run();
+            return null;
+        };
+    }
+
+    /**
+     * I/O stage: read each source's header, then its records in chunks
+     */
+    private void read(List<Source> sources, BlockingQueue<Chunk> chunks) throws IOException, InterruptedException {
+        StageTimer timer = new StageTimer(readStats);
+        try {
+            for (Source source : sources) {
+                try (CSVChunkReader reader = new CSVChunkReader(source.open(), chunkSize)) {
+                    CSVChunkReader.RawChunk header = reader.nextRecord();
+                    if (header == null) {
+                        logger.warn("Empty CSV file: {}", source.getName());
+                        continue;
+                    }
+                    CSVColumnMap columns = readColumns(header);
+
+                    CSVChunkReader.RawChunk raw;
+                    while ((raw = reader.next()) != null) {
+                        readStats.items.increment();
+                        timer.put(chunks, new Chunk(source.getName(), columns, raw));
+                    }
+                }
+            }
+            for (int i = 0; i < parseWorkers; i++) {
+                timer.put(chunks, Chunk.END);
+            }
+        } finally {
+            timer.finish();
+        }
+    }
+
+    private static CSVColumnMap readColumns(CSVChunkReader.RawChunk header) {
+        ByteCSVTokenizer tokenizer = new ByteCSVTokenizer();
+        tokenizer.tokenize(ByteBuffer.wrap(header.getData(), 0, header.getLength()), 0, header.getLength(),
+                Integer.MAX_VALUE, true);
+        return CSVColumnMap.fromHeader(tokenizer);
+    }
+
+    /**
+     * Parse stage: decode chunks into pooled batches; the last worker to finish ends the aggregation stage
+     */
+    private void parse(BlockingQueue<Chunk> chunks, BlockingQueue<ParsedBatch> batches, AtomicInteger runningParsers)
+            throws InterruptedException {
+        StageTimer timer = new StageTimer(parseStats);
+        try {
+            // Batches code their low-cardinality columns with the parser's dictionaries, so those codes
+            // agree across workers
+            BlockingQueue<AccidentBatch> pool = new ArrayBlockingQueue<>(BATCHES_PER_PARSE_WORKER);
+            for (int i = 0; i < BATCHES_PER_PARSE_WORKER; i++) {
+                pool.add(new AccidentBatch(batchSize, parser.getDictionaries()));
+            }
+
+            Supplier<AccidentBatch> nextBatch = () -> {
+                AccidentBatch batch = interruptibly(() -> timer.take(pool));
+                batch.clear();
+                return batch;
+            };
+            Chunk chunk;
+            while ((chunk = timer.take(chunks)) != Chunk.END) {
+                CSVChunkReader.RawChunk raw = chunk.raw;
+                parser.parseBatches(ByteBuffer.wrap(raw.getData(), 0, raw.getLength()), chunk.columns,
+                        chunk.sourceName, raw.getOffset(), nextBatch,
+                        batch -> interruptibly(() -> {
+                            timer.put(batches, new ParsedBatch(batch, pool));
+                            return null;
+                        }));
+                parseStats.items.increment();
+            }
+
+            if (runningParsers.decrementAndGet() == 0) {
+                for (int i = 0; i < aggregateWorkers; i++) {
+                    timer.put(batches, ParsedBatch.END);
+                }
+            }
+        } finally {
+            timer.finish();
+        }
+    }
+
+    /**
+     * Aggregation stage: fold batches into a partial result, then return them to their pool
+     */
+    private <P> P aggregate(BlockingQueue<ParsedBatch> batches, Supplier<P> partialFactory,
+                            BiConsumer<P, AccidentBatch> accumulator) throws InterruptedException {
+        StageTimer timer = new StageTimer(aggregateStats);
+        try {
+            P partial = partialFactory.get();
+            ParsedBatch parsed;
+            while ((parsed = timer.take(batches)) != ParsedBatch.END) {
+                accumulator.accept(partial, parsed.batch);
+                aggregateStats.items.increment();
+                // Never blocks: a pool has room for all of its batches
+                parsed.pool.put(parsed.batch);
+            }
+            return partial;
+        } finally {
+            timer.finish();
+        }
+    }
+
+    private interface Blocking<T> {
+        T call() throws InterruptedException;
+    }
+
+    /**
+     * Run a blocking queue operation inside a callback that cannot throw InterruptedException,
+     * unwinding the stage with an unchecked exception if the pipeline is cancelled
+     */
+    private static <T> T interruptibly(Blocking<T> operation) {
+        try {
+            return operation.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Pipeline cancelled", e);
+        }
+    }
+}
@@ -1,20 +1,40 @@
 package com.usaccidents;
 
+import com.usaccidents.io.CSVParser;
+import com.usaccidents.io.HDFSUtils;
 import com.usaccidents.io.HiveUtils;
+import com.usaccidents.io.OutputWriter;
 import com.usaccidents.hive.USAccidentsHiveDataProcessor;
+import com.usaccidents.operators.AccidentAnalyzer;
+import com.usaccidents.operators.WindowedAccidentAnalyzer;
+import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Properties;
 
 /**
- * Main application class for US Accidents Analysis using HDFS
+ * Main application class for US Accidents Analysis using HDFS.
+ *
+ * Runs the Hive analysis by default. With the argument "windowed" it instead counts the
+ * CSV files of the configured input directory in the event-time windows configured by
+ * application.properties, writing each window's results as it closes.
  */
 public class USAccidentsHDFSApp {
     private static final Logger logger = LoggerFactory.getLogger(USAccidentsHDFSApp.class);
     private static final String HDFS_OUTPUT_DIR = "/user/" + System.getProperty("user.name") + "/us_accidents_output";
+    private static final String WINDOWED_MODE = "windowed";
+    private static final String OPERATOR_PREFIX = "dt.application.USAccidentsAnalysisApplication.operator.";
+    private static final String INPUT_DIRECTORY_PROPERTY = OPERATOR_PREFIX + "fileInput.directory";
+    private static final String OUTPUT_DIRECTORY_PROPERTY = OPERATOR_PREFIX + "output.outputDirectory";
 
     public static void main(String[] args) {
+        if (args.length > 0 && WINDOWED_MODE.equals(args[0])) {
+            runWindowedAnalysis();
+            return;
+        }
+
         // Initialize Hive connection
         HiveUtils hiveUtils = new HiveUtils("jdbc:hive2://localhost:10000/us_accidents", "", "");
         hiveUtils.connect();
@@ -45,4 +65,36 @@ public class USAccidentsHDFSApp {
             hiveUtils.close();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Count the input files in event-time windows. The files are parsed one after another
+     * on this thread, as the windows are not thread-safe; accidents out of order by more
+     * than the allowed lateness are counted as late.
+     */
+    private static void runWindowedAnalysis() {
+        Properties properties = WindowedAccidentAnalyzer.loadApplicationProperties();
+        HDFSUtils hdfsUtils = new HDFSUtils();
+
+        try {
+            OutputWriter writer = new OutputWriter(properties.getProperty(OUTPUT_DIRECTORY_PROPERTY), hdfsUtils);
+            WindowedAccidentAnalyzer windows =
+                    WindowedAccidentAnalyzer.fromProperties(properties, WindowedAccidentAnalyzer.writingTo(writer));
+            CSVParser parser = new CSVParser(AccidentAnalyzer.REQUIRED_FIELDS);
+
+            for (Path file : hdfsUtils.findCsvFiles(properties.getProperty(INPUT_DIRECTORY_PROPERTY))) {
+                logger.info("Counting {} into windows...", file);
+                parser.parseHDFSCSVFile(file, hdfsUtils, windows);
+            }
+            windows.flush();
+
+            logger.info("✅ Emitted {} windows; {} late accidents, {} without a start time.",
+                    windows.getWindowsEmitted(), windows.getLateAccidents(), windows.getAccidentsWithoutTime());
+
+        } catch (Exception e) {
+            logger.error("Error during windowed processing: {}", e.getMessage(), e);
+            System.err.println("Error during windowed processing: " + e.getMessage());
+        } finally {
+            hdfsUtils.close();
+        }
+    }
+}
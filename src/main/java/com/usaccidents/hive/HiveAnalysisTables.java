@@ -0,0 +1,508 @@
+package com.usaccidents.hive;
+
+import com.usaccidents.io.CSVColumnMap;
+import com.usaccidents.io.CSVParser;
+import com.usaccidents.io.CSVRecord;
+import com.usaccidents.model.Accident;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneOffset;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The rows of location_analysis, severity_analysis, time_analysis and weather_analysis,
+ * computed in the JVM with the CASE bucketing and GROUP BY semantics of the queries in
+ * {@link USAccidentsHiveDataProcessor}.
+ *
+ * Records come raw from {@link CSVParser} so that an empty field can be told from a zero:
+ * the raw Hive table reads '' as NULL, and a NULL fails every WHEN and falls to the ELSE
+ * of a CASE, so a missing temperature is 'Hot' and a missing wind speed 'Violent'. Numbers
+ * that do not parse are NULL as well. BETWEEN includes both bounds and the first matching
+ * WHEN wins, so a temperature of exactly 50 is 'Cold'. GROUP BY keeps NULL keys as groups
+ * of their own, and AVG(Severity) skips NULL severities and is NULL if all are. Columns are
+ * found by header name, so the file layout must match the raw table for the results to be
+ * those of Hive. Short records count with their missing columns NULL, as Hive pads a
+ * short row. So does a record whose quote is never closed, though it runs to the end of
+ * its file instead of ending at the line break as in Hive. Timestamps are read as
+ * wall-clock time, as by a HiveServer2 running in UTC, and day and month names are English.
+ *
+ * Like {@link com.usaccidents.operators.AccidentAnalyzer}, a table set is a partial
+ * aggregate: give each parser worker its own and combine them with {@link #merge}. Groups
+ * are counted in exact longs, so the merged counts and averages do not depend on how the
+ * input was split. Rows are returned in no particular order, as from Hive.
+ */
+public class HiveAnalysisTables implements CSVParser.RecordConsumer {
+
+    /**
+     * The analysis tables with their columns, in the order of the Hive table definitions
+     */
+    public enum Table {
+        LOCATION("location_analysis", "accident_id", "state", "city", "county", "zipcode", "latitude", "longitude",
+                "street_type", "has_amenity", "has_bump", "has_crossing", "has_junction", "has_traffic_signal",
+                "accident_count"),
+        SEVERITY("severity_analysis", "severity_level", "severity_description", "common_time_of_day",
+                "common_weather_condition", "count_by_severity"),
+        TIME("time_analysis", "hour_of_day", "day_of_week", "month_of_year", "year", "sunrise_sunset_period",
+                "twilight_period", "accident_count"),
+        WEATHER("weather_analysis", "weather_condition", "temperature_range", "visibility_range",
+                "precipitation_level", "wind_speed_range", "average_severity", "accident_count");
+
+        private final String tableName;
+        private final List<String> columns;
+
+        Table(String tableName, String... columns) {
+            this.tableName = tableName;
+            this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+    }
+
+    private static final String[] DAY_NAMES = new String[7];
+    private static final String[] MONTH_NAMES = new String[12];
+
+    static {
+        for (DayOfWeek day : DayOfWeek.values()) {
+            DAY_NAMES[day.ordinal()] = day.getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+        }
+        for (Month month : Month.values()) {
+            MONTH_NAMES[month.ordinal()] = month.getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+        }
+    }
+
+    private final List<Object[]> locationRows = new ArrayList<>();
+    private final Map<List<Object>, long[]> severityCounts = new HashMap<>();
+    private final Map<List<Object>, long[]> timeCounts = new HashMap<>();
+    // Per group: COUNT(*), then the sum and number of the non-NULL severities
+    private final Map<List<Object>, long[]> weatherGroups = new HashMap<>();
+
+    // Raw table columns of the layout seen last; every source has its own column map
+    private CSVColumnMap columns;
+    private final RawColumns raw = new RawColumns();
+
+    @Override
+    public void accept(CSVRecord fields, CSVColumnMap columns) {
+        if (columns != this.columns) {
+            raw.resolve(columns);
+            this.columns = columns;
+        }
+
+        Integer severity = intValue(fields, raw.severity);
+        String street = stringValue(fields, raw.street);
+        String weatherCondition = stringValue(fields, raw.weatherCondition);
+        long startTime = timestampValue(fields, raw.startTime);
+        LocalDateTime start = startTime == Accident.NO_TIME ? null
+                : LocalDateTime.ofEpochSecond(startTime, 0, ZoneOffset.UTC);
+        Integer hour = start == null ? null : start.getHour();
+
+        locationRows.add(new Object[]{
+                stringValue(fields, raw.id), stringValue(fields, raw.state), stringValue(fields, raw.city),
+                stringValue(fields, raw.county), stringValue(fields, raw.zipcode),
+                doubleValue(fields, raw.startLat), doubleValue(fields, raw.startLng), streetType(street),
+                stringValue(fields, raw.amenity), stringValue(fields, raw.bump), stringValue(fields, raw.crossing),
+                stringValue(fields, raw.junction), stringValue(fields, raw.trafficSignal), 1});
+
+        count(severityCounts, Arrays.asList(severity, severityDescription(severity), timeOfDay(hour),
+                weatherCondition), 1);
+
+        count(timeCounts, Arrays.asList(hour,
+                start == null ? null : DAY_NAMES[start.getDayOfWeek().ordinal()],
+                start == null ? null : MONTH_NAMES[start.getMonthValue() - 1],
+                start == null ? null : start.getYear(),
+                stringValue(fields, raw.sunriseSunset),
+                twilightPeriod(stringValue(fields, raw.civilTwilight), stringValue(fields, raw.nauticalTwilight),
+                        stringValue(fields, raw.astronomicalTwilight))), 3);
+
+        if (weatherCondition != null) {
+            long[] group = count(weatherGroups, Arrays.asList(weatherCondition,
+                    temperatureRange(doubleValue(fields, raw.temperature)),
+                    visibilityRange(doubleValue(fields, raw.visibility)),
+                    precipitationLevel(doubleValue(fields, raw.precipitation)),
+                    windSpeedRange(doubleValue(fields, raw.windSpeed))), 3);
+            if (severity != null) {
+                group[1] += severity;
+                group[2]++;
+            }
+        }
+    }
+
+    /**
+     * Add the rows and groups of another partial aggregate to this one
+     *
+     * @return this table set
+     */
+    public HiveAnalysisTables merge(HiveAnalysisTables other) {
+        locationRows.addAll(other.locationRows);
+        mergeGroups(severityCounts, other.severityCounts);
+        mergeGroups(timeCounts, other.timeCounts);
+        mergeGroups(weatherGroups, other.weatherGroups);
+        return this;
+    }
+
+    /**
+     * Number of rows a table holds
+     */
+    public int getRowCount(Table table) {
+        switch (table) {
+            case LOCATION: return locationRows.size();
+            case SEVERITY: return severityCounts.size();
+            case TIME: return timeCounts.size();
+            default: return weatherGroups.size();
+        }
+    }
+
+    /**
+     * Rows of a table as column name to value, typed as the Hive columns: INT columns as
+     * Integer, DOUBLE columns as Double and STRING columns as String, with NULL as null
+     */
+    public List<Map<String, Object>> getRows(Table table) {
+        List<Map<String, Object>> rows = new ArrayList<>(getRowCount(table));
+        switch (table) {
+            case LOCATION:
+                for (Object[] values : locationRows) {
+                    rows.add(row(table, Arrays.asList(values)));
+                }
+                break;
+            case SEVERITY:
+                addCountRows(rows, table, severityCounts);
+                break;
+            case TIME:
+                addCountRows(rows, table, timeCounts);
+                break;
+            default:
+                for (Map.Entry<List<Object>, long[]> group : weatherGroups.entrySet()) {
+                    long[] aggregates = group.getValue();
+                    List<Object> values = new ArrayList<>(group.getKey());
+                    values.add(aggregates[2] == 0 ? null : (double) aggregates[1] / aggregates[2]);
+                    values.add((int) aggregates[0]);
+                    rows.add(row(table, values));
+                }
+                break;
+        }
+        return rows;
+    }
+
+    /**
+     * Rows of every table by Hive table name
+     */
+    public Map<String, List<Map<String, Object>>> getResults() {
+        Map<String, List<Map<String, Object>>> results = new LinkedHashMap<>();
+        for (Table table : Table.values()) {
+            results.put(table.getTableName(), getRows(table));
+        }
+        return results;
+    }
+
+    /**
+     * CASE on Street LIKE '%I-%', '%US-%', '%State Route%', '%Rd%', '%Ave%' and '%St%'
+     */
+    static String streetType(String street) {
+        if (street == null) {
+            return "Other";
+        }
+        if (street.contains("I-")) {
+            return "Interstate";
+        }
+        if (street.contains("US-")) {
+            return "US Highway";
+        }
+        if (street.contains("State Route")) {
+            return "State Highway";
+        }
+        if (street.contains("Rd")) {
+            return "Road";
+        }
+        if (street.contains("Ave")) {
+            return "Avenue";
+        }
+        if (street.contains("St")) {
+            return "Street";
+        }
+        return "Other";
+    }
+
+    static String severityDescription(Integer severity) {
+        if (severity == null) {
+            return "Unknown";
+        }
+        switch (severity) {
+            case 1: return "Low";
+            case 2: return "Moderate";
+            case 3: return "High";
+            case 4: return "Very High";
+            default: return "Unknown";
+        }
+    }
+
+    static String timeOfDay(Integer hour) {
+        if (hour == null) {
+            return "Night";
+        }
+        if (hour >= 6 && hour <= 11) {
+            return "Morning";
+        }
+        if (hour >= 12 && hour <= 17) {
+            return "Afternoon";
+        }
+        if (hour >= 18 && hour <= 23) {
+            return "Evening";
+        }
+        return "Night";
+    }
+
+    static String twilightPeriod(String civil, String nautical, String astronomical) {
+        if ("Day".equals(civil)) {
+            return "Day";
+        }
+        if ("Day".equals(nautical)) {
+            return "Dawn/Dusk";
+        }
+        // Astronomical_Twilight = 'Day' and the ELSE are both 'Night'
+        return "Night";
+    }
+
+    static String temperatureRange(Double temperature) {
+        if (temperature == null) {
+            return "Hot";
+        }
+        if (temperature < 32) {
+            return "Below Freezing";
+        }
+        if (between(temperature, 32, 50)) {
+            return "Cold";
+        }
+        if (between(temperature, 50, 70)) {
+            return "Mild";
+        }
+        if (between(temperature, 70, 85)) {
+            return "Warm";
+        }
+        return "Hot";
+    }
+
+    static String visibilityRange(Double visibility) {
+        if (visibility == null) {
+            return "Excellent";
+        }
+        if (visibility < 1) {
+            return "Very Low";
+        }
+        if (between(visibility, 1, 3)) {
+            return "Low";
+        }
+        if (between(visibility, 3, 6)) {
+            return "Moderate";
+        }
+        if (between(visibility, 6, 10)) {
+            return "Good";
+        }
+        return "Excellent";
+    }
+
+    static String precipitationLevel(Double precipitation) {
+        if (precipitation == null) {
+            return "Heavy";
+        }
+        if (precipitation == 0) {
+            return "None";
+        }
+        if (between(precipitation, 0, 0.1)) {
+            return "Light";
+        }
+        if (between(precipitation, 0.1, 0.3)) {
+            return "Moderate";
+        }
+        return "Heavy";
+    }
+
+    static String windSpeedRange(Double windSpeed) {
+        if (windSpeed == null) {
+            return "Violent";
+        }
+        if (windSpeed == 0) {
+            return "Calm";
+        }
+        if (between(windSpeed, 1, 7)) {
+            return "Light";
+        }
+        if (between(windSpeed, 8, 25)) {
+            return "Moderate";
+        }
+        if (between(windSpeed, 26, 54)) {
+            return "Strong";
+        }
+        // Includes the speeds between the ranges, such as 7.5
+        return "Violent";
+    }
+
+    private static boolean between(double value, double low, double high) {
+        return value >= low && value <= high;
+    }
+
+    /**
+     * A STRING column: NULL if the field is missing or empty
+     */
+    private static String stringValue(CSVRecord fields, int column) {
+        return column < 0 || fields.isEmpty(column) ? null : fields.field(column);
+    }
+
+    /**
+     * A DOUBLE column: NULL if the field is missing, empty or not a number
+     */
+    private static Double doubleValue(CSVRecord fields, int column) {
+        if (column < 0 || fields.isEmpty(column)) {
+            return null;
+        }
+        double value = fields.doubleField(column, Double.NaN);
+        return Double.isNaN(value) ? null : value;
+    }
+
+    /**
+     * An INT column: NULL if the field is missing, empty or not an integer. As in Hive, a
+     * decimal part of digits is accepted and truncated, so "2.0" is 2.
+     */
+    private static Integer intValue(CSVRecord fields, int column) {
+        if (column < 0 || fields.isEmpty(column)) {
+            return null;
+        }
+        int value = fields.intField(column, Integer.MIN_VALUE);
+        if (value != Integer.MIN_VALUE) {
+            return value;
+        }
+        String text = fields.field(column);
+        int point = text.indexOf('.');
+        if (point <= 0) {
+            return null;
+        }
+        for (int i = point + 1; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return null;
+            }
+        }
+        try {
+            return Integer.valueOf(text.substring(0, point));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long timestampValue(CSVRecord fields, int column) {
+        return column < 0 ? Accident.NO_TIME : fields.timestampField(column);
+    }
+
+    /**
+     * Count a record in its group, creating the group's aggregates if needed
+     */
+    private static long[] count(Map<List<Object>, long[]> groups, List<Object> key, int aggregates) {
+        long[] group = groups.get(key);
+        if (group == null) {
+            group = new long[aggregates];
+            groups.put(key, group);
+        }
+        group[0]++;
+        return group;
+    }
+
+    private static void mergeGroups(Map<List<Object>, long[]> groups, Map<List<Object>, long[]> other) {
+        for (Map.Entry<List<Object>, long[]> entry : other.entrySet()) {
+            long[] group = groups.get(entry.getKey());
+            if (group == null) {
+                groups.put(entry.getKey(), entry.getValue().clone());
+                continue;
+            }
+            for (int i = 0; i < group.length; i++) {
+                group[i] += entry.getValue()[i];
+            }
+        }
+    }
+
+    private static void addCountRows(List<Map<String, Object>> rows, Table table, Map<List<Object>, long[]> counts) {
+        for (Map.Entry<List<Object>, long[]> group : counts.entrySet()) {
+            List<Object> values = new ArrayList<>(group.getKey());
+            // COUNT(*) is inserted into an INT column
+            values.add((int) group.getValue()[0]);
+            rows.add(row(table, values));
+        }
+    }
+
+    private static Map<String, Object> row(Table table, List<Object> values) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            row.put(table.getColumns().get(i), values.get(i));
+        }
+        return row;
+    }
+
+    /**
+     * Positions of the raw table columns the queries read, or -1 for those a file lacks
+     */
+    private static final class RawColumns {
+        int id;
+        int severity;
+        int startTime;
+        int startLat;
+        int startLng;
+        int street;
+        int city;
+        int county;
+        int state;
+        int zipcode;
+        int temperature;
+        int visibility;
+        int windSpeed;
+        int precipitation;
+        int weatherCondition;
+        int amenity;
+        int bump;
+        int crossing;
+        int junction;
+        int trafficSignal;
+        int sunriseSunset;
+        int civilTwilight;
+        int nauticalTwilight;
+        int astronomicalTwilight;
+
+        void resolve(CSVColumnMap columns) {
+            id = columns.column("ID");
+            severity = columns.column("Severity");
+            startTime = columns.column("Start_Time");
+            startLat = columns.column("Start_Lat");
+            startLng = columns.column("Start_Lng");
+            street = columns.column("Street");
+            city = columns.column("City");
+            county = columns.column("County");
+            state = columns.column("State");
+            zipcode = columns.column("Zipcode");
+            temperature = columns.column("Temperature(F)", "Temperature_F");
+            visibility = columns.column("Visibility(mi)", "Visibility_mi");
+            windSpeed = columns.column("Wind_Speed(mph)", "Wind_Speed_mph");
+            precipitation = columns.column("Precipitation(in)", "Precipitation_in");
+            weatherCondition = columns.column("Weather_Condition");
+            amenity = columns.column("Amenity");
+            bump = columns.column("Bump");
+            crossing = columns.column("Crossing");
+            junction = columns.column("Junction");
+            trafficSignal = columns.column("Traffic_Signal");
+            sunriseSunset = columns.column("Sunrise_Sunset");
+            civilTwilight = columns.column("Civil_Twilight");
+            nauticalTwilight = columns.column("Nautical_Twilight");
+            astronomicalTwilight = columns.column("Astronomical_Twilight");
+        }
+    }
+}
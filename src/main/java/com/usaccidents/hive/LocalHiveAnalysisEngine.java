@@ -0,0 +1,78 @@
+package com.usaccidents.hive;
+
+import com.usaccidents.io.CSVParser;
+import com.usaccidents.io.HDFSUtils;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Computes the four analysis tables of {@link USAccidentsHiveDataProcessor} in the JVM,
+ * without a HiveServer2, for extracts small enough for one machine.
+ *
+ * Files are parsed in parallel by {@link CSVParser}: each worker thread aggregates its
+ * chunks or splits into its own {@link HiveAnalysisTables}, and the workers' tables are
+ * merged at the end. The results are those of the Hive queries over a raw table loaded
+ * with the same files; see {@link HiveAnalysisTables} for the semantics reproduced.
+ */
+public class LocalHiveAnalysisEngine {
+    private static final Logger logger = LoggerFactory.getLogger(LocalHiveAnalysisEngine.class);
+
+    private final CSVParser parser;
+    private final int parallelism;
+
+    /**
+     * An engine using all available processors
+     */
+    public LocalHiveAnalysisEngine() {
+        this(new CSVParser(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parser      parser of the input files, whose quarantine receives malformed records
+     * @param parallelism number of parser worker threads
+     */
+    public LocalHiveAnalysisEngine(CSVParser parser, int parallelism) {
+        this.parser = parser;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Compute the analysis tables of local CSV files
+     */
+    public HiveAnalysisTables analyzeFiles(List<File> files) {
+        long start = System.currentTimeMillis();
+        HiveAnalysisTables tables = new HiveAnalysisTables();
+        for (File file : files) {
+            tables.merge(parser.parseCSVFileParallelRecords(file, parallelism, HiveAnalysisTables::new,
+                    HiveAnalysisTables::merge));
+        }
+        logTables(tables, files.size(), start);
+        return tables;
+    }
+
+    /**
+     * Compute the analysis tables of CSV files in HDFS, parsing all their splits in parallel
+     */
+    public HiveAnalysisTables analyzeHDFSFiles(List<Path> hdfsPaths, HDFSUtils hdfsUtils) {
+        long start = System.currentTimeMillis();
+        HiveAnalysisTables tables = parser.parseHDFSCSVFilesParallelRecords(hdfsPaths, hdfsUtils, parallelism,
+                Long.MAX_VALUE, HiveAnalysisTables::new, HiveAnalysisTables::merge);
+        logTables(tables, hdfsPaths.size(), start);
+        return tables;
+    }
+
+    public CSVParser getParser() {
+        return parser;
+    }
+
+    private void logTables(HiveAnalysisTables tables, int fileCount, long start) {
+        logger.info("Computed analysis tables of {} files in {} ms", fileCount, System.currentTimeMillis() - start);
+        for (HiveAnalysisTables.Table table : HiveAnalysisTables.Table.values()) {
+            logger.info("  {}: {} rows", table.getTableName(), tables.getRowCount(table));
+        }
+    }
+}
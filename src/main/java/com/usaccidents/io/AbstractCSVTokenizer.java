@@ -0,0 +1,298 @@
+package com.usaccidents.io;
+
+import java.util.Arrays;
+
+/**
+ * The RFC 4180 state machine shared by {@link CSVTokenizer} and {@link ByteCSVTokenizer}.
+ *
+ * A record is walked once and the boundaries of its fields are kept in reusable offset
+ * arrays. Subclasses supply the source as characters through {@link #charAt} and decode
+ * the recorded ranges. Delimiters, quotes, blanks and line breaks are ASCII, so the
+ * machine works the same on chars and on the bytes of UTF-8 input.
+ */
+abstract class AbstractCSVTokenizer implements CSVRecord {
+    /**
+     * Returned by scan when the range ends before the record does
+     */
+    static final int INCOMPLETE = -1;
+
+    // States of the machine; RECORD_END is returned by nextState on a line break ending the record
+    static final int FIELD_START = 0;
+    static final int UNQUOTED = 1;
+    static final int QUOTED = 2;
+    static final int QUOTE_IN_QUOTED = 3;
+    static final int RECORD_END = 4;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    int recordStart;
+    int recordEnd;
+    int[] starts = new int[INITIAL_CAPACITY];
+    int[] ends = new int[INITIAL_CAPACITY];
+    boolean[] escapedQuotes = new boolean[INITIAL_CAPACITY];
+    private int fieldCount;
+    int recordedCount;
+    private boolean unterminatedQuote;
+
+    /**
+     * Character of the current source at an offset
+     */
+    abstract int charAt(int index);
+
+    /**
+     * Tokenize a single record from [from, to) of the current source.
+     *
+     * Scanning stops after the first line break outside of quotes. Only the first
+     * maxFields field boundaries are recorded; the rest of the record is still scanned
+     * so the record end and the field count are found correctly.
+     *
+     * @param endOfInput whether no data follows 'to'; if false and the record is not
+     *                   terminated within the range, {@link #INCOMPLETE} is returned
+     * @return the offset just past the record terminator, or INCOMPLETE
+     */
+    final int scan(int from, int to, int maxFields, boolean endOfInput) {
+        this.recordStart = from;
+        this.fieldCount = 0;
+        this.recordedCount = 0;
+        this.unterminatedQuote = false;
+
+        int state = FIELD_START;
+        int fieldStart = from;
+        boolean escaped = false;
+        int i = from;
+
+        while (i < to) {
+            int c = charAt(i);
+            int next = nextState(state, c);
+            switch (next) {
+                case QUOTED:
+                    if (state == FIELD_START) {
+                        fieldStart = i + 1;
+                        escaped = false;
+                    } else if (state == QUOTE_IN_QUOTED) {
+                        // Escaped quote inside a quoted field
+                        escaped = true;
+                    }
+                    break;
+                case UNQUOTED:
+                    if (state == FIELD_START) {
+                        fieldStart = i;
+                    } else if (state == QUOTE_IN_QUOTED) {
+                        // Malformed: text after the closing quote, keep it as part of the value
+                        fieldStart = fieldStart - 1;
+                    }
+                    break;
+                case FIELD_START:
+                    if (c == ',') {
+                        endField(state, fieldStart, i, escaped, maxFields);
+                    }
+                    // Past the delimiter, or a blank before the field
+                    fieldStart = i + 1;
+                    break;
+                case RECORD_END:
+                    endField(state, fieldStart, i, escaped, maxFields);
+                    return endRecord(i, to, endOfInput);
+                default:
+                    break;
+            }
+            state = next;
+            i++;
+        }
+
+        if (!endOfInput) {
+            return INCOMPLETE;
+        }
+
+        // Last record of the input without a terminator
+        switch (state) {
+            case UNQUOTED:
+                addField(fieldStart, trimEnd(fieldStart, to), false, maxFields);
+                break;
+            case QUOTED:
+                unterminatedQuote = true;
+                addField(fieldStart, to, escaped, maxFields);
+                break;
+            case QUOTE_IN_QUOTED:
+                addField(fieldStart, closingQuote(fieldStart, to), escaped, maxFields);
+                break;
+            default:
+                if (to > from || fieldCount > 0) {
+                    addField(fieldStart, fieldStart, false, maxFields);
+                }
+                break;
+        }
+        recordEnd = to;
+        return to;
+    }
+
+    /**
+     * State after a character, or RECORD_END if it is a line break ending the record.
+     *
+     * A quote opens a field only at its start, and inside a quoted field a quote either
+     * closes it or, doubled, escapes one. Blanks around a field are skipped. This is the
+     * single definition of the quote and record boundary rules; the record cutters of
+     * {@link MappedCSVChunker} and {@link HDFSSplitPlanner} are built on it.
+     */
+    static int nextState(int state, int c) {
+        switch (state) {
+            case FIELD_START:
+                if (c == '"') {
+                    return QUOTED;
+                }
+                if (c == ' ' || c == '\t') {
+                    return FIELD_START;
+                }
+                break;
+            case UNQUOTED:
+                break;
+            case QUOTED:
+                return c == '"' ? QUOTE_IN_QUOTED : QUOTED;
+            case QUOTE_IN_QUOTED:
+                if (c == '"') {
+                    return QUOTED;
+                }
+                if (c == ' ' || c == '\t') {
+                    return QUOTE_IN_QUOTED;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown tokenizer state: " + state);
+        }
+        if (c == ',') {
+            return FIELD_START;
+        }
+        if (c == '\n' || c == '\r') {
+            return RECORD_END;
+        }
+        return UNQUOTED;
+    }
+
+    /**
+     * Number of fields found in the last tokenized record
+     */
+    @Override
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Number of fields whose boundaries were recorded for the last record
+     */
+    @Override
+    public int recordedFieldCount() {
+        return recordedCount;
+    }
+
+    /**
+     * True if the last record ended inside a quoted field, i.e. the record
+     * continues past the end of the input
+     */
+    @Override
+    public boolean hasUnterminatedQuote() {
+        return unterminatedQuote;
+    }
+
+    /**
+     * True if the field is missing or has an empty value
+     */
+    @Override
+    public boolean isEmpty(int index) {
+        return index >= recordedCount || starts[index] == ends[index];
+    }
+
+    /**
+     * Offset of the first character of the last record
+     */
+    public int recordStart() {
+        return recordStart;
+    }
+
+    /**
+     * Offset just past the last record, including its terminator
+     */
+    public int recordEnd() {
+        return recordEnd;
+    }
+
+    /**
+     * Start offset (inclusive) of a field's value in the source
+     */
+    public int fieldStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * End offset (exclusive) of a field's value in the source
+     */
+    public int fieldEnd(int index) {
+        return ends[index];
+    }
+
+    private int endRecord(int i, int to, boolean endOfInput) {
+        if (charAt(i) == '\r') {
+            if (i + 1 < to) {
+                if (charAt(i + 1) == '\n') {
+                    i++;
+                }
+            } else if (!endOfInput) {
+                // Cannot tell yet whether a '\n' follows
+                return INCOMPLETE;
+            }
+        }
+        recordEnd = i + 1;
+        return recordEnd;
+    }
+
+    /**
+     * Record the field ending at a delimiter or line break, read in the given state
+     */
+    private void endField(int state, int fieldStart, int delimiter, boolean escaped, int maxFields) {
+        if (state == UNQUOTED) {
+            addField(fieldStart, trimEnd(fieldStart, delimiter), false, maxFields);
+        } else if (state == QUOTE_IN_QUOTED) {
+            addField(fieldStart, closingQuote(fieldStart, delimiter), escaped, maxFields);
+        } else {
+            addField(delimiter, delimiter, false, maxFields);
+        }
+    }
+
+    private void addField(int start, int end, boolean escaped, int maxFields) {
+        fieldCount++;
+        if (recordedCount >= maxFields) {
+            // Beyond the requested columns: only keep counting so callers can validate the width
+            return;
+        }
+        if (recordedCount == starts.length) {
+            int capacity = starts.length * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            escapedQuotes = Arrays.copyOf(escapedQuotes, capacity);
+        }
+        starts[recordedCount] = start;
+        ends[recordedCount] = end;
+        escapedQuotes[recordedCount] = escaped;
+        recordedCount++;
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start) {
+            int c = charAt(end - 1);
+            if (c != ' ' && c != '\t') {
+                break;
+            }
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Locate the closing quote of a quoted field that ended at the given delimiter
+     */
+    private int closingQuote(int start, int delimiter) {
+        int end = delimiter;
+        while (end > start && charAt(end - 1) != '"') {
+            end--;
+        }
+        return end - 1;
+    }
+}
@@ -0,0 +1,380 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.AccidentField;
+import com.usaccidents.model.AccidentTable;
+import com.usaccidents.model.StringDictionary;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads accidents from a cache file written by {@link AccidentCacheWriter}.
+ *
+ * The footer is read when the reader is opened. Loading then reads only the column
+ * chunks of the projected fields, and skips every chunk a {@link CachePredicate} rules
+ * out from the chunk statistics without reading its data. Files are read from the
+ * local file system, or from HDFS when the reader is created with an {@link HDFSUtils}.
+ */
+public class AccidentCacheReader implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(AccidentCacheReader.class);
+
+    private final String path;
+    private final Source source;
+    private final List<AccidentField> fields = new ArrayList<>();
+    private final Map<AccidentField, StringDictionary> dictionaries = new EnumMap<>(AccidentField.class);
+    private final List<ChunkInfo> chunks = new ArrayList<>();
+    private long rowCount;
+
+    /**
+     * Location and statistics of the column chunks of one chunk of rows
+     */
+    private static final class ChunkInfo {
+        final int rows;
+        final long[] offsets;
+        final int[] lengths;
+        final Map<AccidentField, ColumnChunkStats> stats = new EnumMap<>(AccidentField.class);
+
+        ChunkInfo(int rows, int fieldCount) {
+            this.rows = rows;
+            this.offsets = new long[fieldCount];
+            this.lengths = new int[fieldCount];
+        }
+    }
+
+    /**
+     * Positioned reads from a local or HDFS file
+     */
+    private interface Source extends Closeable {
+        long length() throws IOException;
+
+        void read(long position, byte[] buffer, int length) throws IOException;
+    }
+
+    /**
+     * Open a cache file on the local file system
+     */
+    public AccidentCacheReader(String path) {
+        this(path, null);
+    }
+
+    /**
+     * Open a cache file in HDFS
+     */
+    public AccidentCacheReader(String path, HDFSUtils hdfsUtils) {
+        this.path = path;
+        try {
+            this.source = hdfsUtils == null ? new LocalSource(path) : new HDFSSource(hdfsUtils, new Path(path));
+        } catch (IOException e) {
+            logger.error("Error opening accident cache file: {}", path, e);
+            throw new RuntimeException("Failed to open accident cache file", e);
+        }
+        try {
+            readFooter();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly();
+            logger.error("Error reading accident cache file: {}", path, e);
+            throw new RuntimeException("Failed to read accident cache file", e);
+        }
+    }
+
+    /**
+     * Fields stored in the file
+     */
+    public Set<AccidentField> getFields() {
+        return fields.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(fields));
+    }
+
+    /**
+     * Number of accidents in the file
+     */
+    public long rowCount() {
+        return rowCount;
+    }
+
+    public int chunkCount() {
+        return chunks.size();
+    }
+
+    public int chunkRows(int chunk) {
+        return chunks.get(chunk).rows;
+    }
+
+    /**
+     * Statistics of the stored columns of a chunk
+     */
+    public Map<AccidentField, ColumnChunkStats> chunkStats(int chunk) {
+        return Collections.unmodifiableMap(chunks.get(chunk).stats);
+    }
+
+    /**
+     * Load every stored field of every accident
+     */
+    public AccidentTable read() {
+        return read(getFields(), CachePredicate.ALL);
+    }
+
+    /**
+     * Load the given fields of every accident; fields the file does not store keep their
+     * defaults
+     */
+    public AccidentTable read(Set<AccidentField> projection) {
+        return read(projection, CachePredicate.ALL);
+    }
+
+    /**
+     * Load the given fields of the accidents in the chunks the predicate accepts
+     */
+    public AccidentTable read(Set<AccidentField> projection, CachePredicate predicate) {
+        AccidentTable table = new AccidentTable(projection);
+        int skipped = 0;
+        try {
+            byte[] data = new byte[0];
+            int[] ints = new int[AccidentTable.CHUNK_SIZE];
+            long[] longs = new long[AccidentTable.CHUNK_SIZE];
+            double[] doubles = new double[AccidentTable.CHUNK_SIZE];
+            boolean[] booleans = new boolean[AccidentTable.CHUNK_SIZE];
+            String[] strings = new String[AccidentTable.CHUNK_SIZE];
+
+            for (ChunkInfo chunk : chunks) {
+                if (!predicate.mightMatch(chunk.stats)) {
+                    skipped++;
+                    continue;
+                }
+                int rows = chunk.rows;
+                int first = table.addRows(rows);
+                for (int column = 0; column < fields.size(); column++) {
+                    AccidentField field = fields.get(column);
+                    if (!projection.contains(field)) {
+                        continue;
+                    }
+                    int length = chunk.lengths[column];
+                    if (data.length < length) {
+                        data = new byte[Math.max(length, data.length * 2)];
+                    }
+                    source.read(chunk.offsets[column], data, length);
+                    ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+
+                    switch (AccidentTable.columnType(field)) {
+                        case INT:
+                            buffer.asIntBuffer().get(ints, 0, rows);
+                            table.copyInts(field, ints, first, rows);
+                            break;
+                        case LONG:
+                            buffer.asLongBuffer().get(longs, 0, rows);
+                            table.copyLongs(field, longs, first, rows);
+                            break;
+                        case DOUBLE:
+                            buffer.asDoubleBuffer().get(doubles, 0, rows);
+                            table.copyDoubles(field, doubles, first, rows);
+                            break;
+                        case BOOLEAN:
+                            for (int i = 0; i < rows; i++) {
+                                booleans[i] = data[i] != 0;
+                            }
+                            table.copyBooleans(field, booleans, first, rows);
+                            break;
+                        case CODE:
+                            buffer.asIntBuffer().get(ints, 0, rows);
+                            table.copyCodes(field, ints, dictionaries.get(field), first, rows);
+                            break;
+                        case STRING:
+                            for (int i = 0; i < rows; i++) {
+                                strings[i] = readString(buffer);
+                            }
+                            table.copyStrings(field, strings, first, rows);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown column type of " + field);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error reading accident cache file: {}", path, e);
+            throw new RuntimeException("Failed to read accident cache file", e);
+        }
+        logger.info("Loaded {} accidents from cache file {}, skipping {} of {} chunks",
+                table.size(), path, skipped, chunks.size());
+        return table;
+    }
+
+    private void readFooter() throws IOException {
+        long length = source.length();
+        if (length < 2 * Integer.BYTES + AccidentCacheWriter.TRAILER_SIZE) {
+            throw new IOException("Not an accident cache file: " + path);
+        }
+        byte[] header = new byte[2 * Integer.BYTES];
+        source.read(0, header, header.length);
+        ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+        if (headerBuffer.getInt() != AccidentCacheWriter.MAGIC) {
+            throw new IOException("Not an accident cache file: " + path);
+        }
+        int version = headerBuffer.getInt();
+        if (version != AccidentCacheWriter.VERSION) {
+            throw new IOException("Unsupported accident cache version " + version + ": " + path);
+        }
+
+        byte[] trailer = new byte[AccidentCacheWriter.TRAILER_SIZE];
+        source.read(length - trailer.length, trailer, trailer.length);
+        ByteBuffer trailerBuffer = ByteBuffer.wrap(trailer);
+        long footerOffset = trailerBuffer.getLong();
+        if (trailerBuffer.getInt() != AccidentCacheWriter.MAGIC || footerOffset < header.length
+                || footerOffset > length - trailer.length) {
+            throw new IOException("Truncated accident cache file: " + path);
+        }
+
+        byte[] footerBytes = new byte[(int) (length - trailer.length - footerOffset)];
+        source.read(footerOffset, footerBytes, footerBytes.length);
+        DataInputStream footer = new DataInputStream(new ByteArrayInputStream(footerBytes));
+
+        int fieldCount = footer.readInt();
+        for (int i = 0; i < fieldCount; i++) {
+            fields.add(AccidentField.valueOf(readString(footer)));
+        }
+        for (AccidentField field : fields) {
+            if (AccidentTable.columnType(field) == AccidentTable.ColumnType.CODE) {
+                StringDictionary dictionary = new StringDictionary();
+                int size = footer.readInt();
+                for (int code = 0; code < size; code++) {
+                    dictionary.encode(readString(footer));
+                }
+                dictionaries.put(field, dictionary);
+            }
+        }
+
+        int chunkCount = footer.readInt();
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            ChunkInfo info = new ChunkInfo(footer.readInt(), fields.size());
+            for (int column = 0; column < fields.size(); column++) {
+                AccidentField field = fields.get(column);
+                info.stats.put(field, readStats(footer, AccidentTable.columnType(field)));
+                info.offsets[column] = footer.readLong();
+                info.lengths[column] = footer.readInt();
+            }
+            chunks.add(info);
+            rowCount += info.rows;
+        }
+    }
+
+    private static ColumnChunkStats readStats(DataInputStream footer, AccidentTable.ColumnType type)
+            throws IOException {
+        int nullCount = footer.readInt();
+        switch (type) {
+            case INT:
+            case LONG:
+            case BOOLEAN:
+                return new ColumnChunkStats(nullCount, footer.readLong(), footer.readLong(), 0.0, 0.0, null, null);
+            case DOUBLE:
+                return new ColumnChunkStats(nullCount, 0, 0, footer.readDouble(), footer.readDouble(), null, null);
+            case CODE:
+                return new ColumnChunkStats(nullCount, 0, 0, 0.0, 0.0, readString(footer), readString(footer));
+            default:
+                return new ColumnChunkStats(nullCount, 0, 0, 0.0, 0.0, null, null);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private void closeQuietly() {
+        try {
+            source.close();
+        } catch (IOException e) {
+            logger.warn("Error closing accident cache file: {}", path, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private static final class LocalSource implements Source {
+        private final FileChannel channel;
+
+        LocalSource(String path) throws IOException {
+            this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        }
+
+        @Override
+        public long length() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public void read(long position, byte[] buffer, int length) throws IOException {
+            ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+            while (target.hasRemaining()) {
+                if (channel.read(target, position + target.position()) < 0) {
+                    throw new IOException("Unexpected end of accident cache file");
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class HDFSSource implements Source {
+        private final FSDataInputStream input;
+        private final long length;
+
+        HDFSSource(HDFSUtils hdfsUtils, Path path) throws IOException {
+            this.length = hdfsUtils.getFileStatus(path).getLen();
+            this.input = hdfsUtils.openFile(path);
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void read(long position, byte[] buffer, int length) throws IOException {
+            input.seek(position);
+            input.readFully(buffer, 0, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
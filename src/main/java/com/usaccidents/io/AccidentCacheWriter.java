@@ -0,0 +1,275 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentField;
+import com.usaccidents.model.AccidentTable;
+import com.usaccidents.model.StringDictionary;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes an {@link AccidentTable} as a binary columnar cache file, so a CSV data set is
+ * parsed once and can then be loaded by {@link AccidentCacheReader} many times.
+ *
+ * Layout (all numbers big-endian):
+ * <pre>
+ *   header:  magic, version
+ *   data:    for each chunk of up to AccidentTable.CHUNK_SIZE rows,
+ *            for each stored field, the column chunk
+ *   footer:  stored fields, dictionaries of CODE fields, and for each chunk its
+ *            row count and, per column, its {@link ColumnChunkStats}, offset and length
+ *   trailer: footer offset (long), magic
+ * </pre>
+ * Column chunks hold rows × 4 bytes for INT and CODE columns (codes into the field's
+ * dictionary, -1 for null), rows × 8 for LONG and DOUBLE, rows × 1 for BOOLEAN, and
+ * length-prefixed UTF-8 values (-1 for null) for STRING columns.
+ *
+ * Files are written to the local file system, or to HDFS when the writer is created
+ * with an {@link HDFSUtils}.
+ */
+public class AccidentCacheWriter {
+    private static final Logger logger = LoggerFactory.getLogger(AccidentCacheWriter.class);
+    static final int MAGIC = 0x55534143; // "USAC"
+    static final int VERSION = 1;
+    static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final HDFSUtils hdfsUtils;
+
+    /**
+     * Create a writer for the local file system
+     */
+    public AccidentCacheWriter() {
+        this.hdfsUtils = null;
+    }
+
+    /**
+     * Create a writer for HDFS
+     */
+    public AccidentCacheWriter(HDFSUtils hdfsUtils) {
+        this.hdfsUtils = hdfsUtils;
+    }
+
+    /**
+     * Write the table to a cache file, replacing any existing file
+     */
+    public void write(AccidentTable table, String path) {
+        try (OutputStream out = new BufferedOutputStream(hdfsUtils == null ? new FileOutputStream(path)
+                : hdfsUtils.createFile(new Path(path)), BUFFER_SIZE)) {
+            write(table, out);
+            logger.info("Wrote {} accidents to cache file {}", table.size(), path);
+        } catch (IOException e) {
+            logger.error("Error writing accident cache file: {}", path, e);
+            throw new RuntimeException("Failed to write accident cache file", e);
+        }
+    }
+
+    /**
+     * Write the table in cache format to a stream; the caller closes the stream
+     */
+    public void write(AccidentTable table, OutputStream out) throws IOException {
+        List<AccidentField> fields = new ArrayList<>(table.getProjection());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        DataOutputStream data = new DataOutputStream(buffer);
+        // Fixed-width column chunks are encoded in bulk through this buffer
+        ByteBuffer scratch = ByteBuffer.allocate(AccidentTable.CHUNK_SIZE * Long.BYTES);
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        long offset = flush(buffer, out, 0);
+
+        // The footer is built while the chunks are written
+        ByteArrayOutputStream footerBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        DataOutputStream footer = new DataOutputStream(footerBuffer);
+        footer.writeInt(fields.size());
+        for (AccidentField field : fields) {
+            writeString(footer, field.name());
+        }
+        for (AccidentField field : fields) {
+            if (AccidentTable.columnType(field) == AccidentTable.ColumnType.CODE) {
+                StringDictionary dictionary = table.dictionary(field);
+                footer.writeInt(dictionary.size());
+                for (int code = 0; code < dictionary.size(); code++) {
+                    writeString(footer, dictionary.decode(code));
+                }
+            }
+        }
+
+        footer.writeInt(table.chunkCount());
+        for (int chunk = 0; chunk < table.chunkCount(); chunk++) {
+            int rows = table.chunkLength(chunk);
+            footer.writeInt(rows);
+            for (AccidentField field : fields) {
+                writeColumnChunk(table, field, chunk, rows, scratch, data, footer);
+                footer.writeLong(offset);
+                footer.writeInt(buffer.size());
+                offset = flush(buffer, out, offset);
+            }
+        }
+
+        long footerOffset = offset;
+        footer.writeLong(footerOffset);
+        footer.writeInt(MAGIC);
+        footerBuffer.writeTo(out);
+    }
+
+    /**
+     * Encode one column chunk into data and append its statistics to the footer
+     */
+    private static void writeColumnChunk(AccidentTable table, AccidentField field, int chunk, int rows,
+                                         ByteBuffer scratch, DataOutputStream data, DataOutputStream footer)
+            throws IOException {
+        scratch.clear();
+        switch (AccidentTable.columnType(field)) {
+            case INT: {
+                int[] values = table.intChunk(field, chunk);
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                scratch.asIntBuffer().put(values, 0, rows);
+                data.write(scratch.array(), 0, rows * Integer.BYTES);
+                for (int i = 0; i < rows; i++) {
+                    min = Math.min(min, values[i]);
+                    max = Math.max(max, values[i]);
+                }
+                footer.writeInt(0);
+                footer.writeLong(min);
+                footer.writeLong(max);
+                break;
+            }
+            case LONG: {
+                long[] values = table.longChunk(field, chunk);
+                int nulls = 0;
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                scratch.asLongBuffer().put(values, 0, rows);
+                data.write(scratch.array(), 0, rows * Long.BYTES);
+                for (int i = 0; i < rows; i++) {
+                    long value = values[i];
+                    if (value == Accident.NO_TIME) {
+                        nulls++;
+                    } else {
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+                }
+                footer.writeInt(nulls);
+                footer.writeLong(min);
+                footer.writeLong(max);
+                break;
+            }
+            case DOUBLE: {
+                double[] values = table.doubleChunk(field, chunk);
+                int nulls = 0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                scratch.asDoubleBuffer().put(values, 0, rows);
+                data.write(scratch.array(), 0, rows * Double.BYTES);
+                for (int i = 0; i < rows; i++) {
+                    double value = values[i];
+                    if (Double.isNaN(value)) {
+                        nulls++;
+                    } else {
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+                }
+                footer.writeInt(nulls);
+                footer.writeDouble(min);
+                footer.writeDouble(max);
+                break;
+            }
+            case BOOLEAN: {
+                boolean[] values = table.booleanChunk(field, chunk);
+                long min = 1;
+                long max = 0;
+                for (int i = 0; i < rows; i++) {
+                    int value = values[i] ? 1 : 0;
+                    scratch.put(i, (byte) value);
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                data.write(scratch.array(), 0, rows);
+                footer.writeInt(0);
+                footer.writeLong(min);
+                footer.writeLong(max);
+                break;
+            }
+            case CODE: {
+                int[] codes = table.intChunk(field, chunk);
+                StringDictionary dictionary = table.dictionary(field);
+                int nulls = 0;
+                int previous = StringDictionary.NULL_CODE;
+                String min = null;
+                String max = null;
+                scratch.asIntBuffer().put(codes, 0, rows);
+                data.write(scratch.array(), 0, rows * Integer.BYTES);
+                for (int i = 0; i < rows; i++) {
+                    int code = codes[i];
+                    if (code == StringDictionary.NULL_CODE) {
+                        nulls++;
+                    } else if (code != previous) {
+                        // Runs of one value are common, e.g. the state of a time-sorted file
+                        String value = dictionary.decode(code);
+                        if (min == null || value.compareTo(min) < 0) {
+                            min = value;
+                        }
+                        if (max == null || value.compareTo(max) > 0) {
+                            max = value;
+                        }
+                        previous = code;
+                    }
+                }
+                footer.writeInt(nulls);
+                writeString(footer, min);
+                writeString(footer, max);
+                break;
+            }
+            case STRING: {
+                String[] values = table.stringChunk(field, chunk);
+                int nulls = 0;
+                for (int i = 0; i < rows; i++) {
+                    if (values[i] == null) {
+                        nulls++;
+                    }
+                    writeString(data, values[i]);
+                }
+                footer.writeInt(nulls);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown column type of " + field);
+        }
+    }
+
+    private static long flush(ByteArrayOutputStream buffer, OutputStream out, long offset) throws IOException {
+        long end = offset + buffer.size();
+        buffer.writeTo(out);
+        buffer.reset();
+        return end;
+    }
+
+    /**
+     * Write a string as its UTF-8 length and bytes, or -1 for null
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
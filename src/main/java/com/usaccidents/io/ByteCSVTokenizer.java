@@ -0,0 +1,111 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.StringDictionary;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Byte-oriented counterpart of {@link CSVTokenizer} for ASCII/UTF-8 input, running the
+ * same state machine of {@link AbstractCSVTokenizer}.
+ *
+ * Records are tokenized directly in a ByteBuffer (heap, direct or memory-mapped)
+ * without charset decoding. Numeric and timestamp fields are decoded from their
+ * byte ranges; Strings are only created for fields that are read as text.
+ * Delimiters, quotes and line breaks are ASCII, so they never occur inside a
+ * multi-byte UTF-8 sequence and can be matched byte by byte.
+ */
+public class ByteCSVTokenizer extends AbstractCSVTokenizer {
+    /**
+     * Returned by tokenize when the range ends before the record does
+     */
+    public static final int INCOMPLETE = AbstractCSVTokenizer.INCOMPLETE;
+
+    private ByteBuffer source;
+
+    /**
+     * Tokenize a single record from source[from, to).
+     *
+     * Scanning stops after the first line break outside of quotes. Only the first
+     * maxFields field boundaries are recorded.
+     *
+     * @param endOfInput whether no data follows 'to'; if false and the record is not
+     *                   terminated within the range, {@link #INCOMPLETE} is returned
+     * @return the offset just past the record terminator, or INCOMPLETE
+     */
+    public int tokenize(ByteBuffer source, int from, int to, int maxFields, boolean endOfInput) {
+        this.source = source;
+        return scan(from, to, maxFields, endOfInput);
+    }
+
+    @Override
+    int charAt(int index) {
+        return source.get(index);
+    }
+
+    @Override
+    public String field(int index) {
+        if (isEmpty(index)) {
+            return "";
+        }
+        int start = starts[index];
+        int end = ends[index];
+        if (!escapedQuotes[index]) {
+            return ByteFieldDecoder.decode(source, start, end);
+        }
+
+        byte[] unescaped = new byte[end - start];
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            byte b = source.get(i);
+            unescaped[length++] = b;
+            if (b == '"' && i + 1 < end && source.get(i + 1) == '"') {
+                i++;
+            }
+        }
+        return ByteFieldDecoder.decode(ByteBuffer.wrap(unescaped), 0, length);
+    }
+
+    @Override
+    public int intField(int index, int defaultValue) {
+        return isEmpty(index) ? defaultValue : ByteFieldDecoder.parseInt(source, starts[index], ends[index], defaultValue);
+    }
+
+    @Override
+    public double doubleField(int index, double defaultValue) {
+        return isEmpty(index) ? defaultValue
+                : ByteFieldDecoder.parseDouble(source, starts[index], ends[index], defaultValue);
+    }
+
+    @Override
+    public boolean booleanField(int index) {
+        if (isEmpty(index) || ends[index] - starts[index] != 4) {
+            return false;
+        }
+        int start = starts[index];
+        return (source.get(start) | 0x20) == 't' && (source.get(start + 1) | 0x20) == 'r'
+                && (source.get(start + 2) | 0x20) == 'u' && (source.get(start + 3) | 0x20) == 'e';
+    }
+
+    /**
+     * Code a field straight from its bytes; only fields with escaped quotes are materialized
+     */
+    @Override
+    public int codeField(int index, StringDictionary dictionary) {
+        if (isEmpty(index)) {
+            return StringDictionary.NULL_CODE;
+        }
+        return escapedQuotes[index] ? dictionary.encode(field(index))
+                : dictionary.encode(source, starts[index], ends[index]);
+    }
+
+    @Override
+    public long timestampField(int index) {
+        return isEmpty(index) ? Accident.NO_TIME : TimestampDecoder.decode(source, starts[index], ends[index]);
+    }
+
+    @Override
+    public String recordText() {
+        return source == null ? "" : ByteFieldDecoder.decode(source, recordStart, recordEnd);
+    }
+}
@@ -0,0 +1,124 @@
+package com.usaccidents.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads CSV records from a byte stream using {@link ByteCSVTokenizer}.
+ *
+ * Input is read into one reusable buffer and records are tokenized in place; a
+ * record that straddles the end of the buffer is moved to the front before more
+ * input is read. The buffer grows only if a single record does not fit.
+ */
+public class ByteRecordReader implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final InputStream input;
+    private final ByteCSVTokenizer tokenizer = new ByteCSVTokenizer();
+    private byte[] buffer;
+    private ByteBuffer view;
+    private int position;
+    private int limit;
+    private long bufferOffset;
+    private boolean endOfInput;
+    private int maxFields = Integer.MAX_VALUE;
+    private long recordNumber;
+
+    public ByteRecordReader(InputStream input) {
+        this(input, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ByteRecordReader(InputStream input, int bufferSize) {
+        this.input = input;
+        this.buffer = new byte[bufferSize];
+        this.view = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Advance to the next record
+     *
+     * @return false at end of input
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (position >= limit && endOfInput) {
+                return false;
+            }
+            int next = position < limit
+                    ? tokenizer.tokenize(view, position, limit, maxFields, endOfInput)
+                    : ByteCSVTokenizer.INCOMPLETE;
+            if (next != ByteCSVTokenizer.INCOMPLETE) {
+                position = next;
+                recordNumber++;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Limit the number of leading columns recorded for the following records
+     */
+    public void setMaxFields(int maxFields) {
+        this.maxFields = maxFields;
+    }
+
+    /**
+     * Tokenizer holding the fields of the current record
+     */
+    public ByteCSVTokenizer tokenizer() {
+        return tokenizer;
+    }
+
+    /**
+     * Byte offset of the current record in the stream
+     */
+    public long recordOffset() {
+        return bufferOffset + tokenizer.recordStart();
+    }
+
+    /**
+     * Byte offset in the stream just past the current record
+     */
+    public long nextRecordOffset() {
+        return bufferOffset + position;
+    }
+
+    /**
+     * 1-based number of the current record, counting the header
+     */
+    public long recordNumber() {
+        return recordNumber;
+    }
+
+    private void fill() throws IOException {
+        // Keep the unfinished record, moving it to the front of the buffer
+        int remaining = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+            bufferOffset += position;
+            position = 0;
+            limit = remaining;
+        }
+        if (limit == buffer.length) {
+            byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+            view = ByteBuffer.wrap(buffer);
+        }
+
+        int read = input.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
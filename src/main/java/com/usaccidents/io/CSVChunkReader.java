@@ -0,0 +1,132 @@
+package com.usaccidents.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads a CSV byte stream in chunks of whole records.
+ *
+ * The stream is read until a chunk reaches its target size, then the chunk is cut
+ * after the last line feed ending a record; the bytes after the cut are carried over
+ * to the front of the next chunk. Records are followed with the record cutting rules of
+ * {@link MappedCSVChunker} from the start of the chunk, which is always the start of a
+ * record. A chunk grows beyond the target size only if a single
+ * record does not fit. Every chunk is a fresh array, so it can be handed to another
+ * thread.
+ */
+public class CSVChunkReader implements Closeable {
+    private final InputStream input;
+    private final int chunkSize;
+    // Bytes read past the end of the previous chunk
+    private byte[] carry = new byte[0];
+    private long offset;
+    private boolean endOfInput;
+
+    /**
+     * Bytes [0, length) of data, starting at the given offset in the stream
+     */
+    public static class RawChunk {
+        private final byte[] data;
+        private final int length;
+        private final long offset;
+
+        RawChunk(byte[] data, int length, long offset) {
+            this.data = data;
+            this.length = length;
+            this.offset = offset;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    public CSVChunkReader(InputStream input, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.input = input;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Read a single record, e.g. the header
+     *
+     * @return the record, or null at end of input
+     */
+    public RawChunk nextRecord() throws IOException {
+        return next(true);
+    }
+
+    /**
+     * Read the next chunk of records
+     *
+     * @return the chunk, or null at end of input
+     */
+    public RawChunk next() throws IOException {
+        return next(false);
+    }
+
+    private RawChunk next(boolean singleRecord) throws IOException {
+        byte[] buffer = new byte[Math.max(chunkSize, carry.length + 1)];
+        System.arraycopy(carry, 0, buffer, 0, carry.length);
+        int length = carry.length;
+        int scanned = 0;
+        // Every chunk starts on a record boundary
+        int state = AbstractCSVTokenizer.FIELD_START;
+        int boundary = -1;
+
+        while (true) {
+            for (; scanned < length; scanned++) {
+                state = MappedCSVChunker.transition(state, buffer[scanned]);
+                if ((state & MappedCSVChunker.BOUNDARY) != 0) {
+                    state &= MappedCSVChunker.STATE_MASK;
+                    boundary = scanned + 1;
+                    if (singleRecord) {
+                        break;
+                    }
+                }
+            }
+            if (boundary > 0 && (singleRecord || length == buffer.length)) {
+                break;
+            }
+            if (endOfInput) {
+                boundary = length;
+                break;
+            }
+            if (length == buffer.length) {
+                // Not a single record boundary in the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = input.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                length += read;
+            }
+        }
+
+        if (boundary == 0) {
+            return null;
+        }
+        carry = Arrays.copyOfRange(buffer, boundary, length);
+        RawChunk chunk = new RawChunk(buffer, boundary, offset);
+        offset += boundary;
+        return chunk;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,102 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.AccidentField;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Maps {@link AccidentField}s to column positions, resolved once from a CSV header row
+ */
+public class CSVColumnMap {
+    private final int[] columns;
+    // Normalized header names, or null for the legacy layout
+    private final String[] headers;
+
+    private CSVColumnMap(int[] columns, String[] headers) {
+        this.columns = columns;
+        this.headers = headers;
+    }
+
+    /**
+     * Build the column map from a tokenized header record
+     */
+    public static CSVColumnMap fromHeader(CSVRecord header) {
+        String[] names = new String[header.recordedFieldCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = header.field(i);
+        }
+        return fromHeader(names);
+    }
+
+    /**
+     * Build the column map from header names. Falls back to the legacy fixed
+     * layout if none of the known headers are present
+     */
+    public static CSVColumnMap fromHeader(String[] headers) {
+        int[] columns = new int[AccidentField.values().length];
+        Arrays.fill(columns, -1);
+
+        boolean anyResolved = false;
+        String[] normalizedHeaders = new String[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            String normalized = AccidentField.normalizeHeader(headers[i]);
+            normalizedHeaders[i] = normalized;
+            for (AccidentField field : AccidentField.values()) {
+                if (columns[field.ordinal()] < 0 && field.matchesHeader(normalized)) {
+                    columns[field.ordinal()] = i;
+                    anyResolved = true;
+                }
+            }
+        }
+        return anyResolved ? new CSVColumnMap(columns, normalizedHeaders) : legacy();
+    }
+
+    /**
+     * The fixed column layout the parser used before header mapping
+     */
+    public static CSVColumnMap legacy() {
+        int[] columns = new int[AccidentField.values().length];
+        for (AccidentField field : AccidentField.values()) {
+            columns[field.ordinal()] = field.getLegacyColumn();
+        }
+        return new CSVColumnMap(columns, null);
+    }
+
+    /**
+     * Column index of a field, or -1 if the file does not contain it
+     */
+    public int column(AccidentField field) {
+        return columns[field.ordinal()];
+    }
+
+    /**
+     * Column index of the first column under any of the given header names, matched like
+     * {@link AccidentField} headers, or -1 if there is none. Columns of the legacy layout
+     * have no names.
+     */
+    public int column(String... headerNames) {
+        if (headers == null) {
+            return -1;
+        }
+        for (int i = 0; i < headers.length; i++) {
+            for (String name : headerNames) {
+                if (headers[i].equals(AccidentField.normalizeHeader(name))) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Number of leading columns that must be tokenized to read the given fields
+     */
+    public int columnsNeeded(Set<AccidentField> projection) {
+        int max = -1;
+        for (AccidentField field : projection) {
+            max = Math.max(max, columns[field.ordinal()]);
+        }
+        return max + 1;
+    }
+}
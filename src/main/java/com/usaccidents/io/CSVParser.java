@@ -1,49 +1,188 @@
 package com.usaccidents.io;
 
 import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+import com.usaccidents.model.AccidentDictionaries;
+import com.usaccidents.model.AccidentField;
+import com.usaccidents.model.StringDictionary;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.SplitCompressionInputStream;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
- * Parser for CSV files with US Accidents data
+ * Parser for CSV files with US Accidents data.
+ *
+ * Columns are located by name from the header row of each file. Only the fields in
+ * the parser's projection are decoded; other columns are skipped by the tokenizer
+ * without creating strings. Records are tokenized as raw UTF-8 bytes, and numeric
+ * and timestamp fields are decoded straight from their byte ranges.
+ *
+ * Files with a compression extension known to Hadoop (.gz, .bz2, ...) are decompressed
+ * on a background thread while they are parsed, both locally and in HDFS.
+ *
+ * State, city, timezone and weather condition values are coded through the parser's
+ * {@link AccidentDictionaries} straight from the record bytes, so every accident shares
+ * one String per distinct value and no String is created for a value already seen.
+ *
+ * Malformed records are handed to a {@link QuarantineSink} instead of being logged one
+ * by one; the sink is owned by the caller, who closes it to get the final summary.
+ *
+ * Every parse method comes in two forms: one that hands each record to a
+ * Consumer&lt;Accident&gt;, and one that decodes records straight into columnar
+ * {@link AccidentBatch}es and hands over a batch whenever it is full. A batch is reused
+ * for the next rows once its consumer returns, so consumers must not retain it.
+ *
+ * The record-at-a-time methods also have a "Reusing" form that refills a single Accident
+ * per worker instead of creating one per record. Its consumers must not retain the
+ * Accident, nor hand it to another thread; they copy whatever they need to keep. In this
+ * mode the string fields with a bounded number of values (state, city, timezone, weather
+ * condition and sunrise/sunset) are interned through the shared dictionaries, so once
+ * their values have been seen, parsing a record allocates nothing for them. ID,
+ * Description, Street, County and Zipcode are still created per record, since
+ * dictionaries of theirs would grow with the data.
  */
 public class CSVParser {
     private static final Logger logger = LoggerFactory.getLogger(CSVParser.class);
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MIN_FIELDS = 10;
+
+    /**
+     * Fields decoded when no projection is given
+     */
+    public static final Set<AccidentField> DEFAULT_PROJECTION = EnumSet.of(
+            AccidentField.ID, AccidentField.SEVERITY, AccidentField.START_TIME, AccidentField.END_TIME,
+            AccidentField.START_LAT, AccidentField.START_LNG, AccidentField.STREET, AccidentField.CITY,
+            AccidentField.STATE, AccidentField.WEATHER_CONDITION, AccidentField.TEMPERATURE);
+
+    private final Set<AccidentField> projection;
+    private final AccidentField[] projectedFields;
+    private final QuarantineSink quarantine;
+    private final AccidentDictionaries dictionaries;
+    // Hadoop's local file system, used to decompress local files; created on first use
+    private HDFSUtils localFiles;
+    private long chunkSize = MappedCSVChunker.DEFAULT_CHUNK_SIZE;
+
+    public CSVParser() {
+        this(DEFAULT_PROJECTION);
+    }
+
+    /**
+     * Create a parser that only decodes the given fields; all other Accident
+     * attributes are left at their defaults
+     */
+    public CSVParser(Set<AccidentField> projection) {
+        this(projection, new QuarantineSink());
+    }
+
+    /**
+     * Create a parser that only decodes the given fields and sends rejected records to quarantine
+     */
+    public CSVParser(Set<AccidentField> projection, QuarantineSink quarantine) {
+        this(projection, quarantine, new AccidentDictionaries());
+    }
+
+    /**
+     * Create a parser that codes string fields with the given dictionaries, e.g. to share
+     * them with other parsers
+     */
+    public CSVParser(Set<AccidentField> projection, QuarantineSink quarantine, AccidentDictionaries dictionaries) {
+        this.projection = EnumSet.copyOf(projection);
+        this.projectedFields = this.projection.toArray(new AccidentField[0]);
+        this.quarantine = quarantine;
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Sink receiving the records this parser rejected
+     */
+    public QuarantineSink getQuarantine() {
+        return quarantine;
+    }
+
+    /**
+     * Dictionaries coding the string fields of all records and batches this parser produces
+     */
+    public AccidentDictionaries getDictionaries() {
+        return dictionaries;
+    }
+
+    /**
+     * Set the nominal length of the chunks a local file is cut into for parallel parsing
+     */
+    public void setChunkSize(long chunkSize) {
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + Integer.MAX_VALUE);
+        }
+        this.chunkSize = chunkSize;
+    }
 
     /**
      * Parse a local CSV file and process each accident record
      */
     public void parseCSVFile(File file, Consumer<Accident> processor) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine(); // Skip header line
+        parseCSVFile(file, new AccidentHandler(processor));
+    }
 
-            if (line == null) {
-                logger.warn("Empty CSV file: {}", file.getName());
-                return;
-            }
+    /**
+     * Parse a local CSV file, handing every record to the processor in the same reused
+     * Accident, which the processor must not retain
+     */
+    public void parseCSVFileReusing(File file, Consumer<Accident> processor) {
+        parseCSVFile(file, reusingAccidentHandler(processor));
+    }
 
-            // Process each line
-            while ((line = reader.readLine()) != null) {
-                try {
-                    Accident accident = parseAccidentLine(line);
-                    if (accident != null) {
-                        processor.accept(accident);
-                    }
-                } catch (Exception e) {
-                    logger.error("Error processing line: {}", line, e);
-                }
-            }
+    /**
+     * Parse a local CSV file and process the accident records in batches of the given size
+     */
+    public void parseCSVFileBatches(File file, int batchSize, Consumer<AccidentBatch> processor) {
+        parseCSVFile(file, reusingBatchHandler(batchSize, processor));
+    }
+
+    /**
+     * Parse a local CSV file and hand each raw record to the consumer
+     */
+    public void parseCSVFileRecords(File file, RecordConsumer processor) {
+        parseCSVFile(file, new RecordConsumerHandler(processor));
+    }
+
+    private void parseCSVFile(File file, RecordHandler handler) {
+        if (isCompressed(file)) {
+            parseHDFSCSVFile(new Path(file.getAbsolutePath()), localFiles(), handler);
+            return;
+        }
+        try (ByteRecordReader reader = new ByteRecordReader(new FileInputStream(file))) {
+            handler.startSource(file.getName());
+            parseRecords(reader, file.getName(), handler);
+            handler.finish();
         } catch (IOException e) {
             logger.error("Error reading CSV file: {}", file.getName(), e);
             throw new RuntimeException("Error reading CSV file", e);
@@ -54,110 +193,861 @@ public class CSVParser {
      * Parse an HDFS CSV file and process each accident record
      */
     public void parseHDFSCSVFile(Path hdfsPath, HDFSUtils hdfsUtils, Consumer<Accident> processor) {
-        hdfsUtils.readCSVFile(hdfsPath, line -> {
+        parseHDFSCSVFile(hdfsPath, hdfsUtils, new AccidentHandler(processor));
+    }
+
+    /**
+     * Parse an HDFS CSV file, handing every record to the processor in the same reused
+     * Accident, which the processor must not retain
+     */
+    public void parseHDFSCSVFileReusing(Path hdfsPath, HDFSUtils hdfsUtils, Consumer<Accident> processor) {
+        parseHDFSCSVFile(hdfsPath, hdfsUtils, reusingAccidentHandler(processor));
+    }
+
+    /**
+     * Parse an HDFS CSV file and process the accident records in batches of the given size
+     */
+    public void parseHDFSCSVFileBatches(Path hdfsPath, HDFSUtils hdfsUtils, int batchSize,
+                                        Consumer<AccidentBatch> processor) {
+        parseHDFSCSVFile(hdfsPath, hdfsUtils, reusingBatchHandler(batchSize, processor));
+    }
+
+    private void parseHDFSCSVFile(Path hdfsPath, HDFSUtils hdfsUtils, RecordHandler handler) {
+        try (ByteRecordReader reader = new ByteRecordReader(hdfsUtils.openDecompressed(hdfsPath))) {
+            handler.startSource(hdfsPath.getName());
+            parseRecords(reader, hdfsPath.toString(), handler);
+            handler.finish();
+            logger.info("Finished reading file: {}", hdfsPath);
+        } catch (IOException e) {
+            logger.error("Error reading HDFS file: " + hdfsPath, e);
+            throw new RuntimeException("Error reading HDFS file", e);
+        }
+    }
+
+    /**
+     * Parse CSV files in HDFS in parallel, split by block.
+     *
+     * Splits of all files are parsed concurrently on a pool of the given size. Each split
+     * seeks to the first record boundary at or after its start and parses every record
+     * that begins before its end, reading past the end to finish the last one. As with
+     * {@link #parseCSVFileParallel}, each worker thread feeds its own consumer and the
+     * consumers are reduced with combiner at the end. The parse fails if a split does not
+     * start exactly where the one before it ended.
+     *
+     * @param maxSplitSize upper bound on split length; blocks larger than this are subdivided
+     */
+    public <C extends Consumer<Accident>> C parseHDFSCSVFilesParallel(List<Path> hdfsPaths, HDFSUtils hdfsUtils,
+                                                                      int parallelism, long maxSplitSize,
+                                                                      Supplier<C> workerFactory,
+                                                                      BinaryOperator<C> combiner) {
+        return parseHDFSCSVFilesParallel(hdfsPaths, hdfsUtils, parallelism, maxSplitSize, workerFactory,
+                AccidentHandler::new, combiner);
+    }
+
+    /**
+     * Parse CSV files in HDFS in parallel, split by block. Each worker consumer gets every
+     * record in the same reused Accident, which it must not retain.
+     */
+    public <C extends Consumer<Accident>> C parseHDFSCSVFilesParallelReusing(List<Path> hdfsPaths,
+                                                                             HDFSUtils hdfsUtils, int parallelism,
+                                                                             long maxSplitSize,
+                                                                             Supplier<C> workerFactory,
+                                                                             BinaryOperator<C> combiner) {
+        return parseHDFSCSVFilesParallel(hdfsPaths, hdfsUtils, parallelism, maxSplitSize, workerFactory,
+                this::reusingAccidentHandler, combiner);
+    }
+
+    /**
+     * Parse CSV files in HDFS in parallel, split by block, handing each worker consumer
+     * batches of the given size
+     */
+    public <C extends Consumer<AccidentBatch>> C parseHDFSCSVFilesParallelBatches(List<Path> hdfsPaths,
+                                                                                  HDFSUtils hdfsUtils,
+                                                                                  int parallelism, long maxSplitSize,
+                                                                                  int batchSize,
+                                                                                  Supplier<C> workerFactory,
+                                                                                  BinaryOperator<C> combiner) {
+        return parseHDFSCSVFilesParallel(hdfsPaths, hdfsUtils, parallelism, maxSplitSize, workerFactory,
+                consumer -> reusingBatchHandler(batchSize, consumer), combiner);
+    }
+
+    /**
+     * Parse CSV files in HDFS in parallel, split by block, handing each worker consumer
+     * the raw records
+     */
+    public <C extends RecordConsumer> C parseHDFSCSVFilesParallelRecords(List<Path> hdfsPaths, HDFSUtils hdfsUtils,
+                                                                         int parallelism, long maxSplitSize,
+                                                                         Supplier<C> workerFactory,
+                                                                         BinaryOperator<C> combiner) {
+        return parseHDFSCSVFilesParallel(hdfsPaths, hdfsUtils, parallelism, maxSplitSize, workerFactory,
+                RecordConsumerHandler::new, combiner);
+    }
+
+    private <C> C parseHDFSCSVFilesParallel(List<Path> hdfsPaths, HDFSUtils hdfsUtils, int parallelism,
+                                            long maxSplitSize, Supplier<C> workerFactory,
+                                            Function<C, RecordHandler> handlerFactory, BinaryOperator<C> combiner) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<HDFSSplitPlanner.Split> splits = new HDFSSplitPlanner(hdfsUtils, maxSplitSize).plan(hdfsPaths);
+            logger.info("Parsing {} HDFS splits with parallelism {}", splits.size(), parallelism);
+
+            long rejectedBefore = quarantine.getTotal();
+            Map<Thread, Worker<C>> workers = new ConcurrentHashMap<>();
+            List<ForkJoinTask<long[]>> tasks = new ArrayList<>(splits.size());
+            for (HDFSSplitPlanner.Split split : splits) {
+                tasks.add(pool.submit(() -> {
+                    Worker<C> worker = workers.computeIfAbsent(Thread.currentThread(),
+                            thread -> new Worker<>(workerFactory.get(), handlerFactory));
+                    return parseSplit(split, hdfsUtils, worker.handler);
+                }));
+            }
+
+            // Each split must end exactly where the next split of the same file starts; splits of
+            // a compressed file report the positions of their blocks, which follow the same rule
+            long[] previous = null;
+            for (int i = 0; i < tasks.size(); i++) {
+                long[] range = tasks.get(i).join();
+                if (range == null) {
+                    continue;
+                }
+                if (previous != null && !splits.get(i).isFirst() && previous[1] != range[0]) {
+                    // Records between the two positions were parsed twice or not at all
+                    logger.error("Split boundary mismatch in {}: previous split ended at {}, next started at {}",
+                            splits.get(i).getPath(), previous[1], range[0]);
+                    throw new RuntimeException("Split boundary mismatch in " + splits.get(i).getPath()
+                            + ": previous split ended at " + previous[1] + ", next started at " + range[0]);
+                }
+                previous = range;
+            }
+            logRejected(hdfsPaths.size() + " HDFS files", rejectedBefore);
+
+            return combine(workers, workerFactory, combiner);
+        } catch (IOException e) {
+            logger.error("Error planning HDFS splits", e);
+            throw new RuntimeException("Error reading HDFS files", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Parse CSV files in HDFS in parallel, one split per HDFS block
+     */
+    public <C extends Consumer<Accident>> C parseHDFSCSVFilesParallel(List<Path> hdfsPaths, HDFSUtils hdfsUtils,
+                                                                      int parallelism, Supplier<C> workerFactory,
+                                                                      BinaryOperator<C> combiner) {
+        return parseHDFSCSVFilesParallel(hdfsPaths, hdfsUtils, parallelism, Long.MAX_VALUE, workerFactory, combiner);
+    }
+
+    /**
+     * Parse the records owned by one split
+     *
+     * @return the byte range [first record start, next record start) that was consumed
+     */
+    private long[] parseSplit(HDFSSplitPlanner.Split split, HDFSUtils hdfsUtils, RecordHandler handler) {
+        handler.startSource(split.getPath().getName());
+        if (split.getCodec() != null) {
+            return parseCompressedSplit(split, hdfsUtils, handler);
+        }
+        try (FSDataInputStream input = hdfsUtils.openFile(split.getPath())) {
+            long start = split.isFirst() ? split.getStart() : HDFSSplitPlanner.findRecordStart(input, split.getStart());
+            input.seek(start);
+
+            ByteRecordReader reader = new ByteRecordReader(input);
+            reader.setMaxFields(handler.maxFields(split.getColumns()));
+            String sourceName = split.toString();
+            while (start + reader.nextRecordOffset() < split.getEnd() && reader.next()) {
+                processRecord(reader.tokenizer(), split.getColumns(), sourceName, start + reader.recordOffset(),
+                        handler);
+            }
+            return new long[]{start, start + reader.nextRecordOffset()};
+        } catch (IOException e) {
+            logger.error("Error reading HDFS split: {}", split, e);
+            throw new RuntimeException("Error reading HDFS split", e);
+        }
+    }
+
+    /**
+     * Parse the records owned by one split of a compressed file.
+     *
+     * A bzip2 split is decompressed block-wise from the first block at or after its start.
+     * A record belongs to the split whose blocks hold the line break that precedes it, so
+     * every split but the first skips the record it starts in, and stops once the
+     * terminator of the last parsed record lies in a block past its adjusted end. Block
+     * positions are taken with {@link #blockPosition} so that the split that opens on a
+     * block and the split that reads into it agree on where it is. Splits of
+     * non-splittable codecs cover the whole file.
+     *
+     * @return compressed positions of the blocks holding the line breaks before the first
+     *         and after the last parsed record, or null if the split holds no block
+     */
+    private long[] parseCompressedSplit(HDFSSplitPlanner.Split split, HDFSUtils hdfsUtils,
+                                        RecordHandler handler) {
+        CompressionCodec codec = split.getCodec();
+        String sourceName = split.toString();
+        long start = split.getStart();
+        long end = Long.MAX_VALUE;
+        DecompressingInputStream decompressed;
+        Decompressor decompressor = CodecPool.getDecompressor(codec);
+        try {
+            FSDataInputStream raw = hdfsUtils.openFile(split.getPath());
+            CompressionInputStream source;
             try {
-                Accident accident = parseAccidentLine(line);
-                if (accident != null) {
-                    processor.accept(accident);
+                if (codec instanceof SplittableCompressionCodec) {
+                    SplitCompressionInputStream splitSource = ((SplittableCompressionCodec) codec).createInputStream(
+                            raw, decompressor, split.getStart(), split.getEnd(),
+                            SplittableCompressionCodec.READ_MODE.BYBLOCK);
+                    start = splitSource.getAdjustedStart();
+                    end = splitSource.getAdjustedEnd();
+                    source = splitSource;
+                } else {
+                    source = codec.createInputStream(raw, decompressor);
                 }
-            } catch (Exception e) {
-                logger.error("Error processing line from HDFS: {}", line, e);
+            } catch (IOException e) {
+                raw.close();
+                throw e;
+            }
+            decompressed = new DecompressingInputStream(source, decompressor, sourceName, true);
+        } catch (IOException e) {
+            CodecPool.returnDecompressor(decompressor);
+            logger.error("Error opening HDFS split: {}", split, e);
+            throw new RuntimeException("Error reading HDFS split", e);
+        }
+
+        try (DecompressingInputStream input = decompressed) {
+            BufferedInputStream buffered = new BufferedInputStream(input);
+            long skipped = split.isFirst() ? 0 : HDFSSplitPlanner.skipPartialRecord(buffered);
+            if (!split.isFirst() && skipped == 0) {
+                // No block of the file starts in this split
+                return null;
+            }
+
+            ByteRecordReader reader = new ByteRecordReader(buffered);
+            if (split.isFirst()) {
+                // Header
+                reader.next();
             }
-        });
+            long openedOn = input.compressedPosition(0);
+            long first = split.isFirst() ? start : blockPosition(input, skipped - 1, openedOn);
+            reader.setMaxFields(handler.maxFields(split.getColumns()));
+            while (blockPosition(input, skipped + reader.nextRecordOffset() - 1, openedOn) <= end && reader.next()) {
+                // Offsets of compressed records are in decompressed bytes from the start of the split
+                processRecord(reader.tokenizer(), split.getColumns(), sourceName, skipped + reader.recordOffset(),
+                        handler);
+            }
+            return new long[]{first, blockPosition(input, skipped + reader.nextRecordOffset() - 1, openedOn)};
+        } catch (IOException e) {
+            logger.error("Error reading HDFS split: {}", split, e);
+            throw new RuntimeException("Error reading HDFS split", e);
+        }
+    }
+
+    /**
+     * Compressed position of the block holding a decompressed offset of a split.
+     *
+     * A bzip2 stream reports a block it enters from the previous block one byte past the
+     * position reported by a split stream that opens on it, so positions of the opening
+     * block are moved onto the former. Every split then sees a block at the same position.
+     *
+     * @param openedOn position reported for the first decompressed data of the split
+     */
+    private static long blockPosition(DecompressingInputStream input, long offset, long openedOn) {
+        long position = input.compressedPosition(offset);
+        return position == openedOn ? position + 1 : position;
     }
 
     /**
-     * Parse a CSV line into an Accident object
+     * Resolve the header, then parse every following record
      */
-    private Accident parseAccidentLine(String line) {
-        if (line == null || line.trim().isEmpty()) {
-            return null;
+    private void parseRecords(ByteRecordReader reader, String sourceName, RecordHandler handler)
+            throws IOException {
+        if (!reader.next()) {
+            logger.warn("Empty CSV file: {}", sourceName);
+            return;
         }
 
-        // Split by comma, but avoid splitting commas inside quotes
-        String[] fields = splitCSVLine(line);
+        CSVColumnMap columns = CSVColumnMap.fromHeader(reader.tokenizer());
+        reader.setMaxFields(handler.maxFields(columns));
 
-        if (fields.length < 10) {
-            logger.warn("Insufficient fields in line: {}", line);
-            return null;
+        long rejectedBefore = quarantine.getTotal();
+        while (reader.next()) {
+            processRecord(reader.tokenizer(), columns, sourceName, reader.recordOffset(), handler);
         }
+        logRejected(sourceName, rejectedBefore);
+    }
 
-        try {
-            Accident accident = new Accident();
+    private void logRejected(String sourceName, long rejectedBefore) {
+        long rejected = quarantine.getTotal() - rejectedBefore;
+        if (rejected > 0) {
+            logger.warn("Quarantined {} records from {}", rejected, sourceName);
+        }
+    }
+
+    /**
+     * Parse a local CSV file in parallel on memory-mapped chunks.
+     *
+     * The file is cut into chunks aligned to record boundaries and each chunk is parsed
+     * on a fork-join worker. Every worker thread feeds its own consumer created by
+     * workerFactory, so consumers need no synchronization; the worker consumers are
+     * reduced with combiner once all chunks are done.
+     */
+    public <C extends Consumer<Accident>> C parseCSVFileParallel(File file, int parallelism,
+                                                                 Supplier<C> workerFactory,
+                                                                 BinaryOperator<C> combiner) {
+        return parseCSVFileParallel(file, parallelism, workerFactory, AccidentHandler::new, combiner);
+    }
+
+    /**
+     * Parse a local CSV file in parallel on memory-mapped chunks. Each worker consumer
+     * gets every record in the same reused Accident, which it must not retain.
+     */
+    public <C extends Consumer<Accident>> C parseCSVFileParallelReusing(File file, int parallelism,
+                                                                        Supplier<C> workerFactory,
+                                                                        BinaryOperator<C> combiner) {
+        return parseCSVFileParallel(file, parallelism, workerFactory, this::reusingAccidentHandler, combiner);
+    }
 
-            // Set basic fields from CSV
-            accident.setId(getStringValue(fields, 0));
-            accident.setSeverity(getIntValue(fields, 1));
-            accident.setStartTime(getDateTimeValue(fields, 2));
-            accident.setEndTime(getDateTimeValue(fields, 3));
-            accident.setStartLat(getDoubleValue(fields, 4));
-            accident.setStartLng(getDoubleValue(fields, 5));
+    /**
+     * Parse a local CSV file in parallel on memory-mapped chunks, handing each worker
+     * consumer batches of the given size
+     */
+    public <C extends Consumer<AccidentBatch>> C parseCSVFileParallelBatches(File file, int parallelism,
+                                                                             int batchSize,
+                                                                             Supplier<C> workerFactory,
+                                                                             BinaryOperator<C> combiner) {
+        return parseCSVFileParallel(file, parallelism, workerFactory,
+                consumer -> reusingBatchHandler(batchSize, consumer), combiner);
+    }
 
-            // Set location fields
-            accident.setStreet(getStringValue(fields, 10));
-            accident.setCity(getStringValue(fields, 11));
-            accident.setState(getStringValue(fields, 13));
+    /**
+     * Parse a local CSV file in parallel on memory-mapped chunks, handing each worker
+     * consumer the raw records
+     */
+    public <C extends RecordConsumer> C parseCSVFileParallelRecords(File file, int parallelism,
+                                                                    Supplier<C> workerFactory,
+                                                                    BinaryOperator<C> combiner) {
+        return parseCSVFileParallel(file, parallelism, workerFactory, RecordConsumerHandler::new, combiner);
+    }
 
-            // Set weather fields if available
-            if (fields.length > 25) {
-                accident.setWeatherCondition(getStringValue(fields, 25));
+    private <C> C parseCSVFileParallel(File file, int parallelism, Supplier<C> workerFactory,
+                                       Function<C, RecordHandler> handlerFactory, BinaryOperator<C> combiner) {
+        if (isCompressed(file)) {
+            // Compressed bytes cannot be mapped; split them like an HDFS file where the codec allows
+            return parseHDFSCSVFilesParallel(Collections.singletonList(new Path(file.getAbsolutePath())),
+                    localFiles(), parallelism, chunkSize, workerFactory, handlerFactory,
+                    combiner);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedCSVChunker chunker = new MappedCSVChunker(channel, chunkSize);
+            long headerEnd = chunker.headerEnd();
+            if (headerEnd == 0) {
+                logger.warn("Empty CSV file: {}", file.getName());
+                return workerFactory.get();
             }
-            if (fields.length > 17) {
-                accident.setTemperature(getDoubleValue(fields, 17));
+
+            CSVColumnMap columns = readHeader(channel, headerEnd);
+            List<MappedCSVChunker.Chunk> chunks = chunker.plan(headerEnd, pool);
+            logger.info("Parsing {} in {} chunks with parallelism {}", file.getName(), chunks.size(), parallelism);
+
+            long rejectedBefore = quarantine.getTotal();
+            Map<Thread, Worker<C>> workers = new ConcurrentHashMap<>();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks.size());
+            for (MappedCSVChunker.Chunk chunk : chunks) {
+                tasks.add(pool.submit(() -> {
+                    Worker<C> worker = workers.computeIfAbsent(Thread.currentThread(),
+                            thread -> new Worker<>(workerFactory.get(), handlerFactory));
+                    parseChunk(chunker, chunk, columns, file.getName(), worker.handler);
+                }));
             }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+            logRejected(file.getName(), rejectedBefore);
 
-            return accident;
-        } catch (Exception e) {
-            logger.error("Failed to parse accident data from line: {}", line, e);
-            return null;
+            return combine(workers, workerFactory, combiner);
+        } catch (IOException e) {
+            logger.error("Error reading CSV file: {}", file.getName(), e);
+            throw new RuntimeException("Error reading CSV file", e);
+        } finally {
+            pool.shutdown();
         }
     }
 
     /**
-     * Split CSV line, handling quoted fields
+     * Parse a local CSV file in parallel using all available processors
      */
-    private String[] splitCSVLine(String line) {
-        // Basic CSV parsing logic - this doesn't handle all CSV edge cases
-        // For production, consider using a library like Apache Commons CSV
-        return line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
+    public <C extends Consumer<Accident>> C parseCSVFileParallel(File file, Supplier<C> workerFactory,
+                                                                 BinaryOperator<C> combiner) {
+        return parseCSVFileParallel(file, Runtime.getRuntime().availableProcessors(), workerFactory, combiner);
     }
 
-    private String getStringValue(String[] fields, int index) {
-        if (index >= fields.length) return "";
-        String value = fields[index].trim();
+    private boolean isCompressed(File file) {
+        return !file.getName().toLowerCase().endsWith(".csv")
+                && localFiles().getCodec(new Path(file.getAbsolutePath())) != null;
+    }
 
-        // Remove surrounding quotes if present
-        if (value.startsWith("\"") && value.endsWith("\"")) {
-            value = value.substring(1, value.length() - 1);
+    private synchronized HDFSUtils localFiles() {
+        if (localFiles == null) {
+            try {
+                localFiles = new HDFSUtils(FileSystem.getLocal(new Configuration()));
+            } catch (IOException e) {
+                logger.error("Failed to initialize the local file system", e);
+                throw new RuntimeException("Failed to initialize the local file system", e);
+            }
         }
+        return localFiles;
+    }
 
-        return value.isEmpty() ? "" : value;
+    /**
+     * Flush every worker's pending records, then reduce the worker consumers
+     */
+    private static <C> C combine(Map<Thread, Worker<C>> workers, Supplier<C> workerFactory,
+                                 BinaryOperator<C> combiner) {
+        for (Worker<C> worker : workers.values()) {
+            worker.handler.finish();
+        }
+        return workers.values().stream().map(worker -> worker.consumer).reduce(combiner).orElseGet(workerFactory);
     }
 
-    private int getIntValue(String[] fields, int index) {
-        String value = getStringValue(fields, index);
-        try {
-            return value.isEmpty() ? 0 : Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return 0;
+    private CSVColumnMap readHeader(FileChannel channel, long headerEnd) throws IOException {
+        ByteBuffer headerBytes = ByteBuffer.allocate((int) headerEnd);
+        while (headerBytes.hasRemaining() && channel.read(headerBytes, headerBytes.position()) > 0) {
+            // Keep reading until the whole header is buffered
         }
+        headerBytes.flip();
+
+        ByteCSVTokenizer header = new ByteCSVTokenizer();
+        header.tokenize(headerBytes, 0, headerBytes.limit(), Integer.MAX_VALUE, true);
+        return CSVColumnMap.fromHeader(header);
     }
 
-    private double getDoubleValue(String[] fields, int index) {
-        String value = getStringValue(fields, index);
+    private void parseChunk(MappedCSVChunker chunker, MappedCSVChunker.Chunk chunk, CSVColumnMap columns,
+                            String sourceName, RecordHandler handler) {
         try {
-            return value.isEmpty() ? 0.0 : Double.parseDouble(value);
-        } catch (NumberFormatException e) {
-            return 0.0;
+            handler.startSource(sourceName);
+            // Records are tokenized and decoded straight from the mapped bytes
+            parseBuffer(chunker.map(chunk), columns, sourceName, chunk.getStart(), handler);
+        } catch (IOException e) {
+            logger.error("Error reading chunk [{}, {}) of {}", chunk.getStart(), chunk.getEnd(), sourceName, e);
+            throw new RuntimeException("Error reading CSV chunk", e);
         }
     }
 
-    private LocalDateTime getDateTimeValue(String[] fields, int index) {
-        String value = getStringValue(fields, index);
-        try {
-            return value.isEmpty() ? null : LocalDateTime.parse(value, DATE_FORMATTER);
-        } catch (DateTimeParseException e) {
-            return null;
+    /**
+     * Parse the whole records held in bytes[position, limit) into batches.
+     *
+     * Batches are taken from batchSupplier, which may hand out pooled batches; each one is
+     * passed to processor when full, and the last, partially filled one when the range
+     * is done. Unlike the file methods, the batches are not reused by the parser, so the
+     * processor may hand them to another thread.
+     *
+     * @param offset offset of bytes[position] in its source, for quarantine reports
+     */
+    public void parseBatches(ByteBuffer bytes, CSVColumnMap columns, String sourceName, long offset,
+                             Supplier<AccidentBatch> batchSupplier, Consumer<AccidentBatch> processor) {
+        BatchHandler handler = new BatchHandler(batchSupplier, processor);
+        handler.startSource(sourceName);
+        parseBuffer(bytes.slice(), columns, sourceName, offset, handler);
+        handler.finish();
+    }
+
+    private void parseBuffer(ByteBuffer bytes, CSVColumnMap columns, String sourceName, long offset,
+                             RecordHandler handler) {
+        ByteCSVTokenizer tokenizer = new ByteCSVTokenizer();
+        int maxFields = handler.maxFields(columns);
+        int position = 0;
+        int limit = bytes.limit();
+        while (position < limit) {
+            position = tokenizer.tokenize(bytes, position, limit, maxFields, true);
+            processRecord(tokenizer, columns, sourceName, offset + tokenizer.recordStart(), handler);
+        }
+    }
+
+    private void processRecord(CSVRecord fields, CSVColumnMap columns, String sourceName, long offset,
+                               RecordHandler handler) {
+        if (fields.fieldCount() == 1 && fields.isEmpty(0)) {
+            // Blank line
+            return;
+        }
+        if (handler.acceptsIncompleteRecords()) {
+            handler.handle(fields, columns, sourceName, offset);
+            return;
+        }
+        if (fields.hasUnterminatedQuote()) {
+            quarantine.reject(QuarantineSink.Reason.UNTERMINATED_QUOTE, sourceName, offset, fields, null);
+            return;
+        }
+        if (fields.fieldCount() < MIN_FIELDS) {
+            quarantine.reject(QuarantineSink.Reason.INSUFFICIENT_FIELDS, sourceName, offset, fields, null);
+            return;
+        }
+        handler.handle(fields, columns, sourceName, offset);
+    }
+
+    /**
+     * Receives raw records, for consumers that need more than an Accident holds, such as
+     * columns that are not AccidentFields or the difference between an empty field and a
+     * zero. Records are not projected: every field is tokenized.
+     *
+     * Short records and records whose quote is never closed are handed over as they are
+     * rather than quarantined, as a delimited Hive table keeps short rows: their missing
+     * fields read as empty.
+     */
+    public interface RecordConsumer {
+        /**
+         * @param fields  the record, only valid during the call
+         * @param columns the column map of the record's source
+         */
+        void accept(CSVRecord fields, CSVColumnMap columns);
+    }
+
+    /**
+     * A consumer that attributes what it receives to the file it was read from. The parser
+     * calls startSource with the file name before the records of each file, chunk or
+     * split, on the thread that will hand them over.
+     */
+    public interface SourceAware {
+        void startSource(String sourceName);
+    }
+
+    /**
+     * Receives the records parsed by one thread: the well-formed ones, and also the short
+     * or unterminated ones if the handler accepts incomplete records
+     */
+    private interface RecordHandler {
+        /**
+         * Called before the records of a file, or of a chunk or split of it
+         */
+        void startSource(String sourceName);
+
+        void handle(CSVRecord fields, CSVColumnMap columns, String sourceName, long offset);
+
+        /**
+         * Number of leading columns to tokenize in records of the given layout
+         */
+        int maxFields(CSVColumnMap columns);
+
+        /**
+         * True if records with fewer than MIN_FIELDS fields or an unterminated quote are
+         * handled as they are rather than quarantined
+         */
+        default boolean acceptsIncompleteRecords() {
+            return false;
+        }
+
+        /**
+         * Called once no more records follow
+         */
+        void finish();
+    }
+
+    /**
+     * A worker thread's consumer and the handler feeding it
+     */
+    private static final class Worker<C> {
+        private final C consumer;
+        private final RecordHandler handler;
+
+        private Worker(C consumer, Function<C, RecordHandler> handlerFactory) {
+            this.consumer = consumer;
+            this.handler = handlerFactory.apply(consumer);
+        }
+    }
+
+    /**
+     * An accident handler that refills one Accident for every record
+     */
+    private AccidentHandler reusingAccidentHandler(Consumer<Accident> processor) {
+        return new AccidentHandler(processor, new Accident());
+    }
+
+    /**
+     * Hands each record to the consumer as its own Accident, or refilled into the reused
+     * one if there is one
+     */
+    private final class AccidentHandler implements RecordHandler {
+        private final Consumer<Accident> processor;
+        private final Accident reused;
+
+        private AccidentHandler(Consumer<Accident> processor) {
+            this(processor, null);
+        }
+
+        private AccidentHandler(Consumer<Accident> processor, Accident reused) {
+            this.processor = processor;
+            this.reused = reused;
+        }
+
+        @Override
+        public void startSource(String sourceName) {
+            if (processor instanceof SourceAware) {
+                ((SourceAware) processor).startSource(sourceName);
+            }
+        }
+
+        @Override
+        public void handle(CSVRecord fields, CSVColumnMap columns, String sourceName, long offset) {
+            Accident accident;
+            try {
+                if (reused == null) {
+                    accident = new Accident();
+                    fillAccidentRecord(accident, fields, columns, false);
+                } else {
+                    accident = reused;
+                    accident.reset();
+                    fillAccidentRecord(accident, fields, columns, true);
+                }
+            } catch (Exception e) {
+                quarantine.reject(QuarantineSink.Reason.PARSE_ERROR, sourceName, offset, fields, e);
+                return;
+            }
+            try {
+                processor.accept(accident);
+            } catch (Exception e) {
+                quarantine.reject(QuarantineSink.Reason.PROCESSING_ERROR, sourceName, offset, fields, e);
+            }
+        }
+
+        @Override
+        public int maxFields(CSVColumnMap columns) {
+            return columns.columnsNeeded(projection);
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * Hands every well-formed record to the consumer as it is, with all of its fields
+     */
+    private final class RecordConsumerHandler implements RecordHandler {
+        private final RecordConsumer processor;
+
+        private RecordConsumerHandler(RecordConsumer processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public void startSource(String sourceName) {
+            if (processor instanceof SourceAware) {
+                ((SourceAware) processor).startSource(sourceName);
+            }
+        }
+
+        @Override
+        public void handle(CSVRecord fields, CSVColumnMap columns, String sourceName, long offset) {
+            try {
+                processor.accept(fields, columns);
+            } catch (Exception e) {
+                quarantine.reject(QuarantineSink.Reason.PROCESSING_ERROR, sourceName, offset, fields, e);
+            }
+        }
+
+        @Override
+        public int maxFields(CSVColumnMap columns) {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public boolean acceptsIncompleteRecords() {
+            return true;
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * A batch handler that refills one AccidentBatch. String columns other than street and
+     * county are coded with the parser's dictionaries, so their codes are consistent across
+     * all batches and workers.
+     */
+    private BatchHandler reusingBatchHandler(int batchSize, Consumer<AccidentBatch> processor) {
+        AccidentBatch batch = new AccidentBatch(batchSize, dictionaries);
+        return new BatchHandler(() -> {
+            batch.clear();
+            return batch;
+        }, processor);
+    }
+
+    /**
+     * Decodes records into the rows of AccidentBatches and hands each one to the consumer
+     * when it is full.
+     *
+     * Consumer failures are not quarantined, as they cannot be tied to a single record.
+     */
+    private final class BatchHandler implements RecordHandler {
+        private final Supplier<AccidentBatch> batchSupplier;
+        private final Consumer<AccidentBatch> processor;
+        private AccidentBatch batch;
+
+        private BatchHandler(Supplier<AccidentBatch> batchSupplier, Consumer<AccidentBatch> processor) {
+            this.batchSupplier = batchSupplier;
+            this.processor = processor;
+        }
+
+        @Override
+        public void startSource(String sourceName) {
+            if (processor instanceof SourceAware) {
+                // A batch holds the rows of one source
+                finish();
+                ((SourceAware) processor).startSource(sourceName);
+            }
+        }
+
+        @Override
+        public void handle(CSVRecord fields, CSVColumnMap columns, String sourceName, long offset) {
+            if (batch == null) {
+                batch = batchSupplier.get();
+            }
+            int row = batch.size();
+            try {
+                batch.clearRow(row);
+                for (AccidentField field : projectedFields) {
+                    int column = columns.column(field);
+                    if (column >= 0 && column < fields.fieldCount()) {
+                        setBatchField(batch, row, field, fields, column);
+                    }
+                }
+            } catch (Exception e) {
+                quarantine.reject(QuarantineSink.Reason.PARSE_ERROR, sourceName, offset, fields, e);
+                return;
+            }
+            batch.commitRow();
+            if (batch.isFull()) {
+                finish();
+            }
+        }
+
+        @Override
+        public int maxFields(CSVColumnMap columns) {
+            return columns.columnsNeeded(projection);
+        }
+
+        @Override
+        public void finish() {
+            if (batch != null && batch.size() > 0) {
+                processor.accept(batch);
+                batch = null;
+            }
+        }
+    }
+
+    /**
+     * Decode the projected fields of the current CSV record into an Accident whose other
+     * attributes are at their defaults
+     *
+     * @param intern take Sunrise_Sunset from its dictionary too; the other fields with a
+     *               bounded number of values always are
+     */
+    private void fillAccidentRecord(Accident accident, CSVRecord fields, CSVColumnMap columns, boolean intern) {
+        for (AccidentField field : projectedFields) {
+            int column = columns.column(field);
+            if (column >= 0 && column < fields.fieldCount()) {
+                setField(accident, field, fields, column, intern);
+            }
         }
     }
-}
\ No newline at end of file
+
+    private void setField(Accident accident, AccidentField field, CSVRecord fields, int column, boolean intern) {
+        switch (field) {
+            case ID: accident.setId(getStringValue(fields, column)); break;
+            case SEVERITY: accident.setSeverity(getIntValue(fields, column)); break;
+            case START_TIME: accident.setStartEpochSecond(getTimestampValue(fields, column)); break;
+            case END_TIME: accident.setEndEpochSecond(getTimestampValue(fields, column)); break;
+            case START_LAT: accident.setStartLat(getDoubleValue(fields, column)); break;
+            case START_LNG: accident.setStartLng(getDoubleValue(fields, column)); break;
+            case END_LAT: accident.setEndLat(getDoubleValue(fields, column)); break;
+            case END_LNG: accident.setEndLng(getDoubleValue(fields, column)); break;
+            case DISTANCE: accident.setDistance(getDoubleValue(fields, column)); break;
+            case DESCRIPTION: accident.setDescription(getStringValue(fields, column)); break;
+            case STREET: accident.setStreet(getStringValue(fields, column)); break;
+            case CITY: accident.setCity(getDictionaryValue(dictionaries.getCities(), fields, column)); break;
+            case COUNTY: accident.setCounty(getStringValue(fields, column)); break;
+            case STATE: accident.setState(getDictionaryValue(dictionaries.getStates(), fields, column)); break;
+            case ZIPCODE: accident.setZipcode(getStringValue(fields, column)); break;
+            case TIMEZONE: accident.setTimezone(getDictionaryValue(dictionaries.getTimezones(), fields, column)); break;
+            case TEMPERATURE: accident.setTemperature(getDoubleValue(field, fields, column)); break;
+            case HUMIDITY: accident.setHumidity(getDoubleValue(fields, column)); break;
+            case PRESSURE: accident.setPressure(getDoubleValue(fields, column)); break;
+            case VISIBILITY: accident.setVisibility(getDoubleValue(field, fields, column)); break;
+            case WIND_SPEED: accident.setWindSpeed(getDoubleValue(fields, column)); break;
+            case WEATHER_CONDITION:
+                accident.setWeatherCondition(getDictionaryValue(dictionaries.getWeatherConditions(), fields, column));
+                break;
+            case TRAFFIC_SIGNAL: accident.setTrafficSignal(getBooleanValue(fields, column)); break;
+            case SUNRISE_SUNSET: accident.setSunriseSunset(getStringValue(field, fields, column, intern)); break;
+            default: break;
+        }
+    }
+
+    /**
+     * Decode a field into a batch row; fields without a batch column are skipped
+     */
+    private void setBatchField(AccidentBatch batch, int row, AccidentField field, CSVRecord fields, int column) {
+        switch (field) {
+            case SEVERITY: batch.getSeverity()[row] = getIntValue(fields, column); break;
+            case START_TIME: batch.getStartEpochSecond()[row] = getTimestampValue(fields, column); break;
+            case END_TIME: batch.getEndEpochSecond()[row] = getTimestampValue(fields, column); break;
+            case START_LAT: batch.getStartLat()[row] = getDoubleValue(fields, column); break;
+            case START_LNG: batch.getStartLng()[row] = getDoubleValue(fields, column); break;
+            case TEMPERATURE: batch.getTemperature()[row] = getDoubleValue(field, fields, column); break;
+            case VISIBILITY: batch.getVisibility()[row] = getDoubleValue(field, fields, column); break;
+            case STATE: batch.getState()[row] = getCodeValue(batch.getStateDictionary(), fields, column); break;
+            case CITY: batch.getCity()[row] = getCodeValue(batch.getCityDictionary(), fields, column); break;
+            case STREET: batch.getStreet()[row] = getCodeValue(batch.getStreetDictionary(), fields, column); break;
+            case COUNTY: batch.getCounty()[row] = getCodeValue(batch.getCountyDictionary(), fields, column); break;
+            case WEATHER_CONDITION:
+                batch.getWeatherCondition()[row] = getCodeValue(batch.getWeatherConditionDictionary(), fields, column);
+                break;
+            case TIMEZONE: batch.getTimezone()[row] = getCodeValue(batch.getTimezoneDictionary(), fields, column); break;
+            default: break;
+        }
+    }
+
+    private int getCodeValue(StringDictionary dictionary, CSVRecord fields, int index) {
+        return fields.codeField(index, dictionary);
+    }
+
+    /**
+     * The dictionary's String for a field, or "" like getStringValue for an empty field
+     */
+    private String getDictionaryValue(StringDictionary dictionary, CSVRecord fields, int index) {
+        int code = fields.codeField(index, dictionary);
+        return code == StringDictionary.NULL_CODE ? "" : dictionary.decode(code);
+    }
+
+    private String getStringValue(CSVRecord fields, int index) {
+        return fields.field(index);
+    }
+
+    private String getStringValue(AccidentField field, CSVRecord fields, int index, boolean intern) {
+        return intern ? getDictionaryValue(dictionaries.get(field), fields, index) : fields.field(index);
+    }
+
+    private int getIntValue(CSVRecord fields, int index) {
+        return fields.intField(index, 0);
+    }
+
+    private double getDoubleValue(CSVRecord fields, int index) {
+        return fields.doubleField(index, 0.0);
+    }
+
+    /**
+     * Decode a number, reading a missing or malformed one as the field's missing value
+     */
+    private double getDoubleValue(AccidentField field, CSVRecord fields, int index) {
+        return fields.doubleField(index, field.missingDouble());
+    }
+
+    private boolean getBooleanValue(CSVRecord fields, int index) {
+        return fields.booleanField(index);
+    }
+
+    private long getTimestampValue(CSVRecord fields, int index) {
+        return fields.timestampField(index);
+    }
+}
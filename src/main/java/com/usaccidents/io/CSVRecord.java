@@ -0,0 +1,60 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.StringDictionary;
+
+/**
+ * Field access to the record most recently tokenized by a CSV tokenizer.
+ *
+ * Typed accessors decode values in place where the implementation can, so callers
+ * only pay for a String when they ask for text. Missing or unparseable values
+ * yield the given default.
+ */
+public interface CSVRecord {
+
+    /**
+     * Number of fields in the record
+     */
+    int fieldCount();
+
+    /**
+     * Number of leading fields whose boundaries were recorded
+     */
+    int recordedFieldCount();
+
+    /**
+     * True if the input ended inside a quoted field of the record
+     */
+    boolean hasUnterminatedQuote();
+
+    /**
+     * True if the field is missing or has an empty value
+     */
+    boolean isEmpty(int index);
+
+    /**
+     * Materialize a field as a String; missing fields are returned as ""
+     */
+    String field(int index);
+
+    int intField(int index, int defaultValue);
+
+    double doubleField(int index, double defaultValue);
+
+    boolean booleanField(int index);
+
+    /**
+     * Code a field with a dictionary, or StringDictionary.NULL_CODE if it is missing or empty
+     */
+    int codeField(int index, StringDictionary dictionary);
+
+    /**
+     * Decode a "yyyy-MM-dd HH:mm:ss[.fraction]" timestamp as epoch seconds
+     * (see {@link TimestampDecoder}), or Accident.NO_TIME if missing or malformed
+     */
+    long timestampField(int index);
+
+    /**
+     * Raw text of the record, for diagnostics
+     */
+    String recordText();
+}
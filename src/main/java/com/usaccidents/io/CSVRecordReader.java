@@ -0,0 +1,96 @@
+package com.usaccidents.io;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads CSV records from a character stream using {@link CSVTokenizer}.
+ *
+ * Lines are tokenized as they are read; a record whose quoted field spans a line
+ * break is joined with the following lines before it is handed out.
+ */
+public class CSVRecordReader implements Closeable {
+    private final BufferedReader reader;
+    private final CSVTokenizer tokenizer = new CSVTokenizer();
+    private final StringBuilder pending = new StringBuilder();
+    private int maxFields;
+    private String line;
+    private long recordNumber;
+
+    public CSVRecordReader(Reader reader) {
+        this(reader, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxFields number of leading columns whose boundaries should be recorded
+     */
+    public CSVRecordReader(Reader reader, int maxFields) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.maxFields = maxFields;
+    }
+
+    /**
+     * Advance to the next record
+     *
+     * @return false at end of input
+     */
+    public boolean next() throws IOException {
+        line = reader.readLine();
+        if (line == null) {
+            return false;
+        }
+        recordNumber++;
+
+        tokenizer.tokenize(line, 0, line.length(), maxFields);
+        if (!tokenizer.hasUnterminatedQuote()) {
+            return true;
+        }
+
+        // A quoted field contains a line break: keep appending lines until the quote closes
+        pending.setLength(0);
+        pending.append(line);
+        String continuation;
+        while (tokenizer.hasUnterminatedQuote() && (continuation = reader.readLine()) != null) {
+            pending.append('\n').append(continuation);
+            tokenizer.tokenize(pending, 0, pending.length(), maxFields);
+        }
+        line = pending.toString();
+        tokenizer.tokenize(line, 0, line.length(), maxFields);
+        return true;
+    }
+
+    /**
+     * Limit the number of leading columns recorded for the following records
+     */
+    public void setMaxFields(int maxFields) {
+        this.maxFields = maxFields;
+    }
+
+    /**
+     * Tokenizer holding the field boundaries of the current record
+     */
+    public CSVTokenizer tokenizer() {
+        return tokenizer;
+    }
+
+    /**
+     * Raw text of the current record, without its line terminator
+     */
+    public String currentRecord() {
+        return line;
+    }
+
+    /**
+     * 1-based number of the current record, counting the header
+     */
+    public long recordNumber() {
+        return recordNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
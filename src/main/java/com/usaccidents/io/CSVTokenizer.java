@@ -0,0 +1,121 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.StringDictionary;
+
+/**
+ * Single-pass RFC 4180 tokenizer for CSV records.
+ *
+ * The tokenizer walks a record once with the state machine of
+ * {@link AbstractCSVTokenizer} and records the boundaries of each field in reusable
+ * offset arrays, so no String[] is allocated per line. Quoted fields, escaped ("")
+ * quotes and line breaks embedded in quoted fields are supported. Field values are
+ * only materialized when asked for.
+ */
+public class CSVTokenizer extends AbstractCSVTokenizer {
+    private CharSequence source;
+
+    /**
+     * Tokenize a complete line
+     */
+    public int tokenize(CharSequence line) {
+        return tokenize(line, 0, line.length(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Tokenize a single record from source[from, to).
+     *
+     * Scanning stops after the first line break outside of quotes. Only the first
+     * maxFields field boundaries are recorded; the rest of the record is still scanned
+     * so the record end and the field count are found correctly.
+     *
+     * @return the offset just past the record terminator, or to if the range ended first
+     */
+    public int tokenize(CharSequence source, int from, int to, int maxFields) {
+        this.source = source;
+        return scan(from, to, maxFields, true);
+    }
+
+    @Override
+    int charAt(int index) {
+        return source.charAt(index);
+    }
+
+    /**
+     * The source the last record was tokenized from
+     */
+    public CharSequence source() {
+        return source;
+    }
+
+    /**
+     * Raw text of the last record including its terminator, for diagnostics
+     */
+    @Override
+    public String recordText() {
+        return source == null ? "" : source.subSequence(recordStart, recordEnd).toString();
+    }
+
+    /**
+     * Materialize a field value, unescaping doubled quotes. Missing fields are returned as ""
+     */
+    @Override
+    public String field(int index) {
+        if (index >= recordedCount) {
+            return "";
+        }
+        int start = starts[index];
+        int end = ends[index];
+        if (start == end) {
+            return "";
+        }
+        if (!escapedQuotes[index]) {
+            return source.subSequence(start, end).toString();
+        }
+
+        StringBuilder value = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            value.append(c);
+            if (c == '"' && i + 1 < end && source.charAt(i + 1) == '"') {
+                i++;
+            }
+        }
+        return value.toString();
+    }
+
+    @Override
+    public int intField(int index, int defaultValue) {
+        String value = field(index);
+        try {
+            return value.isEmpty() ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public double doubleField(int index, double defaultValue) {
+        String value = field(index);
+        try {
+            return value.isEmpty() ? defaultValue : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public boolean booleanField(int index) {
+        return Boolean.parseBoolean(field(index));
+    }
+
+    @Override
+    public int codeField(int index, StringDictionary dictionary) {
+        return isEmpty(index) ? StringDictionary.NULL_CODE : dictionary.encode(field(index));
+    }
+
+    @Override
+    public long timestampField(int index) {
+        return isEmpty(index) ? Accident.NO_TIME : TimestampDecoder.decode(field(index));
+    }
+}
@@ -0,0 +1,62 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.AccidentField;
+
+import java.util.Map;
+
+/**
+ * Decides from its statistics whether a chunk of an accident cache file needs to be read.
+ *
+ * Predicates only skip whole chunks: every row of a chunk that might match is loaded,
+ * so callers still filter rows themselves. A predicate on a field the file does not
+ * store never skips anything.
+ */
+@FunctionalInterface
+public interface CachePredicate {
+    /**
+     * Predicate that reads every chunk
+     */
+    CachePredicate ALL = chunk -> true;
+
+    /**
+     * False only if no row of the chunk can match
+     *
+     * @param chunk statistics of the stored columns of the chunk
+     */
+    boolean mightMatch(Map<AccidentField, ColumnChunkStats> chunk);
+
+    default CachePredicate and(CachePredicate other) {
+        return chunk -> mightMatch(chunk) && other.mightMatch(chunk);
+    }
+
+    /**
+     * Chunks that may hold a severity in [min, max]
+     */
+    static CachePredicate severityBetween(int min, int max) {
+        return chunk -> {
+            ColumnChunkStats stats = chunk.get(AccidentField.SEVERITY);
+            return stats == null || (stats.getLongMin() <= max && stats.getLongMax() >= min);
+        };
+    }
+
+    /**
+     * Chunks that may hold accidents in the given state
+     */
+    static CachePredicate stateEquals(String state) {
+        return chunk -> {
+            ColumnChunkStats stats = chunk.get(AccidentField.STATE);
+            return stats == null || (stats.getStringMin() != null && stats.getStringMin().compareTo(state) <= 0
+                    && stats.getStringMax().compareTo(state) >= 0);
+        };
+    }
+
+    /**
+     * Chunks that may hold a start time in [from, to], as wall-clock epoch seconds
+     */
+    static CachePredicate startTimeBetween(long fromEpochSecond, long toEpochSecond) {
+        return chunk -> {
+            ColumnChunkStats stats = chunk.get(AccidentField.START_TIME);
+            return stats == null || (stats.getLongMin() <= toEpochSecond && stats.getLongMax() >= fromEpochSecond);
+        };
+    }
+}
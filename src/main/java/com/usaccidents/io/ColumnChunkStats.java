@@ -0,0 +1,59 @@
+package com.usaccidents.io;
+
+/**
+ * Statistics of one column chunk of an accident cache file.
+ *
+ * Which bounds are set depends on the column type: INT, LONG and BOOLEAN columns have
+ * long bounds (booleans as 0/1), DOUBLE columns double bounds, and CODE columns the
+ * lexicographically smallest and largest value. Missing values (Accident.NO_TIME, NaN,
+ * null strings) are counted as nulls and left out of the bounds, so a chunk without any value
+ * has min &gt; max, or null string bounds. STRING columns only count nulls.
+ */
+public class ColumnChunkStats {
+    private final int nullCount;
+    private final long longMin;
+    private final long longMax;
+    private final double doubleMin;
+    private final double doubleMax;
+    private final String stringMin;
+    private final String stringMax;
+
+    ColumnChunkStats(int nullCount, long longMin, long longMax, double doubleMin, double doubleMax,
+                     String stringMin, String stringMax) {
+        this.nullCount = nullCount;
+        this.longMin = longMin;
+        this.longMax = longMax;
+        this.doubleMin = doubleMin;
+        this.doubleMax = doubleMax;
+        this.stringMin = stringMin;
+        this.stringMax = stringMax;
+    }
+
+    public int getNullCount() {
+        return nullCount;
+    }
+
+    public long getLongMin() {
+        return longMin;
+    }
+
+    public long getLongMax() {
+        return longMax;
+    }
+
+    public double getDoubleMin() {
+        return doubleMin;
+    }
+
+    public double getDoubleMax() {
+        return doubleMax;
+    }
+
+    public String getStringMin() {
+        return stringMin;
+    }
+
+    public String getStringMax() {
+        return stringMax;
+    }
+}
@@ -0,0 +1,192 @@
+package com.usaccidents.io;
+
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Decompresses a stream on a background thread, overlapping decompression with parsing.
+ *
+ * The decompression thread reads into a small pool of recycled buffers and hands them
+ * over through a bounded queue, so it runs at most a few buffers ahead of the reader.
+ * Each buffer is tagged with the compressed position reported by the source after it
+ * was filled; for block-wise split streams (bzip2) that is the compressed offset of the
+ * block the bytes came from, which split readers use to decide where their split ends.
+ */
+public class DecompressingInputStream extends InputStream {
+    private static final Logger logger = LoggerFactory.getLogger(DecompressingInputStream.class);
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int QUEUE_CAPACITY = 4;
+
+    private static final class Chunk {
+        final byte[] bytes;
+        final int length;
+        final long compressedPosition;
+
+        Chunk(byte[] bytes, int length, long compressedPosition) {
+            this.bytes = bytes;
+            this.length = length;
+            this.compressedPosition = compressedPosition;
+        }
+    }
+
+    private static final Chunk END = new Chunk(new byte[0], 0, -1);
+
+    private final CompressionInputStream source;
+    private final Decompressor decompressor;
+    private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 1);
+    private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 1);
+    private final Thread thread;
+    private final boolean trackPositions;
+    // {first decompressed offset, compressed position} of the chunks handed out and not yet passed
+    private final ArrayDeque<long[]> positions = new ArrayDeque<>();
+    private volatile Throwable failure;
+    private volatile boolean closed;
+
+    private Chunk current;
+    private int position;
+    private long offset;
+
+    /**
+     * @param decompressor decompressor from {@link CodecPool} used by source, returned on close; may be null
+     * @param trackPositions whether {@link #compressedPosition(long)} will be queried
+     */
+    public DecompressingInputStream(CompressionInputStream source, Decompressor decompressor, String name,
+                                    boolean trackPositions) {
+        this.source = source;
+        this.decompressor = decompressor;
+        this.trackPositions = trackPositions;
+        for (int i = 0; i < QUEUE_CAPACITY; i++) {
+            free.add(new byte[BUFFER_SIZE]);
+        }
+        this.thread = new Thread(this::decompress, "decompress-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void decompress() {
+        try {
+            while (!closed) {
+                byte[] buffer = free.take();
+                int read = source.read(buffer, 0, buffer.length);
+                if (read < 0) {
+                    break;
+                }
+                filled.put(new Chunk(buffer, read, source.getPos()));
+            }
+        } catch (InterruptedException e) {
+            // Closed by the reader
+        } catch (Throwable e) {
+            // Any failure, such as a codec's runtime exception on a corrupt block, must reach the reader
+            if (!closed) {
+                failure = e;
+            }
+        } finally {
+            // Never blocks: the queue has room for every buffer and END
+            filled.offer(END);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        offset++;
+        return current.bytes[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current.bytes, position, b, off, count);
+        position += count;
+        offset += count;
+        return count;
+    }
+
+    /**
+     * Compressed position reported for the data at the given decompressed offset.
+     *
+     * The offset must not precede one passed to an earlier call, and must lie in data
+     * already read from this stream.
+     */
+    public long compressedPosition(long decompressedOffset) {
+        while (positions.size() > 1) {
+            long[] head = positions.pollFirst();
+            if (positions.peekFirst()[0] > decompressedOffset) {
+                positions.addFirst(head);
+                break;
+            }
+        }
+        return positions.isEmpty() ? -1 : positions.peekFirst()[1];
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        while (current == null || position == current.length) {
+            if (current == END) {
+                return false;
+            }
+            if (current != null) {
+                free.offer(current.bytes);
+            }
+            try {
+                current = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+            }
+            position = 0;
+            if (current == END) {
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                }
+                if (failure != null) {
+                    throw new IOException("Decompression failed", failure);
+                }
+                return false;
+            }
+            if (trackPositions) {
+                positions.addLast(new long[]{offset, current.compressedPosition});
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while stopping {}", thread.getName());
+        }
+        try {
+            source.close();
+        } finally {
+            if (decompressor != null) {
+                CodecPool.returnDecompressor(decompressor);
+            }
+        }
+    }
+}
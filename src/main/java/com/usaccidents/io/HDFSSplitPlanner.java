@@ -0,0 +1,264 @@
+package com.usaccidents.io;
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans parallel reads of CSV files in HDFS.
+ *
+ * Each file is divided into splits along its block locations (optionally subdivided
+ * to a maximum split size). The header of each file is read once during planning so
+ * every split of the file shares its column map. A split owns the records whose first
+ * byte lies in [start, end); a reader positions itself on its first record with
+ * {@link #findRecordStart(FSDataInputStream, long)}.
+ *
+ * Compressed files are planned on compressed offsets. A file in a splittable codec
+ * (bzip2) is split like a plain file, and the codec aligns each split to its compressed
+ * blocks; other codecs yield a single split per file.
+ */
+public class HDFSSplitPlanner {
+    private static final Logger logger = LoggerFactory.getLogger(HDFSSplitPlanner.class);
+    private static final int SCAN_WINDOW = 64 * 1024;
+    // How far to look for a quote that reveals whether a split starts inside a quoted field
+    private static final long QUOTE_EVIDENCE_LIMIT = 1024 * 1024;
+
+    private final HDFSUtils hdfsUtils;
+    private final long maxSplitSize;
+
+    /**
+     * A byte range of one file; the first split of an uncompressed file starts just past
+     * the header, the first split of a compressed file starts at 0
+     */
+    public static class Split {
+        private final Path path;
+        private final long start;
+        private final long end;
+        private final boolean first;
+        private final CSVColumnMap columns;
+        private final CompressionCodec codec;
+
+        Split(Path path, long start, long end, boolean first, CSVColumnMap columns, CompressionCodec codec) {
+            this.path = path;
+            this.start = start;
+            this.end = end;
+            this.first = first;
+            this.columns = columns;
+            this.codec = codec;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * True if the split starts exactly on a record boundary (just past the header)
+         */
+        public boolean isFirst() {
+            return first;
+        }
+
+        public CSVColumnMap getColumns() {
+            return columns;
+        }
+
+        /**
+         * Codec the file is compressed with, or null for an uncompressed file
+         */
+        public CompressionCodec getCodec() {
+            return codec;
+        }
+
+        @Override
+        public String toString() {
+            return path + "[" + start + ", " + end + ")";
+        }
+    }
+
+    public HDFSSplitPlanner(HDFSUtils hdfsUtils) {
+        this(hdfsUtils, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxSplitSize upper bound on split length; blocks larger than this are subdivided
+     */
+    public HDFSSplitPlanner(HDFSUtils hdfsUtils, long maxSplitSize) {
+        if (maxSplitSize <= 0) {
+            throw new IllegalArgumentException("Split size must be positive");
+        }
+        this.hdfsUtils = hdfsUtils;
+        this.maxSplitSize = maxSplitSize;
+    }
+
+    /**
+     * Plan the splits of all given files, in file and offset order
+     */
+    public List<Split> plan(List<Path> files) throws IOException {
+        List<Split> splits = new ArrayList<>();
+        for (Path file : files) {
+            FileStatus status = hdfsUtils.getFileStatus(file);
+            long length = status.getLen();
+            CompressionCodec codec = hdfsUtils.getCodec(file);
+
+            long headerEnd;
+            CSVColumnMap columns;
+            try (ByteRecordReader reader = new ByteRecordReader(hdfsUtils.openDecompressed(file), SCAN_WINDOW)) {
+                if (!reader.next()) {
+                    logger.warn("Empty CSV file in HDFS: {}", file);
+                    continue;
+                }
+                columns = CSVColumnMap.fromHeader(reader.tokenizer());
+                headerEnd = reader.nextRecordOffset();
+                if (!reader.next()) {
+                    continue;
+                }
+            }
+
+            List<long[]> ranges = new ArrayList<>();
+            if (codec != null && !(codec instanceof SplittableCompressionCodec)) {
+                // Not splittable: a single reader decompresses the whole file
+                ranges.add(new long[]{0, length});
+            } else {
+                // The header offset is in decompressed bytes, so compressed splits start at 0
+                long dataStart = codec == null ? headerEnd : 0;
+                for (BlockLocation block : hdfsUtils.getBlockLocations(status)) {
+                    long blockStart = Math.max(block.getOffset(), dataStart);
+                    long blockEnd = Math.min(block.getOffset() + block.getLength(), length);
+                    for (long start = blockStart; start < blockEnd; start += maxSplitSize) {
+                        ranges.add(new long[]{start, Math.min(blockEnd, start + maxSplitSize)});
+                    }
+                }
+                if (ranges.isEmpty()) {
+                    ranges.add(new long[]{dataStart, length});
+                }
+            }
+
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                splits.add(new Split(file, range[0], range[1], i == 0, columns, codec));
+            }
+            logger.debug("Planned {} splits for {}", ranges.size(), file);
+        }
+        logger.info("Planned {} splits across {} files", splits.size(), files.size());
+        return splits;
+    }
+
+    /**
+     * Find the offset of the first record that starts at or after the given offset.
+     *
+     * The stream is positioned one byte before the offset and scanned forward with the
+     * record cutting rules of {@link MappedCSVChunker}. The state to start in cannot be
+     * known without reading the file from its start, so whether that position lies inside
+     * a quoted field is inferred from the first quote whose neighbours show it is an
+     * opening (after a delimiter) or closing (before a delimiter) quote; without such
+     * evidence the position is assumed to be at the start of a field.
+     */
+    public static long findRecordStart(FSDataInputStream input, long offset) throws IOException {
+        if (offset == 0) {
+            return 0;
+        }
+        long scanStart = offset - 1;
+        input.seek(scanStart);
+        int state = startState(input);
+
+        input.seek(scanStart);
+        byte[] window = new byte[SCAN_WINDOW];
+        long position = scanStart;
+        int read;
+        while ((read = input.read(window, 0, window.length)) > 0) {
+            for (int i = 0; i < read; i++) {
+                state = MappedCSVChunker.transition(state, window[i]);
+                if ((state & MappedCSVChunker.BOUNDARY) != 0) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return position;
+    }
+
+    /**
+     * Skip past the first record terminator of a stream that cannot seek, such as a
+     * decompressed split; the quote state at the start of the stream is inferred as in
+     * {@link #findRecordStart(FSDataInputStream, long)}. The stream must support mark.
+     *
+     * @return the number of bytes skipped
+     */
+    public static long skipPartialRecord(InputStream input) throws IOException {
+        input.mark((int) QUOTE_EVIDENCE_LIMIT + SCAN_WINDOW);
+        int state = startState(input);
+        input.reset();
+
+        long skipped = 0;
+        int b;
+        while ((b = input.read()) >= 0) {
+            skipped++;
+            state = MappedCSVChunker.transition(state, b);
+            if ((state & MappedCSVChunker.BOUNDARY) != 0) {
+                break;
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Tokenizer state to scan the stream from its current position in
+     */
+    private static int startState(InputStream input) throws IOException {
+        return quotedAt(input) ? AbstractCSVTokenizer.QUOTED : AbstractCSVTokenizer.FIELD_START;
+    }
+
+    /**
+     * Infer whether the stream's current position lies inside a quoted field
+     */
+    private static boolean quotedAt(InputStream input) throws IOException {
+        byte[] window = new byte[SCAN_WINDOW];
+        int quotesSeen = 0;
+        int previous = -1;
+        int current = -1;
+        long scanned = 0;
+        int read;
+        while (scanned < QUOTE_EVIDENCE_LIMIT && (read = input.read(window, 0, window.length)) > 0) {
+            for (int i = 0; i < read; i++) {
+                int next = window[i];
+                if (current == '"') {
+                    boolean afterDelimiter = previous == ',' || previous == '\n';
+                    boolean beforeDelimiter = next == ',' || next == '\n' || next == '\r';
+                    if (afterDelimiter && !beforeDelimiter && next != '"') {
+                        // Opening quote: outside quotes just before it
+                        return (quotesSeen - 1) % 2 == 1;
+                    }
+                    if (beforeDelimiter && !afterDelimiter && previous != '"' && previous != -1) {
+                        // Closing quote: inside quotes just before it (unless it ends an escaped pair)
+                        return (quotesSeen - 1) % 2 == 0;
+                    }
+                }
+                previous = current;
+                current = next;
+                if (current == '"') {
+                    quotesSeen++;
+                }
+            }
+            scanned += read;
+        }
+        return false;
+    }
+}
@@ -1,15 +1,24 @@
 package com.usaccidents.io;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileContext;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.ArrayList;
@@ -17,12 +26,16 @@ import java.util.List;
 import java.util.function.Consumer;
 
 /**
- * Utility class for HDFS operations
+ * Utility class for HDFS operations.
+ *
+ * Files compressed with a codec known to Hadoop (e.g. .csv.gz, .csv.bz2) are recognized
+ * by extension and decompressed transparently when read.
  */
 public class HDFSUtils {
     private static final Logger logger = LoggerFactory.getLogger(HDFSUtils.class);
     private Configuration configuration;
     private FileSystem fileSystem;
+    private CompressionCodecFactory codecFactory;
 
     public HDFSUtils() {
         try {
@@ -30,6 +43,7 @@ public class HDFSUtils {
             // Important: Configure the fs.defaultFS property if needed
             // configuration.set("fs.defaultFS", "hdfs://localhost:9000");
             fileSystem = FileSystem.get(configuration);
+            codecFactory = new CompressionCodecFactory(configuration);
             logger.info("Initialized HDFS file system: {}", fileSystem.getUri());
         } catch (IOException e) {
             logger.error("Failed to initialize HDFS file system", e);
@@ -44,6 +58,7 @@ public class HDFSUtils {
         try {
             configuration = new Configuration();
             fileSystem = FileSystem.get(URI.create(hdfsUri), configuration);
+            codecFactory = new CompressionCodecFactory(configuration);
             logger.info("Initialized HDFS file system with URI: {}", hdfsUri);
         } catch (IOException e) {
             logger.error("Failed to initialize HDFS file system with URI: " + hdfsUri, e);
@@ -52,7 +67,17 @@ public class HDFSUtils {
     }
 
     /**
-     * Find all CSV files in the given HDFS directory
+     * Use an existing file system, e.g. Hadoop's local file system or a MiniDFSCluster in tests
+     */
+    public HDFSUtils(FileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+        this.configuration = fileSystem.getConf();
+        this.codecFactory = new CompressionCodecFactory(configuration);
+        logger.info("Using file system: {}", fileSystem.getUri());
+    }
+
+    /**
+     * Find all CSV files, plain or compressed, in the given HDFS directory
      */
     public List<Path> findCsvFiles(String directoryPath) {
         List<Path> csvFiles = new ArrayList<>();
@@ -65,7 +90,7 @@ public class HDFSUtils {
 
             FileStatus[] fileStatuses = fileSystem.listStatus(hdfsPath);
             for (FileStatus status : fileStatuses) {
-                if (!status.isDirectory() && status.getPath().getName().toLowerCase().endsWith(".csv")) {
+                if (!status.isDirectory() && isCsvFile(status.getPath())) {
                     csvFiles.add(status.getPath());
                     logger.debug("Found CSV file: {}", status.getPath());
                 }
@@ -81,7 +106,7 @@ public class HDFSUtils {
      * Read a CSV file from HDFS and process each line
      */
     public void readCSVFile(Path filePath, Consumer<String> lineProcessor) {
-        try (FSDataInputStream inputStream = fileSystem.open(filePath);
+        try (InputStream inputStream = openDecompressed(filePath);
              BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
 
             String line;
@@ -100,11 +125,97 @@ public class HDFSUtils {
         }
     }
 
+    /**
+     * Open a file in HDFS for streaming reads; the caller closes the stream
+     */
+    public FSDataInputStream openFile(Path filePath) throws IOException {
+        return fileSystem.open(filePath);
+    }
+
+    /**
+     * Create (or overwrite) a file in HDFS for streaming writes; the caller closes the stream
+     */
+    public FSDataOutputStream createFile(Path filePath) throws IOException {
+        return fileSystem.create(filePath, true);
+    }
+
+    /**
+     * Open a file for reading its decompressed content; plain files are opened as is.
+     *
+     * Compressed files are decompressed on a background thread while the caller reads.
+     */
+    public InputStream openDecompressed(Path filePath) throws IOException {
+        CompressionCodec codec = getCodec(filePath);
+        if (codec == null) {
+            return openFile(filePath);
+        }
+        Decompressor decompressor = CodecPool.getDecompressor(codec);
+        FSDataInputStream inputStream = openFile(filePath);
+        try {
+            return new DecompressingInputStream(codec.createInputStream(inputStream, decompressor), decompressor,
+                    filePath.getName(), false);
+        } catch (IOException e) {
+            inputStream.close();
+            CodecPool.returnDecompressor(decompressor);
+            throw e;
+        }
+    }
+
+    /**
+     * Codec of a compressed file, by extension, or null for an uncompressed file
+     */
+    public CompressionCodec getCodec(Path filePath) {
+        return codecFactory.getCodec(filePath);
+    }
+
+    /**
+     * True if the file name ends in .csv, optionally followed by a compression extension
+     */
+    public boolean isCsvFile(Path filePath) {
+        String name = filePath.getName().toLowerCase();
+        CompressionCodec codec = getCodec(filePath);
+        if (codec != null) {
+            name = CompressionCodecFactory.removeSuffix(name, codec.getDefaultExtension());
+        }
+        return name.endsWith(".csv");
+    }
+
+    /**
+     * Check whether a file or directory exists in HDFS
+     */
+    public boolean exists(Path filePath) throws IOException {
+        return fileSystem.exists(filePath);
+    }
+
+    /**
+     * Move a file over another, replacing it if it exists. The rename overwrites the
+     * target in one step, so readers see either the old or the new file and a failure
+     * leaves the old one in place.
+     */
+    public void replaceFile(Path source, Path target) throws IOException {
+        FileContext.getFileContext(fileSystem.getUri(), configuration)
+                .rename(source, target, Options.Rename.OVERWRITE);
+    }
+
+    /**
+     * Get the status (length, block size) of a file in HDFS
+     */
+    public FileStatus getFileStatus(Path filePath) throws IOException {
+        return fileSystem.getFileStatus(filePath);
+    }
+
+    /**
+     * Get the locations of all blocks of a file, in offset order
+     */
+    public BlockLocation[] getBlockLocations(FileStatus status) throws IOException {
+        return fileSystem.getFileBlockLocations(status, 0, status.getLen());
+    }
+
     /**
      * Write content to an HDFS file
      */
     public void writeToFile(String filePath, String content) {
-        try (org.apache.hadoop.fs.FSDataOutputStream outputStream = fileSystem.create(new Path(filePath), true)) {
+        try (FSDataOutputStream outputStream = fileSystem.create(new Path(filePath), true)) {
             outputStream.writeBytes(content);
             logger.info("Successfully wrote to file: {}", filePath);
         } catch (IOException e) {
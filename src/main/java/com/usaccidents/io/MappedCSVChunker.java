@@ -0,0 +1,243 @@
+package com.usaccidents.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Cuts a local CSV file into chunks that start and end on record boundaries.
+ *
+ * The file is first divided at nominal offsets. Each nominal chunk is scanned in
+ * parallel on a memory-mapped buffer with the state machine of the tokenizers
+ * ({@link AbstractCSVTokenizer#nextState}), tabulated per byte class, once from every
+ * state the chunk may start in, since that state is not known until the chunks before it
+ * are scanned. Chaining the end states from the start of the data gives the tokenizer's
+ * state at every nominal offset, and each offset is moved forward to the first line feed
+ * ending a record from that state. So a quoted field containing line breaks is never cut
+ * in half, and a quote inside an unquoted field, which the tokenizer keeps as a literal,
+ * does not put the cuts out of step.
+ */
+public class MappedCSVChunker {
+    public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final int SCAN_WINDOW = 64 * 1024;
+
+    // States of the tokenizer
+    private static final int FIELD_START = AbstractCSVTokenizer.FIELD_START;
+    private static final int STATES = AbstractCSVTokenizer.RECORD_END;
+
+    // A byte of each class, which the tokenizer treats like every byte of the class; class 0
+    // holds the bytes without a class of their own
+    private static final byte[] CLASS_BYTES = {'x', '"', ',', '\n', '\r', ' '};
+    private static final int CLASSES = CLASS_BYTES.length;
+
+    // Set on the transition over a line feed that ends a record
+    static final int BOUNDARY = 8;
+    static final int STATE_MASK = 7;
+
+    private static final byte[] BYTE_CLASSES = new byte[256];
+    // Next state, with BOUNDARY, at state * CLASSES + byte class
+    private static final byte[] TRANSITIONS = new byte[STATES * CLASSES];
+
+    static {
+        for (int byteClass = 0; byteClass < CLASSES; byteClass++) {
+            BYTE_CLASSES[CLASS_BYTES[byteClass]] = (byte) byteClass;
+        }
+        BYTE_CLASSES['\t'] = BYTE_CLASSES[' '];
+
+        for (int state = 0; state < STATES; state++) {
+            for (int byteClass = 0; byteClass < CLASSES; byteClass++) {
+                int c = CLASS_BYTES[byteClass];
+                int next = AbstractCSVTokenizer.nextState(state, c);
+                if (next == AbstractCSVTokenizer.RECORD_END) {
+                    // Cut only after line feeds, so that one after a carriage return stays with
+                    // the terminator it completes
+                    next = c == '\n' ? FIELD_START | BOUNDARY : FIELD_START;
+                }
+                TRANSITIONS[state * CLASSES + byteClass] = (byte) next;
+            }
+        }
+    }
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long chunkSize;
+
+    /**
+     * Where the records of a nominal chunk end when its scan starts in each state
+     */
+    private static class Scan {
+        // State at the end of the chunk, by start state
+        private final int[] endStates = new int[STATES];
+        // Offset just past the first record ending in the chunk, or -1, by start state
+        private final long[] firstBoundaries = new long[STATES];
+    }
+
+    /**
+     * A byte range [start, end) of the file containing whole records
+     */
+    public static class Chunk {
+        private final long start;
+        private final long end;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long length() {
+            return end - start;
+        }
+    }
+
+    public MappedCSVChunker(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_CHUNK_SIZE);
+    }
+
+    public MappedCSVChunker(FileChannel channel, long chunkSize) throws IOException {
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + Integer.MAX_VALUE);
+        }
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Byte offset just past the header record
+     */
+    public long headerEnd() throws IOException {
+        return findRecordBoundary(channel, 0, fileSize);
+    }
+
+    /**
+     * Plan the chunks covering the records in [dataStart, end of file)
+     */
+    public List<Chunk> plan(long dataStart, ForkJoinPool pool) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long dataLength = fileSize - dataStart;
+        if (dataLength <= 0) {
+            return chunks;
+        }
+
+        int nominalCount = (int) Math.max(1, (dataLength + chunkSize - 1) / chunkSize);
+        long[] nominalStarts = new long[nominalCount + 1];
+        for (int i = 0; i < nominalCount; i++) {
+            nominalStarts[i] = dataStart + i * chunkSize;
+        }
+        nominalStarts[nominalCount] = fileSize;
+
+        // Scan every nominal chunk from every start state in parallel
+        List<ForkJoinTask<Scan>> scans = new ArrayList<>(nominalCount);
+        for (int i = 0; i < nominalCount; i++) {
+            final long from = nominalStarts[i];
+            final long to = nominalStarts[i + 1];
+            scans.add(pool.submit(() -> scan(from, to)));
+        }
+
+        // Tokenizer state at each nominal offset, starting from a record start
+        int[] states = new int[nominalCount + 1];
+        states[0] = FIELD_START;
+        for (int i = 0; i < nominalCount; i++) {
+            states[i + 1] = scans.get(i).join().endStates[states[i]];
+        }
+
+        long chunkStart = dataStart;
+        for (int i = 1; i < nominalCount; i++) {
+            long boundary = fileSize;
+            for (int j = i; j < nominalCount; j++) {
+                long first = scans.get(j).join().firstBoundaries[states[j]];
+                if (first >= 0) {
+                    boundary = first;
+                    break;
+                }
+            }
+            if (boundary > chunkStart && boundary < fileSize) {
+                chunks.add(new Chunk(chunkStart, boundary));
+                chunkStart = boundary;
+            }
+        }
+        if (chunkStart < fileSize) {
+            chunks.add(new Chunk(chunkStart, fileSize));
+        }
+        return chunks;
+    }
+
+    /**
+     * Memory-map a chunk for reading
+     */
+    public MappedByteBuffer map(Chunk chunk) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, chunk.getStart(), chunk.length());
+    }
+
+    private Scan scan(long from, long to) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        Scan scan = new Scan();
+        int[] states = new int[STATES];
+        for (int start = 0; start < STATES; start++) {
+            states[start] = start;
+            scan.firstBoundaries[start] = -1;
+        }
+        int limit = buffer.limit();
+        for (int i = 0; i < limit; i++) {
+            int byteClass = BYTE_CLASSES[buffer.get(i) & 0xFF];
+            for (int start = 0; start < STATES; start++) {
+                int next = TRANSITIONS[states[start] * CLASSES + byteClass];
+                if ((next & BOUNDARY) != 0 && scan.firstBoundaries[start] < 0) {
+                    scan.firstBoundaries[start] = from + i + 1;
+                }
+                states[start] = next & STATE_MASK;
+            }
+        }
+        System.arraycopy(states, 0, scan.endStates, 0, STATES);
+        return scan;
+    }
+
+    /**
+     * Find the offset just past the record starting at the given offset, tokenizing it as
+     * {@link CSVTokenizer} would
+     *
+     * @return the boundary offset, or end if the input ends first
+     */
+    public static long findRecordBoundary(FileChannel channel, long offset, long end) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        long position = offset;
+        int state = FIELD_START;
+        while (position < end) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                int next = transition(state, window.get(i));
+                if ((next & BOUNDARY) != 0) {
+                    return position + i + 1;
+                }
+                state = next & STATE_MASK;
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    /**
+     * Tokenizer state after a byte read in the given state, with BOUNDARY set if the byte
+     * is a line feed ending a record
+     */
+    static int transition(int state, int b) {
+        return TRANSITIONS[state * CLASSES + BYTE_CLASSES[b & 0xFF]];
+    }
+}
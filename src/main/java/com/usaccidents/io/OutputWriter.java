@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +50,25 @@ public class OutputWriter {
      * Write analysis results to files
      */
     public void writeResults(Map<String, Object> results) {
+        writeResults(results, LocalDateTime.now().format(fileNameFormatter));
+    }
+
+    /**
+     * Write the results of one event-time window, with the window's start and end in the
+     * file names instead of the time of writing
+     *
+     * @param windowStartMillis inclusive window start, in wall-clock epoch milliseconds
+     * @param windowEndMillis   exclusive window end
+     */
+    public void writeWindowResults(long windowStartMillis, long windowEndMillis, Map<String, Object> results) {
+        writeResults(results, "window_" + formatEventTime(windowStartMillis) + "_" + formatEventTime(windowEndMillis));
+    }
+
+    private String formatEventTime(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000), 0, ZoneOffset.UTC).format(fileNameFormatter);
+    }
+
+    private void writeResults(Map<String, Object> results, String timestamp) {
         try {
             // Create the output directory if it doesn't exist (for local filesystem)
             if (!isHdfs) {
@@ -58,16 +78,33 @@ public class OutputWriter {
                 }
             }
 
-            String timestamp = LocalDateTime.now().format(fileNameFormatter);
-
             // Write summary report
             writeSummaryReport(results, timestamp);
 
             // Write detailed reports
-            writeDetailedReport(results, "accidents_by_state", (List<Map.Entry<String, Integer>>) results.get("topStatesByAccidentCount"), timestamp);
+            writeDetailedReport(results, "accidents_by_state", (List<Map.Entry<String, Long>>) results.get("topStatesByAccidentCount"), timestamp);
             writeDetailedReport(results, "accidents_by_severity", results.get("accidentsBySeverity"), timestamp);
-            writeDetailedReport(results, "accidents_by_weather", (List<Map.Entry<String, Integer>>) results.get("topWeatherConditions"), timestamp);
+            writeDetailedReport(results, "accidents_by_weather", (List<Map.Entry<String, Long>>) results.get("topWeatherConditions"), timestamp);
             writeDetailedReport(results, "accidents_by_hour", results.get("accidentsByHour"), timestamp);
+            writeDetailedReport(results, "accidents_by_street", (List<Map.Entry<String, Long>>) results.get("topStreetsByAccidentCount"), timestamp);
+            writeDetailedReport(results, "distinct_cities_by_state", results.get("distinctCitiesByState"), timestamp);
+            writeDetailedReport(results, "distinct_streets_by_county", results.get("distinctStreetsByCounty"), timestamp);
+            writeDetailedReport(results, "distinct_ids_by_source", results.get("distinctAccidentIdsBySource"), timestamp);
+            writeDetailedReport(results, "duration_quantiles_by_state", results.get("durationMinutesQuantilesByState"), timestamp);
+            writeDetailedReport(results, "duration_quantiles_by_severity", results.get("durationMinutesQuantilesBySeverity"), timestamp);
+            writeDetailedReport(results, "temperature_quantiles_by_state", results.get("temperatureQuantilesByState"), timestamp);
+            writeDetailedReport(results, "temperature_quantiles_by_severity", results.get("temperatureQuantilesBySeverity"), timestamp);
+            writeDetailedReport(results, "visibility_quantiles_by_state", results.get("visibilityQuantilesByState"), timestamp);
+            writeDetailedReport(results, "visibility_quantiles_by_severity", results.get("visibilityQuantilesBySeverity"), timestamp);
+
+            // Configured breakdowns and hotspots, e.g. breakdownByStateAndSeverityAndHour to
+            // breakdown_by_state_and_severity_and_hour
+            for (Map.Entry<String, Object> entry : results.entrySet()) {
+                String key = entry.getKey();
+                if (key.startsWith("breakdown") || key.startsWith("accidentHotspots")) {
+                    writeDetailedReport(results, key.replaceAll("([A-Z])", "_$1").toLowerCase(), entry.getValue(), timestamp);
+                }
+            }
 
             logger.info("All results written to {}", outputDirectory);
         } catch (IOException e) {
@@ -90,17 +127,17 @@ public class OutputWriter {
         }
 
         content.append("\nTop States by Accident Count:\n");
-        List<Map.Entry<String, Integer>> topStates = (List<Map.Entry<String, Integer>>) results.get("topStatesByAccidentCount");
+        List<Map.Entry<String, Long>> topStates = (List<Map.Entry<String, Long>>) results.get("topStatesByAccidentCount");
         if (topStates != null) {
-            for (Map.Entry<String, Integer> entry : topStates) {
+            for (Map.Entry<String, Long> entry : topStates) {
                 content.append("  - ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
             }
         }
 
         content.append("\nAccidents by Severity:\n");
-        Map<Integer, Integer> severityMap = (Map<Integer, Integer>) results.get("accidentsBySeverity");
+        Map<Integer, Long> severityMap = (Map<Integer, Long>) results.get("accidentsBySeverity");
         if (severityMap != null) {
-            for (Map.Entry<Integer, Integer> entry : severityMap.entrySet()) {
+            for (Map.Entry<Integer, Long> entry : severityMap.entrySet()) {
                 content.append("  - Severity ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
             }
         }
@@ -118,13 +155,14 @@ public class OutputWriter {
         content.append("Total accidents analyzed: ").append(results.get("totalAccidents")).append("\n\n");
 
         if (data instanceof List) {
-            List<Map.Entry<String, Integer>> entries = (List<Map.Entry<String, Integer>>) data;
-            for (Map.Entry<String, Integer> entry : entries) {
+            List<Map.Entry<String, Long>> entries = (List<Map.Entry<String, Long>>) data;
+            for (Map.Entry<String, Long> entry : entries) {
                 content.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
             }
         } else if (data instanceof Map) {
-            Map<?, Integer> map = (Map<?, Integer>) data;
-            for (Map.Entry<?, Integer> entry : map.entrySet()) {
+            // Counts, or per-group maps such as quantiles
+            Map<?, ?> map = (Map<?, ?>) data;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
                 content.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
             }
         }
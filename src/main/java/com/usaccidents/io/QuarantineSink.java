@@ -0,0 +1,219 @@
+package com.usaccidents.io;
+
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects rejected CSV records at bounded cost.
+ *
+ * Rejections are counted per reason; only the first rejection of each reason is logged,
+ * and stack traces are logged for at most one sampled failure per interval. If a side
+ * file is given, rejected records are appended to it in batches as tab-separated lines
+ * of source, byte offset, reason, detail and the raw record (with tabs, line breaks and
+ * backslashes escaped). A summary is logged on close.
+ *
+ * Safe for use by concurrent parser threads.
+ */
+public class QuarantineSink implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(QuarantineSink.class);
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final long TRACE_INTERVAL_MILLIS = 10_000;
+
+    /**
+     * Why a record was rejected
+     */
+    public enum Reason {
+        INSUFFICIENT_FIELDS,
+        UNTERMINATED_QUOTE,
+        PARSE_ERROR,
+        PROCESSING_ERROR
+    }
+
+    private final Writer output;
+    private final int batchSize;
+    private final LongAdder[] counts = new LongAdder[Reason.values().length];
+    // Whether the first rejection of each reason has been logged
+    private final AtomicBoolean[] logged = new AtomicBoolean[Reason.values().length];
+    private final AtomicLong nextTraceMillis = new AtomicLong();
+    private final StringBuilder batch = new StringBuilder();
+    private int batched;
+
+    /**
+     * Count and log rejected records without writing them to a side file
+     */
+    public QuarantineSink() {
+        this(null, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Write rejected records to the given stream, which is closed with this sink
+     */
+    public QuarantineSink(OutputStream output) {
+        this(output, DEFAULT_BATCH_SIZE);
+    }
+
+    public QuarantineSink(OutputStream output, int batchSize) {
+        this.output = output == null ? null : new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        this.batchSize = batchSize;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+            logged[i] = new AtomicBoolean();
+        }
+    }
+
+    /**
+     * Write rejected records to a local side file
+     */
+    public static QuarantineSink toFile(File file) throws IOException {
+        return new QuarantineSink(new FileOutputStream(file));
+    }
+
+    /**
+     * Write rejected records to a side file in HDFS
+     */
+    public static QuarantineSink toHDFS(Path path, HDFSUtils hdfsUtils) throws IOException {
+        return new QuarantineSink(hdfsUtils.createFile(path));
+    }
+
+    /**
+     * Record a rejected record
+     *
+     * @param offset byte offset of the record in its source, or -1 if unknown
+     * @param cause  exception that caused the rejection, or null
+     */
+    public void reject(Reason reason, String source, long offset, CSVRecord record, Throwable cause) {
+        counts[reason.ordinal()].increment();
+        if (!logged[reason.ordinal()].get() && logged[reason.ordinal()].compareAndSet(false, true)) {
+            logger.warn("Quarantining {} records, first in {} at offset {}", reason, source, offset);
+        }
+        if (cause != null && sampleTrace()) {
+            logger.warn("Sampled {} in {} at offset {}", reason, source, offset, cause);
+        }
+        if (output == null) {
+            return;
+        }
+
+        StringBuilder line = new StringBuilder(256);
+        escape(line, source).append('\t').append(offset).append('\t').append(reason).append('\t');
+        if (cause != null) {
+            escape(line, String.valueOf(cause));
+        }
+        line.append('\t');
+        escape(line, record.recordText()).append('\n');
+
+        synchronized (batch) {
+            batch.append(line);
+            if (++batched >= batchSize) {
+                writeBatch();
+            }
+        }
+    }
+
+    public long getCount(Reason reason) {
+        return counts[reason.ordinal()].sum();
+    }
+
+    /**
+     * Total number of rejected records
+     */
+    public long getTotal() {
+        long total = 0;
+        for (LongAdder count : counts) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public Map<Reason, Long> getCounts() {
+        Map<Reason, Long> result = new EnumMap<>(Reason.class);
+        for (Reason reason : Reason.values()) {
+            result.put(reason, getCount(reason));
+        }
+        return result;
+    }
+
+    /**
+     * Write out rejected records buffered so far
+     */
+    public void flush() {
+        if (output == null) {
+            return;
+        }
+        synchronized (batch) {
+            writeBatch();
+            try {
+                output.flush();
+            } catch (IOException e) {
+                logger.error("Error flushing quarantine file", e);
+                throw new RuntimeException("Error writing quarantine file", e);
+            }
+        }
+    }
+
+    public void logSummary() {
+        long total = getTotal();
+        if (total == 0) {
+            logger.info("No records quarantined");
+        } else {
+            logger.warn("Quarantined {} records: {}", total, getCounts());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (output != null) {
+            flush();
+            output.close();
+        }
+        logSummary();
+    }
+
+    private void writeBatch() {
+        if (batched == 0) {
+            return;
+        }
+        try {
+            output.write(batch.toString());
+        } catch (IOException e) {
+            logger.error("Error writing quarantine file", e);
+            throw new RuntimeException("Error writing quarantine file", e);
+        }
+        batch.setLength(0);
+        batched = 0;
+    }
+
+    private boolean sampleTrace() {
+        long now = System.currentTimeMillis();
+        long next = nextTraceMillis.get();
+        return now >= next && nextTraceMillis.compareAndSet(next, now + TRACE_INTERVAL_MILLIS);
+    }
+
+    private static StringBuilder escape(StringBuilder line, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\t': line.append("\\t"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\\': line.append("\\\\"); break;
+                default: line.append(c); break;
+            }
+        }
+        return line;
+    }
+}
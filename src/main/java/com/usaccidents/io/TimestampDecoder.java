@@ -0,0 +1,164 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.Accident;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+
+/**
+ * Decodes "yyyy-MM-dd HH:mm:ss[.SSSSSSSSS]" timestamps into epoch seconds.
+ *
+ * The value is the wall-clock time as written in the file, counted in seconds from
+ * 1970-01-01T00:00 without any zone conversion (as LocalDateTime.toEpochSecond(UTC)).
+ * The fixed layout is decoded arithmetically with no allocation and no exceptions;
+ * fractional seconds are accepted and truncated. Only inputs that do not match the
+ * layout are handed to a more permissive DateTimeFormatter.
+ */
+public final class TimestampDecoder {
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final int BASE_LENGTH = 19;
+
+    private static final DateTimeFormatter FALLBACK_FORMATTER = new DateTimeFormatterBuilder()
+            .appendPattern("uuuu-M-d")
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .optionalStart().appendLiteral('T').optionalEnd()
+            .appendPattern("H:mm")
+            .optionalStart().appendPattern(":ss").optionalEnd()
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .toFormatter()
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private TimestampDecoder() {
+    }
+
+    /**
+     * Decode a timestamp from buffer[start, end), or {@link Accident#NO_TIME} if it is not a valid timestamp
+     */
+    public static long decode(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length >= BASE_LENGTH && hasFixedLayout(buffer, start, end)) {
+            long epochSecond = fromFields(
+                    ByteFieldDecoder.digits(buffer, start, 4),
+                    ByteFieldDecoder.digits(buffer, start + 5, 2),
+                    ByteFieldDecoder.digits(buffer, start + 8, 2),
+                    ByteFieldDecoder.digits(buffer, start + 11, 2),
+                    ByteFieldDecoder.digits(buffer, start + 14, 2),
+                    ByteFieldDecoder.digits(buffer, start + 17, 2));
+            if (epochSecond != Accident.NO_TIME) {
+                return epochSecond;
+            }
+        }
+        return length <= 0 ? Accident.NO_TIME : decodeFallback(ByteFieldDecoder.decode(buffer, start, end));
+    }
+
+    /**
+     * Decode a timestamp from text, or {@link Accident#NO_TIME} if it is not a valid timestamp
+     */
+    public static long decode(CharSequence text) {
+        int length = text.length();
+        if (length >= BASE_LENGTH && hasFixedLayout(text)) {
+            long epochSecond = fromFields(
+                    digits(text, 0, 4), digits(text, 5, 2), digits(text, 8, 2),
+                    digits(text, 11, 2), digits(text, 14, 2), digits(text, 17, 2));
+            if (epochSecond != Accident.NO_TIME) {
+                return epochSecond;
+            }
+        }
+        return length == 0 ? Accident.NO_TIME : decodeFallback(text);
+    }
+
+    /**
+     * Seconds since 1970-01-01T00:00 for the given fields, or NO_TIME if any is out of range
+     */
+    public static long fromFields(int year, int month, int day, int hour, int minute, int second) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return Accident.NO_TIME;
+        }
+        return epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+    }
+
+    private static boolean hasFixedLayout(ByteBuffer buffer, int start, int end) {
+        if (buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-' || buffer.get(start + 10) != ' '
+                || buffer.get(start + 13) != ':' || buffer.get(start + 16) != ':') {
+            return false;
+        }
+        int length = end - start;
+        if (length == BASE_LENGTH) {
+            return true;
+        }
+        // Optional fraction of 1 to 9 digits
+        if (length > BASE_LENGTH + 10 || length == BASE_LENGTH + 1 || buffer.get(start + BASE_LENGTH) != '.') {
+            return false;
+        }
+        return ByteFieldDecoder.digits(buffer, start + BASE_LENGTH + 1, length - BASE_LENGTH - 1) >= 0;
+    }
+
+    private static boolean hasFixedLayout(CharSequence text) {
+        if (text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != ' '
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return false;
+        }
+        int length = text.length();
+        if (length == BASE_LENGTH) {
+            return true;
+        }
+        if (length > BASE_LENGTH + 10 || length == BASE_LENGTH + 1 || text.charAt(BASE_LENGTH) != '.') {
+            return false;
+        }
+        return digits(text, BASE_LENGTH + 1, length - BASE_LENGTH - 1) >= 0;
+    }
+
+    private static long decodeFallback(CharSequence text) {
+        try {
+            return LocalDateTime.parse(text, FALLBACK_FORMATTER).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return Accident.NO_TIME;
+        }
+    }
+
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Days since 1970-01-01 in the proleptic Gregorian calendar
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
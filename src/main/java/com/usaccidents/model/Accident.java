@@ -1,10 +1,20 @@
 package com.usaccidents.model;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 public class Accident {
+    /**
+     * Epoch-second value meaning "no timestamp"
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+    private static final int SECONDS_PER_DAY = 86400;
+
     private String id;
     private int severity;
+    // Times are held as wall-clock epoch seconds; LocalDateTime views are created on demand
+    private long startEpochSecond = NO_TIME;
+    private long endEpochSecond = NO_TIME;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private double startLat;
@@ -20,10 +30,10 @@ public class Accident {
     private String zipcode;
     private String timezone;
     private String weatherCondition;
-    private double temperature;
+    private double temperature = Double.NaN;
     private double humidity;
     private double pressure;
-    private double visibility;
+    private double visibility = Double.NaN;
     private double windSpeed;
     private boolean trafficSignal;
     private String sunriseSunset;
@@ -32,6 +42,38 @@ public class Accident {
     public Accident() {
     }
 
+    /**
+     * Set every attribute back to its default, so the instance can be refilled
+     */
+    public void reset() {
+        id = null;
+        severity = 0;
+        startEpochSecond = NO_TIME;
+        endEpochSecond = NO_TIME;
+        startTime = null;
+        endTime = null;
+        startLat = 0.0;
+        startLng = 0.0;
+        endLat = 0.0;
+        endLng = 0.0;
+        distance = 0.0;
+        description = null;
+        street = null;
+        city = null;
+        county = null;
+        state = null;
+        zipcode = null;
+        timezone = null;
+        weatherCondition = null;
+        temperature = Double.NaN;
+        humidity = 0.0;
+        pressure = 0.0;
+        visibility = Double.NaN;
+        windSpeed = 0.0;
+        trafficSignal = false;
+        sunriseSunset = null;
+    }
+
     // Getters and setters
     public String getId() {
         return id;
@@ -50,19 +92,65 @@ public class Accident {
     }
 
     public LocalDateTime getStartTime() {
+        if (startTime == null && startEpochSecond != NO_TIME) {
+            startTime = LocalDateTime.ofEpochSecond(startEpochSecond, 0, ZoneOffset.UTC);
+        }
         return startTime;
     }
 
     public void setStartTime(LocalDateTime startTime) {
         this.startTime = startTime;
+        this.startEpochSecond = startTime == null ? NO_TIME : startTime.toEpochSecond(ZoneOffset.UTC);
     }
 
     public LocalDateTime getEndTime() {
+        if (endTime == null && endEpochSecond != NO_TIME) {
+            endTime = LocalDateTime.ofEpochSecond(endEpochSecond, 0, ZoneOffset.UTC);
+        }
         return endTime;
     }
 
     public void setEndTime(LocalDateTime endTime) {
         this.endTime = endTime;
+        this.endEpochSecond = endTime == null ? NO_TIME : endTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Start time as wall-clock seconds since 1970-01-01T00:00, or NO_TIME
+     */
+    public long getStartEpochSecond() {
+        return startEpochSecond;
+    }
+
+    public void setStartEpochSecond(long startEpochSecond) {
+        this.startEpochSecond = startEpochSecond;
+        this.startTime = null;
+    }
+
+    /**
+     * End time as wall-clock seconds since 1970-01-01T00:00, or NO_TIME
+     */
+    public long getEndEpochSecond() {
+        return endEpochSecond;
+    }
+
+    public void setEndEpochSecond(long endEpochSecond) {
+        this.endEpochSecond = endEpochSecond;
+        this.endTime = null;
+    }
+
+    /**
+     * Hour of day (0-23) of the start time, or -1 if there is none
+     */
+    public int getStartHour() {
+        return startEpochSecond == NO_TIME ? -1 : hourOfDay(startEpochSecond);
+    }
+
+    /**
+     * Hour of day (0-23) of a wall-clock epoch-second timestamp
+     */
+    public static int hourOfDay(long epochSecond) {
+        return Math.floorMod(epochSecond, SECONDS_PER_DAY) / 3600;
     }
 
     public double getStartLat() {
@@ -169,6 +257,9 @@ public class Accident {
         this.weatherCondition = weatherCondition;
     }
 
+    /**
+     * Temperature reading, or NaN if the record has none; 0 is a real reading
+     */
     public double getTemperature() {
         return temperature;
     }
@@ -193,6 +284,9 @@ public class Accident {
         this.pressure = pressure;
     }
 
+    /**
+     * Visibility reading, or NaN if the record has none; 0 is a real reading
+     */
     public double getVisibility() {
         return visibility;
     }
@@ -230,7 +324,7 @@ public class Accident {
         return "Accident{" +
                 "id='" + id + '\'' +
                 ", severity=" + severity +
-                ", startTime=" + startTime +
+                ", startTime=" + getStartTime() +
                 ", state='" + state + '\'' +
                 ", city='" + city + '\'' +
                 ", weatherCondition='" + weatherCondition + '\'' +
@@ -0,0 +1,236 @@
+package com.usaccidents.model;
+
+/**
+ * A fixed-capacity batch of accidents stored column by column.
+ *
+ * Numeric attributes are held in primitive arrays and string attributes as int codes
+ * into the {@link AccidentDictionaries} the batch was created with. Streets and counties
+ * have too many distinct values to keep for good in dictionaries shared across batches,
+ * so they are coded in dictionaries of the batch's own that are cleared with it; their
+ * codes are only comparable within a batch. Rows [0, size) are
+ * valid; attributes that were not decoded keep the same defaults as in {@link Accident}
+ * (0, Accident.NO_TIME, or StringDictionary.NULL_CODE for strings).
+ *
+ * The arrays are exposed directly so consumers can run tight loops over them.
+ */
+public class AccidentBatch {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int[] severity;
+    private final long[] startEpochSecond;
+    private final long[] endEpochSecond;
+    private final double[] startLat;
+    private final double[] startLng;
+    private final double[] temperature;
+    private final double[] visibility;
+    private final int[] state;
+    private final int[] city;
+    private final int[] street;
+    private final int[] county;
+    private final int[] weatherCondition;
+    private final int[] timezone;
+
+    private final AccidentDictionaries dictionaries;
+    private final StringDictionary streets = new StringDictionary();
+    private final StringDictionary counties = new StringDictionary();
+
+    private int size;
+
+    public AccidentBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a batch with its own dictionaries
+     */
+    public AccidentBatch(int capacity) {
+        this(capacity, new AccidentDictionaries());
+    }
+
+    /**
+     * Create a batch whose string columns are coded with the given dictionaries, so that
+     * codes stay comparable across batches sharing them
+     */
+    public AccidentBatch(int capacity, AccidentDictionaries dictionaries) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Batch capacity must be positive: " + capacity);
+        }
+        this.severity = new int[capacity];
+        this.startEpochSecond = new long[capacity];
+        this.endEpochSecond = new long[capacity];
+        this.startLat = new double[capacity];
+        this.startLng = new double[capacity];
+        this.temperature = new double[capacity];
+        this.visibility = new double[capacity];
+        this.state = new int[capacity];
+        this.city = new int[capacity];
+        this.street = new int[capacity];
+        this.county = new int[capacity];
+        this.weatherCondition = new int[capacity];
+        this.timezone = new int[capacity];
+        this.dictionaries = dictionaries;
+    }
+
+    public int capacity() {
+        return severity.length;
+    }
+
+    /**
+     * Number of valid rows
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == severity.length;
+    }
+
+    /**
+     * Reset every attribute of a row to its default value, ready to be filled
+     */
+    public void clearRow(int row) {
+        severity[row] = 0;
+        startEpochSecond[row] = Accident.NO_TIME;
+        endEpochSecond[row] = Accident.NO_TIME;
+        startLat[row] = 0.0;
+        startLng[row] = 0.0;
+        temperature[row] = Double.NaN;
+        visibility[row] = Double.NaN;
+        state[row] = StringDictionary.NULL_CODE;
+        city[row] = StringDictionary.NULL_CODE;
+        street[row] = StringDictionary.NULL_CODE;
+        county[row] = StringDictionary.NULL_CODE;
+        weatherCondition[row] = StringDictionary.NULL_CODE;
+        timezone[row] = StringDictionary.NULL_CODE;
+    }
+
+    /**
+     * Mark the row at index size() as filled
+     */
+    public void commitRow() {
+        size++;
+    }
+
+    /**
+     * Drop all rows and the batch's street and county codes; the shared dictionaries are kept
+     */
+    public void clear() {
+        size = 0;
+        streets.clear();
+        counties.clear();
+    }
+
+    /**
+     * Append an accident as a new row
+     */
+    public void add(Accident accident) {
+        int row = size;
+        severity[row] = accident.getSeverity();
+        startEpochSecond[row] = accident.getStartEpochSecond();
+        endEpochSecond[row] = accident.getEndEpochSecond();
+        startLat[row] = accident.getStartLat();
+        startLng[row] = accident.getStartLng();
+        temperature[row] = accident.getTemperature();
+        visibility[row] = accident.getVisibility();
+        state[row] = dictionaries.getStates().encode(accident.getState());
+        city[row] = dictionaries.getCities().encode(accident.getCity());
+        street[row] = streets.encode(accident.getStreet());
+        county[row] = counties.encode(accident.getCounty());
+        weatherCondition[row] = dictionaries.getWeatherConditions().encode(accident.getWeatherCondition());
+        timezone[row] = dictionaries.getTimezones().encode(accident.getTimezone());
+        commitRow();
+    }
+
+    public int[] getSeverity() {
+        return severity;
+    }
+
+    /**
+     * Start times as wall-clock epoch seconds, or Accident.NO_TIME
+     */
+    public long[] getStartEpochSecond() {
+        return startEpochSecond;
+    }
+
+    /**
+     * End times as wall-clock epoch seconds, or Accident.NO_TIME
+     */
+    public long[] getEndEpochSecond() {
+        return endEpochSecond;
+    }
+
+    public double[] getStartLat() {
+        return startLat;
+    }
+
+    public double[] getStartLng() {
+        return startLng;
+    }
+
+    public double[] getTemperature() {
+        return temperature;
+    }
+
+    public double[] getVisibility() {
+        return visibility;
+    }
+
+    public int[] getState() {
+        return state;
+    }
+
+    public int[] getCity() {
+        return city;
+    }
+
+    public int[] getStreet() {
+        return street;
+    }
+
+    public int[] getCounty() {
+        return county;
+    }
+
+    public int[] getWeatherCondition() {
+        return weatherCondition;
+    }
+
+    public int[] getTimezone() {
+        return timezone;
+    }
+
+    public AccidentDictionaries getDictionaries() {
+        return dictionaries;
+    }
+
+    public StringDictionary getStateDictionary() {
+        return dictionaries.getStates();
+    }
+
+    public StringDictionary getCityDictionary() {
+        return dictionaries.getCities();
+    }
+
+    /**
+     * Dictionary of the street codes of this batch
+     */
+    public StringDictionary getStreetDictionary() {
+        return streets;
+    }
+
+    /**
+     * Dictionary of the county codes of this batch
+     */
+    public StringDictionary getCountyDictionary() {
+        return counties;
+    }
+
+    public StringDictionary getWeatherConditionDictionary() {
+        return dictionaries.getWeatherConditions();
+    }
+
+    public StringDictionary getTimezoneDictionary() {
+        return dictionaries.getTimezones();
+    }
+}
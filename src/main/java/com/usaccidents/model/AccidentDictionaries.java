@@ -0,0 +1,72 @@
+package com.usaccidents.model;
+
+/**
+ * The dictionaries coding the repetitive string fields of accidents: state, city,
+ * street, county, zipcode, weather condition, timezone and sunrise/sunset.
+ *
+ * One instance is shared by all parser threads, so a value has the same code in every
+ * batch and every worker, and each distinct value is held as a single String. A
+ * dictionary never forgets a value, so the parser only codes the fields with a bounded
+ * number of values through its shared instance; streets, counties and zipcodes grow with
+ * the data and are only coded here for stores that keep every row anyway, such as the
+ * accident cache and the off-heap store.
+ */
+public class AccidentDictionaries {
+    private final StringDictionary states = new StringDictionary();
+    private final StringDictionary cities = new StringDictionary();
+    private final StringDictionary streets = new StringDictionary();
+    private final StringDictionary counties = new StringDictionary();
+    private final StringDictionary zipcodes = new StringDictionary();
+    private final StringDictionary sunriseSunsets = new StringDictionary();
+    private final StringDictionary weatherConditions = new StringDictionary();
+    private final StringDictionary timezones = new StringDictionary();
+
+    /**
+     * Dictionary of a field, or null if the field is not dictionary-coded
+     */
+    public StringDictionary get(AccidentField field) {
+        switch (field) {
+            case STATE: return states;
+            case CITY: return cities;
+            case STREET: return streets;
+            case COUNTY: return counties;
+            case ZIPCODE: return zipcodes;
+            case SUNRISE_SUNSET: return sunriseSunsets;
+            case WEATHER_CONDITION: return weatherConditions;
+            case TIMEZONE: return timezones;
+            default: return null;
+        }
+    }
+
+    public StringDictionary getStates() {
+        return states;
+    }
+
+    public StringDictionary getCities() {
+        return cities;
+    }
+
+    public StringDictionary getStreets() {
+        return streets;
+    }
+
+    public StringDictionary getCounties() {
+        return counties;
+    }
+
+    public StringDictionary getZipcodes() {
+        return zipcodes;
+    }
+
+    public StringDictionary getSunriseSunsets() {
+        return sunriseSunsets;
+    }
+
+    public StringDictionary getWeatherConditions() {
+        return weatherConditions;
+    }
+
+    public StringDictionary getTimezones() {
+        return timezones;
+    }
+}
@@ -0,0 +1,89 @@
+package com.usaccidents.model;
+
+import java.util.Locale;
+
+/**
+ * Attributes of an {@link Accident} that can be loaded from a US Accidents CSV file.
+ *
+ * Each field lists the header names it is known under (Kaggle export and Hive
+ * table spellings) and the column it occupied in the original fixed layout.
+ */
+public enum AccidentField {
+    ID(0, "ID"),
+    SEVERITY(1, "Severity"),
+    START_TIME(2, "Start_Time"),
+    END_TIME(3, "End_Time"),
+    START_LAT(4, "Start_Lat"),
+    START_LNG(5, "Start_Lng"),
+    END_LAT(-1, "End_Lat"),
+    END_LNG(-1, "End_Lng"),
+    DISTANCE(-1, "Distance(mi)", "Distance_mi"),
+    DESCRIPTION(-1, "Description"),
+    STREET(10, "Street"),
+    CITY(11, "City"),
+    COUNTY(-1, "County"),
+    STATE(13, "State"),
+    ZIPCODE(-1, "Zipcode"),
+    TIMEZONE(-1, "Timezone"),
+    TEMPERATURE(17, "Temperature(F)", "Temperature_F"),
+    HUMIDITY(-1, "Humidity(%)", "Humidity_percent"),
+    PRESSURE(-1, "Pressure(in)", "Pressure_in"),
+    VISIBILITY(-1, "Visibility(mi)", "Visibility_mi"),
+    WIND_SPEED(-1, "Wind_Speed(mph)", "Wind_Speed_mph"),
+    WEATHER_CONDITION(25, "Weather_Condition"),
+    TRAFFIC_SIGNAL(-1, "Traffic_Signal"),
+    SUNRISE_SUNSET(-1, "Sunrise_Sunset");
+
+    private final int legacyColumn;
+    private final String[] headerNames;
+
+    AccidentField(int legacyColumn, String... headerNames) {
+        this.legacyColumn = legacyColumn;
+        this.headerNames = new String[headerNames.length];
+        for (int i = 0; i < headerNames.length; i++) {
+            this.headerNames[i] = normalizeHeader(headerNames[i]);
+        }
+    }
+
+    /**
+     * Column index in the original fixed CSV layout, or -1 if it was never read positionally
+     */
+    public int getLegacyColumn() {
+        return legacyColumn;
+    }
+
+    /**
+     * Value of a missing numeric field: NaN for temperature and visibility, where 0 is a
+     * real reading and statistics must skip the missing ones, 0 for the others
+     */
+    public double missingDouble() {
+        return this == TEMPERATURE || this == VISIBILITY ? Double.NaN : 0.0;
+    }
+
+    /**
+     * Check whether a (normalized) header name refers to this field
+     */
+    public boolean matchesHeader(String normalizedHeader) {
+        for (String name : headerNames) {
+            if (name.equals(normalizedHeader)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Normalize a header for matching: lower case, letters and digits only,
+     * so "Temperature(F)" and "Temperature_F" compare equal
+     */
+    public static String normalizeHeader(String header) {
+        StringBuilder normalized = new StringBuilder(header.length());
+        for (int i = 0; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+}
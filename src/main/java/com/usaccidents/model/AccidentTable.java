@@ -0,0 +1,667 @@
+package com.usaccidents.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Column-oriented in-memory store of accidents, an alternative to List&lt;Accident&gt;.
+ *
+ * Each stored field is a column of primitive values: numbers and times in int, long or
+ * double arrays, flags in boolean arrays, and repetitive strings (city, state, weather
+ * condition, ...) as int codes into a per-column {@link StringDictionary}, so empty
+ * strings read back as null. Only the free text fields ID and Description are kept as
+ * String references. Only the fields of the table's projection get a column at all; the
+ * others read as their Accident defaults.
+ *
+ * Columns grow in chunks of {@link #CHUNK_SIZE} rows, so appending never copies the
+ * data already stored. Full scans should loop over a column chunk by chunk (see
+ * {@link #intChunk}, {@link #longChunk}, ...); single rows are read through {@link Row}
+ * views. Appending is not thread-safe; a table that is no longer appended to may be
+ * read by any number of threads.
+ */
+public class AccidentTable {
+    public static final int CHUNK_SHIFT = 16;
+    /**
+     * Rows per column chunk
+     */
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * How a field is stored
+     */
+    public enum ColumnType {
+        INT, LONG, DOUBLE, BOOLEAN, CODE, STRING
+    }
+
+    private final Set<AccidentField> projection;
+    private final Map<AccidentField, Column> columns = new EnumMap<>(AccidentField.class);
+    // Column of each field by ordinal, null if the field is not stored
+    private final Column[] columnsByField = new Column[AccidentField.values().length];
+    private int chunkCount;
+    private int size;
+
+    /**
+     * Create a table storing every field
+     */
+    public AccidentTable() {
+        this(EnumSet.allOf(AccidentField.class));
+    }
+
+    /**
+     * Create a table storing only the given fields
+     */
+    public AccidentTable(Set<AccidentField> projection) {
+        this.projection = Collections.unmodifiableSet(EnumSet.copyOf(projection));
+        for (AccidentField field : this.projection) {
+            Column column = newColumn(columnType(field));
+            columns.put(field, column);
+            columnsByField[field.ordinal()] = column;
+        }
+    }
+
+    /**
+     * Storage type of a field
+     */
+    public static ColumnType columnType(AccidentField field) {
+        switch (field) {
+            case ID:
+            case DESCRIPTION:
+                return ColumnType.STRING;
+            case SEVERITY:
+                return ColumnType.INT;
+            case START_TIME:
+            case END_TIME:
+                return ColumnType.LONG;
+            case TRAFFIC_SIGNAL:
+                return ColumnType.BOOLEAN;
+            case STREET:
+            case CITY:
+            case COUNTY:
+            case STATE:
+            case ZIPCODE:
+            case TIMEZONE:
+            case WEATHER_CONDITION:
+            case SUNRISE_SUNSET:
+                return ColumnType.CODE;
+            default:
+                return ColumnType.DOUBLE;
+        }
+    }
+
+    public Set<AccidentField> getProjection() {
+        return projection;
+    }
+
+    /**
+     * Number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of column chunks; all but the last are full
+     */
+    public int chunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Number of valid rows in a chunk
+     */
+    public int chunkLength(int chunk) {
+        return chunk < chunkCount - 1 ? CHUNK_SIZE : size - (chunkCount - 1) * CHUNK_SIZE;
+    }
+
+    /**
+     * Append an accident as a new row
+     */
+    public void add(Accident accident) {
+        int row = newRow();
+        int chunk = row >>> CHUNK_SHIFT;
+        int index = row & CHUNK_MASK;
+        for (Map.Entry<AccidentField, Column> entry : columns.entrySet()) {
+            entry.getValue().set(chunk, index, entry.getKey(), accident);
+        }
+    }
+
+    /**
+     * Append the rows of a batch. Codes are translated from the batch's dictionaries to the
+     * table's; fields without a batch column keep their defaults
+     */
+    public void addAll(AccidentBatch batch) {
+        int rows = batch.size();
+        int first = addRows(rows);
+
+        copyInts(AccidentField.SEVERITY, batch.getSeverity(), first, rows);
+        copyLongs(AccidentField.START_TIME, batch.getStartEpochSecond(), first, rows);
+        copyLongs(AccidentField.END_TIME, batch.getEndEpochSecond(), first, rows);
+        copyDoubles(AccidentField.START_LAT, batch.getStartLat(), first, rows);
+        copyDoubles(AccidentField.START_LNG, batch.getStartLng(), first, rows);
+        copyDoubles(AccidentField.TEMPERATURE, batch.getTemperature(), first, rows);
+        copyDoubles(AccidentField.VISIBILITY, batch.getVisibility(), first, rows);
+        copyCodes(AccidentField.STATE, batch.getState(), batch.getStateDictionary(), first, rows);
+        copyCodes(AccidentField.CITY, batch.getCity(), batch.getCityDictionary(), first, rows);
+        copyCodes(AccidentField.STREET, batch.getStreet(), batch.getStreetDictionary(), first, rows);
+        copyCodes(AccidentField.COUNTY, batch.getCounty(), batch.getCountyDictionary(), first, rows);
+        copyCodes(AccidentField.WEATHER_CONDITION, batch.getWeatherCondition(),
+                batch.getWeatherConditionDictionary(), first, rows);
+        copyCodes(AccidentField.TIMEZONE, batch.getTimezone(), batch.getTimezoneDictionary(), first, rows);
+    }
+
+    /**
+     * A view of one row
+     */
+    public Row row(int row) {
+        checkRow(row);
+        return new Row(row);
+    }
+
+    /**
+     * Chunk of an INT or CODE column; entries past chunkLength(chunk) are unused
+     */
+    public int[] intChunk(AccidentField field, int chunk) {
+        return ((IntColumn) column(field, ColumnType.INT, ColumnType.CODE)).chunks[chunk];
+    }
+
+    /**
+     * Chunk of a LONG column; entries past chunkLength(chunk) are unused
+     */
+    public long[] longChunk(AccidentField field, int chunk) {
+        return ((LongColumn) column(field, ColumnType.LONG)).chunks[chunk];
+    }
+
+    /**
+     * Chunk of a DOUBLE column; entries past chunkLength(chunk) are unused
+     */
+    public double[] doubleChunk(AccidentField field, int chunk) {
+        return ((DoubleColumn) column(field, ColumnType.DOUBLE)).chunks[chunk];
+    }
+
+    /**
+     * Chunk of a BOOLEAN column; entries past chunkLength(chunk) are unused
+     */
+    public boolean[] booleanChunk(AccidentField field, int chunk) {
+        return ((BooleanColumn) column(field, ColumnType.BOOLEAN)).chunks[chunk];
+    }
+
+    /**
+     * Chunk of a STRING column; entries past chunkLength(chunk) are unused
+     */
+    public String[] stringChunk(AccidentField field, int chunk) {
+        return ((StringColumn) column(field, ColumnType.STRING)).chunks[chunk];
+    }
+
+    /**
+     * Dictionary of a CODE column
+     */
+    public StringDictionary dictionary(AccidentField field) {
+        return ((CodeColumn) column(field, ColumnType.CODE)).dictionary;
+    }
+
+    public int getInt(AccidentField field, int row) {
+        IntColumn column = (IntColumn) columnsByField[field.ordinal()];
+        return column == null ? 0 : column.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public long getLong(AccidentField field, int row) {
+        LongColumn column = (LongColumn) columnsByField[field.ordinal()];
+        return column == null ? Accident.NO_TIME : column.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public double getDouble(AccidentField field, int row) {
+        DoubleColumn column = (DoubleColumn) columnsByField[field.ordinal()];
+        return column == null ? field.missingDouble() : column.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public boolean getBoolean(AccidentField field, int row) {
+        BooleanColumn column = (BooleanColumn) columnsByField[field.ordinal()];
+        return column != null && column.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    /**
+     * Value of a STRING or CODE field, or null if missing
+     */
+    public String getString(AccidentField field, int row) {
+        Column column = columnsByField[field.ordinal()];
+        if (column instanceof CodeColumn) {
+            CodeColumn codes = (CodeColumn) column;
+            return codes.dictionary.decode(codes.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK]);
+        }
+        return column == null ? null : ((StringColumn) column).chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    private Column column(AccidentField field, ColumnType... types) {
+        Column column = columnsByField[field.ordinal()];
+        if (column == null) {
+            throw new IllegalArgumentException("Field is not stored in this table: " + field);
+        }
+        ColumnType type = columnType(field);
+        if (!Arrays.asList(types).contains(type)) {
+            throw new IllegalArgumentException(field + " is a " + type + " column");
+        }
+        return column;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    private int newRow() {
+        if (size == chunkCount * CHUNK_SIZE) {
+            for (Column column : columns.values()) {
+                column.addChunk(chunkCount);
+            }
+            chunkCount++;
+        }
+        return size++;
+    }
+
+    /**
+     * Append rows with every attribute at its default, to be filled with the copy methods
+     *
+     * @return the index of the first new row
+     */
+    public int addRows(int rows) {
+        int first = size;
+        for (int i = 0; i < rows; i++) {
+            newRow();
+        }
+        return first;
+    }
+
+    /**
+     * Copy values[0, rows) into rows [first, first + rows) of an INT column; does nothing
+     * if the field is not stored. The copy methods are meant for bulk loading.
+     */
+    public void copyInts(AccidentField field, int[] values, int first, int rows) {
+        IntColumn column = (IntColumn) columnsByField[field.ordinal()];
+        if (column != null) {
+            for (int i = 0; i < rows; i++) {
+                int row = first + i;
+                column.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = values[i];
+            }
+        }
+    }
+
+    public void copyLongs(AccidentField field, long[] values, int first, int rows) {
+        LongColumn column = (LongColumn) columnsByField[field.ordinal()];
+        if (column != null) {
+            for (int i = 0; i < rows; i++) {
+                int row = first + i;
+                column.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = values[i];
+            }
+        }
+    }
+
+    public void copyDoubles(AccidentField field, double[] values, int first, int rows) {
+        DoubleColumn column = (DoubleColumn) columnsByField[field.ordinal()];
+        if (column != null) {
+            for (int i = 0; i < rows; i++) {
+                int row = first + i;
+                column.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = values[i];
+            }
+        }
+    }
+
+    public void copyBooleans(AccidentField field, boolean[] values, int first, int rows) {
+        BooleanColumn column = (BooleanColumn) columnsByField[field.ordinal()];
+        if (column != null) {
+            for (int i = 0; i < rows; i++) {
+                int row = first + i;
+                column.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = values[i];
+            }
+        }
+    }
+
+    public void copyStrings(AccidentField field, String[] values, int first, int rows) {
+        StringColumn column = (StringColumn) columnsByField[field.ordinal()];
+        if (column != null) {
+            for (int i = 0; i < rows; i++) {
+                int row = first + i;
+                column.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = values[i];
+            }
+        }
+    }
+
+    /**
+     * Copy codes of the source dictionary into a CODE column, translating them to the
+     * table's dictionary
+     */
+    public void copyCodes(AccidentField field, int[] codes, StringDictionary source, int first, int rows) {
+        CodeColumn column = (CodeColumn) columnsByField[field.ordinal()];
+        if (column == null) {
+            return;
+        }
+        // Translate each distinct batch code once
+        int[] translated = new int[source.size()];
+        Arrays.fill(translated, Integer.MIN_VALUE);
+        for (int i = 0; i < rows; i++) {
+            int code = codes[i];
+            if (code != StringDictionary.NULL_CODE) {
+                if (translated[code] == Integer.MIN_VALUE) {
+                    translated[code] = column.dictionary.encode(source.decode(code));
+                }
+                code = translated[code];
+            }
+            int row = first + i;
+            column.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = code;
+        }
+    }
+
+    private static Column newColumn(ColumnType type) {
+        switch (type) {
+            case INT: return new IntColumn();
+            case LONG: return new LongColumn();
+            case DOUBLE: return new DoubleColumn();
+            case BOOLEAN: return new BooleanColumn();
+            case CODE: return new CodeColumn();
+            case STRING: return new StringColumn();
+            default: throw new IllegalArgumentException("Unknown column type: " + type);
+        }
+    }
+
+    /**
+     * Storage of one field, as an array of fixed-size chunks
+     */
+    private abstract static class Column {
+        abstract void addChunk(int chunk);
+
+        abstract void set(int chunk, int index, AccidentField field, Accident accident);
+
+        static <T> T[] ensureCapacity(T[] chunks, int chunk) {
+            return chunk < chunks.length ? chunks : Arrays.copyOf(chunks, Math.max(4, chunks.length * 2));
+        }
+    }
+
+    private static class IntColumn extends Column {
+        int[][] chunks = new int[0][];
+
+        @Override
+        void addChunk(int chunk) {
+            chunks = ensureCapacity(chunks, chunk);
+            chunks[chunk] = new int[CHUNK_SIZE];
+        }
+
+        @Override
+        void set(int chunk, int index, AccidentField field, Accident accident) {
+            chunks[chunk][index] = accident.getSeverity();
+        }
+    }
+
+    private static final class CodeColumn extends IntColumn {
+        final StringDictionary dictionary = new StringDictionary();
+
+        @Override
+        void addChunk(int chunk) {
+            super.addChunk(chunk);
+            Arrays.fill(chunks[chunk], StringDictionary.NULL_CODE);
+        }
+
+        @Override
+        void set(int chunk, int index, AccidentField field, Accident accident) {
+            String value;
+            switch (field) {
+                case STREET: value = accident.getStreet(); break;
+                case CITY: value = accident.getCity(); break;
+                case COUNTY: value = accident.getCounty(); break;
+                case STATE: value = accident.getState(); break;
+                case ZIPCODE: value = accident.getZipcode(); break;
+                case TIMEZONE: value = accident.getTimezone(); break;
+                case WEATHER_CONDITION: value = accident.getWeatherCondition(); break;
+                case SUNRISE_SUNSET: value = accident.getSunriseSunset(); break;
+                default: throw new IllegalArgumentException("Not a coded field: " + field);
+            }
+            chunks[chunk][index] = dictionary.encode(value);
+        }
+    }
+
+    private static final class LongColumn extends Column {
+        long[][] chunks = new long[0][];
+
+        @Override
+        void addChunk(int chunk) {
+            chunks = ensureCapacity(chunks, chunk);
+            chunks[chunk] = new long[CHUNK_SIZE];
+            Arrays.fill(chunks[chunk], Accident.NO_TIME);
+        }
+
+        @Override
+        void set(int chunk, int index, AccidentField field, Accident accident) {
+            chunks[chunk][index] = field == AccidentField.START_TIME
+                    ? accident.getStartEpochSecond() : accident.getEndEpochSecond();
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        double[][] chunks = new double[0][];
+
+        @Override
+        void addChunk(int chunk) {
+            chunks = ensureCapacity(chunks, chunk);
+            chunks[chunk] = new double[CHUNK_SIZE];
+        }
+
+        @Override
+        void set(int chunk, int index, AccidentField field, Accident accident) {
+            double value;
+            switch (field) {
+                case START_LAT: value = accident.getStartLat(); break;
+                case START_LNG: value = accident.getStartLng(); break;
+                case END_LAT: value = accident.getEndLat(); break;
+                case END_LNG: value = accident.getEndLng(); break;
+                case DISTANCE: value = accident.getDistance(); break;
+                case TEMPERATURE: value = accident.getTemperature(); break;
+                case HUMIDITY: value = accident.getHumidity(); break;
+                case PRESSURE: value = accident.getPressure(); break;
+                case VISIBILITY: value = accident.getVisibility(); break;
+                case WIND_SPEED: value = accident.getWindSpeed(); break;
+                default: throw new IllegalArgumentException("Not a numeric field: " + field);
+            }
+            chunks[chunk][index] = value;
+        }
+    }
+
+    private static final class BooleanColumn extends Column {
+        boolean[][] chunks = new boolean[0][];
+
+        @Override
+        void addChunk(int chunk) {
+            chunks = ensureCapacity(chunks, chunk);
+            chunks[chunk] = new boolean[CHUNK_SIZE];
+        }
+
+        @Override
+        void set(int chunk, int index, AccidentField field, Accident accident) {
+            chunks[chunk][index] = accident.isTrafficSignal();
+        }
+    }
+
+    private static final class StringColumn extends Column {
+        String[][] chunks = new String[0][];
+
+        @Override
+        void addChunk(int chunk) {
+            chunks = ensureCapacity(chunks, chunk);
+            chunks[chunk] = new String[CHUNK_SIZE];
+        }
+
+        @Override
+        void set(int chunk, int index, AccidentField field, Accident accident) {
+            chunks[chunk][index] = field == AccidentField.ID ? accident.getId() : accident.getDescription();
+        }
+    }
+
+    /**
+     * Read-only view of one row, with the getters of {@link Accident}. Creating a view
+     * copies nothing; values are read from the columns on each call.
+     */
+    public final class Row {
+        private final int row;
+
+        private Row(int row) {
+            this.row = row;
+        }
+
+        public int getIndex() {
+            return row;
+        }
+
+        public String getId() {
+            return getString(AccidentField.ID, row);
+        }
+
+        public int getSeverity() {
+            return getInt(AccidentField.SEVERITY, row);
+        }
+
+        public long getStartEpochSecond() {
+            return getLong(AccidentField.START_TIME, row);
+        }
+
+        public long getEndEpochSecond() {
+            return getLong(AccidentField.END_TIME, row);
+        }
+
+        public LocalDateTime getStartTime() {
+            return toDateTime(getStartEpochSecond());
+        }
+
+        public LocalDateTime getEndTime() {
+            return toDateTime(getEndEpochSecond());
+        }
+
+        /**
+         * Hour of day (0-23) of the start time, or -1 if there is none
+         */
+        public int getStartHour() {
+            long start = getStartEpochSecond();
+            return start == Accident.NO_TIME ? -1 : Accident.hourOfDay(start);
+        }
+
+        public double getStartLat() {
+            return getDouble(AccidentField.START_LAT, row);
+        }
+
+        public double getStartLng() {
+            return getDouble(AccidentField.START_LNG, row);
+        }
+
+        public double getEndLat() {
+            return getDouble(AccidentField.END_LAT, row);
+        }
+
+        public double getEndLng() {
+            return getDouble(AccidentField.END_LNG, row);
+        }
+
+        public double getDistance() {
+            return getDouble(AccidentField.DISTANCE, row);
+        }
+
+        public String getDescription() {
+            return getString(AccidentField.DESCRIPTION, row);
+        }
+
+        public String getStreet() {
+            return getString(AccidentField.STREET, row);
+        }
+
+        public String getCity() {
+            return getString(AccidentField.CITY, row);
+        }
+
+        public String getCounty() {
+            return getString(AccidentField.COUNTY, row);
+        }
+
+        public String getState() {
+            return getString(AccidentField.STATE, row);
+        }
+
+        public String getZipcode() {
+            return getString(AccidentField.ZIPCODE, row);
+        }
+
+        public String getTimezone() {
+            return getString(AccidentField.TIMEZONE, row);
+        }
+
+        public String getWeatherCondition() {
+            return getString(AccidentField.WEATHER_CONDITION, row);
+        }
+
+        public double getTemperature() {
+            return getDouble(AccidentField.TEMPERATURE, row);
+        }
+
+        public double getHumidity() {
+            return getDouble(AccidentField.HUMIDITY, row);
+        }
+
+        public double getPressure() {
+            return getDouble(AccidentField.PRESSURE, row);
+        }
+
+        public double getVisibility() {
+            return getDouble(AccidentField.VISIBILITY, row);
+        }
+
+        public double getWindSpeed() {
+            return getDouble(AccidentField.WIND_SPEED, row);
+        }
+
+        public boolean isTrafficSignal() {
+            return getBoolean(AccidentField.TRAFFIC_SIGNAL, row);
+        }
+
+        public String getSunriseSunset() {
+            return getString(AccidentField.SUNRISE_SUNSET, row);
+        }
+
+        /**
+         * Copy the row into a new Accident
+         */
+        public Accident toAccident() {
+            Accident accident = new Accident();
+            accident.setId(getId());
+            accident.setSeverity(getSeverity());
+            accident.setStartEpochSecond(getStartEpochSecond());
+            accident.setEndEpochSecond(getEndEpochSecond());
+            accident.setStartLat(getStartLat());
+            accident.setStartLng(getStartLng());
+            accident.setEndLat(getEndLat());
+            accident.setEndLng(getEndLng());
+            accident.setDistance(getDistance());
+            accident.setDescription(getDescription());
+            accident.setStreet(getStreet());
+            accident.setCity(getCity());
+            accident.setCounty(getCounty());
+            accident.setState(getState());
+            accident.setZipcode(getZipcode());
+            accident.setTimezone(getTimezone());
+            accident.setWeatherCondition(getWeatherCondition());
+            accident.setTemperature(getTemperature());
+            accident.setHumidity(getHumidity());
+            accident.setPressure(getPressure());
+            accident.setVisibility(getVisibility());
+            accident.setWindSpeed(getWindSpeed());
+            accident.setTrafficSignal(isTrafficSignal());
+            accident.setSunriseSunset(getSunriseSunset());
+            return accident;
+        }
+
+        private LocalDateTime toDateTime(long epochSecond) {
+            return epochSecond == Accident.NO_TIME ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.usaccidents.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Store of accidents outside the Java heap, for keeping a parsed data set around without
+ * the garbage collector having to trace it.
+ *
+ * Each accident is encoded as a fixed-width record of {@link #RECORD_SIZE} bytes in
+ * direct or memory-mapped ByteBuffers. Numbers and times are stored as is; state, city,
+ * timezone and weather condition as codes into {@link AccidentDictionaries} (so, like in
+ * {@link AccidentTable}, empty values read back as null); the other strings as
+ * references into a side heap of length-prefixed UTF-8 bytes, which is also off-heap.
+ *
+ * Records are read through a {@link Record} flyweight that has the getters of
+ * Accident and can be moved from record to record, so a scan creates no objects
+ * other than the Strings it asks for.
+ *
+ * Appending is not thread-safe. A store that is no longer appended to may be read by
+ * any number of threads, each with its own flyweight.
+ */
+public class OffHeapAccidentStore implements Closeable {
+    /**
+     * Records per buffer segment
+     */
+    public static final int SEGMENT_RECORDS = 1 << 16;
+    private static final int SEGMENT_SHIFT = 16;
+    private static final int SEGMENT_MASK = SEGMENT_RECORDS - 1;
+    private static final int STRING_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final long NO_STRING = -1L;
+
+    // Record layout: byte offsets of the fields
+    private static final int SEVERITY = 0;
+    private static final int TRAFFIC_SIGNAL = 4;
+    private static final int START_EPOCH_SECOND = 8;
+    private static final int END_EPOCH_SECOND = 16;
+    private static final int START_LAT = 24;
+    private static final int START_LNG = 32;
+    private static final int END_LAT = 40;
+    private static final int END_LNG = 48;
+    private static final int DISTANCE = 56;
+    private static final int TEMPERATURE = 64;
+    private static final int HUMIDITY = 72;
+    private static final int PRESSURE = 80;
+    private static final int VISIBILITY = 88;
+    private static final int WIND_SPEED = 96;
+    private static final int CITY = 104;
+    private static final int STATE = 108;
+    private static final int TIMEZONE = 112;
+    private static final int WEATHER_CONDITION = 116;
+    private static final int ID = 120;
+    private static final int DESCRIPTION = 128;
+    private static final int STREET = 136;
+    private static final int COUNTY = 144;
+    private static final int ZIPCODE = 152;
+    private static final int SUNRISE_SUNSET = 160;
+    /**
+     * Bytes per encoded accident
+     */
+    public static final int RECORD_SIZE = 168;
+
+    private final SegmentAllocator allocator;
+    private final AccidentDictionaries dictionaries;
+    private final List<ByteBuffer> recordSegments = new ArrayList<>();
+    private final List<ByteBuffer> stringSegments = new ArrayList<>();
+    private int size;
+
+    /**
+     * Where segments come from: direct buffers or regions of mapped files
+     */
+    private interface SegmentAllocator extends Closeable {
+        ByteBuffer allocateRecords(int size) throws IOException;
+
+        ByteBuffer allocateStrings(int size) throws IOException;
+    }
+
+    /**
+     * Create a store in direct buffers, coding strings with its own dictionaries
+     */
+    public OffHeapAccidentStore() {
+        this(new AccidentDictionaries());
+    }
+
+    /**
+     * Create a store in direct buffers, coding strings with the given dictionaries, e.g.
+     * those of the CSVParser filling it
+     */
+    public OffHeapAccidentStore(AccidentDictionaries dictionaries) {
+        this(new DirectAllocator(), dictionaries);
+    }
+
+    private OffHeapAccidentStore(SegmentAllocator allocator, AccidentDictionaries dictionaries) {
+        this.allocator = allocator;
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Create a store in memory-mapped files in the given directory, so the operating
+     * system can page records out instead of the store taking up physical memory.
+     * Existing store files in the directory are overwritten.
+     */
+    public static OffHeapAccidentStore mapped(Path directory, AccidentDictionaries dictionaries) throws IOException {
+        Files.createDirectories(directory);
+        return new OffHeapAccidentStore(new MappedAllocator(directory.resolve("records.bin"),
+                directory.resolve("strings.bin")), dictionaries);
+    }
+
+    /**
+     * Number of stored accidents
+     */
+    public int size() {
+        return size;
+    }
+
+    public AccidentDictionaries getDictionaries() {
+        return dictionaries;
+    }
+
+    /**
+     * Append an accident
+     *
+     * @return the index of its record
+     */
+    public int add(Accident accident) {
+        int index = size;
+        int segment = index >>> SEGMENT_SHIFT;
+        if (segment == recordSegments.size()) {
+            recordSegments.add(allocate(true, SEGMENT_RECORDS * RECORD_SIZE));
+        }
+        ByteBuffer records = recordSegments.get(segment);
+        int base = (index & SEGMENT_MASK) * RECORD_SIZE;
+
+        records.putInt(base + SEVERITY, accident.getSeverity());
+        records.put(base + TRAFFIC_SIGNAL, (byte) (accident.isTrafficSignal() ? 1 : 0));
+        records.putLong(base + START_EPOCH_SECOND, accident.getStartEpochSecond());
+        records.putLong(base + END_EPOCH_SECOND, accident.getEndEpochSecond());
+        records.putDouble(base + START_LAT, accident.getStartLat());
+        records.putDouble(base + START_LNG, accident.getStartLng());
+        records.putDouble(base + END_LAT, accident.getEndLat());
+        records.putDouble(base + END_LNG, accident.getEndLng());
+        records.putDouble(base + DISTANCE, accident.getDistance());
+        records.putDouble(base + TEMPERATURE, accident.getTemperature());
+        records.putDouble(base + HUMIDITY, accident.getHumidity());
+        records.putDouble(base + PRESSURE, accident.getPressure());
+        records.putDouble(base + VISIBILITY, accident.getVisibility());
+        records.putDouble(base + WIND_SPEED, accident.getWindSpeed());
+        records.putInt(base + CITY, dictionaries.getCities().encode(accident.getCity()));
+        records.putInt(base + STATE, dictionaries.getStates().encode(accident.getState()));
+        records.putInt(base + TIMEZONE, dictionaries.getTimezones().encode(accident.getTimezone()));
+        records.putInt(base + WEATHER_CONDITION,
+                dictionaries.getWeatherConditions().encode(accident.getWeatherCondition()));
+        records.putLong(base + ID, putString(accident.getId()));
+        records.putLong(base + DESCRIPTION, putString(accident.getDescription()));
+        records.putLong(base + STREET, putString(accident.getStreet()));
+        records.putLong(base + COUNTY, putString(accident.getCounty()));
+        records.putLong(base + ZIPCODE, putString(accident.getZipcode()));
+        records.putLong(base + SUNRISE_SUNSET, putString(accident.getSunriseSunset()));
+
+        size = index + 1;
+        return index;
+    }
+
+    /**
+     * Create a flyweight, to be moved to a record before it is read
+     */
+    public Record record() {
+        return new Record();
+    }
+
+    /**
+     * Copy a string into the side heap
+     *
+     * @return its reference: segment in the high and position in the low 32 bits
+     */
+    private long putString(String value) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Integer.BYTES + bytes.length;
+        ByteBuffer segment = stringSegments.isEmpty() ? null : stringSegments.get(stringSegments.size() - 1);
+        if (segment == null || segment.remaining() < length) {
+            // Values larger than a segment get a segment of their own
+            segment = allocate(false, Math.max(STRING_SEGMENT_SIZE, length));
+            stringSegments.add(segment);
+        }
+        int position = segment.position();
+        segment.putInt(bytes.length);
+        segment.put(bytes);
+        return ((long) (stringSegments.size() - 1) << 32) | position;
+    }
+
+    private String getString(long reference) {
+        if (reference == NO_STRING) {
+            return null;
+        }
+        ByteBuffer segment = stringSegments.get((int) (reference >>> 32));
+        int position = (int) reference;
+        byte[] bytes = new byte[segment.getInt(position)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = segment.get(position + Integer.BYTES + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer allocate(boolean records, int bytes) {
+        try {
+            ByteBuffer buffer = records ? allocator.allocateRecords(bytes) : allocator.allocateStrings(bytes);
+            return buffer.order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new RuntimeException("Error allocating accident store segment", e);
+        }
+    }
+
+    /**
+     * Release the store. Direct buffers are freed once they are no longer reachable;
+     * mapped files are closed but left on disk.
+     */
+    @Override
+    public void close() throws IOException {
+        recordSegments.clear();
+        stringSegments.clear();
+        size = 0;
+        allocator.close();
+    }
+
+    /**
+     * A movable view of one stored accident
+     */
+    public final class Record {
+        private ByteBuffer records;
+        private int base;
+        private int index = -1;
+
+        /**
+         * Point this flyweight at the record with the given index
+         */
+        public Record moveTo(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Record " + index + " of " + size);
+            }
+            this.records = recordSegments.get(index >>> SEGMENT_SHIFT);
+            this.base = (index & SEGMENT_MASK) * RECORD_SIZE;
+            this.index = index;
+            return this;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public String getId() {
+            return getString(records.getLong(base + ID));
+        }
+
+        public int getSeverity() {
+            return records.getInt(base + SEVERITY);
+        }
+
+        public LocalDateTime getStartTime() {
+            return toTime(getStartEpochSecond());
+        }
+
+        public LocalDateTime getEndTime() {
+            return toTime(getEndEpochSecond());
+        }
+
+        public long getStartEpochSecond() {
+            return records.getLong(base + START_EPOCH_SECOND);
+        }
+
+        public long getEndEpochSecond() {
+            return records.getLong(base + END_EPOCH_SECOND);
+        }
+
+        /**
+         * Hour of day (0-23) of the start time, or -1 if there is none
+         */
+        public int getStartHour() {
+            long start = getStartEpochSecond();
+            return start == Accident.NO_TIME ? -1 : Accident.hourOfDay(start);
+        }
+
+        public double getStartLat() {
+            return records.getDouble(base + START_LAT);
+        }
+
+        public double getStartLng() {
+            return records.getDouble(base + START_LNG);
+        }
+
+        public double getEndLat() {
+            return records.getDouble(base + END_LAT);
+        }
+
+        public double getEndLng() {
+            return records.getDouble(base + END_LNG);
+        }
+
+        public double getDistance() {
+            return records.getDouble(base + DISTANCE);
+        }
+
+        public String getDescription() {
+            return getString(records.getLong(base + DESCRIPTION));
+        }
+
+        public String getStreet() {
+            return getString(records.getLong(base + STREET));
+        }
+
+        public String getCity() {
+            return dictionaries.getCities().decode(records.getInt(base + CITY));
+        }
+
+        public String getCounty() {
+            return getString(records.getLong(base + COUNTY));
+        }
+
+        public String getState() {
+            return dictionaries.getStates().decode(records.getInt(base + STATE));
+        }
+
+        public String getZipcode() {
+            return getString(records.getLong(base + ZIPCODE));
+        }
+
+        public String getTimezone() {
+            return dictionaries.getTimezones().decode(records.getInt(base + TIMEZONE));
+        }
+
+        public String getWeatherCondition() {
+            return dictionaries.getWeatherConditions().decode(records.getInt(base + WEATHER_CONDITION));
+        }
+
+        public double getTemperature() {
+            return records.getDouble(base + TEMPERATURE);
+        }
+
+        public double getHumidity() {
+            return records.getDouble(base + HUMIDITY);
+        }
+
+        public double getPressure() {
+            return records.getDouble(base + PRESSURE);
+        }
+
+        public double getVisibility() {
+            return records.getDouble(base + VISIBILITY);
+        }
+
+        public double getWindSpeed() {
+            return records.getDouble(base + WIND_SPEED);
+        }
+
+        public boolean isTrafficSignal() {
+            return records.get(base + TRAFFIC_SIGNAL) != 0;
+        }
+
+        public String getSunriseSunset() {
+            return getString(records.getLong(base + SUNRISE_SUNSET));
+        }
+
+        /**
+         * Copy the record into a new Accident on the heap
+         */
+        public Accident toAccident() {
+            Accident accident = new Accident();
+            accident.setId(getId());
+            accident.setSeverity(getSeverity());
+            accident.setStartEpochSecond(getStartEpochSecond());
+            accident.setEndEpochSecond(getEndEpochSecond());
+            accident.setStartLat(getStartLat());
+            accident.setStartLng(getStartLng());
+            accident.setEndLat(getEndLat());
+            accident.setEndLng(getEndLng());
+            accident.setDistance(getDistance());
+            accident.setDescription(getDescription());
+            accident.setStreet(getStreet());
+            accident.setCity(getCity());
+            accident.setCounty(getCounty());
+            accident.setState(getState());
+            accident.setZipcode(getZipcode());
+            accident.setTimezone(getTimezone());
+            accident.setWeatherCondition(getWeatherCondition());
+            accident.setTemperature(getTemperature());
+            accident.setHumidity(getHumidity());
+            accident.setPressure(getPressure());
+            accident.setVisibility(getVisibility());
+            accident.setWindSpeed(getWindSpeed());
+            accident.setTrafficSignal(isTrafficSignal());
+            accident.setSunriseSunset(getSunriseSunset());
+            return accident;
+        }
+
+        private LocalDateTime toTime(long epochSecond) {
+            return epochSecond == Accident.NO_TIME ? null
+                    : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+        }
+    }
+
+    private static final class DirectAllocator implements SegmentAllocator {
+        @Override
+        public ByteBuffer allocateRecords(int size) {
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        @Override
+        public ByteBuffer allocateStrings(int size) {
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Maps each new segment at the end of its file, growing the file
+     */
+    private static final class MappedAllocator implements SegmentAllocator {
+        private final FileChannel records;
+        private final FileChannel strings;
+        private long recordsEnd;
+        private long stringsEnd;
+
+        private MappedAllocator(Path recordsFile, Path stringsFile) throws IOException {
+            this.records = open(recordsFile);
+            try {
+                this.strings = open(stringsFile);
+            } catch (IOException e) {
+                records.close();
+                throw e;
+            }
+        }
+
+        private static FileChannel open(Path file) throws IOException {
+            return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        @Override
+        public ByteBuffer allocateRecords(int size) throws IOException {
+            ByteBuffer segment = records.map(FileChannel.MapMode.READ_WRITE, recordsEnd, size);
+            recordsEnd += size;
+            return segment;
+        }
+
+        @Override
+        public ByteBuffer allocateStrings(int size) throws IOException {
+            ByteBuffer segment = strings.map(FileChannel.MapMode.READ_WRITE, stringsEnd, size);
+            stringsEnd += size;
+            return segment;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                records.close();
+            } finally {
+                strings.close();
+            }
+        }
+    }
+}
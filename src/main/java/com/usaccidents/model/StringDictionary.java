@@ -0,0 +1,194 @@
+package com.usaccidents.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Assigns dense int codes to distinct string values in order of first appearance.
+ *
+ * Values are looked up by their UTF-8 bytes, so a parser can code a field straight from
+ * its input buffer and only creates a String the first time a value is seen. Missing and
+ * empty values are encoded as {@link #NULL_CODE}.
+ *
+ * Safe for concurrent use. Lookups of known values and decoding are lock-free: entries
+ * are immutable and published into the slots of an open-addressing table after their
+ * value is decodable; the table is replaced as a whole when it grows. Adding a new value
+ * takes a lock.
+ */
+public class StringDictionary {
+    /**
+     * Code of a missing or empty value
+     */
+    public static final int NULL_CODE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * An immutable key → code mapping
+     */
+    private static final class Entry {
+        private final byte[] key;
+        private final int hash;
+        private final int code;
+
+        private Entry(byte[] key, int hash, int code) {
+            this.key = key;
+            this.hash = hash;
+            this.code = code;
+        }
+    }
+
+    // Slots are written at most once; a reader that finds no entry retries under the lock
+    private volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<>(INITIAL_CAPACITY * 2);
+    private volatile String[] values = new String[INITIAL_CAPACITY];
+    // Written after the value it counts, so a reader that sees the size also sees the value
+    private volatile int size;
+
+    /**
+     * Code of a value, assigning the next free code if it has not been seen before
+     */
+    public int encode(String value) {
+        if (value == null || value.isEmpty()) {
+            return NULL_CODE;
+        }
+        byte[] key = value.getBytes(StandardCharsets.UTF_8);
+        return encode(ByteBuffer.wrap(key), 0, key.length, value);
+    }
+
+    /**
+     * Code of the UTF-8 value in buffer[start, end), assigning the next free code if it
+     * has not been seen before
+     */
+    public int encode(ByteBuffer buffer, int start, int end) {
+        return encode(buffer, start, end, null);
+    }
+
+    private int encode(ByteBuffer buffer, int start, int end, String value) {
+        if (start == end) {
+            return NULL_CODE;
+        }
+        int hash = hash(buffer, start, end);
+        Entry entry = find(table, buffer, start, end, hash);
+        if (entry != null) {
+            return entry.code;
+        }
+        return add(buffer, start, end, hash, value);
+    }
+
+    /**
+     * Value of a code, or null for NULL_CODE
+     */
+    public String decode(int code) {
+        return code == NULL_CODE ? null : values[code];
+    }
+
+    /**
+     * Number of distinct values; codes range over [0, size)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forget every value, so that codes are assigned from 0 again; the capacity is kept.
+     * Unlike the other methods this must not run while the dictionary is in use on another
+     * thread, so it suits a dictionary that codes the rows of one batch at a time.
+     */
+    public synchronized void clear() {
+        AtomicReferenceArray<Entry> current = table;
+        for (int slot = 0; slot < current.length(); slot++) {
+            current.set(slot, null);
+        }
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    private synchronized int add(ByteBuffer buffer, int start, int end, int hash, String value) {
+        AtomicReferenceArray<Entry> current = table;
+        Entry existing = find(current, buffer, start, end, hash);
+        if (existing != null) {
+            return existing.code;
+        }
+
+        int code = size;
+        byte[] key = new byte[end - start];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = buffer.get(start + i);
+        }
+        if (value == null) {
+            value = new String(key, StandardCharsets.UTF_8);
+        }
+
+        String[] currentValues = values;
+        if (code == currentValues.length) {
+            currentValues = Arrays.copyOf(currentValues, currentValues.length * 2);
+            currentValues[code] = value;
+            values = currentValues;
+        } else {
+            currentValues[code] = value;
+        }
+
+        size = code + 1;
+
+        // Keep the table at most half full
+        Entry added = new Entry(key, hash, code);
+        if (size * 2 > current.length()) {
+            AtomicReferenceArray<Entry> grown = new AtomicReferenceArray<>(current.length() * 2);
+            for (int slot = 0; slot < current.length(); slot++) {
+                Entry entry = current.get(slot);
+                if (entry != null) {
+                    insert(grown, entry);
+                }
+            }
+            insert(grown, added);
+            table = grown;
+        } else {
+            insert(current, added);
+        }
+        return code;
+    }
+
+    private static Entry find(AtomicReferenceArray<Entry> table, ByteBuffer buffer, int start, int end, int hash) {
+        int mask = table.length() - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            Entry entry = table.get(slot);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.hash == hash && matches(entry.key, buffer, start, end)) {
+                return entry;
+            }
+        }
+    }
+
+    private static void insert(AtomicReferenceArray<Entry> table, Entry entry) {
+        int mask = table.length() - 1;
+        int slot = entry.hash & mask;
+        while (table.get(slot) != null) {
+            slot = (slot + 1) & mask;
+        }
+        table.set(slot, entry);
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int end) {
+        int hash = 0x811c9dc5;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ buffer.get(i)) * 0x01000193;
+        }
+        // Spread the high bits, since slots are taken from the low ones
+        return hash ^ (hash >>> 16);
+    }
+}
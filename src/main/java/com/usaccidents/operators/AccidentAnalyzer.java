@@ -1,69 +1,706 @@
 package com.usaccidents.operators;
 
+import com.usaccidents.io.CSVParser;
 import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+import com.usaccidents.model.AccidentField;
+import com.usaccidents.model.AccidentTable;
+import com.usaccidents.model.StringDictionary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
-public class AccidentAnalyzer {
+/**
+ * Counts accidents by state, severity, weather condition, city and hour of day, and by
+ * any further grouping sets of {@link CubeDimension}s it is configured with.
+ *
+ * All these breakdowns are grouping sets of one {@link AccidentCube}, aggregated in a
+ * single pass per accident or batch into primitive counters, so a new breakdown such as
+ * state × severity × hour is a configuration change. Results are converted to the usual
+ * maps and entry lists only when getResults is called, selecting top entries with a
+ * bounded heap ({@link TopK}). Streets, with far more distinct values than memory should
+ * grow with, are counted approximately in a fixed-size {@link SpaceSavingSketch}.
+ * Distinct cities per state, streets per county and state, and accident IDs per source
+ * file are estimated with one {@link HyperLogLog} per group, registered by result key in
+ * {@link DistinctCounts}. Batches carry no IDs, so only records and tables count them.
+ * The p50, p90 and p99 of accident duration, temperature and visibility per state and per
+ * severity come from one {@link KllSketch} per group in {@link GroupedQuantiles}; which
+ * measures and groupings are tracked is chosen at construction. Start coordinates are
+ * counted per geohash cell at several precisions in {@link GeoHotspots}, which reports
+ * the busiest cells with their severity mix.
+ *
+ * An analyzer is not thread-safe. To count in parallel, give each thread its own
+ * analyzer as a partial aggregate and combine the partials at the end with
+ * {@link #merge}, e.g. as the worker factory and combiner of the parallel CSVParser
+ * methods: {@code parser.parseCSVFileParallel(file, AccidentAnalyzer::new, AccidentAnalyzer::merge)}.
+ * For many producers sharing one live aggregate, use {@link ConcurrentAccidentAnalyzer}.
+ *
+ * An analyzer's configuration and every count and sketch can be stored with
+ * {@link #writeTo} and {@link #readFrom}, so a later run can continue from it with new
+ * input; see {@link AnalyzerCheckpoint}.
+ */
+public class AccidentAnalyzer implements Consumer<Accident>, CSVParser.SourceAware {
     private static final Logger logger = LoggerFactory.getLogger(AccidentAnalyzer.class);
+    /**
+     * Prefix of the result keys of configured breakdowns
+     */
+    public static final String BREAKDOWN_RESULT_PREFIX = "breakdown";
+    private static final int MAGIC = 0x55534141; // "USAA"
+    private static final int FORMAT_VERSION = 2;
+    // Grouping sets of the built-in results
+    private static final Set<CubeDimension> BY_STATE = EnumSet.of(CubeDimension.STATE);
+    private static final Set<CubeDimension> BY_SEVERITY = EnumSet.of(CubeDimension.SEVERITY);
+    private static final Set<CubeDimension> BY_WEATHER_CONDITION = EnumSet.of(CubeDimension.WEATHER_CONDITION);
+    private static final Set<CubeDimension> BY_CITY = EnumSet.of(CubeDimension.CITY);
+    private static final Set<CubeDimension> BY_HOUR = EnumSet.of(CubeDimension.HOUR);
+    private static final List<Set<CubeDimension>> BUILT_IN_GROUPING_SETS =
+            Arrays.asList(BY_STATE, BY_SEVERITY, BY_WEATHER_CONDITION, BY_CITY, BY_HOUR);
+    // Quantile sketches of severities in [0, SEVERITY_SLOTS) are looked up in an array
+    private static final int SEVERITY_SLOTS = 8;
+    // Streets monitored by the heavy-hitter sketch; counts of the top streets are
+    // overestimated by at most total / STREET_SKETCH_CAPACITY
+    static final int STREET_SKETCH_CAPACITY = 1000;
+    // 1 KB of registers per group, for a standard error of about 3%
+    public static final int DEFAULT_DISTINCT_PRECISION = 10;
+    /**
+     * Source of accidents processed before any call to startSource
+     */
+    public static final String UNKNOWN_SOURCE = "unknown";
+    static final String DISTINCT_CITIES_BY_STATE = "distinctCitiesByState";
+    static final String DISTINCT_STREETS_BY_COUNTY = "distinctStreetsByCounty";
+    static final String DISTINCT_ACCIDENT_IDS_BY_SOURCE = "distinctAccidentIdsBySource";
+    // Hotspots reported per geohash precision
+    static final int REPORTED_HOTSPOTS = 20;
+    // Quantiles reported for every tracked measure and group
+    static final double[] REPORTED_QUANTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * Accident fields read by processAccident, usable as a CSVParser projection
+     */
+    public static final Set<AccidentField> REQUIRED_FIELDS = Collections.unmodifiableSet(EnumSet.of(
+            AccidentField.STATE, AccidentField.SEVERITY, AccidentField.WEATHER_CONDITION,
+            AccidentField.CITY, AccidentField.STREET, AccidentField.COUNTY, AccidentField.ID,
+            AccidentField.START_TIME, AccidentField.END_TIME, AccidentField.TEMPERATURE,
+            AccidentField.VISIBILITY, AccidentField.START_LAT, AccidentField.START_LNG));
+
+    /**
+     * Measures whose quantiles can be tracked. A missing temperature or visibility is read
+     * as NaN by the parser and left out of the quantiles.
+     */
+    public enum QuantileMetric {
+        /**
+         * Minutes from start to end time, for accidents with both times and an end not
+         * before the start
+         */
+        DURATION_MINUTES("durationMinutes"),
+        TEMPERATURE("temperature"),
+        VISIBILITY("visibility");
+
+        private final String resultPrefix;
+
+        QuantileMetric(String resultPrefix) {
+            this.resultPrefix = resultPrefix;
+        }
+
+        /**
+         * The measure of an accident, or NaN if it has none
+         */
+        double valueOf(Accident accident) {
+            switch (this) {
+                case DURATION_MINUTES:
+                    return durationMinutes(accident.getStartEpochSecond(), accident.getEndEpochSecond());
+                case TEMPERATURE:
+                    return accident.getTemperature();
+                default:
+                    return accident.getVisibility();
+            }
+        }
+    }
+
+    /**
+     * Groupings of the tracked quantiles
+     */
+    public enum QuantileGrouping {
+        STATE("State"),
+        SEVERITY("Severity");
+
+        private final String resultSuffix;
+
+        QuantileGrouping(String resultSuffix) {
+            this.resultSuffix = resultSuffix;
+        }
+
+        /**
+         * The group of an accident, or null if it has none
+         */
+        String groupOf(Accident accident) {
+            if (this == SEVERITY) {
+                return Integer.toString(accident.getSeverity());
+            }
+            String state = accident.getState();
+            return state == null || state.isEmpty() ? null : state;
+        }
+    }
+
+    /**
+     * Result key of the quantiles of a measure by a grouping, e.g. "durationMinutesQuantilesByState"
+     */
+    public static String quantilesResultKey(QuantileMetric metric, QuantileGrouping grouping) {
+        return metric.resultPrefix + "QuantilesBy" + grouping.resultSuffix;
+    }
+
+    /**
+     * Result key of the counts of a configured grouping set, e.g.
+     * "breakdownByStateAndSeverityAndHour", or "breakdownInTotal" for the grand total.
+     * Breakdowns have their own prefix, so a configured set such as {STATE} does not
+     * replace a built-in result such as "accidentsBySeverity".
+     */
+    public static String groupingSetResultKey(Set<CubeDimension> groupingSet) {
+        if (groupingSet.isEmpty()) {
+            return BREAKDOWN_RESULT_PREFIX + "InTotal";
+        }
+        StringBuilder key = new StringBuilder(BREAKDOWN_RESULT_PREFIX + "By");
+        for (CubeDimension dimension : EnumSet.copyOf(groupingSet)) {
+            if (key.length() > BREAKDOWN_RESULT_PREFIX.length() + "By".length()) {
+                key.append("And");
+            }
+            key.append(dimension.getResultName());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Result key of the hotspots of a geohash precision, e.g. "accidentHotspotsByGeohash5"
+     */
+    public static String hotspotsResultKey(int precision) {
+        return "accidentHotspotsByGeohash" + precision;
+    }
+
+    private long totalAccidents = 0;
+    private final AccidentCube counts;
+    private final List<Set<CubeDimension>> groupingSets;
+    private final SpaceSavingSketch<String> accidentsByStreet = new SpaceSavingSketch<>(STREET_SKETCH_CAPACITY);
+    private final GeoHotspots hotspots = new GeoHotspots();
+    private final DistinctCounts distinctCitiesByState;
+    private final DistinctCounts distinctStreetsByCounty;
+    private final DistinctCounts distinctAccidentIdsBySource;
+    // Distinct counts by result key
+    private final Map<String, DistinctCounts> distinctCounts = new LinkedHashMap<>();
+    // Tracked quantiles by result key
+    private final Map<String, TrackedQuantiles> quantiles = new LinkedHashMap<>();
+    private final int distinctPrecision;
+    private final Set<QuantileMetric> quantileMetrics;
+    private final Set<QuantileGrouping> quantileGroupings;
+    private String source = UNKNOWN_SOURCE;
+
+    /**
+     * Quantiles of one measure by one grouping
+     */
+    private static final class TrackedQuantiles {
+        private final QuantileMetric metric;
+        private final QuantileGrouping grouping;
+        private final GroupedQuantiles sketches = new GroupedQuantiles();
 
-    private int totalAccidents = 0;
-    private Map<String, Integer> accidentsByState = new HashMap<>();
-    private Map<Integer, Integer> accidentsBySeverity = new HashMap<>();
-    private Map<String, Integer> accidentsByWeatherCondition = new HashMap<>();
-    private Map<String, Integer> accidentsByCity = new HashMap<>();
-    private Map<Integer, Integer> accidentsByHour = new HashMap<>();
+        private TrackedQuantiles(QuantileMetric metric, QuantileGrouping grouping) {
+            this.metric = metric;
+            this.grouping = grouping;
+        }
+    }
+
+    public AccidentAnalyzer() {
+        this(DEFAULT_DISTINCT_PRECISION);
+    }
+
+    /**
+     * @param distinctPrecision HyperLogLog precision of the distinct counts; analyzers can
+     *                          only be merged with analyzers of the same precision
+     */
+    public AccidentAnalyzer(int distinctPrecision) {
+        this(distinctPrecision, EnumSet.allOf(QuantileMetric.class), EnumSet.allOf(QuantileGrouping.class));
+    }
+
+    /**
+     * @param distinctPrecision HyperLogLog precision of the distinct counts
+     * @param quantileMetrics   measures whose quantiles are tracked, each by every grouping
+     * @param quantileGroupings groupings of the tracked quantiles; analyzers can only be
+     *                          merged with analyzers tracking the same quantiles
+     */
+    public AccidentAnalyzer(int distinctPrecision, Set<QuantileMetric> quantileMetrics,
+                            Set<QuantileGrouping> quantileGroupings) {
+        this(distinctPrecision, quantileMetrics, quantileGroupings, Collections.emptyList());
+    }
+
+    /**
+     * @param distinctPrecision HyperLogLog precision of the distinct counts
+     * @param quantileMetrics   measures whose quantiles are tracked, each by every grouping
+     * @param quantileGroupings groupings of the tracked quantiles
+     * @param groupingSets      further breakdowns to count, reported under
+     *                          {@link #groupingSetResultKey}, e.g. from
+     *                          {@link AccidentCube#parseGroupingSets}; analyzers can only be
+     *                          merged with analyzers counting the same ones
+     */
+    public AccidentAnalyzer(int distinctPrecision, Set<QuantileMetric> quantileMetrics,
+                            Set<QuantileGrouping> quantileGroupings, List<Set<CubeDimension>> groupingSets) {
+        this.distinctPrecision = distinctPrecision;
+        this.quantileMetrics = quantileMetrics.isEmpty()
+                ? EnumSet.noneOf(QuantileMetric.class) : EnumSet.copyOf(quantileMetrics);
+        this.quantileGroupings = quantileGroupings.isEmpty()
+                ? EnumSet.noneOf(QuantileGrouping.class) : EnumSet.copyOf(quantileGroupings);
+        this.groupingSets = Collections.unmodifiableList(new ArrayList<>(groupingSets));
+        List<Set<CubeDimension>> allGroupingSets = new ArrayList<>(BUILT_IN_GROUPING_SETS);
+        allGroupingSets.addAll(groupingSets);
+        this.counts = new AccidentCube(allGroupingSets, EnumSet.noneOf(CubeMeasure.class));
+        distinctCitiesByState = registerDistinctCounts(DISTINCT_CITIES_BY_STATE, distinctPrecision);
+        distinctStreetsByCounty = registerDistinctCounts(DISTINCT_STREETS_BY_COUNTY, distinctPrecision);
+        distinctAccidentIdsBySource = registerDistinctCounts(DISTINCT_ACCIDENT_IDS_BY_SOURCE, distinctPrecision);
+        // In declaration order, so result keys have a stable order
+        for (QuantileMetric metric : QuantileMetric.values()) {
+            for (QuantileGrouping grouping : QuantileGrouping.values()) {
+                if (quantileMetrics.contains(metric) && quantileGroupings.contains(grouping)) {
+                    quantiles.put(quantilesResultKey(metric, grouping), new TrackedQuantiles(metric, grouping));
+                }
+            }
+        }
+    }
+
+    /**
+     * A new empty analyzer with the same configuration, e.g. for a partial aggregate
+     */
+    AccidentAnalyzer newEmpty() {
+        return new AccidentAnalyzer(distinctPrecision, quantileMetrics, quantileGroupings, groupingSets);
+    }
+
+    private DistinctCounts registerDistinctCounts(String resultKey, int precision) {
+        DistinctCounts counts = new DistinctCounts(precision);
+        distinctCounts.put(resultKey, counts);
+        return counts;
+    }
+
+    /**
+     * Attribute the accidents processed from now on to a source, such as the file they
+     * are read from, for the distinct accident IDs per source. The parser calls it with
+     * the file name of the records it hands over.
+     */
+    @Override
+    public void startSource(String sourceName) {
+        this.source = sourceName;
+    }
+
+    /**
+     * Same as processAccident, so an analyzer can be used as a parser worker
+     */
+    @Override
+    public void accept(Accident accident) {
+        processAccident(accident);
+    }
 
     /**
      * Process a single accident record
      */
     public void processAccident(Accident accident) {
+        processAccident(accident, source);
+    }
+
+    /**
+     * Process a single accident record, attributing its ID to a source
+     */
+    void processAccident(Accident accident, String source) {
         if (accident == null) {
             return;
         }
 
         totalAccidents++;
 
-        // Analyze by state
-        String state = accident.getState();
-        if (state != null && !state.isEmpty()) {
-            accidentsByState.put(state, accidentsByState.getOrDefault(state, 0) + 1);
+        // Analyze by state, severity, weather condition, city, hour and configured grouping sets
+        counts.add(accident);
+
+        // Analyze by street
+        String street = accident.getStreet();
+        if (street != null && !street.isEmpty()) {
+            accidentsByStreet.add(street);
         }
 
-        // Analyze by severity
-        int severity = accident.getSeverity();
-        accidentsBySeverity.put(severity, accidentsBySeverity.getOrDefault(severity, 0) + 1);
+        // Analyze by location
+        hotspots.add(accident);
+
+        // Distinct values per group
+        countDistinct(accident, source, distinctCitiesByState, distinctStreetsByCounty, distinctAccidentIdsBySource);
 
-        // Analyze by weather condition
-        String weatherCondition = accident.getWeatherCondition();
-        if (weatherCondition != null && !weatherCondition.isEmpty()) {
-            accidentsByWeatherCondition.put(weatherCondition,
-                    accidentsByWeatherCondition.getOrDefault(weatherCondition, 0) + 1);
+        // Quantiles per group
+        for (TrackedQuantiles tracked : quantiles.values()) {
+            String group = tracked.grouping.groupOf(accident);
+            if (group != null) {
+                tracked.sketches.add(group, tracked.metric.valueOf(accident));
+            }
         }
+    }
+
+    /**
+     * Process every row of a batch.
+     *
+     * Rows are counted column by column. Dictionary codes are translated to the cube's once
+     * per distinct value across batches sharing a dictionary, such as all batches of one
+     * CSVParser. Produces the same results as calling processAccident for each row, except that
+     * batches have no IDs to count.
+     */
+    public void processBatch(AccidentBatch batch) {
+        processColumns(AccidentColumns.of(batch));
+    }
 
-        // Analyze by city
+    /**
+     * Process every row of a table, scanning its columns chunk by chunk. Fields the table
+     * does not store count as missing, as they would for an Accident without them, except
+     * that a measure the table does not store adds nothing to its quantiles.
+     */
+    public void processTable(AccidentTable table) {
+        for (int chunk = 0; chunk < table.chunkCount(); chunk++) {
+            processColumns(AccidentColumns.of(table, chunk));
+        }
+    }
+
+    /**
+     * Count the rows of a set of columns
+     */
+    private void processColumns(AccidentColumns columns) {
+        int size = columns.size;
+        totalAccidents += size;
+
+        counts.addColumns(columns);
+        hotspots.addColumns(columns);
+        if (columns.streets != null) {
+            countStreets(columns.streets, size, columns.streetDictionary);
+        }
+        if (columns.states != null && columns.cities != null) {
+            countDistinct(distinctCitiesByState, columns.states, columns.stateDictionary,
+                    columns.cities, columns.cityDictionary, size);
+        }
+        if (columns.states != null && columns.counties != null && columns.streets != null) {
+            countDistinctStreetsByCounty(columns, size);
+        }
+        if (columns.ids != null) {
+            for (int i = 0; i < size; i++) {
+                if (columns.ids[i] != null && !columns.ids[i].isEmpty()) {
+                    distinctAccidentIdsBySource.add(source, columns.ids[i]);
+                }
+            }
+        }
+        for (TrackedQuantiles tracked : quantiles.values()) {
+            countQuantiles(tracked, columns);
+        }
+    }
+
+    private void countStreets(int[] streets, int size, StringDictionary dictionary) {
+        for (int i = 0; i < size; i++) {
+            int code = streets[i];
+            if (code != StringDictionary.NULL_CODE) {
+                String street = dictionary.decode(code);
+                if (!street.isEmpty()) {
+                    accidentsByStreet.add(street);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add an accident's city to its state's distinct cities, its street to its county's
+     * distinct streets and its ID to the source's distinct IDs
+     */
+    private static void countDistinct(Accident accident, String source, DistinctCounts citiesByState,
+                                      DistinctCounts streetsByCounty, DistinctCounts idsBySource) {
+        String state = accident.getState();
         String city = accident.getCity();
-        if (city != null && !city.isEmpty()) {
-            accidentsByCity.put(city, accidentsByCity.getOrDefault(city, 0) + 1);
+        if (state != null && !state.isEmpty() && city != null && !city.isEmpty()) {
+            citiesByState.add(state, city);
+        }
+        String county = accident.getCounty();
+        String street = accident.getStreet();
+        if (state != null && !state.isEmpty() && county != null && !county.isEmpty()
+                && street != null && !street.isEmpty()) {
+            streetsByCounty.add(countyGroup(state, county), street);
         }
+        String id = accident.getId();
+        if (id != null && !id.isEmpty()) {
+            idsBySource.add(source, id);
+        }
+    }
 
-        // Analyze by hour of day
-        LocalDateTime startTime = accident.getStartTime();
-        if (startTime != null) {
-            int hour = startTime.getHour();
-            accidentsByHour.put(hour, accidentsByHour.getOrDefault(hour, 0) + 1);
+    /**
+     * Add the street of each row with a state, county and street to its county's distinct streets
+     */
+    private void countDistinctStreetsByCounty(AccidentColumns columns, int size) {
+        // Group of each state and county code pair, built once per batch
+        Map<Long, String> groups = new HashMap<>();
+        long previousCounty = -1;
+        int previousStreet = StringDictionary.NULL_CODE;
+        for (int i = 0; i < size; i++) {
+            int state = columns.states[i];
+            int county = columns.counties[i];
+            int street = columns.streets[i];
+            if (state == StringDictionary.NULL_CODE || county == StringDictionary.NULL_CODE
+                    || street == StringDictionary.NULL_CODE) {
+                continue;
+            }
+            long stateCounty = (long) state << 32 | county;
+            if (stateCounty == previousCounty && street == previousStreet) {
+                continue;
+            }
+            String group = groups.computeIfAbsent(stateCounty, key -> countyGroup(
+                    columns.stateDictionary.decode(state), columns.countyDictionary.decode(county)));
+            distinctStreetsByCounty.add(group, columns.streetDictionary.decode(street));
+            previousCounty = stateCounty;
+            previousStreet = street;
         }
     }
 
+    /**
+     * Group of a county in the distinct streets per county, e.g. "Montgomery, OH", since
+     * county names repeat across states
+     */
+    static String countyGroup(String state, String county) {
+        return county + ", " + state;
+    }
+
+    /**
+     * Add the value of each row with both codes to the distinct counts of its group
+     */
+    private static void countDistinct(DistinctCounts counts, int[] groups, StringDictionary groupDictionary,
+                                      int[] values, StringDictionary valueDictionary, int size) {
+        int previousGroup = StringDictionary.NULL_CODE;
+        int previousValue = StringDictionary.NULL_CODE;
+        for (int i = 0; i < size; i++) {
+            int group = groups[i];
+            int value = values[i];
+            // Adding a value again changes nothing, so repeats of the previous row are skipped
+            if (group == StringDictionary.NULL_CODE || value == StringDictionary.NULL_CODE
+                    || (group == previousGroup && value == previousValue)) {
+                continue;
+            }
+            counts.add(groupDictionary.decode(group), valueDictionary.decode(value));
+            previousGroup = group;
+            previousValue = value;
+        }
+    }
+
+    /**
+     * Minutes from start to end, or NaN if either time is missing or the end is before the start
+     */
+    static double durationMinutes(long startEpochSecond, long endEpochSecond) {
+        if (startEpochSecond == Accident.NO_TIME || endEpochSecond == Accident.NO_TIME
+                || endEpochSecond < startEpochSecond) {
+            return Double.NaN;
+        }
+        return (endEpochSecond - startEpochSecond) / 60.0;
+    }
+
+    /**
+     * Add the measure of each row with a group to the sketch of its group. Sketches are
+     * looked up once per state code or severity rather than once per row.
+     */
+    private static void countQuantiles(TrackedQuantiles tracked, AccidentColumns columns) {
+        double[] values;
+        switch (tracked.metric) {
+            case DURATION_MINUTES:
+                if (columns.startEpochSecond == null || columns.endEpochSecond == null) {
+                    return;
+                }
+                values = new double[columns.size];
+                for (int i = 0; i < columns.size; i++) {
+                    values[i] = durationMinutes(columns.startEpochSecond[i], columns.endEpochSecond[i]);
+                }
+                break;
+            case TEMPERATURE:
+                values = columns.temperature;
+                break;
+            default:
+                values = columns.visibility;
+                break;
+        }
+        if (values == null) {
+            return;
+        }
+
+        if (tracked.grouping == QuantileGrouping.STATE) {
+            if (columns.states == null) {
+                return;
+            }
+            KllSketch[] sketchesByCode = new KllSketch[columns.stateDictionary.size()];
+            for (int i = 0; i < columns.size; i++) {
+                int code = columns.states[i];
+                if (code == StringDictionary.NULL_CODE) {
+                    continue;
+                }
+                KllSketch sketch = sketchesByCode[code];
+                if (sketch == null) {
+                    sketch = tracked.sketches.sketch(columns.stateDictionary.decode(code));
+                    sketchesByCode[code] = sketch;
+                }
+                sketch.add(values[i]);
+            }
+        } else {
+            KllSketch[] sketchesBySeverity = new KllSketch[SEVERITY_SLOTS];
+            for (int i = 0; i < columns.size; i++) {
+                int severity = columns.severity == null ? 0 : columns.severity[i];
+                KllSketch sketch;
+                if (severity >= 0 && severity < SEVERITY_SLOTS) {
+                    sketch = sketchesBySeverity[severity];
+                    if (sketch == null) {
+                        sketch = tracked.sketches.sketch(Integer.toString(severity));
+                        sketchesBySeverity[severity] = sketch;
+                    }
+                } else {
+                    sketch = tracked.sketches.sketch(Integer.toString(severity));
+                }
+                sketch.add(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Add the counts of another analyzer to this one, as if this analyzer had also processed
+     * everything the other did. The other analyzer's results are unchanged.
+     *
+     * @return this analyzer, so the method can serve as a combiner of partial aggregates
+     */
+    public AccidentAnalyzer merge(AccidentAnalyzer other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge an analyzer into itself");
+        }
+        if (!quantiles.keySet().equals(other.quantiles.keySet())) {
+            throw new IllegalArgumentException("Cannot merge analyzers tracking quantiles " + quantiles.keySet()
+                    + " and " + other.quantiles.keySet());
+        }
+        totalAccidents += other.totalAccidents;
+        counts.merge(other.counts);
+        accidentsByStreet.merge(other.accidentsByStreet);
+        hotspots.merge(other.hotspots);
+        other.distinctCounts.forEach((resultKey, counts) -> distinctCounts.get(resultKey).merge(counts));
+        other.quantiles.forEach((resultKey, tracked) -> trackedQuantiles(resultKey).sketches.merge(tracked.sketches));
+        return this;
+    }
+
+    /**
+     * Write the configuration and all counts and sketches. The current source is not
+     * written; a read analyzer starts with the unknown source.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(distinctPrecision);
+        out.writeInt(quantileMetrics.size());
+        for (QuantileMetric metric : quantileMetrics) {
+            out.writeUTF(metric.name());
+        }
+        out.writeInt(quantileGroupings.size());
+        for (QuantileGrouping grouping : quantileGroupings) {
+            out.writeUTF(grouping.name());
+        }
+        out.writeInt(groupingSets.size());
+        for (Set<CubeDimension> groupingSet : groupingSets) {
+            out.writeInt(groupingSet.size());
+            for (CubeDimension dimension : groupingSet) {
+                out.writeUTF(dimension.name());
+            }
+        }
+
+        out.writeLong(totalAccidents);
+        counts.writeTo(out);
+        accidentsByStreet.writeTo(out, DataOutput::writeUTF);
+        hotspots.writeTo(out);
+        out.writeInt(distinctCounts.size());
+        for (Map.Entry<String, DistinctCounts> entry : distinctCounts.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().writeTo(out);
+        }
+        out.writeInt(quantiles.size());
+        for (Map.Entry<String, TrackedQuantiles> entry : quantiles.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().sketches.writeTo(out);
+        }
+    }
+
+    /**
+     * Read an analyzer written by {@link #writeTo}, with the configuration it was written with
+     */
+    public static AccidentAnalyzer readFrom(DataInput in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not an analyzer snapshot");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported analyzer format version " + version);
+        }
+
+        AccidentAnalyzer analyzer;
+        try {
+            int distinctPrecision = in.readInt();
+            Set<QuantileMetric> metrics = EnumSet.noneOf(QuantileMetric.class);
+            int metricCount = in.readInt();
+            for (int i = 0; i < metricCount; i++) {
+                metrics.add(QuantileMetric.valueOf(in.readUTF()));
+            }
+            Set<QuantileGrouping> groupings = EnumSet.noneOf(QuantileGrouping.class);
+            int groupingCount = in.readInt();
+            for (int i = 0; i < groupingCount; i++) {
+                groupings.add(QuantileGrouping.valueOf(in.readUTF()));
+            }
+            List<Set<CubeDimension>> groupingSets = new ArrayList<>();
+            int setCount = in.readInt();
+            for (int s = 0; s < setCount; s++) {
+                Set<CubeDimension> groupingSet = EnumSet.noneOf(CubeDimension.class);
+                int size = in.readInt();
+                for (int d = 0; d < size; d++) {
+                    groupingSet.add(CubeDimension.valueOf(in.readUTF()));
+                }
+                groupingSets.add(groupingSet);
+            }
+            analyzer = new AccidentAnalyzer(distinctPrecision, metrics, groupings, groupingSets);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt analyzer snapshot: " + e.getMessage(), e);
+        }
+
+        // Read parts are merged into the empty ones the configuration created
+        try {
+            analyzer.totalAccidents = in.readLong();
+            analyzer.counts.merge(AccidentCube.readFrom(in));
+            analyzer.accidentsByStreet.merge(SpaceSavingSketch.readFrom(in, DataInput::readUTF));
+            analyzer.hotspots.merge(GeoHotspots.readFrom(in));
+            int distinctCount = in.readInt();
+            for (int i = 0; i < distinctCount; i++) {
+                String resultKey = in.readUTF();
+                DistinctCounts counts = analyzer.distinctCounts.get(resultKey);
+                if (counts == null) {
+                    throw new IOException("Corrupt analyzer snapshot: unknown distinct counts " + resultKey);
+                }
+                counts.merge(DistinctCounts.readFrom(in));
+            }
+            int quantileCount = in.readInt();
+            for (int i = 0; i < quantileCount; i++) {
+                analyzer.trackedQuantiles(in.readUTF()).sketches.merge(GroupedQuantiles.readFrom(in));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt analyzer snapshot: " + e.getMessage(), e);
+        }
+        return analyzer;
+    }
+
+    private TrackedQuantiles trackedQuantiles(String resultKey) {
+        TrackedQuantiles tracked = quantiles.get(resultKey);
+        if (tracked == null) {
+            throw new IllegalArgumentException("Quantiles " + resultKey + " are not tracked by this analyzer");
+        }
+        return tracked;
+    }
+
     /**
      * Get the total number of accidents processed
      */
-    public int getTotalAccidents() {
+    public long getTotalAccidents() {
         return totalAccidents;
     }
 
@@ -76,24 +713,60 @@ public class AccidentAnalyzer {
         results.put("totalAccidents", totalAccidents);
 
         // Top states by accident count
-        results.put("topStatesByAccidentCount", getTopEntries(accidentsByState, 10));
+        results.put("topStatesByAccidentCount", TopK.exact(valueCounts(BY_STATE, CubeDimension.STATE), 10));
 
         // Accidents by severity
-        results.put("accidentsBySeverity", accidentsBySeverity);
+        Map<Integer, Long> severityMap = new HashMap<>();
+        valueCounts(BY_SEVERITY, CubeDimension.SEVERITY).forEach((severity, count) ->
+                severityMap.put((Integer) severity, count));
+        results.put("accidentsBySeverity", severityMap);
 
         // Top weather conditions
-        results.put("topWeatherConditions", getTopEntries(accidentsByWeatherCondition, 10));
+        results.put("topWeatherConditions",
+                TopK.exact(valueCounts(BY_WEATHER_CONDITION, CubeDimension.WEATHER_CONDITION), 10));
 
         // Top cities
-        results.put("topCitiesByAccidentCount", getTopEntries(accidentsByCity, 20));
+        results.put("topCitiesByAccidentCount", TopK.exact(valueCounts(BY_CITY, CubeDimension.CITY), 20));
+
+        // Top streets, with approximate counts
+        results.put("topStreetsByAccidentCount", accidentsByStreet.topEntries(20));
+
+        // Busiest geohash cells at each precision, by geohash in order of count
+        for (int precision : hotspots.getPrecisions()) {
+            Map<String, GeoHotspots.Hotspot> top = new LinkedHashMap<>();
+            for (GeoHotspots.Hotspot hotspot : hotspots.hotspots(precision, REPORTED_HOTSPOTS)) {
+                top.put(hotspot.getGeohash(), hotspot);
+            }
+            results.put(hotspotsResultKey(precision), top);
+        }
+
+        // Approximate distinct values per group
+        distinctCounts.forEach((resultKey, counts) -> results.put(resultKey, counts.estimates()));
+
+        // Approximate p50, p90 and p99 per group
+        quantiles.forEach((resultKey, tracked) ->
+                results.put(resultKey, tracked.sketches.summaries(REPORTED_QUANTILES)));
 
         // Accidents by hour
-        results.put("accidentsByHour", accidentsByHour);
+        Map<Integer, Long> hourMap = new HashMap<>();
+        valueCounts(BY_HOUR, CubeDimension.HOUR).forEach((hour, count) -> hourMap.put((Integer) hour, count));
+        results.put("accidentsByHour", hourMap);
+
+        // Configured breakdowns, by the values of their dimensions in declaration order
+        for (Set<CubeDimension> groupingSet : groupingSets) {
+            Map<List<Object>, Long> groupCounts = new HashMap<>();
+            counts.forEachCell(groupingSet, cell -> {
+                if (!cell.hasMissingValue()) {
+                    groupCounts.put(cell.getValues(), cell.getCount());
+                }
+            });
+            results.put(groupingSetResultKey(groupingSet), groupCounts);
+        }
 
         // Additional derived statistics
-        if (!accidentsBySeverity.isEmpty()) {
-            double avgSeverity = accidentsBySeverity.entrySet().stream()
-                    .mapToDouble(entry -> entry.getKey() * entry.getValue())
+        if (!severityMap.isEmpty()) {
+            double avgSeverity = severityMap.entrySet().stream()
+                    .mapToDouble(entry -> (double) entry.getKey() * entry.getValue())
                     .sum() / totalAccidents;
             results.put("averageSeverity", avgSeverity);
         }
@@ -104,13 +777,17 @@ public class AccidentAnalyzer {
     }
 
     /**
-     * Helper method to get top N entries from a map by value
+     * Counts of the values of a single-dimension grouping set, without the missing value
      */
-    private <K> List<Map.Entry<K, Integer>> getTopEntries(Map<K, Integer> map, int n) {
-        return map.entrySet().stream()
-                .sorted(Map.Entry.<K, Integer>comparingByValue().reversed())
-                .limit(n)
-                .collect(Collectors.toList());
+    private ObjectLongMap<Object> valueCounts(Set<CubeDimension> groupingSet, CubeDimension dimension) {
+        ObjectLongMap<Object> valueCounts = new ObjectLongMap<>();
+        counts.forEachCell(groupingSet, cell -> {
+            Object value = cell.getValue(dimension);
+            if (value != null) {
+                valueCounts.addTo(value, cell.getCount());
+            }
+        });
+        return valueCounts;
     }
 
     /**
@@ -118,10 +795,10 @@ public class AccidentAnalyzer {
      */
     public void reset() {
         totalAccidents = 0;
-        accidentsByState.clear();
-        accidentsBySeverity.clear();
-        accidentsByWeatherCondition.clear();
-        accidentsByCity.clear();
-        accidentsByHour.clear();
+        counts.clear();
+        accidentsByStreet.clear();
+        hotspots.clear();
+        distinctCounts.values().forEach(DistinctCounts::clear);
+        quantiles.values().forEach(tracked -> tracked.sketches.clear());
     }
 }
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.model.AccidentBatch;
+import com.usaccidents.model.AccidentField;
+import com.usaccidents.model.AccidentTable;
+import com.usaccidents.model.StringDictionary;
+
+/**
+ * Rows [0, size) of a batch or of one table chunk, as the column arrays the operators
+ * scan. A null column means the field is missing in every row.
+ */
+final class AccidentColumns {
+    int size;
+    int[] severity;
+    long[] startEpochSecond;
+    long[] endEpochSecond;
+    double[] startLat;
+    double[] startLng;
+    double[] temperature;
+    double[] visibility;
+    int[] states;
+    StringDictionary stateDictionary;
+    int[] weatherConditions;
+    StringDictionary weatherConditionDictionary;
+    int[] cities;
+    StringDictionary cityDictionary;
+    int[] streets;
+    StringDictionary streetDictionary;
+    int[] counties;
+    StringDictionary countyDictionary;
+    int[] timezones;
+    StringDictionary timezoneDictionary;
+    String[] ids;
+
+    static AccidentColumns of(AccidentBatch batch) {
+        AccidentColumns columns = new AccidentColumns();
+        columns.size = batch.size();
+        columns.severity = batch.getSeverity();
+        columns.startEpochSecond = batch.getStartEpochSecond();
+        columns.endEpochSecond = batch.getEndEpochSecond();
+        columns.startLat = batch.getStartLat();
+        columns.startLng = batch.getStartLng();
+        columns.temperature = batch.getTemperature();
+        columns.visibility = batch.getVisibility();
+        columns.states = batch.getState();
+        columns.stateDictionary = batch.getStateDictionary();
+        columns.weatherConditions = batch.getWeatherCondition();
+        columns.weatherConditionDictionary = batch.getWeatherConditionDictionary();
+        columns.cities = batch.getCity();
+        columns.cityDictionary = batch.getCityDictionary();
+        columns.streets = batch.getStreet();
+        columns.streetDictionary = batch.getStreetDictionary();
+        columns.counties = batch.getCounty();
+        columns.countyDictionary = batch.getCountyDictionary();
+        columns.timezones = batch.getTimezone();
+        columns.timezoneDictionary = batch.getTimezoneDictionary();
+        return columns;
+    }
+
+    static AccidentColumns of(AccidentTable table, int chunk) {
+        AccidentColumns columns = new AccidentColumns();
+        columns.size = table.chunkLength(chunk);
+        columns.severity = intChunk(table, AccidentField.SEVERITY, chunk);
+        columns.startEpochSecond = longChunk(table, AccidentField.START_TIME, chunk);
+        columns.endEpochSecond = longChunk(table, AccidentField.END_TIME, chunk);
+        columns.startLat = doubleChunk(table, AccidentField.START_LAT, chunk);
+        columns.startLng = doubleChunk(table, AccidentField.START_LNG, chunk);
+        columns.temperature = doubleChunk(table, AccidentField.TEMPERATURE, chunk);
+        columns.visibility = doubleChunk(table, AccidentField.VISIBILITY, chunk);
+        columns.states = intChunk(table, AccidentField.STATE, chunk);
+        columns.stateDictionary = dictionary(table, AccidentField.STATE);
+        columns.weatherConditions = intChunk(table, AccidentField.WEATHER_CONDITION, chunk);
+        columns.weatherConditionDictionary = dictionary(table, AccidentField.WEATHER_CONDITION);
+        columns.cities = intChunk(table, AccidentField.CITY, chunk);
+        columns.cityDictionary = dictionary(table, AccidentField.CITY);
+        columns.streets = intChunk(table, AccidentField.STREET, chunk);
+        columns.streetDictionary = dictionary(table, AccidentField.STREET);
+        columns.counties = intChunk(table, AccidentField.COUNTY, chunk);
+        columns.countyDictionary = dictionary(table, AccidentField.COUNTY);
+        columns.timezones = intChunk(table, AccidentField.TIMEZONE, chunk);
+        columns.timezoneDictionary = dictionary(table, AccidentField.TIMEZONE);
+        columns.ids = table.getProjection().contains(AccidentField.ID)
+                ? table.stringChunk(AccidentField.ID, chunk) : null;
+        return columns;
+    }
+
+    /**
+     * Codes of a string dimension's column, or null if it is missing
+     */
+    int[] codes(CubeDimension dimension) {
+        switch (dimension) {
+            case STATE:
+                return states;
+            case COUNTY:
+                return counties;
+            case CITY:
+                return cities;
+            case STREET:
+                return streets;
+            case TIMEZONE:
+                return timezones;
+            case WEATHER_CONDITION:
+                return weatherConditions;
+            default:
+                throw new IllegalArgumentException(dimension + " is numeric");
+        }
+    }
+
+    /**
+     * Dictionary of a string dimension's column
+     */
+    StringDictionary dictionary(CubeDimension dimension) {
+        switch (dimension) {
+            case STATE:
+                return stateDictionary;
+            case COUNTY:
+                return countyDictionary;
+            case CITY:
+                return cityDictionary;
+            case STREET:
+                return streetDictionary;
+            case TIMEZONE:
+                return timezoneDictionary;
+            case WEATHER_CONDITION:
+                return weatherConditionDictionary;
+            default:
+                throw new IllegalArgumentException(dimension + " is numeric");
+        }
+    }
+
+    private static int[] intChunk(AccidentTable table, AccidentField field, int chunk) {
+        return table.getProjection().contains(field) ? table.intChunk(field, chunk) : null;
+    }
+
+    private static long[] longChunk(AccidentTable table, AccidentField field, int chunk) {
+        return table.getProjection().contains(field) ? table.longChunk(field, chunk) : null;
+    }
+
+    private static double[] doubleChunk(AccidentTable table, AccidentField field, int chunk) {
+        return table.getProjection().contains(field) ? table.doubleChunk(field, chunk) : null;
+    }
+
+    private static StringDictionary dictionary(AccidentTable table, AccidentField field) {
+        return table.getProjection().contains(field) ? table.dictionary(field) : null;
+    }
+}
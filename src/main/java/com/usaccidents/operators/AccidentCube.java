@@ -0,0 +1,908 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+import com.usaccidents.model.AccidentTable;
+import com.usaccidents.model.StringDictionary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Counts and aggregates accidents for several grouping sets of dimensions in one pass,
+ * like SQL GROUP BY GROUPING SETS, ROLLUP and CUBE.
+ *
+ * Each dimension value is coded as a small int per dimension, shared by all grouping
+ * sets. Every grouping set keeps its own groups: the codes of its dimensions are packed
+ * into one long, each in a field whose initial width comes from {@link CubeDimension},
+ * and looked up in the set's {@link LongKeyIndex}. When a dimension outgrows its field,
+ * the set's keys are repacked with a wider field; a set whose fields no longer fit in 64
+ * bits falls back to keys of one int per dimension, which allocate. So any grouping set
+ * can be configured and no number of distinct values stops a run. Counts and measures
+ * live in primitive arrays by group index. Missing values form a group of their own,
+ * read as a null value.
+ *
+ * Batches and tables are aggregated column by column; their dictionary codes are
+ * translated to the cube's once per distinct value and source dictionary. Cubes with the
+ * same grouping sets and measures merge and can be stored with {@link #writeTo} and
+ * {@link #readFrom}. Not thread-safe.
+ */
+public class AccidentCube {
+    // Codes of a dimension; value codes start at FIRST_VALUE
+    private static final int MISSING = 0;
+    private static final int FIRST_VALUE = 1;
+    private static final int INITIAL_GROUPS = 64;
+    // Bits added to a field that has outgrown its width
+    private static final int WIDENING_BITS = 4;
+    private static final int FORMAT_VERSION = 2;
+
+    private final List<Set<CubeDimension>> groupingSets;
+    private final List<CubeMeasure> measureList;
+    // Dimensions of any grouping set, in declaration order
+    private final CubeDimension[] dimensions;
+    private final CubeMeasure[] measures;
+    private final Coder[] coders;
+    // Groups of each grouping set, in the order of groupingSets
+    private final Groups[] groupsBySet;
+    // Codes of the row being aggregated, by dimension position
+    private final int[] rowCodes;
+    private final double[] rowValues;
+
+    /**
+     * One group of a grouping set with its aggregates
+     */
+    public final class Cell {
+        private final Groups groups;
+        private final int group;
+
+        private Cell(Groups groups, int group) {
+            this.groups = groups;
+            this.group = group;
+        }
+
+        public Set<CubeDimension> getGroupingSet() {
+            return groups.groupingSet;
+        }
+
+        /**
+         * Value of a dimension of the grouping set: a String, or an Integer for a numeric
+         * dimension; null if missing or if the dimension is not in the set
+         */
+        public Object getValue(CubeDimension dimension) {
+            for (int d = 0; d < groups.positions.length; d++) {
+                int position = groups.positions[d];
+                if (dimensions[position] == dimension) {
+                    int code = groups.code(group, d);
+                    return code < FIRST_VALUE ? null : coders[position].decode(code);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Values of the grouping set's dimensions, in declaration order
+         */
+        public List<Object> getValues() {
+            List<Object> values = new ArrayList<>(groups.positions.length);
+            for (int d = 0; d < groups.positions.length; d++) {
+                int code = groups.code(group, d);
+                values.add(code < FIRST_VALUE ? null : coders[groups.positions[d]].decode(code));
+            }
+            return values;
+        }
+
+        /**
+         * Whether any dimension of the grouping set is missing
+         */
+        public boolean hasMissingValue() {
+            for (int d = 0; d < groups.positions.length; d++) {
+                if (groups.code(group, d) == MISSING) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Number of accidents in the group
+         */
+        public long getCount() {
+            return groups.counts[group];
+        }
+
+        /**
+         * Sum of a measure over the accidents having it
+         */
+        public double getSum(CubeMeasure measure) {
+            return groups.sums[slot(measure)];
+        }
+
+        /**
+         * Number of accidents having a measure
+         */
+        public long getValueCount(CubeMeasure measure) {
+            return groups.valueCounts[slot(measure)];
+        }
+
+        /**
+         * Mean of a measure, or NaN if no accident has it
+         */
+        public double getAverage(CubeMeasure measure) {
+            int slot = slot(measure);
+            return groups.valueCounts[slot] == 0 ? Double.NaN : groups.sums[slot] / groups.valueCounts[slot];
+        }
+
+        /**
+         * Smallest value of a measure, or NaN if no accident has it
+         */
+        public double getMin(CubeMeasure measure) {
+            int slot = slot(measure);
+            return groups.valueCounts[slot] == 0 ? Double.NaN : groups.mins[slot];
+        }
+
+        /**
+         * Largest value of a measure, or NaN if no accident has it
+         */
+        public double getMax(CubeMeasure measure) {
+            int slot = slot(measure);
+            return groups.valueCounts[slot] == 0 ? Double.NaN : groups.maxs[slot];
+        }
+
+        private int slot(CubeMeasure measure) {
+            int index = measureList.indexOf(measure);
+            if (index < 0) {
+                throw new IllegalArgumentException("Measure " + measure + " is not aggregated by this cube");
+            }
+            return group * measures.length + index;
+        }
+    }
+
+    /**
+     * Codes the values of one dimension: strings by first appearance, ints by first appearance
+     */
+    private static final class Coder {
+        private final CubeDimension dimension;
+        // String code by value; absent values read as 0
+        private final ObjectLongMap<String> stringCodes = new ObjectLongMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final LongKeyIndex ints = new LongKeyIndex();
+        // Codes of the values of the last source dictionary, 0 if not yet translated
+        private StringDictionary source;
+        private int[] translations = new int[0];
+
+        private Coder(CubeDimension dimension) {
+            this.dimension = dimension;
+        }
+
+        private int encode(String value) {
+            if (value == null || value.isEmpty()) {
+                return MISSING;
+            }
+            long code = stringCodes.get(value);
+            if (code == 0) {
+                strings.add(value);
+                code = FIRST_VALUE + strings.size() - 1;
+                stringCodes.addTo(value, code);
+            }
+            return (int) code;
+        }
+
+        private int encode(int value) {
+            return FIRST_VALUE + ints.indexOf(value);
+        }
+
+        /**
+         * Code of a dictionary code of a batch or table column
+         */
+        private int translate(int code, StringDictionary dictionary) {
+            if (code == StringDictionary.NULL_CODE) {
+                return MISSING;
+            }
+            if (dictionary != source) {
+                source = dictionary;
+                translations = new int[Math.max(16, dictionary.size())];
+            } else if (code >= translations.length) {
+                translations = Arrays.copyOf(translations, Math.max(code + 1, translations.length * 2));
+            }
+            int translated = translations[code];
+            if (translated == 0) {
+                translated = encode(dictionary.decode(code));
+                translations[code] = translated;
+            }
+            return translated;
+        }
+
+        /**
+         * Number of values coded
+         */
+        private int size() {
+            return dimension.isNumeric() ? ints.size() : strings.size();
+        }
+
+        private Object decode(int code) {
+            return dimension.isNumeric() ? (Object) (int) ints.keyAt(code - FIRST_VALUE)
+                    : strings.get(code - FIRST_VALUE);
+        }
+
+        private void clear() {
+            stringCodes.clear();
+            strings.clear();
+            ints.clear();
+            source = null;
+            translations = new int[0];
+        }
+    }
+
+    /**
+     * The groups of one grouping set, with their codes and aggregates by group index
+     */
+    private final class Groups {
+        private final Set<CubeDimension> groupingSet;
+        // Dimension positions of the set's dimensions, in declaration order
+        private final int[] positions;
+        private final int[] widths;
+        private final int[] shifts;
+        // Packed keys, or null once the fields are wider than a long
+        private LongKeyIndex packed;
+        private Map<WideKey, Integer> wide;
+        private final WideKey probe;
+        private int size;
+        // Per group and dimension, at group * positions.length + dimension
+        private int[] codes;
+        private long[] counts;
+        // Per group and measure, at group * measures.length + measure
+        private double[] sums;
+        private long[] valueCounts;
+        private double[] mins;
+        private double[] maxs;
+
+        private Groups(Set<CubeDimension> groupingSet) {
+            this.groupingSet = groupingSet;
+            this.positions = new int[groupingSet.size()];
+            this.widths = new int[positions.length];
+            this.shifts = new int[positions.length];
+            this.probe = new WideKey(new int[positions.length]);
+            int d = 0;
+            for (CubeDimension dimension : groupingSet) {
+                positions[d++] = position(dimension);
+            }
+            reset();
+        }
+
+        private void reset() {
+            for (int d = 0; d < positions.length; d++) {
+                widths[d] = dimensions[positions[d]].getBits();
+            }
+            packed = null;
+            wide = null;
+            size = 0;
+            codes = new int[INITIAL_GROUPS * positions.length];
+            counts = new long[INITIAL_GROUPS];
+            int slots = INITIAL_GROUPS * measures.length;
+            sums = new double[slots];
+            valueCounts = new long[slots];
+            mins = new double[slots];
+            maxs = new double[slots];
+            repack();
+        }
+
+        private int code(int group, int dimension) {
+            return codes[group * positions.length + dimension];
+        }
+
+        /**
+         * Index of the group of the codes in rowCodes, adding the group if it is new
+         */
+        private int indexOf(int[] rowCodes) {
+            if (packed != null) {
+                long key = 0;
+                for (int d = 0; d < positions.length; d++) {
+                    int code = rowCodes[positions[d]];
+                    if (widths[d] < Integer.SIZE && code >>> widths[d] != 0) {
+                        widen(d, code);
+                        return indexOf(rowCodes);
+                    }
+                    key |= (long) code << shifts[d];
+                }
+                int group = packed.indexOf(key);
+                if (group == size) {
+                    addGroup(rowCodes);
+                }
+                return group;
+            }
+            for (int d = 0; d < positions.length; d++) {
+                probe.codes[d] = rowCodes[positions[d]];
+            }
+            Integer group = wide.get(probe);
+            if (group != null) {
+                return group;
+            }
+            wide.put(new WideKey(probe.codes.clone()), size);
+            addGroup(rowCodes);
+            return size - 1;
+        }
+
+        private void addGroup(int[] rowCodes) {
+            if (size == counts.length) {
+                int capacity = counts.length * 2;
+                codes = Arrays.copyOf(codes, capacity * positions.length);
+                counts = Arrays.copyOf(counts, capacity);
+                sums = Arrays.copyOf(sums, capacity * measures.length);
+                valueCounts = Arrays.copyOf(valueCounts, capacity * measures.length);
+                mins = Arrays.copyOf(mins, capacity * measures.length);
+                maxs = Arrays.copyOf(maxs, capacity * measures.length);
+            }
+            for (int d = 0; d < positions.length; d++) {
+                codes[size * positions.length + d] = rowCodes[positions[d]];
+            }
+            size++;
+        }
+
+        /**
+         * Widen the field of a dimension to hold a code and rebuild the keys of all groups
+         */
+        private void widen(int dimension, int code) {
+            widths[dimension] = Math.min(Integer.SIZE, Math.max(widths[dimension] + WIDENING_BITS,
+                    Integer.SIZE - Integer.numberOfLeadingZeros(code)));
+            repack();
+        }
+
+        /**
+         * Index the groups by packed keys of the current widths, or by wide keys if the
+         * fields do not fit in a long. Groups keep their indexes.
+         */
+        private void repack() {
+            int shift = 0;
+            for (int d = 0; d < positions.length; d++) {
+                shifts[d] = shift;
+                shift += widths[d];
+            }
+            if (shift > 64) {
+                wide = new HashMap<>();
+                for (int group = 0; group < size; group++) {
+                    int from = group * positions.length;
+                    wide.put(new WideKey(Arrays.copyOfRange(codes, from, from + positions.length)), group);
+                }
+                packed = null;
+                return;
+            }
+            packed = new LongKeyIndex();
+            for (int group = 0; group < size; group++) {
+                long key = 0;
+                for (int d = 0; d < positions.length; d++) {
+                    key |= (long) code(group, d) << shifts[d];
+                }
+                packed.indexOf(key);
+            }
+        }
+
+        private void aggregate(int group, double[] values) {
+            counts[group]++;
+            int slot = group * measures.length;
+            for (int m = 0; m < measures.length; m++, slot++) {
+                double value = values[m];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                if (valueCounts[slot] == 0 || value < mins[slot]) {
+                    mins[slot] = value;
+                }
+                if (valueCounts[slot] == 0 || value > maxs[slot]) {
+                    maxs[slot] = value;
+                }
+                sums[slot] += value;
+                valueCounts[slot]++;
+            }
+        }
+
+        /**
+         * Add the aggregates of a group of another cube's groups to one of these
+         */
+        private void mergeGroup(int group, Groups other, int otherGroup) {
+            counts[group] += other.counts[otherGroup];
+            for (int m = 0; m < measures.length; m++) {
+                int slot = group * measures.length + m;
+                int otherSlot = otherGroup * measures.length + m;
+                if (other.valueCounts[otherSlot] == 0) {
+                    continue;
+                }
+                if (valueCounts[slot] == 0 || other.mins[otherSlot] < mins[slot]) {
+                    mins[slot] = other.mins[otherSlot];
+                }
+                if (valueCounts[slot] == 0 || other.maxs[otherSlot] > maxs[slot]) {
+                    maxs[slot] = other.maxs[otherSlot];
+                }
+                sums[slot] += other.sums[otherSlot];
+                valueCounts[slot] += other.valueCounts[otherSlot];
+            }
+        }
+    }
+
+    /**
+     * Codes of a group whose fields do not fit in a long
+     */
+    private static final class WideKey {
+        private final int[] codes;
+
+        private WideKey(int[] codes) {
+            this.codes = codes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof WideKey && Arrays.equals(codes, ((WideKey) o).codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(codes);
+        }
+    }
+
+    /**
+     * @param groupingSets sets of dimensions to group by, e.g. from {@link #rollup} or
+     *                     {@link #cube}; the empty set is the grand total
+     * @param measures     measures aggregated for every group
+     */
+    public AccidentCube(List<Set<CubeDimension>> groupingSets, Set<CubeMeasure> measures) {
+        Set<Set<CubeDimension>> distinctSets = new LinkedHashSet<>();
+        Set<CubeDimension> used = EnumSet.noneOf(CubeDimension.class);
+        for (Set<CubeDimension> groupingSet : groupingSets) {
+            Set<CubeDimension> copy = groupingSet.isEmpty()
+                    ? EnumSet.noneOf(CubeDimension.class) : EnumSet.copyOf(groupingSet);
+            distinctSets.add(Collections.unmodifiableSet(copy));
+            used.addAll(copy);
+        }
+        if (distinctSets.isEmpty()) {
+            throw new IllegalArgumentException("A cube needs at least one grouping set");
+        }
+        this.groupingSets = Collections.unmodifiableList(new ArrayList<>(distinctSets));
+
+        this.dimensions = used.toArray(new CubeDimension[0]);
+        this.coders = new Coder[dimensions.length];
+        for (int p = 0; p < dimensions.length; p++) {
+            coders[p] = new Coder(dimensions[p]);
+        }
+        this.rowCodes = new int[dimensions.length];
+
+        this.measures = measures.isEmpty()
+                ? new CubeMeasure[0] : EnumSet.copyOf(measures).toArray(new CubeMeasure[0]);
+        this.measureList = Collections.unmodifiableList(Arrays.asList(this.measures));
+        this.rowValues = new double[this.measures.length];
+
+        this.groupsBySet = new Groups[this.groupingSets.size()];
+        for (int s = 0; s < groupsBySet.length; s++) {
+            groupsBySet[s] = new Groups(this.groupingSets.get(s));
+        }
+    }
+
+    /**
+     * Grouping sets of ROLLUP(dimensions): every prefix of the dimensions, from all of
+     * them down to the grand total
+     */
+    public static List<Set<CubeDimension>> rollup(CubeDimension... dimensions) {
+        List<Set<CubeDimension>> sets = new ArrayList<>();
+        for (int length = dimensions.length; length >= 0; length--) {
+            Set<CubeDimension> set = EnumSet.noneOf(CubeDimension.class);
+            set.addAll(Arrays.asList(dimensions).subList(0, length));
+            sets.add(set);
+        }
+        return sets;
+    }
+
+    /**
+     * Grouping sets of CUBE(dimensions): every subset of the dimensions
+     */
+    public static List<Set<CubeDimension>> cube(CubeDimension... dimensions) {
+        if (dimensions.length > 16) {
+            throw new IllegalArgumentException("A cube of " + dimensions.length + " dimensions has too many grouping sets");
+        }
+        List<Set<CubeDimension>> sets = new ArrayList<>();
+        for (int subset = (1 << dimensions.length) - 1; subset >= 0; subset--) {
+            Set<CubeDimension> set = EnumSet.noneOf(CubeDimension.class);
+            for (int i = 0; i < dimensions.length; i++) {
+                if ((subset & (1 << i)) != 0) {
+                    set.add(dimensions[i]);
+                }
+            }
+            sets.add(set);
+        }
+        return sets;
+    }
+
+    /**
+     * Parse grouping sets separated by ';', each a comma-separated list of dimension names,
+     * ROLLUP(...) or CUBE(...), e.g. "STATE,SEVERITY,HOUR; ROLLUP(STATE, CITY); ()".
+     * Names are case-insensitive; "()" is the grand total.
+     */
+    public static List<Set<CubeDimension>> parseGroupingSets(String spec) {
+        List<Set<CubeDimension>> sets = new ArrayList<>();
+        for (String part : spec.split(";")) {
+            String set = part.trim().toUpperCase(Locale.ROOT);
+            if (set.isEmpty()) {
+                continue;
+            }
+            if (set.startsWith("ROLLUP(") && set.endsWith(")")) {
+                sets.addAll(rollup(parseDimensions(set.substring(7, set.length() - 1))));
+            } else if (set.startsWith("CUBE(") && set.endsWith(")")) {
+                sets.addAll(cube(parseDimensions(set.substring(5, set.length() - 1))));
+            } else if (set.equals("()")) {
+                sets.add(EnumSet.noneOf(CubeDimension.class));
+            } else {
+                CubeDimension[] dimensions = parseDimensions(set);
+                Set<CubeDimension> dimensionSet = EnumSet.noneOf(CubeDimension.class);
+                dimensionSet.addAll(Arrays.asList(dimensions));
+                sets.add(dimensionSet);
+            }
+        }
+        return sets;
+    }
+
+    private static CubeDimension[] parseDimensions(String list) {
+        List<CubeDimension> dimensions = new ArrayList<>();
+        for (String name : list.split(",")) {
+            if (!name.trim().isEmpty()) {
+                try {
+                    dimensions.add(CubeDimension.valueOf(name.trim()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown cube dimension " + name.trim()
+                            + "; expected one of " + Arrays.toString(CubeDimension.values()), e);
+                }
+            }
+        }
+        return dimensions.toArray(new CubeDimension[0]);
+    }
+
+    public List<Set<CubeDimension>> getGroupingSets() {
+        return groupingSets;
+    }
+
+    public List<CubeMeasure> getMeasures() {
+        return measureList;
+    }
+
+    /**
+     * Number of groups over all grouping sets
+     */
+    public int groupCount() {
+        int count = 0;
+        for (Groups groups : groupsBySet) {
+            count += groups.size;
+        }
+        return count;
+    }
+
+    /**
+     * Aggregate an accident into its group of every grouping set
+     */
+    public void add(Accident accident) {
+        for (int p = 0; p < dimensions.length; p++) {
+            CubeDimension dimension = dimensions[p];
+            if (dimension.isNumeric()) {
+                int value = dimension.intValue(accident);
+                rowCodes[p] = dimension == CubeDimension.HOUR && value < 0 ? MISSING : coders[p].encode(value);
+            } else {
+                rowCodes[p] = coders[p].encode(dimension.stringValue(accident));
+            }
+        }
+        for (int m = 0; m < measures.length; m++) {
+            rowValues[m] = measures[m].valueOf(accident);
+        }
+        aggregateRow();
+    }
+
+    public void addBatch(AccidentBatch batch) {
+        addColumns(AccidentColumns.of(batch));
+    }
+
+    public void addTable(AccidentTable table) {
+        for (int chunk = 0; chunk < table.chunkCount(); chunk++) {
+            addColumns(AccidentColumns.of(table, chunk));
+        }
+    }
+
+    /**
+     * Aggregate the rows of a set of columns, coding all values one dimension at a time
+     */
+    void addColumns(AccidentColumns columns) {
+        int size = columns.size;
+        int[][] codes = new int[dimensions.length][];
+        for (int p = 0; p < dimensions.length; p++) {
+            codes[p] = codeColumn(p, columns);
+        }
+        double[][] values = new double[measures.length][];
+        for (int m = 0; m < measures.length; m++) {
+            values[m] = measureColumn(measures[m], columns);
+        }
+
+        for (int i = 0; i < size; i++) {
+            for (int p = 0; p < dimensions.length; p++) {
+                rowCodes[p] = codes[p][i];
+            }
+            for (int m = 0; m < measures.length; m++) {
+                rowValues[m] = values[m] == null ? Double.NaN : values[m][i];
+            }
+            aggregateRow();
+        }
+    }
+
+    private void aggregateRow() {
+        for (Groups groups : groupsBySet) {
+            groups.aggregate(groups.indexOf(rowCodes), rowValues);
+        }
+    }
+
+    private int[] codeColumn(int position, AccidentColumns columns) {
+        CubeDimension dimension = dimensions[position];
+        Coder coder = coders[position];
+        int size = columns.size;
+        int[] codes = new int[size];
+        switch (dimension) {
+            case SEVERITY:
+                if (columns.severity == null) {
+                    Arrays.fill(codes, coder.encode(0));
+                } else {
+                    for (int i = 0; i < size; i++) {
+                        codes[i] = coder.encode(columns.severity[i]);
+                    }
+                }
+                break;
+            case HOUR:
+                for (int i = 0; i < size; i++) {
+                    long start = columns.startEpochSecond == null ? Accident.NO_TIME : columns.startEpochSecond[i];
+                    codes[i] = start == Accident.NO_TIME ? MISSING : coder.encode(Accident.hourOfDay(start));
+                }
+                break;
+            default:
+                int[] dictionaryCodes = columns.codes(dimension);
+                StringDictionary dictionary = columns.dictionary(dimension);
+                if (dictionaryCodes != null) {
+                    for (int i = 0; i < size; i++) {
+                        codes[i] = coder.translate(dictionaryCodes[i], dictionary);
+                    }
+                }
+                break;
+        }
+        return codes;
+    }
+
+    /**
+     * Values of a measure per row, NaN where missing, or null if the column is missing
+     */
+    private static double[] measureColumn(CubeMeasure measure, AccidentColumns columns) {
+        switch (measure) {
+            case SEVERITY:
+                double[] severity = new double[columns.size];
+                if (columns.severity != null) {
+                    for (int i = 0; i < columns.size; i++) {
+                        severity[i] = columns.severity[i];
+                    }
+                }
+                return severity;
+            case DURATION_MINUTES:
+                if (columns.startEpochSecond == null || columns.endEpochSecond == null) {
+                    return null;
+                }
+                double[] durations = new double[columns.size];
+                for (int i = 0; i < columns.size; i++) {
+                    durations[i] = AccidentAnalyzer.durationMinutes(columns.startEpochSecond[i],
+                            columns.endEpochSecond[i]);
+                }
+                return durations;
+            case TEMPERATURE:
+                return columns.temperature;
+            default:
+                return columns.visibility;
+        }
+    }
+
+    /**
+     * Call the action with every group of a grouping set, in no particular order
+     */
+    public void forEachCell(Set<CubeDimension> groupingSet, Consumer<Cell> action) {
+        Groups groups = groupsBySet[setIndex(groupingSet)];
+        for (int group = 0; group < groups.size; group++) {
+            action.accept(new Cell(groups, group));
+        }
+    }
+
+    /**
+     * The groups of a grouping set, in no particular order
+     */
+    public List<Cell> cells(Set<CubeDimension> groupingSet) {
+        List<Cell> cells = new ArrayList<>();
+        forEachCell(groupingSet, cells::add);
+        return cells;
+    }
+
+    private int setIndex(Set<CubeDimension> groupingSet) {
+        int index = groupingSets.indexOf(groupingSet.isEmpty()
+                ? EnumSet.noneOf(CubeDimension.class) : EnumSet.copyOf(groupingSet));
+        if (index < 0) {
+            throw new IllegalArgumentException("Grouping set " + groupingSet + " is not aggregated by this cube");
+        }
+        return index;
+    }
+
+    /**
+     * Add the groups of another cube with the same grouping sets and measures. Codes are
+     * recoded through the values, since each cube codes values in its own order.
+     */
+    public void merge(AccidentCube other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge a cube into itself");
+        }
+        if (!groupingSets.equals(other.groupingSets) || !measureList.equals(other.measureList)) {
+            throw new IllegalArgumentException("Cannot merge cubes of grouping sets " + groupingSets + " and "
+                    + other.groupingSets + ", measures " + measureList + " and " + other.measureList);
+        }
+        // Our code of each of other's value codes, 0 if not yet recoded
+        int[][] recoded = new int[dimensions.length][];
+        for (int p = 0; p < dimensions.length; p++) {
+            recoded[p] = new int[FIRST_VALUE + other.coders[p].size()];
+        }
+        for (int s = 0; s < groupsBySet.length; s++) {
+            Groups groups = groupsBySet[s];
+            Groups otherGroups = other.groupsBySet[s];
+            for (int otherGroup = 0; otherGroup < otherGroups.size; otherGroup++) {
+                for (int d = 0; d < groups.positions.length; d++) {
+                    int p = groups.positions[d];
+                    int code = otherGroups.code(otherGroup, d);
+                    if (code >= FIRST_VALUE) {
+                        if (recoded[p][code] == 0) {
+                            Object value = other.coders[p].decode(code);
+                            recoded[p][code] = value instanceof Integer
+                                    ? coders[p].encode((int) (Integer) value) : coders[p].encode((String) value);
+                        }
+                        code = recoded[p][code];
+                    }
+                    rowCodes[p] = code;
+                }
+                groups.mergeGroup(groups.indexOf(rowCodes), otherGroups, otherGroup);
+            }
+        }
+    }
+
+    /**
+     * Write the grouping sets, measures, coded values and the groups of each set.
+     * Dimensions and measures are written by name, so a cube stays readable when enum
+     * constants are added.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(groupingSets.size());
+        for (Set<CubeDimension> groupingSet : groupingSets) {
+            out.writeInt(groupingSet.size());
+            for (CubeDimension dimension : groupingSet) {
+                out.writeUTF(dimension.name());
+            }
+        }
+        out.writeInt(measures.length);
+        for (CubeMeasure measure : measures) {
+            out.writeUTF(measure.name());
+        }
+        for (Coder coder : coders) {
+            int size = coder.size();
+            out.writeInt(size);
+            for (int code = FIRST_VALUE; code < FIRST_VALUE + size; code++) {
+                Object value = coder.decode(code);
+                if (value instanceof Integer) {
+                    out.writeInt((Integer) value);
+                } else {
+                    out.writeUTF((String) value);
+                }
+            }
+        }
+        for (Groups groups : groupsBySet) {
+            out.writeInt(groups.size);
+            for (int group = 0; group < groups.size; group++) {
+                for (int d = 0; d < groups.positions.length; d++) {
+                    out.writeInt(groups.code(group, d));
+                }
+                out.writeLong(groups.counts[group]);
+                for (int slot = group * measures.length; slot < (group + 1) * measures.length; slot++) {
+                    out.writeDouble(groups.sums[slot]);
+                    out.writeLong(groups.valueCounts[slot]);
+                    out.writeDouble(groups.mins[slot]);
+                    out.writeDouble(groups.maxs[slot]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a cube written by {@link #writeTo}
+     */
+    public static AccidentCube readFrom(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported cube format version " + version);
+        }
+        AccidentCube cube;
+        try {
+            List<Set<CubeDimension>> groupingSets = new ArrayList<>();
+            int setCount = in.readInt();
+            for (int s = 0; s < setCount; s++) {
+                Set<CubeDimension> groupingSet = EnumSet.noneOf(CubeDimension.class);
+                int size = in.readInt();
+                for (int d = 0; d < size; d++) {
+                    groupingSet.add(CubeDimension.valueOf(in.readUTF()));
+                }
+                groupingSets.add(groupingSet);
+            }
+            Set<CubeMeasure> measures = EnumSet.noneOf(CubeMeasure.class);
+            int measureCount = in.readInt();
+            for (int m = 0; m < measureCount; m++) {
+                measures.add(CubeMeasure.valueOf(in.readUTF()));
+            }
+            cube = new AccidentCube(groupingSets, measures);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt cube: " + e.getMessage(), e);
+        }
+
+        for (Coder coder : cube.coders) {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                int code = coder.dimension.isNumeric() ? coder.encode(in.readInt()) : coder.encode(in.readUTF());
+                if (code != FIRST_VALUE + i) {
+                    throw new IOException("Corrupt cube: repeated value of " + coder.dimension);
+                }
+            }
+        }
+        for (Groups groups : cube.groupsBySet) {
+            int groupCount = in.readInt();
+            if (groupCount < 0) {
+                throw new IOException("Corrupt cube: " + groupCount + " groups");
+            }
+            for (int i = 0; i < groupCount; i++) {
+                for (int d = 0; d < groups.positions.length; d++) {
+                    int p = groups.positions[d];
+                    int code = in.readInt();
+                    if (code < MISSING || code >= FIRST_VALUE + cube.coders[p].size()) {
+                        throw new IOException("Corrupt cube: code " + code + " of " + cube.dimensions[p]);
+                    }
+                    cube.rowCodes[p] = code;
+                }
+                int group = groups.indexOf(cube.rowCodes);
+                groups.counts[group] = in.readLong();
+                for (int slot = group * cube.measures.length; slot < (group + 1) * cube.measures.length; slot++) {
+                    groups.sums[slot] = in.readDouble();
+                    groups.valueCounts[slot] = in.readLong();
+                    groups.mins[slot] = in.readDouble();
+                    groups.maxs[slot] = in.readDouble();
+                }
+            }
+        }
+        return cube;
+    }
+
+    public void clear() {
+        for (Coder coder : coders) {
+            coder.clear();
+        }
+        for (Groups groups : groupsBySet) {
+            groups.reset();
+        }
+    }
+
+    private int position(CubeDimension dimension) {
+        for (int p = 0; p < dimensions.length; p++) {
+            if (dimensions[p] == dimension) {
+                return p;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,278 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.io.CSVParser;
+import com.usaccidents.io.HDFSUtils;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * An {@link AccidentAnalyzer} together with the input files it has processed, stored as
+ * one versioned binary snapshot so that a run only has to process the files that arrived
+ * since the last one.
+ *
+ * A run loads the last snapshot (or starts empty), processes the new files, and saves
+ * the snapshot again:
+ * <pre>
+ *   AnalyzerCheckpoint checkpoint = AnalyzerCheckpoint.loadOrCreate(path, AccidentAnalyzer::new);
+ *   checkpoint.processNewFiles(files, new CSVParser(AccidentAnalyzer.REQUIRED_FIELDS));
+ *   checkpoint.save(path);
+ * </pre>
+ * Inputs are recognized by name and length. A processed input whose length has changed
+ * is skipped with a warning rather than counted twice; its new rows need a full rebuild.
+ *
+ * Layout (all numbers big-endian): magic, version, the number of inputs, each input's
+ * name and length, then the analyzer as written by {@link AccidentAnalyzer#writeTo}.
+ * Snapshots are saved to the local file system, or to HDFS with an {@link HDFSUtils},
+ * by writing a temporary file next to the target and moving it over the target in one
+ * step, so a failed save leaves the previous snapshot in place. A temporary file left by
+ * a failed save is incomplete; loading ignores it and the next save overwrites it.
+ */
+public class AnalyzerCheckpoint {
+    private static final Logger logger = LoggerFactory.getLogger(AnalyzerCheckpoint.class);
+    private static final int MAGIC = 0x5553434B; // "USCK"
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final AccidentAnalyzer analyzer;
+    // Length of each processed input by name, in order of processing
+    private final Map<String, Long> processedInputs = new LinkedHashMap<>();
+
+    /**
+     * A checkpoint of an analyzer that has processed no inputs yet
+     */
+    public AnalyzerCheckpoint(AccidentAnalyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    public AccidentAnalyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    /**
+     * Length of each processed input by name, in order of processing
+     */
+    public Map<String, Long> getProcessedInputs() {
+        return Collections.unmodifiableMap(processedInputs);
+    }
+
+    /**
+     * Whether an input has been processed. An input processed with another length is
+     * reported as processed, with a warning, since its rows cannot be counted again.
+     */
+    public boolean isProcessed(String input, long length) {
+        Long processedLength = processedInputs.get(input);
+        if (processedLength == null) {
+            return false;
+        }
+        if (processedLength != length) {
+            logger.warn("Input {} was processed with {} bytes and now has {}; skipping it, "
+                    + "rebuild the checkpoint to count the change", input, processedLength, length);
+        }
+        return true;
+    }
+
+    /**
+     * Record that the analyzer has processed an input
+     */
+    public void markProcessed(String input, long length) {
+        processedInputs.put(input, length);
+    }
+
+    /**
+     * Process the local files not yet processed, each counted under its file name as the source
+     *
+     * @return the number of files processed
+     */
+    public int processNewFiles(List<File> files, CSVParser parser) {
+        int processed = 0;
+        for (File file : files) {
+            String input = file.getAbsolutePath();
+            if (isProcessed(input, file.length())) {
+                continue;
+            }
+            parser.parseCSVFileReusing(file, analyzer);
+            markProcessed(input, file.length());
+            processed++;
+        }
+        logger.info("Processed {} new of {} files; {} accidents in total", processed, files.size(),
+                analyzer.getTotalAccidents());
+        return processed;
+    }
+
+    /**
+     * Process the HDFS files not yet processed, each counted under its file name as the source
+     *
+     * @return the number of files processed
+     */
+    public int processNewHDFSFiles(List<Path> files, HDFSUtils hdfsUtils, CSVParser parser) {
+        int processed = 0;
+        try {
+            for (Path file : files) {
+                String input = file.toString();
+                long length = hdfsUtils.getFileStatus(file).getLen();
+                if (isProcessed(input, length)) {
+                    continue;
+                }
+                    parser.parseHDFSCSVFileReusing(file, hdfsUtils, analyzer);
+                markProcessed(input, length);
+                processed++;
+            }
+        } catch (IOException e) {
+            logger.error("Error reading HDFS file status", e);
+            throw new RuntimeException("Failed to process new HDFS files", e);
+        }
+        logger.info("Processed {} new of {} HDFS files; {} accidents in total", processed, files.size(),
+                analyzer.getTotalAccidents());
+        return processed;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(processedInputs.size());
+        for (Map.Entry<String, Long> input : processedInputs.entrySet()) {
+            out.writeUTF(input.getKey());
+            out.writeLong(input.getValue());
+        }
+        analyzer.writeTo(out);
+    }
+
+    /**
+     * Read a checkpoint written by {@link #writeTo}
+     */
+    public static AnalyzerCheckpoint readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an analyzer checkpoint");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported checkpoint format version " + version);
+        }
+        int inputCount = in.readInt();
+        if (inputCount < 0) {
+            throw new IOException("Corrupt checkpoint: " + inputCount + " inputs");
+        }
+        Map<String, Long> inputs = new LinkedHashMap<>();
+        for (int i = 0; i < inputCount; i++) {
+            inputs.put(in.readUTF(), in.readLong());
+        }
+        AnalyzerCheckpoint checkpoint = new AnalyzerCheckpoint(AccidentAnalyzer.readFrom(in));
+        checkpoint.processedInputs.putAll(inputs);
+        return checkpoint;
+    }
+
+    /**
+     * Save to a local file, replacing the previous snapshot
+     */
+    public void save(String path) {
+        java.nio.file.Path target = Paths.get(path);
+        java.nio.file.Path temporary = Paths.get(path + TEMPORARY_SUFFIX);
+        try {
+            try (OutputStream out = new FileOutputStream(temporary.toFile())) {
+                write(out);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Saved checkpoint of {} inputs to {}", processedInputs.size(), path);
+        } catch (IOException e) {
+            logger.error("Error saving checkpoint: {}", path, e);
+            throw new RuntimeException("Failed to save analyzer checkpoint", e);
+        }
+    }
+
+    /**
+     * Save to an HDFS file, replacing the previous snapshot
+     */
+    public void save(String path, HDFSUtils hdfsUtils) {
+        Path target = new Path(path);
+        Path temporary = new Path(path + TEMPORARY_SUFFIX);
+        try {
+            try (OutputStream out = hdfsUtils.createFile(temporary)) {
+                write(out);
+            }
+            hdfsUtils.replaceFile(temporary, target);
+            logger.info("Saved checkpoint of {} inputs to {}", processedInputs.size(), path);
+        } catch (IOException e) {
+            logger.error("Error saving checkpoint: {}", path, e);
+            throw new RuntimeException("Failed to save analyzer checkpoint", e);
+        }
+    }
+
+    /**
+     * Load the snapshot in a local file, or start with an empty analyzer if there is none
+     */
+    public static AnalyzerCheckpoint loadOrCreate(String path, Supplier<AccidentAnalyzer> emptyAnalyzer) {
+        File file = new File(path);
+        if (new File(path + TEMPORARY_SUFFIX).exists()) {
+            logger.warn("Ignoring {}{} left by a failed save", path, TEMPORARY_SUFFIX);
+        }
+        if (!file.exists()) {
+            logger.info("No checkpoint at {}; starting empty", path);
+            return new AnalyzerCheckpoint(emptyAnalyzer.get());
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in, path);
+        } catch (IOException e) {
+            logger.error("Error loading checkpoint: {}", path, e);
+            throw new RuntimeException("Failed to load analyzer checkpoint", e);
+        }
+    }
+
+    /**
+     * Load the snapshot in an HDFS file, or start with an empty analyzer if there is none
+     */
+    public static AnalyzerCheckpoint loadOrCreate(String path, HDFSUtils hdfsUtils,
+                                                  Supplier<AccidentAnalyzer> emptyAnalyzer) {
+        Path file = new Path(path);
+        try {
+            if (hdfsUtils.exists(new Path(path + TEMPORARY_SUFFIX))) {
+                logger.warn("Ignoring {}{} left by a failed save", path, TEMPORARY_SUFFIX);
+            }
+            if (!hdfsUtils.exists(file)) {
+                logger.info("No checkpoint at {}; starting empty", path);
+                return new AnalyzerCheckpoint(emptyAnalyzer.get());
+            }
+            try (InputStream in = hdfsUtils.openFile(file)) {
+                return read(in, path);
+            }
+        } catch (IOException e) {
+            logger.error("Error loading checkpoint: {}", path, e);
+            throw new RuntimeException("Failed to load analyzer checkpoint", e);
+        }
+    }
+
+    private void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        writeTo(data);
+        data.flush();
+    }
+
+    private static AnalyzerCheckpoint read(InputStream in, String path) throws IOException {
+        AnalyzerCheckpoint checkpoint = readFrom(new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE)));
+        logger.info("Loaded checkpoint of {} inputs and {} accidents from {}", checkpoint.processedInputs.size(),
+                checkpoint.analyzer.getTotalAccidents(), path);
+        return checkpoint;
+    }
+}
@@ -0,0 +1,209 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.io.CSVParser;
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe counterpart of {@link AccidentAnalyzer} for many producers feeding one
+ * live aggregate.
+ *
+ * Every producer thread counts into its own {@link AccidentAnalyzer}, created on its
+ * first accident, and the partials are merged when results are read. A partial is
+ * guarded by its own lock, which its producer takes once per accident, batch or merged
+ * partial, so producers never contend with each other however many there are; a
+ * producer only waits while a reader merges or resets its partial. Readers take turns.
+ * The partials of threads that have ended are folded into one when results are read,
+ * so a run of short-lived producer threads does not accumulate them.
+ * Results can be read while producers are running, but then count only some of the
+ * accidents in flight, so their dimensions may not add up to the same total.
+ */
+public class ConcurrentAccidentAnalyzer implements Consumer<Accident>, CSVParser.SourceAware {
+    /**
+     * Counts of one producer thread, guarded by the analyzer
+     */
+    private static final class Partial {
+        private final Thread owner = Thread.currentThread();
+        private final AccidentAnalyzer counts;
+        // Only used by the owner
+        private String source = AccidentAnalyzer.UNKNOWN_SOURCE;
+
+        private Partial(AccidentAnalyzer counts) {
+            this.counts = counts;
+        }
+    }
+
+    // An empty analyzer of the configured precision, quantiles and grouping sets, copied for partials
+    private final AccidentAnalyzer prototype;
+    // Counts of the producers that have ended; its lock is held by readers
+    private final AccidentAnalyzer ended;
+    private final Queue<Partial> partials = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Partial> threadPartial = ThreadLocal.withInitial(this::register);
+
+    public ConcurrentAccidentAnalyzer() {
+        this(AccidentAnalyzer.DEFAULT_DISTINCT_PRECISION);
+    }
+
+    /**
+     * @param distinctPrecision HyperLogLog precision of the distinct counts
+     */
+    public ConcurrentAccidentAnalyzer(int distinctPrecision) {
+        this(distinctPrecision, EnumSet.allOf(AccidentAnalyzer.QuantileMetric.class),
+                EnumSet.allOf(AccidentAnalyzer.QuantileGrouping.class));
+    }
+
+    /**
+     * @param distinctPrecision HyperLogLog precision of the distinct counts
+     * @param quantileMetrics   measures whose quantiles are tracked, each by every grouping
+     * @param quantileGroupings groupings of the tracked quantiles
+     */
+    public ConcurrentAccidentAnalyzer(int distinctPrecision, Set<AccidentAnalyzer.QuantileMetric> quantileMetrics,
+                                      Set<AccidentAnalyzer.QuantileGrouping> quantileGroupings) {
+        this(distinctPrecision, quantileMetrics, quantileGroupings, Collections.emptyList());
+    }
+
+    /**
+     * @param distinctPrecision HyperLogLog precision of the distinct counts
+     * @param quantileMetrics   measures whose quantiles are tracked, each by every grouping
+     * @param quantileGroupings groupings of the tracked quantiles
+     * @param groupingSets      further breakdowns to count, as for {@link AccidentAnalyzer}
+     */
+    public ConcurrentAccidentAnalyzer(int distinctPrecision, Set<AccidentAnalyzer.QuantileMetric> quantileMetrics,
+                                      Set<AccidentAnalyzer.QuantileGrouping> quantileGroupings,
+                                      List<Set<CubeDimension>> groupingSets) {
+        this.prototype = new AccidentAnalyzer(distinctPrecision, quantileMetrics, quantileGroupings, groupingSets);
+        this.ended = prototype.newEmpty();
+    }
+
+    private Partial register() {
+        Partial partial = new Partial(prototype.newEmpty());
+        partials.add(partial);
+        return partial;
+    }
+
+    /**
+     * Attribute the accidents the calling thread processes from now on to a source, for the
+     * distinct accident IDs per source. The parser calls it on each worker thread with the
+     * file name of the records that thread hands over.
+     */
+    @Override
+    public void startSource(String sourceName) {
+        threadPartial.get().source = sourceName;
+    }
+
+    @Override
+    public void accept(Accident accident) {
+        processAccident(accident);
+    }
+
+    /**
+     * Process a single accident record; safe to call from any number of threads
+     */
+    public void processAccident(Accident accident) {
+        if (accident == null) {
+            return;
+        }
+
+        Partial partial = threadPartial.get();
+        synchronized (partial.counts) {
+            partial.counts.processAccident(accident, partial.source);
+        }
+    }
+
+    /**
+     * Process every row of a batch; safe to call from any number of threads
+     */
+    public void processBatch(AccidentBatch batch) {
+        Partial partial = threadPartial.get();
+        synchronized (partial.counts) {
+            partial.counts.processBatch(batch);
+        }
+    }
+
+    /**
+     * Add the counts of a partial aggregate, e.g. one a producer filled on its own
+     */
+    public void merge(AccidentAnalyzer other) {
+        Partial partial = threadPartial.get();
+        synchronized (partial.counts) {
+            partial.counts.merge(other);
+        }
+    }
+
+    /**
+     * Get the total number of accidents processed
+     */
+    public long getTotalAccidents() {
+        synchronized (ended) {
+            foldEnded();
+            long total = ended.getTotalAccidents();
+            for (Partial partial : partials) {
+                synchronized (partial.counts) {
+                    total += partial.counts.getTotalAccidents();
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Copy of the current counts as a single-threaded analyzer
+     */
+    public AccidentAnalyzer snapshot() {
+        synchronized (ended) {
+            foldEnded();
+            AccidentAnalyzer snapshot = prototype.newEmpty().merge(ended);
+            for (Partial partial : partials) {
+                synchronized (partial.counts) {
+                    snapshot.merge(partial.counts);
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Get comprehensive analysis results, in the same form as {@link AccidentAnalyzer#getResults()}
+     */
+    public Map<String, Object> getResults() {
+        return snapshot().getResults();
+    }
+
+    /**
+     * Reset the analyzer to clear all data. Counts added while the reset runs may be lost.
+     */
+    public void reset() {
+        synchronized (ended) {
+            ended.reset();
+            for (Partial partial : partials) {
+                synchronized (partial.counts) {
+                    partial.counts.reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the counts of producers that have ended into one analyzer; called holding its lock
+     */
+    private void foldEnded() {
+        for (Iterator<Partial> it = partials.iterator(); it.hasNext(); ) {
+            Partial partial = it.next();
+            if (!partial.owner.isAlive()) {
+                // The owner has ended, so nothing adds to its counts any more
+                ended.merge(partial.counts);
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.usaccidents.operators;
+
+import java.util.Arrays;
+
+/**
+ * Approximate frequency of any key of a stream in fixed memory, using a Count-Min sketch.
+ *
+ * Each of depth rows of width counters is indexed by its own hash of the key; adding a
+ * key increments one counter per row and its estimate is the smallest of them. Estimates
+ * never undercount, and with probability 1 - delta overcount by at most epsilon × total,
+ * where epsilon = e / width and delta = e^-depth. Unlike {@link SpaceSavingSketch} it
+ * answers for every key, not just the heaviest, but cannot list the keys it has seen.
+ *
+ * Sketches of the same dimensions hash alike and merge by adding their counters. Not
+ * thread-safe.
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final long[] counters;
+    private long total;
+
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Width and depth must be positive: " + width + " x " + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new long[width * depth];
+    }
+
+    /**
+     * A sketch overcounting by at most epsilon × total with probability at least 1 - delta
+     */
+    public static CountMinSketch withErrorBounds(double epsilon, double delta) {
+        if (epsilon <= 0 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("Invalid error bounds: epsilon " + epsilon + ", delta " + delta);
+        }
+        return new CountMinSketch((int) Math.ceil(Math.E / epsilon), (int) Math.ceil(Math.log(1 / delta)));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Sum of all counts added
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Largest overcount of an estimate with probability 1 - {@link #getFailureProbability()}
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+
+    public double getFailureProbability() {
+        return Math.exp(-depth);
+    }
+
+    public void add(Object key) {
+        add(key, 1);
+    }
+
+    /**
+     * Add count occurrences of a key
+     */
+    public void add(Object key, long count) {
+        int hash = key.hashCode();
+        for (int row = 0; row < depth; row++) {
+            counters[row * width + column(hash, row)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Estimated count of a key, never less than its true count
+     */
+    public long estimate(Object key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row * width + column(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Add the counters of another sketch of the same dimensions
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches of " + width + " x " + depth + " and "
+                    + other.width + " x " + other.depth);
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+        total += other.total;
+    }
+
+    public void clear() {
+        Arrays.fill(counters, 0);
+        total = 0;
+    }
+
+    /**
+     * Column of a key hash in a row: the hash is mixed with a per-row seed, then scrambled
+     * with the MurmurHash3 finalizer
+     */
+    private int column(int hash, int row) {
+        long h = hash * 0x9E3779B97F4A7C15L + (row + 1) * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) ((h >>> 1) % width);
+    }
+}
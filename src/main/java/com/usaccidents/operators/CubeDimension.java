@@ -0,0 +1,102 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentField;
+
+/**
+ * Attributes of an accident an {@link AccidentCube} can group by.
+ *
+ * Each dimension starts with a number of bits of a grouping set's packed group key,
+ * chosen for the US Accidents data with room to spare. A dimension with more distinct
+ * values gets a wider field, and a grouping set whose fields exceed 64 bits uses
+ * unpacked keys, so the widths bound no cube; they only decide when keys are repacked.
+ */
+public enum CubeDimension {
+    STATE(AccidentField.STATE, 8),
+    COUNTY(AccidentField.COUNTY, 14),
+    CITY(AccidentField.CITY, 18),
+    STREET(AccidentField.STREET, 22),
+    TIMEZONE(AccidentField.TIMEZONE, 5),
+    WEATHER_CONDITION(AccidentField.WEATHER_CONDITION, 10),
+    SEVERITY(AccidentField.SEVERITY, 6),
+    /**
+     * Hour of day of the start time
+     */
+    HOUR(AccidentField.START_TIME, 6);
+
+    private final AccidentField field;
+    private final int bits;
+
+    CubeDimension(AccidentField field, int bits) {
+        this.field = field;
+        this.bits = bits;
+    }
+
+    /**
+     * The accident field the dimension is read from
+     */
+    public AccidentField getField() {
+        return field;
+    }
+
+    /**
+     * Initial width of the dimension in a packed group key
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Whether values are ints, read with intValue, rather than strings
+     */
+    public boolean isNumeric() {
+        return this == SEVERITY || this == HOUR;
+    }
+
+    /**
+     * Name used in result keys, e.g. "WeatherCondition"
+     */
+    public String getResultName() {
+        StringBuilder name = new StringBuilder();
+        for (String word : name().split("_")) {
+            name.append(word.charAt(0)).append(word.substring(1).toLowerCase());
+        }
+        return name.toString();
+    }
+
+    /**
+     * The value of a string dimension, or null or "" if missing
+     */
+    String stringValue(Accident accident) {
+        switch (this) {
+            case STATE:
+                return accident.getState();
+            case COUNTY:
+                return accident.getCounty();
+            case CITY:
+                return accident.getCity();
+            case STREET:
+                return accident.getStreet();
+            case TIMEZONE:
+                return accident.getTimezone();
+            case WEATHER_CONDITION:
+                return accident.getWeatherCondition();
+            default:
+                throw new IllegalStateException(this + " is numeric");
+        }
+    }
+
+    /**
+     * The value of a numeric dimension, or -1 for a missing hour
+     */
+    int intValue(Accident accident) {
+        switch (this) {
+            case SEVERITY:
+                return accident.getSeverity();
+            case HOUR:
+                return accident.getStartHour();
+            default:
+                throw new IllegalStateException(this + " is not numeric");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.model.Accident;
+
+/**
+ * Numeric attributes an {@link AccidentCube} can aggregate per group, as sum, count of
+ * values, min and max. A missing temperature or visibility is read as NaN by the
+ * parser and left out of the aggregates, as is a missing duration.
+ */
+public enum CubeMeasure {
+    SEVERITY,
+    /**
+     * Minutes from start to end time, for accidents with both times and an end not before
+     * the start
+     */
+    DURATION_MINUTES,
+    TEMPERATURE,
+    VISIBILITY;
+
+    /**
+     * The measure of an accident, or NaN if it has none
+     */
+    double valueOf(Accident accident) {
+        switch (this) {
+            case SEVERITY:
+                return accident.getSeverity();
+            case DURATION_MINUTES:
+                return AccidentAnalyzer.durationMinutes(accident.getStartEpochSecond(), accident.getEndEpochSecond());
+            case TEMPERATURE:
+                return accident.getTemperature();
+            default:
+                return accident.getVisibility();
+        }
+    }
+}
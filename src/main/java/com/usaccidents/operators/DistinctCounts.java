@@ -0,0 +1,131 @@
+package com.usaccidents.operators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Approximate distinct counts of one dimension per grouping key, e.g. distinct cities
+ * per state, with one {@link HyperLogLog} of a common precision per group.
+ *
+ * Like its sketches, a set of counts merges with another of the same precision and can
+ * be stored with {@link #writeTo} and {@link #readFrom}. Not thread-safe.
+ */
+public class DistinctCounts {
+    private final int precision;
+    private final Map<String, HyperLogLog> groups = new HashMap<>();
+
+    public DistinctCounts(int precision) {
+        if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + HyperLogLog.MIN_PRECISION + " and "
+                    + HyperLogLog.MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Count a value in a group
+     */
+    public void add(String group, String value) {
+        addHash(group, HyperLogLog.hash(value));
+    }
+
+    /**
+     * Count a value in a group by its {@link HyperLogLog#hash(String) hash}
+     */
+    public void addHash(String group, long hash) {
+        HyperLogLog sketch = groups.get(group);
+        if (sketch == null) {
+            sketch = new HyperLogLog(precision);
+            groups.put(group, sketch);
+        }
+        sketch.addHash(hash);
+    }
+
+    /**
+     * Estimated number of distinct values in a group, 0 for an unknown group
+     */
+    public long estimate(String group) {
+        HyperLogLog sketch = groups.get(group);
+        return sketch == null ? 0 : sketch.estimate();
+    }
+
+    /**
+     * Estimated number of distinct values of every group
+     */
+    public Map<String, Long> estimates() {
+        Map<String, Long> estimates = new HashMap<>();
+        groups.forEach((group, sketch) -> estimates.put(group, sketch.estimate()));
+        return estimates;
+    }
+
+    public int groupCount() {
+        return groups.size();
+    }
+
+    /**
+     * Call the action with every group and its sketch
+     */
+    public void forEach(BiConsumer<String, HyperLogLog> action) {
+        groups.forEach(action);
+    }
+
+    /**
+     * Add the values of every group of another set of counts of the same precision
+     */
+    public void merge(DistinctCounts other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge distinct counts of precision " + precision + " and "
+                    + other.precision);
+        }
+        other.groups.forEach(this::merge);
+    }
+
+    /**
+     * Add the values of one group's sketch
+     */
+    public void merge(String group, HyperLogLog sketch) {
+        HyperLogLog ours = groups.get(group);
+        if (ours == null) {
+            ours = new HyperLogLog(precision);
+            groups.put(group, ours);
+        }
+        ours.merge(sketch);
+    }
+
+    public void clear() {
+        groups.clear();
+    }
+
+    /**
+     * Write the precision, then each group's key and sketch
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(precision);
+        out.writeInt(groups.size());
+        for (Map.Entry<String, HyperLogLog> group : groups.entrySet()) {
+            out.writeUTF(group.getKey());
+            group.getValue().writeTo(out);
+        }
+    }
+
+    /**
+     * Read counts written by {@link #writeTo}
+     */
+    public static DistinctCounts readFrom(DataInput in) throws IOException {
+        DistinctCounts counts = new DistinctCounts(in.readByte());
+        int groupCount = in.readInt();
+        for (int i = 0; i < groupCount; i++) {
+            String group = in.readUTF();
+            counts.merge(group, HyperLogLog.readFrom(in));
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,424 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+import com.usaccidents.model.AccidentTable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Accident counts per {@link Geohash} cell of the start coordinates, at several
+ * precisions at once, with the severity mix of every cell.
+ *
+ * Each point is encoded once at the finest precision and truncated for the coarser ones.
+ * Cells are indexed by a {@link LongKeyIndex} per precision, with counts in parallel
+ * primitive arrays, so counting allocates only when a new cell appears. Hotspots, the
+ * cells with the most accidents, are selected with a bounded heap. Counts of the same
+ * precisions merge and can be stored with {@link #writeTo} and {@link #readFrom}.
+ * Not thread-safe.
+ */
+public class GeoHotspots {
+    /**
+     * About 39 km, 4.9 km and 1.2 km wide cells
+     */
+    public static final int[] DEFAULT_PRECISIONS = {4, 5, 6};
+    private static final int FORMAT_VERSION = 1;
+    // Severities in [0, OTHER_SEVERITY) have a count each per cell, others share one
+    private static final int OTHER_SEVERITY = 5;
+    private static final int SEVERITY_SLOTS = OTHER_SEVERITY + 1;
+
+    /**
+     * A cell with its counts
+     */
+    public static final class Hotspot {
+        private final String geohash;
+        private final double latitude;
+        private final double longitude;
+        private final long count;
+        private final long[] severityCounts;
+
+        private Hotspot(String geohash, double latitude, double longitude, long count, long[] severityCounts) {
+            this.geohash = geohash;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.count = count;
+            this.severityCounts = severityCounts;
+        }
+
+        public String getGeohash() {
+            return geohash;
+        }
+
+        /**
+         * Latitude of the cell's center
+         */
+        public double getLatitude() {
+            return latitude;
+        }
+
+        /**
+         * Longitude of the cell's center
+         */
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Accidents of a severity in the cell
+         */
+        public long getSeverityCount(int severity) {
+            return severity >= 0 && severity < OTHER_SEVERITY ? severityCounts[severity] : 0;
+        }
+
+        /**
+         * Non-zero accident counts by severity, "other" for severities outside 0 to 4
+         */
+        public Map<String, Long> getSeverityMix() {
+            Map<String, Long> mix = new LinkedHashMap<>();
+            for (int slot = 0; slot < SEVERITY_SLOTS; slot++) {
+                if (severityCounts[slot] != 0) {
+                    mix.put(slot == OTHER_SEVERITY ? "other" : String.valueOf(slot), severityCounts[slot]);
+                }
+            }
+            return mix;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Hotspot)) {
+                return false;
+            }
+            Hotspot other = (Hotspot) o;
+            return geohash.equals(other.geohash) && count == other.count
+                    && Arrays.equals(severityCounts, other.severityCounts);
+        }
+
+        @Override
+        public int hashCode() {
+            return geohash.hashCode() * 31 + Long.hashCode(count);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.4f, %.4f): %d accidents, by severity %s",
+                    geohash, latitude, longitude, count, getSeverityMix());
+        }
+    }
+
+    /**
+     * Counts of one precision
+     */
+    private static final class Level {
+        private final int precision;
+        private final LongKeyIndex cells = new LongKeyIndex();
+        private long[] counts = new long[64];
+        private long[] severityCounts = new long[64 * SEVERITY_SLOTS];
+
+        private Level(int precision) {
+            this.precision = precision;
+        }
+
+        private void add(long cell, int severitySlot, long count) {
+            int index = cells.indexOf(cell);
+            if (index == counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+                severityCounts = Arrays.copyOf(severityCounts, counts.length * SEVERITY_SLOTS);
+            }
+            counts[index] += count;
+            severityCounts[index * SEVERITY_SLOTS + severitySlot] += count;
+        }
+
+        private Hotspot hotspot(int index) {
+            long cell = cells.keyAt(index);
+            return new Hotspot(Geohash.toString(cell, precision), Geohash.latitude(cell, precision),
+                    Geohash.longitude(cell, precision), counts[index],
+                    Arrays.copyOfRange(severityCounts, index * SEVERITY_SLOTS, (index + 1) * SEVERITY_SLOTS));
+        }
+
+        private void clear() {
+            Arrays.fill(counts, 0, cells.size(), 0);
+            Arrays.fill(severityCounts, 0, cells.size() * SEVERITY_SLOTS, 0);
+            cells.clear();
+        }
+    }
+
+    private final Level[] levels;
+    private long located = 0;
+    private long withoutLocation = 0;
+
+    public GeoHotspots() {
+        this(DEFAULT_PRECISIONS);
+    }
+
+    /**
+     * @param precisions geohash lengths to count cells of, each from 1 to {@link Geohash#MAX_PRECISION}
+     */
+    public GeoHotspots(int... precisions) {
+        if (precisions.length == 0) {
+            throw new IllegalArgumentException("At least one geohash precision is required");
+        }
+        int[] sorted = precisions.clone();
+        Arrays.sort(sorted);
+        this.levels = new Level[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            Geohash.checkPrecision(sorted[i]);
+            if (i > 0 && sorted[i] == sorted[i - 1]) {
+                throw new IllegalArgumentException("Duplicate geohash precision " + sorted[i]);
+            }
+            levels[i] = new Level(sorted[i]);
+        }
+    }
+
+    /**
+     * Geohash lengths counted, in increasing order
+     */
+    public int[] getPrecisions() {
+        int[] precisions = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            precisions[i] = levels[i].precision;
+        }
+        return precisions;
+    }
+
+    /**
+     * Count an accident at its start coordinates
+     */
+    public void add(Accident accident) {
+        add(accident.getStartLat(), accident.getStartLng(), accident.getSeverity());
+    }
+
+    /**
+     * Count an accident at a point; points without valid coordinates are only counted as
+     * {@link #getWithoutLocation without location}
+     */
+    public void add(double latitude, double longitude, int severity) {
+        if (!Geohash.isValid(latitude, longitude)) {
+            withoutLocation++;
+            return;
+        }
+        located++;
+        long cell = Geohash.encode(latitude, longitude);
+        int severitySlot = severity >= 0 && severity < OTHER_SEVERITY ? severity : OTHER_SEVERITY;
+        for (Level level : levels) {
+            level.add(Geohash.truncate(cell, level.precision), severitySlot, 1);
+        }
+    }
+
+    public void addBatch(AccidentBatch batch) {
+        addColumns(AccidentColumns.of(batch));
+    }
+
+    /**
+     * Count every row of a table; rows of a table without start coordinates have no location
+     */
+    public void addTable(AccidentTable table) {
+        for (int chunk = 0; chunk < table.chunkCount(); chunk++) {
+            addColumns(AccidentColumns.of(table, chunk));
+        }
+    }
+
+    void addColumns(AccidentColumns columns) {
+        if (columns.startLat == null || columns.startLng == null) {
+            withoutLocation += columns.size;
+            return;
+        }
+        for (int i = 0; i < columns.size; i++) {
+            add(columns.startLat[i], columns.startLng[i], columns.severity == null ? 0 : columns.severity[i]);
+        }
+    }
+
+    /**
+     * Add the counts of other hotspots of the same precisions
+     */
+    public void merge(GeoHotspots other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge hotspots with themselves");
+        }
+        if (!Arrays.equals(getPrecisions(), other.getPrecisions())) {
+            throw new IllegalArgumentException("Cannot merge hotspots of precisions " + Arrays.toString(getPrecisions())
+                    + " and " + Arrays.toString(other.getPrecisions()));
+        }
+        located += other.located;
+        withoutLocation += other.withoutLocation;
+        for (int l = 0; l < levels.length; l++) {
+            Level level = levels[l];
+            Level otherLevel = other.levels[l];
+            for (int index = 0; index < otherLevel.cells.size(); index++) {
+                long cell = otherLevel.cells.keyAt(index);
+                for (int slot = 0; slot < SEVERITY_SLOTS; slot++) {
+                    long count = otherLevel.severityCounts[index * SEVERITY_SLOTS + slot];
+                    if (count != 0) {
+                        level.add(cell, slot, count);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The n cells of a precision with the most accidents, most first
+     */
+    public List<Hotspot> hotspots(int precision, int n) {
+        Level level = level(precision);
+        if (n <= 0) {
+            return Collections.emptyList();
+        }
+        long[] counts = level.counts;
+        PriorityQueue<Integer> heap = new PriorityQueue<>(n + 1, (a, b) -> Long.compare(counts[a], counts[b]));
+        for (int index = 0; index < level.cells.size(); index++) {
+            if (heap.size() < n) {
+                heap.add(index);
+            } else if (counts[index] > counts[heap.peek()]) {
+                heap.poll();
+                heap.add(index);
+            }
+        }
+        List<Hotspot> top = new ArrayList<>(heap.size());
+        for (int index : heap) {
+            top.add(level.hotspot(index));
+        }
+        top.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        return top;
+    }
+
+    /**
+     * Accidents in the cell of a point at a precision, 0 if it has none or the point is invalid
+     */
+    public long count(double latitude, double longitude, int precision) {
+        Level level = level(precision);
+        if (!Geohash.isValid(latitude, longitude)) {
+            return 0;
+        }
+        int index = level.cells.find(Geohash.encode(latitude, longitude, precision));
+        return index < 0 ? 0 : level.counts[index];
+    }
+
+    /**
+     * Number of cells with accidents at a precision
+     */
+    public int cellCount(int precision) {
+        return level(precision).cells.size();
+    }
+
+    /**
+     * Accidents counted in cells
+     */
+    public long getLocated() {
+        return located;
+    }
+
+    /**
+     * Accidents without valid start coordinates
+     */
+    public long getWithoutLocation() {
+        return withoutLocation;
+    }
+
+    public void clear() {
+        for (Level level : levels) {
+            level.clear();
+        }
+        located = 0;
+        withoutLocation = 0;
+    }
+
+    /**
+     * Write the precisions and the counts of every cell
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(located);
+        out.writeLong(withoutLocation);
+        out.writeInt(levels.length);
+        for (Level level : levels) {
+            out.writeInt(level.precision);
+            out.writeInt(level.cells.size());
+            for (int index = 0; index < level.cells.size(); index++) {
+                out.writeLong(level.cells.keyAt(index));
+                for (int slot = 0; slot < SEVERITY_SLOTS; slot++) {
+                    out.writeLong(level.severityCounts[index * SEVERITY_SLOTS + slot]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read hotspots written by {@link #writeTo}
+     */
+    public static GeoHotspots readFrom(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported hotspot format version " + version);
+        }
+        long located = in.readLong();
+        long withoutLocation = in.readLong();
+        int levelCount = in.readInt();
+        if (levelCount <= 0 || levelCount > Geohash.MAX_PRECISION) {
+            throw new IOException("Corrupt hotspots: " + levelCount + " precisions");
+        }
+        int[] precisions = new int[levelCount];
+        long[][] cells = new long[levelCount][];
+        long[][] severityCounts = new long[levelCount][];
+        for (int l = 0; l < levelCount; l++) {
+            precisions[l] = in.readInt();
+            int cellCount = in.readInt();
+            if (cellCount < 0) {
+                throw new IOException("Corrupt hotspots: " + cellCount + " cells");
+            }
+            cells[l] = new long[cellCount];
+            severityCounts[l] = new long[cellCount * SEVERITY_SLOTS];
+            for (int index = 0; index < cellCount; index++) {
+                cells[l][index] = in.readLong();
+                for (int slot = 0; slot < SEVERITY_SLOTS; slot++) {
+                    severityCounts[l][index * SEVERITY_SLOTS + slot] = in.readLong();
+                }
+            }
+        }
+
+        GeoHotspots hotspots;
+        try {
+            hotspots = new GeoHotspots(precisions);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt hotspots: " + e.getMessage(), e);
+        }
+        hotspots.located = located;
+        hotspots.withoutLocation = withoutLocation;
+        for (int l = 0; l < levelCount; l++) {
+            for (int index = 0; index < cells[l].length; index++) {
+                for (int slot = 0; slot < SEVERITY_SLOTS; slot++) {
+                    long count = severityCounts[l][index * SEVERITY_SLOTS + slot];
+                    if (count != 0) {
+                        hotspots.levels[l].add(cells[l][index], slot, count);
+                    }
+                }
+            }
+        }
+        return hotspots;
+    }
+
+    private Level level(int precision) {
+        for (Level level : levels) {
+            if (level.precision == precision) {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException("Geohash precision " + precision + " is not counted; counted are "
+                + Arrays.toString(getPrecisions()));
+    }
+}
@@ -0,0 +1,125 @@
+package com.usaccidents.operators;
+
+/**
+ * Geohash cells as longs.
+ *
+ * A cell of precision p (1 to {@link #MAX_PRECISION} characters) is the first 5p bits of
+ * the geohash, longitude and latitude bits interleaved with longitude first, so the cell
+ * of a coarser precision is a right shift of a finer one. Points are encoded once at the
+ * maximum precision by quantizing each coordinate to 30 bits and spreading the bits apart,
+ * without a loop over the bits; the base-32 string is only built for display.
+ */
+public final class Geohash {
+    public static final int MAX_PRECISION = 12;
+    private static final int BITS_PER_COORDINATE = MAX_PRECISION * 5 / 2;
+    private static final double CELLS_PER_COORDINATE = 1L << BITS_PER_COORDINATE;
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private Geohash() {
+    }
+
+    /**
+     * Whether a point has usable coordinates. The parser reads a missing coordinate as 0,
+     * and no US accident lies at latitude 0, longitude 0, so that point counts as missing.
+     */
+    public static boolean isValid(double latitude, double longitude) {
+        return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180
+                && (latitude != 0 || longitude != 0);
+    }
+
+    /**
+     * Cell of a valid point at {@link #MAX_PRECISION}
+     */
+    public static long encode(double latitude, double longitude) {
+        long lat = quantize((latitude + 90) / 180);
+        long lng = quantize((longitude + 180) / 360);
+        return (spread(lng) << 1) | spread(lat);
+    }
+
+    /**
+     * Cell of a valid point at a precision
+     */
+    public static long encode(double latitude, double longitude, int precision) {
+        return truncate(encode(latitude, longitude), precision);
+    }
+
+    /**
+     * Cell of a lower precision containing a cell of {@link #MAX_PRECISION}
+     */
+    public static long truncate(long cell, int precision) {
+        checkPrecision(precision);
+        return cell >>> (5 * (MAX_PRECISION - precision));
+    }
+
+    /**
+     * Base-32 geohash of a cell, e.g. "9q5ct" for a cell of precision 5 in Los Angeles
+     */
+    public static String toString(long cell, int precision) {
+        checkPrecision(precision);
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (cell & 31)];
+            cell >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Latitude of the center of a cell
+     */
+    public static double latitude(long cell, int precision) {
+        int bits = 5 * precision / 2;
+        long lat = compact(cell << (5 * (MAX_PRECISION - precision))) >>> (BITS_PER_COORDINATE - bits);
+        return -90 + (lat + 0.5) * 180 / (1L << bits);
+    }
+
+    /**
+     * Longitude of the center of a cell
+     */
+    public static double longitude(long cell, int precision) {
+        int bits = (5 * precision + 1) / 2;
+        long lng = compact(cell << (5 * (MAX_PRECISION - precision)) >>> 1) >>> (BITS_PER_COORDINATE - bits);
+        return -180 + (lng + 0.5) * 360 / (1L << bits);
+    }
+
+    static void checkPrecision(int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and " + MAX_PRECISION + ": "
+                    + precision);
+        }
+    }
+
+    /**
+     * Index of a fraction in [0, 1] among 2^30 equal intervals, the last one closed
+     */
+    private static long quantize(double fraction) {
+        long index = (long) (fraction * CELLS_PER_COORDINATE);
+        return Math.min(index, (1L << BITS_PER_COORDINATE) - 1);
+    }
+
+    /**
+     * Bits 0..31 of a value moved to the even bits 0..62
+     */
+    private static long spread(long value) {
+        long x = value & 0xFFFFFFFFL;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        x = (x | (x << 1)) & 0x5555555555555555L;
+        return x;
+    }
+
+    /**
+     * The even bits of a value packed into bits 0..31; the inverse of spread
+     */
+    private static long compact(long value) {
+        long x = value & 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+        return x;
+    }
+}
@@ -0,0 +1,148 @@
+package com.usaccidents.operators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Approximate quantiles of one measure per grouping key, e.g. accident duration per
+ * state, with one {@link KllSketch} of a common k per group.
+ *
+ * Like its sketches, a set of quantiles merges with another and can be stored with
+ * {@link #writeTo} and {@link #readFrom}. Not thread-safe.
+ */
+public class GroupedQuantiles {
+    private final int k;
+    private final Map<String, KllSketch> groups = new HashMap<>();
+
+    public GroupedQuantiles() {
+        this(KllSketch.DEFAULT_K);
+    }
+
+    public GroupedQuantiles(int k) {
+        this.k = k;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Add a value to a group; NaN values are ignored
+     */
+    public void add(String group, double value) {
+        sketch(group).add(value);
+    }
+
+    /**
+     * The sketch of a group, created empty if the group is new
+     */
+    public KllSketch sketch(String group) {
+        KllSketch sketch = groups.get(group);
+        if (sketch == null) {
+            sketch = new KllSketch(k);
+            groups.put(group, sketch);
+        }
+        return sketch;
+    }
+
+    /**
+     * Approximate quantile of a group, NaN for an unknown group
+     */
+    public double quantile(String group, double q) {
+        KllSketch sketch = groups.get(group);
+        return sketch == null ? Double.NaN : sketch.quantile(q);
+    }
+
+    /**
+     * Approximate quantiles of every group, labelled as percentiles, e.g. "p50" and "p99"
+     */
+    public Map<String, Map<String, Double>> summaries(double... qs) {
+        String[] labels = new String[qs.length];
+        for (int i = 0; i < qs.length; i++) {
+            labels[i] = percentileLabel(qs[i]);
+        }
+        Map<String, Map<String, Double>> summaries = new HashMap<>();
+        groups.forEach((group, sketch) -> {
+            if (sketch.isEmpty()) {
+                return;
+            }
+            double[] values = sketch.quantiles(qs);
+            Map<String, Double> summary = new LinkedHashMap<>();
+            for (int i = 0; i < qs.length; i++) {
+                summary.put(labels[i], values[i]);
+            }
+            summaries.put(group, summary);
+        });
+        return summaries;
+    }
+
+    /**
+     * Percentile label of a rank fraction, e.g. "p99" for 0.99 and "p99.9" for 0.999
+     */
+    public static String percentileLabel(double q) {
+        return "p" + BigDecimal.valueOf(q).movePointRight(2).stripTrailingZeros().toPlainString();
+    }
+
+    public int groupCount() {
+        return groups.size();
+    }
+
+    /**
+     * Call the action with every group and its sketch
+     */
+    public void forEach(BiConsumer<String, KllSketch> action) {
+        groups.forEach(action);
+    }
+
+    /**
+     * Add the values of every group of another set of quantiles
+     */
+    public void merge(GroupedQuantiles other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge quantiles into themselves");
+        }
+        other.groups.forEach(this::merge);
+    }
+
+    /**
+     * Add the values of one group's sketch
+     */
+    public void merge(String group, KllSketch sketch) {
+        sketch(group).merge(sketch);
+    }
+
+    public void clear() {
+        groups.clear();
+    }
+
+    /**
+     * Write k, then each group's key and sketch
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(k);
+        out.writeInt(groups.size());
+        for (Map.Entry<String, KllSketch> group : groups.entrySet()) {
+            out.writeUTF(group.getKey());
+            group.getValue().writeTo(out);
+        }
+    }
+
+    /**
+     * Read quantiles written by {@link #writeTo}
+     */
+    public static GroupedQuantiles readFrom(DataInput in) throws IOException {
+        GroupedQuantiles quantiles = new GroupedQuantiles(in.readInt());
+        int groupCount = in.readInt();
+        for (int i = 0; i < groupCount; i++) {
+            String group = in.readUTF();
+            quantiles.groups.put(group, KllSketch.readFrom(in));
+        }
+        return quantiles;
+    }
+}
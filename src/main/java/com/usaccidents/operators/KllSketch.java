@@ -0,0 +1,325 @@
+package com.usaccidents.operators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Approximate quantiles of a stream of doubles in one pass and bounded memory, using the
+ * KLL sketch (Karnin, Lang and Liberty, Optimal Quantile Approximation in Streams).
+ *
+ * Values enter level 0. When the sketch is full, the lowest level over its capacity is
+ * sorted and every other value, from a random offset, is promoted to the next level,
+ * where each value stands for twice as many. Level capacities shrink geometrically
+ * towards level 0, so the sketch holds O(k) values however long the stream, and the rank
+ * of any quantile is off by about 1.7% at the default k = 200.
+ *
+ * Sketches merge by concatenating their levels and compacting, so per-thread or per-run
+ * sketches can be combined; {@link #writeTo} and {@link #readFrom} store them. NaN values
+ * are ignored. Not thread-safe.
+ */
+public class KllSketch {
+    public static final int DEFAULT_K = 200;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_LEVEL_CAPACITY = 2;
+    private static final byte FORMAT_VERSION = 1;
+
+    private final int k;
+    // levels[h][0, sizes[h]) are the values of level h, each of weight 2^h
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int retained;
+    private int capacity;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    // xorshift state for the compaction offsets; fixed seed so results are reproducible
+    private long random = 0x2545F4914F6CDD1DL;
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_LEVEL_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        this.levels[0] = new double[k];
+        this.capacity = totalCapacity();
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Smallest value added, or NaN if none
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Largest value added, or NaN if none
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Number of values held, which stays O(k)
+     */
+    public int getRetained() {
+        return retained;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else if (value < min) {
+            min = value;
+        } else if (value > max) {
+            max = value;
+        }
+        count++;
+        append(0, value);
+        if (retained >= capacity) {
+            compact();
+        }
+    }
+
+    /**
+     * Approximate value at a rank fraction in [0, 1]; q = 0 and q = 1 are the exact min and max.
+     * NaN if the sketch is empty.
+     */
+    public double quantile(double q) {
+        return quantiles(q)[0];
+    }
+
+    /**
+     * Approximate values at several rank fractions, sorting the held values once
+     */
+    public double[] quantiles(double... qs) {
+        double[] result = new double[qs.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        // Sort (value, weight) pairs by value
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        Integer[] order = new Integer[retained];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n] = 1L << h;
+                order[n] = n;
+                n++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        long total = 0;
+        for (long weight : weights) {
+            total += weight;
+        }
+
+        for (int j = 0; j < qs.length; j++) {
+            double q = qs[j];
+            if (q < 0 || q > 1) {
+                throw new IllegalArgumentException("Quantile must be in [0, 1]: " + q);
+            }
+            if (q == 0) {
+                result[j] = min;
+            } else if (q == 1) {
+                result[j] = max;
+            } else {
+                // First value whose cumulative weight reaches the rank
+                double rank = q * total;
+                long cumulative = 0;
+                result[j] = max;
+                for (int i = 0; i < n; i++) {
+                    cumulative += weights[order[i]];
+                    if (cumulative >= rank) {
+                        result[j] = values[order[i]];
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add the values of another sketch
+     */
+    public void merge(KllSketch other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge a sketch into itself");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        count += other.count;
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        capacity = totalCapacity();
+        while (retained >= capacity) {
+            compact();
+        }
+    }
+
+    public void clear() {
+        levels = new double[][]{new double[k]};
+        sizes = new int[1];
+        retained = 0;
+        capacity = totalCapacity();
+        count = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+    }
+
+    /**
+     * Write the sketch as a format version, k, count, min, max and the values of each level
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(k);
+        out.writeLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeLong(random);
+        out.writeInt(levels.length);
+        for (int h = 0; h < levels.length; h++) {
+            out.writeInt(sizes[h]);
+            for (int i = 0; i < sizes[h]; i++) {
+                out.writeDouble(levels[h][i]);
+            }
+        }
+    }
+
+    /**
+     * Read a sketch written by {@link #writeTo}
+     */
+    public static KllSketch readFrom(DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported KLL sketch format version " + version);
+        }
+        int k = in.readInt();
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IOException("Invalid KLL sketch k " + k);
+        }
+        KllSketch sketch = new KllSketch(k);
+        sketch.count = in.readLong();
+        sketch.min = in.readDouble();
+        sketch.max = in.readDouble();
+        sketch.random = in.readLong();
+        int levelCount = in.readInt();
+        for (int h = 0; h < levelCount; h++) {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                sketch.append(h, in.readDouble());
+            }
+        }
+        sketch.capacity = sketch.totalCapacity();
+        return sketch;
+    }
+
+    private void append(int level, double value) {
+        if (level >= levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            sizes = Arrays.copyOf(sizes, level + 1);
+            for (int h = 0; h <= level; h++) {
+                if (levels[h] == null) {
+                    levels[h] = new double[levelCapacity(h)];
+                }
+            }
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(4, levels[level].length * 2));
+        }
+        levels[level][sizes[level]++] = value;
+        retained++;
+    }
+
+    /**
+     * Halve the lowest level over its capacity into the next level
+     */
+    private void compact() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] < levelCapacity(h)) {
+                continue;
+            }
+            boolean top = h == levels.length - 1;
+            double[] items = levels[h];
+            int size = sizes[h];
+            Arrays.sort(items, 0, size);
+            // An odd value out stays at this level
+            int pairs = size / 2;
+            int offset = nextBit();
+            for (int i = 0; i < pairs; i++) {
+                append(h + 1, items[2 * i + offset]);
+            }
+            if (size % 2 == 1) {
+                items[0] = items[size - 1];
+                sizes[h] = 1;
+            } else {
+                sizes[h] = 0;
+            }
+            retained -= 2 * pairs;
+            if (top) {
+                // A new level raised the capacity of every level below it
+                capacity = totalCapacity();
+            }
+            return;
+        }
+    }
+
+    private int levelCapacity(int level) {
+        int depth = levels.length - 1 - level;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int totalCapacity() {
+        int total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            total += levelCapacity(h);
+        }
+        return total;
+    }
+
+    private int nextBit() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random & 1);
+    }
+}
@@ -0,0 +1,94 @@
+package com.usaccidents.operators;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense int indexes to long keys in order of first appearance, so values of any
+ * kind can be kept per key in parallel primitive arrays.
+ *
+ * Keys live in a table with open addressing and linear probing, holding index + 1 so that
+ * 0 marks a free slot; looking up a key neither boxes nor allocates. Keys cannot be
+ * removed; the index only grows until it is cleared. Not thread-safe.
+ */
+public final class LongKeyIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] tableKeys = new long[INITIAL_CAPACITY];
+    private int[] tableIndexes = new int[INITIAL_CAPACITY];
+    // Keys by index
+    private long[] keys = new long[INITIAL_CAPACITY / 2];
+    private int size;
+
+    /**
+     * Index of a key, assigning the next free index if it has not been seen before
+     */
+    public int indexOf(long key) {
+        int slot = slot(key);
+        if (tableIndexes[slot] != 0) {
+            return tableIndexes[slot] - 1;
+        }
+        int index = size;
+        if (index == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        keys[index] = key;
+        tableKeys[slot] = key;
+        tableIndexes[slot] = index + 1;
+        // Keep the table at most half full
+        if (++size * 2 > tableKeys.length) {
+            grow();
+        }
+        return index;
+    }
+
+    /**
+     * Index of a key, or -1 if it has not been seen
+     */
+    public int find(long key) {
+        return tableIndexes[slot(key)] - 1;
+    }
+
+    /**
+     * Key of an index in [0, size)
+     */
+    public long keyAt(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Number of keys; indexes range over [0, size)
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(tableIndexes, 0);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        int mask = tableKeys.length - 1;
+        // Keys such as packed group keys differ in their high bits; mix them into the low ones
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (tableIndexes[slot] != 0 && tableKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        tableKeys = new long[tableKeys.length * 2];
+        tableIndexes = new int[tableKeys.length];
+        for (int index = 0; index < size; index++) {
+            int slot = slot(keys[index]);
+            tableKeys[slot] = keys[index];
+            tableIndexes[slot] = index + 1;
+        }
+    }
+}
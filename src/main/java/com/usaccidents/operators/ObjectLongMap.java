@@ -0,0 +1,110 @@
+package com.usaccidents.operators;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Hash map from non-null keys to primitive long values, for counting.
+ *
+ * Keys and values live in parallel arrays with open addressing and linear probing, so
+ * incrementing a count boxes nothing and hashes the key once. Absent keys read as 0.
+ * Entries cannot be removed; the map only grows until it is cleared. Not thread-safe.
+ */
+public final class ObjectLongMap<K> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Add delta to the value of a key, inserting it with value delta if absent
+     *
+     * @return the new value
+     */
+    public long addTo(K key, long delta) {
+        int slot = slot(key);
+        if (keys[slot] == null) {
+            keys[slot] = key;
+            values[slot] = delta;
+            // Keep the table at most half full
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return delta;
+        }
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    /**
+     * Value of a key, or 0 if absent
+     */
+    public long get(K key) {
+        int slot = slot(key);
+        return keys[slot] == null ? 0 : values[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Call the action for every entry, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjLongConsumer<K> action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                action.accept((K) keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Copy of the entries, in no particular order
+     */
+    public List<Map.Entry<K, Long>> entries() {
+        List<Map.Entry<K, Long>> entries = new ArrayList<>(size);
+        forEach((key, value) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(key, value)));
+        return entries;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    private int slot(Object key) {
+        int hash = key.hashCode();
+        int mask = keys.length - 1;
+        // Spread the high bits, since slots are taken from the low ones
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        Object[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new Object[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
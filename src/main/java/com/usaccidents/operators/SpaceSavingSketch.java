@@ -0,0 +1,343 @@
+package com.usaccidents.operators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate heavy hitters of a stream in fixed memory, using the Space-Saving algorithm.
+ *
+ * The sketch monitors at most capacity keys. A key that is not monitored takes over the
+ * counter with the smallest count, inheriting that count as its possible overestimate.
+ * Every monitored count is an upper bound of the true count, overestimating it by at most
+ * its {@link Estimate#getError() error}, which never exceeds total / capacity. Any key
+ * occurring more than total / capacity times is guaranteed to be monitored. Counters are
+ * kept in a min-heap indexed by key, so each update takes O(log capacity).
+ *
+ * Sketches of the same capacity can be merged, e.g. per-thread sketches at the end of a
+ * parallel run; the merged sketch keeps the same error guarantee for the combined stream.
+ * A sketch can be stored with {@link #writeTo} and {@link #readFrom}, given how to write
+ * and read its keys. Not thread-safe.
+ */
+public class SpaceSavingSketch<K> {
+    private final int capacity;
+    private final Counter<K>[] heap;
+    private final Map<K, Counter<K>> counters;
+    private int size;
+    private long total;
+
+    /**
+     * A key's estimated count and the most by which it may overestimate the true count
+     */
+    public static final class Estimate<K> {
+        private final K key;
+        private final long count;
+        private final long error;
+
+        private Estimate(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * Count the key is guaranteed to have reached
+         */
+        public long getGuaranteedCount() {
+            return count - error;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count + " (±" + error + ")";
+        }
+    }
+
+    /**
+     * Writes a key for {@link #writeTo}, e.g. {@code DataOutput::writeUTF}
+     */
+    public interface KeyWriter<K> {
+        void write(DataOutput out, K key) throws IOException;
+    }
+
+    /**
+     * Reads a key written by a {@link KeyWriter}, e.g. {@code DataInput::readUTF}
+     */
+    public interface KeyReader<K> {
+        K read(DataInput in) throws IOException;
+    }
+
+    private static final class Counter<K> {
+        private K key;
+        private long count;
+        private long error;
+        private int heapIndex;
+    }
+
+    @SuppressWarnings("unchecked")
+    public SpaceSavingSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.heap = (Counter<K>[]) new Counter<?>[capacity];
+        this.counters = new HashMap<>(capacity * 4 / 3 + 1);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sum of all counts added
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Number of keys monitored
+     */
+    public int size() {
+        return size;
+    }
+
+    public void add(K key) {
+        add(key, 1);
+    }
+
+    /**
+     * Add count occurrences of a key
+     */
+    public void add(K key, long count) {
+        total += count;
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            counter.count += count;
+            siftDown(counter.heapIndex);
+        } else if (size < capacity) {
+            counter = new Counter<>();
+            counter.key = key;
+            counter.count = count;
+            counter.heapIndex = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.heapIndex);
+        } else {
+            // Replace the key with the smallest count, which may be the new key's own count
+            counter = heap[0];
+            counters.remove(counter.key);
+            counter.key = key;
+            counter.error = counter.count;
+            counter.count += count;
+            counters.put(key, counter);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Estimated count of a key: an upper bound of its true count if it is monitored, 0 otherwise.
+     * A key that is not monitored occurred at most {@link #getErrorBound()} times.
+     */
+    public long estimate(K key) {
+        Counter<K> counter = counters.get(key);
+        return counter == null ? 0 : counter.count;
+    }
+
+    /**
+     * Largest possible overestimate of any count, and largest possible count of a key that is
+     * not monitored
+     */
+    public long getErrorBound() {
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    /**
+     * The k monitored keys with the largest estimated counts, largest first
+     */
+    public List<Estimate<K>> top(int k) {
+        List<Estimate<K>> top = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            top.add(new Estimate<>(heap[i].key, heap[i].count, heap[i].error));
+        }
+        top.sort((a, b) -> Long.compare(b.count, a.count));
+        return top.size() > k ? new ArrayList<>(top.subList(0, Math.max(k, 0))) : top;
+    }
+
+    /**
+     * The k monitored keys with the largest estimated counts, largest first, as entries of
+     * key and estimated count
+     */
+    public List<Map.Entry<K, Long>> topEntries(int k) {
+        List<Map.Entry<K, Long>> entries = new ArrayList<>();
+        for (Estimate<K> estimate : top(k)) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(estimate.key, estimate.count));
+        }
+        return entries;
+    }
+
+    /**
+     * Add the counts of another sketch of the same capacity, as if this sketch had also seen
+     * the other's stream.
+     *
+     * A key monitored by only one of the sketches may have occurred up to the other's error
+     * bound times in the other stream, which is added to both its count and its error
+     * (Agarwal et al., Mergeable Summaries). The largest capacity counts are kept.
+     */
+    public void merge(SpaceSavingSketch<K> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge a sketch into itself");
+        }
+        if (other.capacity != capacity) {
+            throw new IllegalArgumentException("Cannot merge sketches of capacity " + capacity + " and "
+                    + other.capacity);
+        }
+        long thisBound = getErrorBound();
+        long otherBound = other.getErrorBound();
+        Map<K, Counter<K>> merged = new HashMap<>((size + other.size) * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            Counter<K> counter = heap[i];
+            counter.count += otherBound;
+            counter.error += otherBound;
+            merged.put(counter.key, counter);
+        }
+        for (int i = 0; i < other.size; i++) {
+            Counter<K> theirs = other.heap[i];
+            Counter<K> ours = merged.get(theirs.key);
+            if (ours != null) {
+                // Undo the bound assumed above, the other sketch has the key's actual count
+                ours.count += theirs.count - otherBound;
+                ours.error += theirs.error - otherBound;
+            } else {
+                Counter<K> counter = new Counter<>();
+                counter.key = theirs.key;
+                counter.count = theirs.count + thisBound;
+                counter.error = theirs.error + thisBound;
+                merged.put(counter.key, counter);
+            }
+        }
+
+        List<Counter<K>> largest = new ArrayList<>(merged.values());
+        largest.sort((a, b) -> Long.compare(b.count, a.count));
+        counters.clear();
+        size = 0;
+        for (Counter<K> counter : largest.subList(0, Math.min(capacity, largest.size()))) {
+            counter.heapIndex = size;
+            heap[size++] = counter;
+            counters.put(counter.key, counter);
+        }
+        // Largest first is the reverse of heap order, so heapify bottom-up
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+        total += other.total;
+    }
+
+    /**
+     * Write the capacity, total and every monitored key with its count and error
+     */
+    public void writeTo(DataOutput out, KeyWriter<K> keyWriter) throws IOException {
+        out.writeInt(capacity);
+        out.writeLong(total);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            keyWriter.write(out, heap[i].key);
+            out.writeLong(heap[i].count);
+            out.writeLong(heap[i].error);
+        }
+    }
+
+    /**
+     * Read a sketch written by {@link #writeTo}
+     */
+    public static <K> SpaceSavingSketch<K> readFrom(DataInput in, KeyReader<K> keyReader) throws IOException {
+        int capacity = in.readInt();
+        if (capacity <= 0) {
+            throw new IOException("Corrupt sketch: capacity " + capacity);
+        }
+        SpaceSavingSketch<K> sketch = new SpaceSavingSketch<>(capacity);
+        sketch.total = in.readLong();
+        int size = in.readInt();
+        if (size < 0 || size > capacity) {
+            throw new IOException("Corrupt sketch: " + size + " keys for capacity " + capacity);
+        }
+        for (int i = 0; i < size; i++) {
+            Counter<K> counter = new Counter<>();
+            counter.key = keyReader.read(in);
+            counter.count = in.readLong();
+            counter.error = in.readLong();
+            counter.heapIndex = i;
+            if (sketch.counters.put(counter.key, counter) != null) {
+                throw new IOException("Corrupt sketch: repeated key " + counter.key);
+            }
+            sketch.heap[i] = counter;
+        }
+        sketch.size = size;
+        // Written in heap order already; heapify in case it was not
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            sketch.siftDown(i);
+        }
+        return sketch;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            heap[i] = null;
+        }
+        counters.clear();
+        size = 0;
+        total = 0;
+    }
+
+    private void siftUp(int index) {
+        Counter<K> counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter<K> counter = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter<K> counter, int index) {
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+}
@@ -0,0 +1,42 @@
+package com.usaccidents.operators;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Exact Top-K selection over counts.
+ *
+ * A min-heap holds the k largest counts seen so far, so selecting from n counts takes
+ * O(n log k) time and O(k) extra memory instead of sorting all n. For bounded-memory
+ * approximate Top-K over a stream, see {@link SpaceSavingSketch}.
+ */
+public final class TopK {
+
+    private TopK() {
+    }
+
+    /**
+     * The k entries with the largest counts, largest first
+     */
+    public static <K> List<Map.Entry<K, Long>> exact(ObjectLongMap<K> counts, int k) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<Map.Entry<K, Long>> heap = new PriorityQueue<>(k + 1, Map.Entry.comparingByValue());
+        counts.forEach((key, count) -> {
+            if (heap.size() < k) {
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(key, count));
+            } else if (count > heap.peek().getValue()) {
+                heap.poll();
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(key, count));
+            }
+        });
+        List<Map.Entry<K, Long>> top = new ArrayList<>(heap);
+        top.sort(Map.Entry.<K, Long>comparingByValue().reversed());
+        return top;
+    }
+}
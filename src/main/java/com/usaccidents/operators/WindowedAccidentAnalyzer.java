@@ -0,0 +1,274 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.io.OutputWriter;
+import com.usaccidents.model.Accident;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Aggregates accidents in tumbling or sliding windows of event time, the accident start
+ * time, emitting each window's {@link AccidentAnalyzer} once the window has closed.
+ *
+ * Accidents are counted into panes, tumbling windows of one slide each, and a window is
+ * the merge of the size / slide panes it spans, so each accident is counted once however
+ * much windows overlap. A tumbling window is a sliding window whose slide is its size.
+ *
+ * Input may be out of order by up to the allowed lateness. The watermark trails the
+ * latest start time seen by that much, and a window closes when the watermark passes its
+ * end. An accident arriving after every window containing it has closed is dropped and
+ * counted in getLateAccidents; one arriving after only some have closed is counted in the
+ * rest. Accidents without a start time are counted in getAccidentsWithoutTime. Panes are
+ * discarded once no open window spans them, so memory grows with the number of open
+ * windows, set by the lateness, size and slide, not with the input. Call {@link #flush}
+ * at the end of the input to emit the windows still open.
+ *
+ * Not thread-safe; windows are emitted on the thread processing the accident that
+ * closes them.
+ */
+public class WindowedAccidentAnalyzer implements Consumer<Accident> {
+    private static final Logger logger = LoggerFactory.getLogger(WindowedAccidentAnalyzer.class);
+    private static final String PROPERTY_PREFIX = "dt.application.USAccidentsAnalysisApplication.operator.analyzer.";
+    public static final String WINDOW_DURATION_PROPERTY = PROPERTY_PREFIX + "windowDurationMillis";
+    public static final String WINDOW_SLIDE_PROPERTY = PROPERTY_PREFIX + "windowSlideMillis";
+    public static final String ALLOWED_LATENESS_PROPERTY = PROPERTY_PREFIX + "allowedLatenessMillis";
+    public static final String GROUPING_SETS_PROPERTY = PROPERTY_PREFIX + "groupingSets";
+    private static final String APPLICATION_PROPERTIES = "/application.properties";
+
+    /**
+     * Receives each window once it has closed, in order of window start
+     */
+    public interface WindowListener {
+        /**
+         * @param windowStartMillis inclusive window start, in wall-clock epoch milliseconds
+         * @param windowEndMillis   exclusive window end
+         * @param window            the window's counts, owned by the listener from now on
+         */
+        void windowClosed(long windowStartMillis, long windowEndMillis, AccidentAnalyzer window);
+    }
+
+    private final long windowSizeMillis;
+    private final long slideMillis;
+    private final long allowedLatenessMillis;
+    private final Supplier<AccidentAnalyzer> analyzerFactory;
+    private final WindowListener listener;
+
+    // Open panes by start time
+    private final TreeMap<Long, AccidentAnalyzer> panes = new TreeMap<>();
+    private long watermark = Long.MIN_VALUE;
+    // Start of the earliest window not yet emitted; windows before it are closed
+    private long nextWindowStart = Long.MIN_VALUE;
+    private long windowsEmitted;
+    private long lateAccidents;
+    private long accidentsWithoutTime;
+
+    /**
+     * Tumbling windows
+     */
+    public WindowedAccidentAnalyzer(long windowSizeMillis, long allowedLatenessMillis, WindowListener listener) {
+        this(windowSizeMillis, windowSizeMillis, allowedLatenessMillis, AccidentAnalyzer::new, listener);
+    }
+
+    /**
+     * @param windowSizeMillis      length of each window
+     * @param slideMillis           distance between window starts; must divide the size
+     * @param allowedLatenessMillis how far behind the latest start time an accident may arrive
+     * @param analyzerFactory       creates the analyzer of each pane, which sets what is counted
+     * @param listener              receives each closed window
+     */
+    public WindowedAccidentAnalyzer(long windowSizeMillis, long slideMillis, long allowedLatenessMillis,
+                                    Supplier<AccidentAnalyzer> analyzerFactory, WindowListener listener) {
+        if (windowSizeMillis <= 0 || slideMillis <= 0 || windowSizeMillis % slideMillis != 0) {
+            throw new IllegalArgumentException("Window size " + windowSizeMillis
+                    + " must be a positive multiple of the slide " + slideMillis);
+        }
+        if (allowedLatenessMillis < 0) {
+            throw new IllegalArgumentException("Allowed lateness must not be negative: " + allowedLatenessMillis);
+        }
+        this.windowSizeMillis = windowSizeMillis;
+        this.slideMillis = slideMillis;
+        this.allowedLatenessMillis = allowedLatenessMillis;
+        this.analyzerFactory = analyzerFactory;
+        this.listener = listener;
+    }
+
+    /**
+     * Windows configured by the analyzer properties: windowDurationMillis, windowSlideMillis
+     * (default the duration, i.e. tumbling), allowedLatenessMillis (default 0) and
+     * groupingSets, further breakdowns per window in the form of
+     * {@link AccidentCube#parseGroupingSets} (default none)
+     */
+    public static WindowedAccidentAnalyzer fromProperties(Properties properties, WindowListener listener) {
+        String duration = properties.getProperty(WINDOW_DURATION_PROPERTY);
+        if (duration == null) {
+            throw new IllegalArgumentException("Missing property " + WINDOW_DURATION_PROPERTY);
+        }
+        long windowSizeMillis = Long.parseLong(duration.trim());
+        long slideMillis = Long.parseLong(properties.getProperty(WINDOW_SLIDE_PROPERTY, duration).trim());
+        long allowedLatenessMillis = Long.parseLong(properties.getProperty(ALLOWED_LATENESS_PROPERTY, "0").trim());
+        List<Set<CubeDimension>> groupingSets =
+                AccidentCube.parseGroupingSets(properties.getProperty(GROUPING_SETS_PROPERTY, ""));
+        return new WindowedAccidentAnalyzer(windowSizeMillis, slideMillis, allowedLatenessMillis,
+                () -> new AccidentAnalyzer(AccidentAnalyzer.DEFAULT_DISTINCT_PRECISION,
+                        EnumSet.allOf(AccidentAnalyzer.QuantileMetric.class),
+                        EnumSet.allOf(AccidentAnalyzer.QuantileGrouping.class), groupingSets),
+                listener);
+    }
+
+    /**
+     * Windows configured by the application.properties on the classpath
+     */
+    public static WindowedAccidentAnalyzer fromApplicationProperties(WindowListener listener) {
+        return fromProperties(loadApplicationProperties(), listener);
+    }
+
+    /**
+     * The application.properties on the classpath
+     */
+    public static Properties loadApplicationProperties() {
+        Properties properties = new Properties();
+        try (InputStream in = WindowedAccidentAnalyzer.class.getResourceAsStream(APPLICATION_PROPERTIES)) {
+            if (in == null) {
+                throw new IOException(APPLICATION_PROPERTIES + " not found on the classpath");
+            }
+            properties.load(in);
+        } catch (IOException e) {
+            logger.error("Error loading {}", APPLICATION_PROPERTIES, e);
+            throw new RuntimeException("Failed to load application properties", e);
+        }
+        return properties;
+    }
+
+    /**
+     * A listener writing each window's results with the writer
+     */
+    public static WindowListener writingTo(OutputWriter writer) {
+        return (windowStartMillis, windowEndMillis, window) ->
+                writer.writeWindowResults(windowStartMillis, windowEndMillis, window.getResults());
+    }
+
+    @Override
+    public void accept(Accident accident) {
+        processAccident(accident);
+    }
+
+    /**
+     * Count an accident in the pane of its start time, then emit the windows the advanced
+     * watermark has closed
+     */
+    public void processAccident(Accident accident) {
+        if (accident == null) {
+            return;
+        }
+        long startEpochSecond = accident.getStartEpochSecond();
+        if (startEpochSecond == Accident.NO_TIME) {
+            accidentsWithoutTime++;
+            return;
+        }
+        long eventTime = startEpochSecond * 1000;
+        long paneStart = eventTime - Math.floorMod(eventTime, slideMillis);
+        // The pane's last window starts with it; if that one is closed, so are the others
+        if (paneStart < nextWindowStart || paneStart + windowSizeMillis <= watermark) {
+            lateAccidents++;
+            return;
+        }
+
+        AccidentAnalyzer pane = panes.get(paneStart);
+        if (pane == null) {
+            pane = analyzerFactory.get();
+            panes.put(paneStart, pane);
+        }
+        pane.processAccident(accident);
+
+        if (eventTime - allowedLatenessMillis > watermark) {
+            watermark = eventTime - allowedLatenessMillis;
+            emitWindowsBefore(watermark);
+        }
+    }
+
+    /**
+     * Emit every open window, as at the end of the input. Accidents processed afterwards
+     * are late if they fall in an emitted window.
+     */
+    public void flush() {
+        emitWindowsBefore(Long.MAX_VALUE);
+    }
+
+    /**
+     * Event time in epoch milliseconds up to which windows are closed, or Long.MIN_VALUE
+     * before the first accident
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Emit, in order, the windows with accidents ending at or before the watermark.
+     * Windows without accidents are skipped.
+     */
+    private void emitWindowsBefore(long watermark) {
+        while (!panes.isEmpty()) {
+            // The earliest window still open that spans the first pane
+            long windowStart = Math.max(nextWindowStart, panes.firstKey() - windowSizeMillis + slideMillis);
+            long windowEnd = windowStart + windowSizeMillis;
+            if (windowEnd > watermark) {
+                return;
+            }
+            AccidentAnalyzer window = analyzerFactory.get();
+            for (AccidentAnalyzer pane : panes.subMap(windowStart, windowEnd).values()) {
+                window.merge(pane);
+            }
+            nextWindowStart = windowStart + slideMillis;
+            // No window left to emit spans panes before the next window
+            panes.headMap(nextWindowStart).clear();
+            windowsEmitted++;
+            listener.windowClosed(windowStart, windowEnd, window);
+        }
+    }
+
+    public long getWindowSizeMillis() {
+        return windowSizeMillis;
+    }
+
+    public long getSlideMillis() {
+        return slideMillis;
+    }
+
+    public long getAllowedLatenessMillis() {
+        return allowedLatenessMillis;
+    }
+
+    /**
+     * Number of panes held, each one slide of accidents
+     */
+    public int getOpenPaneCount() {
+        return panes.size();
+    }
+
+    public long getWindowsEmitted() {
+        return windowsEmitted;
+    }
+
+    /**
+     * Accidents dropped because every window containing them had closed
+     */
+    public long getLateAccidents() {
+        return lateAccidents;
+    }
+
+    /**
+     * Accidents dropped because they have no start time
+     */
+    public long getAccidentsWithoutTime() {
+        return accidentsWithoutTime;
+    }
+}
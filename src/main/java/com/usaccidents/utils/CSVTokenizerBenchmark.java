@@ -0,0 +1,105 @@
+package com.usaccidents.utils;
+
+import com.usaccidents.io.CSVTokenizer;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput comparison between the legacy regex line splitter and {@link CSVTokenizer}.
+ * Runs on a sample of a real CSV file, or on synthetic US Accidents style rows
+ */
+public class CSVTokenizerBenchmark {
+
+    // The lookahead pattern previously used by CSVParser and CSVValidator
+    private static final Pattern LEGACY_SPLIT = Pattern.compile(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        List<String> lines = args.length > 0 ? readSample(args[0], 200000) : syntheticLines(200000);
+        long bytes = 0;
+        for (String line : lines) {
+            bytes += line.length() + 1;
+        }
+        System.out.println("Benchmarking " + lines.size() + " lines (" + bytes / 1024 + " KB)");
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runRegex(lines);
+            runTokenizer(lines);
+        }
+
+        long regexNanos = 0;
+        long tokenizerNanos = 0;
+        long checksum = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            checksum += runRegex(lines);
+            regexNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            checksum -= runTokenizer(lines);
+            tokenizerNanos += System.nanoTime() - start;
+        }
+
+        report("regex split", lines.size(), bytes, regexNanos / MEASURED_ROUNDS);
+        report("CSVTokenizer", lines.size(), bytes, tokenizerNanos / MEASURED_ROUNDS);
+        System.out.println(String.format("Speedup: %.1fx", (double) regexNanos / tokenizerNanos));
+        if (checksum != 0) {
+            System.out.println("Warning: field counts differ between regex split and tokenizer");
+        }
+    }
+
+    static long runRegex(List<String> lines) {
+        long fields = 0;
+        for (String line : lines) {
+            fields += LEGACY_SPLIT.split(line, -1).length;
+        }
+        return fields;
+    }
+
+    static long runTokenizer(List<String> lines) {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        long fields = 0;
+        for (String line : lines) {
+            tokenizer.tokenize(line);
+            fields += tokenizer.fieldCount();
+        }
+        return fields;
+    }
+
+    private static void report(String name, int lineCount, long bytes, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.println(String.format("%-14s %8.1f ms  %10.0f lines/s  %7.1f MB/s",
+                name, nanos / 1e6, lineCount / seconds, bytes / seconds / (1024 * 1024)));
+    }
+
+    private static List<String> readSample(String filePath, int maxLines) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            String line = reader.readLine(); // Skip header line
+            while (lines.size() < maxLines && (line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    static List<String> syntheticLines(int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add("A-" + i + ",Source2," + (i % 4 + 1) + ",2016-02-08 05:46:00,2016-02-08 11:00:00,"
+                    + "39.865147,-84.058723,,,0.01,"
+                    + "\"Right lane blocked due to accident on I-70 Eastbound at Exit 41, \"\"OH-235\"\" State Route 4.\","
+                    + "I-70 E,Dayton,Montgomery,OH,45424,US,US/Eastern,KFFO,2016-02-08 05:58:00,"
+                    + "36.9,,91.0,29.68,10.0,Calm,,0.02,Light Rain,False,False,False,False,False,False,False,False,"
+                    + "False,False,False,False,False,Night,Night,Night,Night");
+        }
+        return lines;
+    }
+}
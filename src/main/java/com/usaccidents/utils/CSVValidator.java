@@ -1,5 +1,8 @@
 package com.usaccidents.utils;
 
+import com.usaccidents.io.CSVRecordReader;
+import com.usaccidents.io.CSVTokenizer;
+
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
@@ -29,61 +32,60 @@ public class CSVValidator {
     }
 
     public static void validateCSVFile(String filePath) throws IOException {
-        BufferedReader reader = null;
-        try {
-            reader = new BufferedReader(new FileReader(filePath));
+        try (CSVRecordReader reader = new CSVRecordReader(new BufferedReader(new FileReader(filePath)))) {
 
             // Read and validate headers
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
+            if (!reader.next()) {
                 throw new IOException("CSV file is empty");
             }
 
-            String[] headers = headerLine.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
+            CSVTokenizer fields = reader.tokenizer();
+            String[] headers = new String[fields.fieldCount()];
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = fields.field(i);
+            }
             System.out.println("Found " + headers.length + " columns in the CSV header");
 
             // Display header names
             System.out.println("\nHeaders detected:");
             for (int i = 0; i < headers.length; i++) {
-                System.out.println((i+1) + ". " + headers[i].replace("\"", "").trim());
+                System.out.println((i+1) + ". " + headers[i]);
             }
 
+            // Assuming these columns exist - adjust based on your actual CSV structure
+            int idIndex = findHeaderIndex(headers, "ID");
+            int severityIndex = findHeaderIndex(headers, "Severity");
+            int stateIndex = findHeaderIndex(headers, "State");
+
             // Read a sample of data rows
             System.out.println("\nReading sample data rows...");
             int sampleSize = 5;
             int rowCount = 0;
-            String line;
-            while ((line = reader.readLine()) != null && rowCount < sampleSize) {
+            while (rowCount < sampleSize && reader.next()) {
                 rowCount++;
-                String[] fields = line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
 
-                System.out.println("\nRow " + rowCount + " has " + fields.length + " fields");
+                System.out.println("\nRow " + rowCount + " has " + fields.fieldCount() + " fields");
 
                 // Show a few key fields as a sample
-                if (fields.length > 0) {
-                    // Assuming these indices exist - adjust based on your actual CSV structure
-                    int idIndex = findHeaderIndex(headers, "ID");
-                    int severityIndex = findHeaderIndex(headers, "Severity");
-                    int stateIndex = findHeaderIndex(headers, "State");
-
+                if (fields.fieldCount() > 0) {
                     System.out.println("Sample data:");
-                    if (idIndex >= 0 && idIndex < fields.length) {
-                        System.out.println("  ID: " + fields[idIndex].replace("\"", "").trim());
+                    if (idIndex >= 0 && idIndex < fields.fieldCount()) {
+                        System.out.println("  ID: " + fields.field(idIndex));
                     }
-                    if (severityIndex >= 0 && severityIndex < fields.length) {
-                        System.out.println("  Severity: " + fields[severityIndex].replace("\"", "").trim());
+                    if (severityIndex >= 0 && severityIndex < fields.fieldCount()) {
+                        System.out.println("  Severity: " + fields.field(severityIndex));
                     }
-                    if (stateIndex >= 0 && stateIndex < fields.length) {
-                        System.out.println("  State: " + fields[stateIndex].replace("\"", "").trim());
+                    if (stateIndex >= 0 && stateIndex < fields.fieldCount()) {
+                        System.out.println("  State: " + fields.field(stateIndex));
                     }
                 }
             }
 
             System.out.println("\nTotal rows sampled: " + rowCount);
 
-            // Continue counting total rows
+            // Continue counting total rows; records with embedded line breaks count once
             long totalRows = rowCount;
-            while (reader.readLine() != null) {
+            while (reader.next()) {
                 totalRows++;
                 if (totalRows % 100000 == 0) {
                     System.out.println("Processed " + totalRows + " rows...");
@@ -91,21 +93,12 @@ public class CSVValidator {
             }
 
             System.out.println("\nTotal rows in CSV: " + totalRows);
-
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    // Ignore
-                }
-            }
         }
     }
 
     private static int findHeaderIndex(String[] headers, String headerName) {
         for (int i = 0; i < headers.length; i++) {
-            if (headers[i].replace("\"", "").trim().equalsIgnoreCase(headerName)) {
+            if (headers[i].equalsIgnoreCase(headerName)) {
                 return i;
             }
         }
@@ -0,0 +1,157 @@
+package com.usaccidents.utils;
+
+import com.usaccidents.io.CSVParser;
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentField;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Allocation comparison between parsing into a new Accident per record and the reusing
+ * mode of {@link CSVParser}. Bytes allocated by the parsing thread are measured with
+ * HotSpot's per-thread allocation counter, together with the collections they caused.
+ * Runs on a real CSV file, or on synthetic US Accidents style rows
+ */
+public class ParserAllocationBenchmark {
+
+    private static final String HEADER = "ID,Source,Severity,Start_Time,End_Time,Start_Lat,Start_Lng,End_Lat,"
+            + "End_Lng,Distance(mi),Description,Street,City,County,State,Zipcode,Country,Timezone,Airport_Code,"
+            + "Weather_Timestamp,Temperature(F),Wind_Chill(F),Humidity(%),Pressure(in),Visibility(mi),"
+            + "Wind_Direction,Wind_Speed(mph),Precipitation(in),Weather_Condition,Amenity,Bump,Crossing,Give_Way,"
+            + "Junction,No_Exit,Railway,Roundabout,Station,Stop,Traffic_Calming,Traffic_Signal,Turning_Loop,"
+            + "Sunrise_Sunset,Civil_Twilight,Nautical_Twilight,Astronomical_Twilight";
+    private static final String[] STATES = {"OH", "CA", "TX", "FL", "NY", "PA", "IL", "WA"};
+    private static final String[] WEATHER = {"Light Rain", "Clear", "Overcast", "Snow", "Fog"};
+
+    // The default projection without the per-record unique text fields
+    private static final Set<AccidentField> PROJECTION = EnumSet.of(
+            AccidentField.SEVERITY, AccidentField.START_TIME, AccidentField.END_TIME, AccidentField.START_LAT,
+            AccidentField.START_LNG, AccidentField.STREET, AccidentField.CITY, AccidentField.STATE,
+            AccidentField.WEATHER_CONDITION, AccidentField.TEMPERATURE);
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        File file = args.length > 0 ? new File(args[0]) : syntheticFile(200000);
+        try {
+            System.out.println("Benchmarking " + file.getName() + " (" + file.length() / 1024 + " KB)");
+
+            CSVParser parser = new CSVParser(PROJECTION);
+            Checksum checksum = new Checksum();
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                parser.parseCSVFile(file, checksum);
+                parser.parseCSVFileReusing(file, checksum);
+            }
+
+            Measurement fresh = new Measurement();
+            Measurement reusing = new Measurement();
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                fresh.run(() -> parser.parseCSVFile(file, checksum), checksum);
+                reusing.run(() -> parser.parseCSVFileReusing(file, checksum), checksum);
+            }
+
+            fresh.report("new Accident");
+            reusing.report("reused Accident");
+            if (fresh.checksum != reusing.checksum) {
+                System.out.println("Warning: checksums differ between the two modes");
+            }
+        } finally {
+            if (args.length == 0) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Sums a few fields of each record without retaining it
+     */
+    private static final class Checksum implements Consumer<Accident> {
+        long rows;
+        long sum;
+
+        @Override
+        public void accept(Accident accident) {
+            rows++;
+            sum += accident.getSeverity() + accident.getStartHour() + length(accident.getState())
+                    + length(accident.getCity());
+        }
+
+        /**
+         * Length of a field, 0 if the record leaves it out
+         */
+        private static int length(String value) {
+            return value == null ? 0 : value.length();
+        }
+    }
+
+    private static final class Measurement {
+        private long nanos;
+        private long bytes;
+        private long rows;
+        private long collections;
+        private long checksum;
+
+        void run(Runnable parse, Checksum counter) {
+            long rowsBefore = counter.rows;
+            long sumBefore = counter.sum;
+            long collectionsBefore = collectionCount();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            parse.run();
+            nanos += System.nanoTime() - start;
+            bytes += allocatedBytes() - bytesBefore;
+            collections += collectionCount() - collectionsBefore;
+            rows += counter.rows - rowsBefore;
+            checksum += counter.sum - sumBefore;
+        }
+
+        void report(String name) {
+            double seconds = nanos / 1e9;
+            System.out.println(String.format("%-16s %8.1f ms  %10.0f rows/s  %8.1f bytes/row  %4d GCs",
+                    name, nanos / 1e6 / MEASURED_ROUNDS, rows / seconds, (double) bytes / rows,
+                    collections));
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static File syntheticFile(int rows) throws IOException {
+        File file = File.createTempFile("accidents", ".csv");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (int i = 0; i < rows; i++) {
+                String state = STATES[i % STATES.length];
+                writer.write("A-" + i + ",Source2," + (i % 4 + 1) + ",2016-02-08 0" + (i % 10) + ":46:00,"
+                        + "2016-02-08 11:00:00,39.865147,-84.058723,,,0.01,"
+                        + "\"Right lane blocked due to accident on I-70 Eastbound at Exit 41, \"\"OH-235\"\".\","
+                        + "I-" + (i % 90) + " E,City" + (i % 500) + ",Montgomery," + state + ",45424,US,US/Eastern,"
+                        + "KFFO,2016-02-08 05:58:00," + (i % 100) + ".9,,91.0,29.68,10.0,Calm,,0.02,"
+                        + WEATHER[i % WEATHER.length] + ",False,False,False,False,False,False,False,False,"
+                        + "False,False,False,False,False,Night,Night,Night,Night");
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+}
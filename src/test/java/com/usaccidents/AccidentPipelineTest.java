@@ -0,0 +1,69 @@
+package com.usaccidents;
+
+import com.usaccidents.io.CSVParser;
+import com.usaccidents.model.AccidentBatch;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for the staged read → parse → aggregate pipeline
+ */
+public class AccidentPipelineTest extends TestCase {
+    private static final String HEADER = "ID,Severity,Start_Time,Description,City,State,Weather_Condition,"
+            + "Temperature(F),Street,Zipcode";
+    private static final String[] STATES = {"OH", "CA", "TX"};
+
+    private File csvFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        csvFile = File.createTempFile("pipeline", ".csv");
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write(HEADER + "\n");
+            for (int i = 0; i < 500; i++) {
+                // Every third description spans lines and holds quotes, so chunk cuts must respect quoting
+                String description = i % 3 == 0 ? "\"Crash on \"\"I-" + i + "\"\",\nlane closed\"" : "Crash";
+                writer.write("A-" + i + "," + (1 + i % 4) + ",2016-02-08 05:46:00," + description + ",City" + i % 7
+                        + "," + STATES[i % STATES.length] + ",Rain,36.9,Main St,45424\n");
+            }
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        csvFile.delete();
+    }
+
+    public void testPipelineMatchesSequentialParse() {
+        Map<String, Long> expected = new HashMap<>();
+        new CSVParser().parseCSVFile(csvFile, accident ->
+                expected.merge(accident.getState() + "/" + accident.getSeverity(), 1L, Long::sum));
+
+        AccidentPipeline pipeline = new AccidentPipeline(new CSVParser(), 3, 2, 2, 256, 7);
+        Map<String, Long> actual = pipeline.process(Collections.singletonList(csvFile), HashMap::new,
+                AccidentPipelineTest::count, (left, right) -> {
+                    right.forEach((key, value) -> left.merge(key, value, Long::sum));
+                    return left;
+                });
+
+        assertEquals(expected, actual);
+        assertEquals(500L, actual.values().stream().mapToLong(Long::longValue).sum());
+        for (AccidentPipeline.StageStats stats : pipeline.getStats()) {
+            assertTrue(stats.getName(), stats.getItems() > 0);
+            assertTrue(stats.getName(), stats.getMaxQueueDepth() <= 2);
+        }
+    }
+
+    private static void count(Map<String, Long> counts, AccidentBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            String state = batch.getStateDictionary().decode(batch.getState()[i]);
+            counts.merge(state + "/" + batch.getSeverity()[i], 1L, Long::sum);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.usaccidents.hive;
+
+import com.usaccidents.io.CSVParser;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the in-JVM analysis tables: Hive CASE and NULL semantics, and parallel
+ * parsing matching a sequential pass
+ */
+public class HiveAnalysisTablesTest extends TestCase {
+    private static final String HEADER = "ID,Severity,Start_Time,End_Time,Start_Lat,Start_Lng,Distance(mi),"
+            + "Street,City,County,State,Zipcode,Temperature(F),Visibility(mi),Wind_Speed(mph),Precipitation(in),"
+            + "Weather_Condition,Amenity,Bump,Crossing,Junction,Traffic_Signal,Sunrise_Sunset,Civil_Twilight,"
+            + "Nautical_Twilight,Astronomical_Twilight";
+
+    private File file;
+
+    @Override
+    protected void tearDown() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    public void testCaseBoundariesAndNulls() {
+        // The first matching WHEN wins and BETWEEN includes its bounds
+        assertEquals("Cold", HiveAnalysisTables.temperatureRange(32.0));
+        assertEquals("Cold", HiveAnalysisTables.temperatureRange(50.0));
+        assertEquals("Warm", HiveAnalysisTables.temperatureRange(85.0));
+        assertEquals("Hot", HiveAnalysisTables.temperatureRange(85.1));
+        assertEquals("Low", HiveAnalysisTables.visibilityRange(3.0));
+        assertEquals("Excellent", HiveAnalysisTables.visibilityRange(10.5));
+        assertEquals("None", HiveAnalysisTables.precipitationLevel(0.0));
+        assertEquals("Light", HiveAnalysisTables.precipitationLevel(0.1));
+        assertEquals("Heavy", HiveAnalysisTables.precipitationLevel(-0.5));
+        assertEquals("Light", HiveAnalysisTables.windSpeedRange(7.0));
+        assertEquals("Violent", HiveAnalysisTables.windSpeedRange(7.5));
+        assertEquals("Violent", HiveAnalysisTables.windSpeedRange(0.5));
+        assertEquals("Strong", HiveAnalysisTables.windSpeedRange(54.0));
+        assertEquals("Night", HiveAnalysisTables.timeOfDay(5));
+        assertEquals("Morning", HiveAnalysisTables.timeOfDay(6));
+        assertEquals("Evening", HiveAnalysisTables.timeOfDay(23));
+        assertEquals("Interstate", HiveAnalysisTables.streetType("US-101 & I-5"));
+        assertEquals("Street", HiveAnalysisTables.streetType("Main St"));
+        assertEquals("Other", HiveAnalysisTables.streetType("main st"));
+        assertEquals("Dawn/Dusk", HiveAnalysisTables.twilightPeriod("Night", "Day", "Day"));
+        assertEquals("Night", HiveAnalysisTables.twilightPeriod(null, null, "Day"));
+
+        // A NULL fails every WHEN and falls to the ELSE
+        assertEquals("Hot", HiveAnalysisTables.temperatureRange(null));
+        assertEquals("Excellent", HiveAnalysisTables.visibilityRange(null));
+        assertEquals("Heavy", HiveAnalysisTables.precipitationLevel(null));
+        assertEquals("Violent", HiveAnalysisTables.windSpeedRange(null));
+        assertEquals("Night", HiveAnalysisTables.timeOfDay(null));
+        assertEquals("Unknown", HiveAnalysisTables.severityDescription(null));
+        assertEquals("Other", HiveAnalysisTables.streetType(null));
+    }
+
+    public void testRecordsFollowHiveSemantics() throws IOException {
+        file = File.createTempFile("hive-tables", ".csv");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(HEADER + "\n");
+            writer.write("A-1,2,2016-02-08 05:46:00,2016-02-08 11:00:00,39.8,-84.0,0.01,I-70 E,Dayton,Montgomery,"
+                    + "OH,45424,36.9,10,0,0,Light Rain,False,False,True,False,True,Night,Night,Day,Day\n");
+            // Empty numbers are NULL rather than 0, and an empty weather condition is filtered out
+            writer.write("A-2,,2016-02-08 18:10:00,,,,0,,Dayton,Montgomery,OH,,,,,,,,,,,,Day,Day,Day,Day\n");
+            writer.write("A-3,2.0,,,39.8,-84.0,0.01,Oak Ave,Dayton,Montgomery,OH,45424,x,2,7.5,0.3,"
+                    + "Light Rain,False,False,False,False,False,,,,\n");
+            writer.write("A-4,4,2016-02-09 05:00:00,,39.8,-84.0,0.01,I-75 N,Dayton,Montgomery,"
+                    + "OH,45424,36.9,10,0,0,Light Rain,False,False,False,False,False,Night,Night,Day,Day\n");
+        }
+        HiveAnalysisTables tables = new HiveAnalysisTables();
+        new CSVParser().parseCSVFileRecords(file, tables);
+
+        List<Map<String, Object>> locations = tables.getRows(HiveAnalysisTables.Table.LOCATION);
+        assertEquals(4, locations.size());
+        Map<String, Object> second = locations.get(1);
+        assertEquals("A-2", second.get("accident_id"));
+        assertNull(second.get("zipcode"));
+        assertNull(second.get("latitude"));
+        assertEquals("Other", second.get("street_type"));
+        assertNull(second.get("has_traffic_signal"));
+        assertEquals(1, second.get("accident_count"));
+        assertEquals(39.8, locations.get(0).get("latitude"));
+        assertEquals("True", locations.get(0).get("has_crossing"));
+
+        Map<List<Object>, Object> severity = groups(tables, HiveAnalysisTables.Table.SEVERITY);
+        assertEquals(2, severity.get(Arrays.asList(2, "Moderate", "Night", "Light Rain")));
+        assertEquals(1, severity.get(Arrays.asList(null, "Unknown", "Evening", null)));
+        assertEquals(1, severity.get(Arrays.asList(4, "Very High", "Night", "Light Rain")));
+
+        Map<List<Object>, Object> time = groups(tables, HiveAnalysisTables.Table.TIME);
+        assertEquals(1, time.get(Arrays.asList(5, "Monday", "February", 2016, "Night", "Dawn/Dusk")));
+        assertEquals(1, time.get(Arrays.asList(5, "Tuesday", "February", 2016, "Night", "Dawn/Dusk")));
+        assertEquals(1, time.get(Arrays.asList(18, "Monday", "February", 2016, "Day", "Day")));
+        assertEquals(1, time.get(Arrays.asList(null, null, null, null, null, "Night")));
+
+        List<Map<String, Object>> weather = tables.getRows(HiveAnalysisTables.Table.WEATHER);
+        assertEquals(2, weather.size());
+        Map<List<Object>, Object> weatherGroups = groups(tables, HiveAnalysisTables.Table.WEATHER);
+        assertEquals(Arrays.asList(3.0, 2),
+                weatherGroups.get(Arrays.asList("Light Rain", "Cold", "Good", "None", "Calm")));
+        // An unparseable temperature is NULL; 7.5 mph lies between the wind ranges
+        assertEquals(Arrays.asList(2.0, 1),
+                weatherGroups.get(Arrays.asList("Light Rain", "Hot", "Low", "Moderate", "Violent")));
+    }
+
+    public void testIncompleteRecordsCountWithNulls() throws IOException {
+        file = File.createTempFile("hive-tables", ".csv");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(HEADER + "\n");
+            writer.write("A-1,2,2016-02-08 05:46:00,2016-02-08 11:00:00,39.8,-84.0,0.01,I-70 E,Dayton,Montgomery,"
+                    + "OH,45424,36.9,10,0,0,Light Rain,False,False,True,False,True,Night,Night,Day,Day\n");
+            // Hive pads a short row with NULLs
+            writer.write("A-2,3,2016-02-08 07:00:00\n");
+            // The quote is never closed, so the record runs to the end of the file
+            writer.write("A-3,4,2016-02-08 08:00:00,,39.8,-84.0,0.01,\"Main St,Dayton\n");
+        }
+        HiveAnalysisTables tables = new HiveAnalysisTables();
+        CSVParser parser = new CSVParser();
+        parser.parseCSVFileRecords(file, tables);
+
+        assertEquals(0, parser.getQuarantine().getTotal());
+        List<Map<String, Object>> locations = tables.getRows(HiveAnalysisTables.Table.LOCATION);
+        assertEquals(3, locations.size());
+        Map<String, Object> second = locations.get(1);
+        assertEquals("A-2", second.get("accident_id"));
+        assertNull(second.get("state"));
+        assertNull(second.get("latitude"));
+        assertEquals(39.8, locations.get(2).get("latitude"));
+
+        Map<List<Object>, Object> severity = groups(tables, HiveAnalysisTables.Table.SEVERITY);
+        assertEquals(1, severity.get(Arrays.asList(3, "High", "Morning", null)));
+        assertEquals(1, severity.get(Arrays.asList(4, "Very High", "Morning", null)));
+    }
+
+    public void testParallelMatchesSequential() throws IOException {
+        file = File.createTempFile("hive-tables", ".csv");
+        String[] streets = {"I-70 E", "US-40", "State Route 4", "Wilmington Rd", "Oak Ave", "Main St", "Lane", ""};
+        String[] weather = {"Clear", "Rain", "", "Fog"};
+        String[] twilight = {"Day", "Night", ""};
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(HEADER + "\n");
+            for (int i = 0; i < 5000; i++) {
+                writer.write("A-" + i + "," + (i % 11 == 0 ? "" : String.valueOf(i % 5)) + ","
+                        + (i % 13 == 0 ? "" : String.format("2016-%02d-%02d %02d:%02d:00", 1 + i % 12, 1 + i % 28,
+                        i % 24, i % 60)) + ",,"
+                        + (i % 9 == 0 ? "," : (39 + i % 7 * 0.25) + "," + (-84 - i % 5 * 0.5)) + ",0.1,"
+                        + streets[i % streets.length] + ",City" + i % 17 + ",County" + i % 5 + ",OH,"
+                        + (i % 3 == 0 ? "" : String.valueOf(45000 + i % 50)) + ","
+                        + (i % 10 == 0 ? "" : String.valueOf(20 + i % 80 * 0.5)) + "," + (i % 12) + ","
+                        + (i % 8 == 0 ? "" : String.valueOf(i % 60)) + "," + (i % 7 * 0.05) + ","
+                        + weather[i % weather.length] + ",False,True,False," + (i % 2 == 0) + ",True,"
+                        + twilight[i % 3] + "," + twilight[i / 3 % 3] + "," + twilight[i / 9 % 3] + ","
+                        + twilight[i / 27 % 3] + "\n");
+            }
+        }
+        HiveAnalysisTables sequential = new HiveAnalysisTables();
+        new CSVParser().parseCSVFileRecords(file, sequential);
+        HiveAnalysisTables parallel = new LocalHiveAnalysisEngine(new CSVParser(), 4)
+                .analyzeFiles(Collections.singletonList(file));
+
+        assertEquals(5000, parallel.getRowCount(HiveAnalysisTables.Table.LOCATION));
+        for (HiveAnalysisTables.Table table : HiveAnalysisTables.Table.values()) {
+            assertEquals(table.getTableName(), rowCounts(sequential.getRows(table)), rowCounts(parallel.getRows(table)));
+        }
+    }
+
+    /**
+     * Aggregates of a grouped table by the values of its grouping columns
+     */
+    private static Map<List<Object>, Object> groups(HiveAnalysisTables tables, HiveAnalysisTables.Table table) {
+        int groupingColumns = table == HiveAnalysisTables.Table.WEATHER ? 5 : table.getColumns().size() - 1;
+        Map<List<Object>, Object> groups = new HashMap<>();
+        for (Map<String, Object> row : tables.getRows(table)) {
+            List<Object> values = Arrays.asList(row.values().toArray());
+            List<Object> aggregates = values.subList(groupingColumns, values.size());
+            groups.put(values.subList(0, groupingColumns), aggregates.size() == 1 ? aggregates.get(0) : aggregates);
+        }
+        return groups;
+    }
+
+    /**
+     * Rows as a multiset, since rows come in no particular order
+     */
+    private static Map<Map<String, Object>, Integer> rowCounts(List<Map<String, Object>> rows) {
+        Map<Map<String, Object>, Integer> counts = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            counts.merge(row, 1, Integer::sum);
+        }
+        return counts;
+    }
+}
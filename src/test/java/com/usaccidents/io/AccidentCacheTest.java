@@ -0,0 +1,153 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+import com.usaccidents.model.AccidentField;
+import com.usaccidents.model.AccidentTable;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.EnumSet;
+
+/**
+ * Unit tests for writing and reading accident cache files
+ */
+public class AccidentCacheTest extends TestCase {
+    private static final LocalDateTime START = LocalDateTime.of(2016, 1, 1, 0, 0);
+
+    public void testRoundTripAndChunkSkipping() throws Exception {
+        // The first chunk is all OH, the second all CA
+        int rows = AccidentTable.CHUNK_SIZE + 100;
+        AccidentTable table = new AccidentTable();
+        for (int i = 0; i < rows; i++) {
+            table.add(accident(i, i < AccidentTable.CHUNK_SIZE ? "OH" : "CA"));
+        }
+
+        File file = File.createTempFile("accidents", ".cache");
+        try {
+            new AccidentCacheWriter().write(table, file.getPath());
+
+            try (AccidentCacheReader reader = new AccidentCacheReader(file.getPath())) {
+                assertEquals(rows, reader.rowCount());
+                assertEquals(2, reader.chunkCount());
+                assertEquals(EnumSet.allOf(AccidentField.class), reader.getFields());
+                ColumnChunkStats stateStats = reader.chunkStats(1).get(AccidentField.STATE);
+                assertEquals("CA", stateStats.getStringMin());
+                assertEquals("CA", stateStats.getStringMax());
+                // Every other accident has no end time
+                assertEquals(AccidentTable.CHUNK_SIZE / 2,
+                        reader.chunkStats(0).get(AccidentField.END_TIME).getNullCount());
+
+                AccidentTable loaded = reader.read();
+                assertEquals(rows, loaded.size());
+                for (int i : new int[]{0, 7, AccidentTable.CHUNK_SIZE, rows - 1}) {
+                    Accident expected = table.row(i).toAccident();
+                    Accident actual = loaded.row(i).toAccident();
+                    assertEquals(expected.getId(), actual.getId());
+                    assertEquals(expected.getSeverity(), actual.getSeverity());
+                    assertEquals(expected.getStartTime(), actual.getStartTime());
+                    assertEquals(expected.getEndTime(), actual.getEndTime());
+                    assertEquals(expected.getState(), actual.getState());
+                    assertEquals(expected.getTemperature(), actual.getTemperature(), 0.0);
+                    assertEquals(expected.isTrafficSignal(), actual.isTrafficSignal());
+                    assertEquals(expected.getDescription(), actual.getDescription());
+                }
+
+                AccidentTable california = reader.read(EnumSet.of(AccidentField.STATE, AccidentField.SEVERITY),
+                        CachePredicate.stateEquals("CA"));
+                assertEquals(100, california.size());
+                assertEquals("CA", california.row(0).getState());
+                assertNull(california.row(0).getId());
+
+                long secondChunkStart = START.plusMinutes(AccidentTable.CHUNK_SIZE).toEpochSecond(ZoneOffset.UTC);
+                assertEquals(100, reader.read(EnumSet.of(AccidentField.START_TIME),
+                        CachePredicate.startTimeBetween(secondChunkStart, Long.MAX_VALUE)).size());
+                assertEquals(0, reader.read(EnumSet.of(AccidentField.SEVERITY),
+                        CachePredicate.severityBetween(5, 9)).size());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testMissingReadingsStayMissing() throws Exception {
+        // Rows 1 and 3 have no temperature, rows 2 and 3 no visibility; row 0 reads 0 for both
+        AccidentTable table = new AccidentTable();
+        AccidentBatch batch = new AccidentBatch(2);
+        for (int i = 0; i < 4; i++) {
+            Accident accident = new Accident();
+            accident.setState("OH");
+            if (i % 2 == 0) {
+                accident.setTemperature(i * 10.0);
+            }
+            if (i < 2) {
+                accident.setVisibility(i * 5.0);
+                table.add(accident);
+            } else {
+                batch.add(accident);
+            }
+        }
+        table.addAll(batch);
+
+        File file = File.createTempFile("accidents", ".cache");
+        try {
+            new AccidentCacheWriter().write(table, file.getPath());
+
+            try (AccidentCacheReader reader = new AccidentCacheReader(file.getPath())) {
+                ColumnChunkStats temperature = reader.chunkStats(0).get(AccidentField.TEMPERATURE);
+                assertEquals(2, temperature.getNullCount());
+                assertEquals(0.0, temperature.getDoubleMin(), 0.0);
+                assertEquals(20.0, temperature.getDoubleMax(), 0.0);
+                assertEquals(2, reader.chunkStats(0).get(AccidentField.VISIBILITY).getNullCount());
+
+                AccidentTable loaded = reader.read();
+                double[] temperatures = {0.0, Double.NaN, 20.0, Double.NaN};
+                double[] visibilities = {0.0, 5.0, Double.NaN, Double.NaN};
+                for (int i = 0; i < 4; i++) {
+                    Accident actual = loaded.row(i).toAccident();
+                    assertEquals(temperatures[i], actual.getTemperature(), 0.0);
+                    assertEquals(visibilities[i], actual.getVisibility(), 0.0);
+                }
+
+                // A column that was not loaded reads as missing, not as a reading of 0
+                AccidentTable states = reader.read(EnumSet.of(AccidentField.STATE), CachePredicate.ALL);
+                assertTrue(Double.isNaN(states.row(0).getTemperature()));
+                assertEquals(0.0, states.row(0).getHumidity(), 0.0);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testRejectsOtherFiles() throws Exception {
+        File file = File.createTempFile("accidents", ".csv");
+        try {
+            Files.write(file.toPath(), "ID,Severity\nA-1,2\n".getBytes(StandardCharsets.UTF_8));
+            new AccidentCacheReader(file.getPath());
+            fail("A CSV file is not a cache file");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getCause().getMessage().startsWith("Not an accident cache file"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static Accident accident(int i, String state) {
+        Accident accident = new Accident();
+        accident.setId("A-" + i);
+        accident.setSeverity(1 + i % 4);
+        accident.setStartTime(START.plusMinutes(i));
+        if (i % 2 == 0) {
+            accident.setEndTime(START.plusMinutes(i + 30));
+        }
+        accident.setState(state);
+        accident.setTemperature(-3.5 + i % 50);
+        accident.setTrafficSignal(i % 3 == 0);
+        accident.setDescription(i % 5 == 0 ? null : "Lane blocked on I-" + i);
+        return accident;
+    }
+}
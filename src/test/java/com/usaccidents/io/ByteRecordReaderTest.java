@@ -0,0 +1,61 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.Accident;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Unit tests for the byte-level tokenizer, reader and field decoders
+ */
+public class ByteRecordReaderTest extends TestCase {
+
+    public void testRecordsSpanningBufferRefills() throws IOException {
+        String csv = "ID,Severity,Start_Lat,Street\r\n"
+                + "A-1,3,39.865147,\"Main St, \"\"North\"\"\"\r\n"
+                + "A-2,-1,1e-3,\"Köln\nStraße\"\r\n"
+                + "A-3,x,,Elm";
+        ByteRecordReader reader = new ByteRecordReader(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), 8);
+
+        assertTrue(reader.next());
+        assertEquals("Street", reader.tokenizer().field(3));
+
+        assertTrue(reader.next());
+        ByteCSVTokenizer fields = reader.tokenizer();
+        assertEquals(3, fields.intField(1, 0));
+        assertEquals(39.865147, fields.doubleField(2, 0.0), 0.0);
+        assertEquals("Main St, \"North\"", fields.field(3));
+
+        assertTrue(reader.next());
+        assertEquals(-1, fields.intField(1, 0));
+        assertEquals(0.001, fields.doubleField(2, 0.0), 0.0);
+        assertEquals("Köln\nStraße", fields.field(3));
+
+        assertTrue(reader.next());
+        assertEquals(0, fields.intField(1, 0));
+        assertEquals(0.0, fields.doubleField(2, 0.0), 0.0);
+        assertEquals("Elm", fields.field(3));
+        assertEquals(csv.getBytes(StandardCharsets.UTF_8).length, reader.nextRecordOffset());
+        assertFalse(reader.next());
+    }
+
+    public void testTimestampDecoding() {
+        ByteBuffer bytes = ByteBuffer.wrap(
+                "2016-02-29 23:59:07,2016-13-01 00:00:00,2019-06-12 10:10:56.000000000".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(LocalDateTime.of(2016, 2, 29, 23, 59, 7).toEpochSecond(ZoneOffset.UTC),
+                TimestampDecoder.decode(bytes, 0, 19));
+        assertEquals(Accident.NO_TIME, TimestampDecoder.decode(bytes, 20, 39));
+        assertEquals(LocalDateTime.of(2019, 6, 12, 10, 10, 56).toEpochSecond(ZoneOffset.UTC),
+                TimestampDecoder.decode(bytes, 40, bytes.limit()));
+        assertEquals(LocalDateTime.of(1969, 12, 31, 23, 0).toEpochSecond(ZoneOffset.UTC),
+                TimestampDecoder.decode("1969-12-31T23:00"));
+        assertEquals(Accident.NO_TIME, TimestampDecoder.decode("2015-02-29 00:00:00"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.usaccidents.io;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for cutting CSV streams into chunks of whole records
+ */
+public class CSVChunkReaderTest extends TestCase {
+
+    public void testChunksEndOnRecordBoundaries() throws IOException {
+        String header = "ID,Description\n";
+        String records = "A-1,\"two\nlines\"\nA-2,\"say \"\"hi\"\"\"\nA-3,plain\nA-4,last";
+        CSVChunkReader reader = new CSVChunkReader(
+                new ByteArrayInputStream((header + records).getBytes(StandardCharsets.UTF_8)), 8);
+
+        CSVChunkReader.RawChunk first = reader.nextRecord();
+        assertEquals(header, text(first));
+        assertEquals(0, first.getOffset());
+
+        StringBuilder rest = new StringBuilder();
+        long offset = header.length();
+        CSVChunkReader.RawChunk chunk;
+        while ((chunk = reader.next()) != null) {
+            String text = text(chunk);
+            assertEquals(offset, chunk.getOffset());
+            assertTrue(text, text.endsWith("\n") || text.endsWith("last"));
+            assertEquals(text, 0, text.chars().filter(c -> c == '"').count() % 2);
+            rest.append(text);
+            offset += chunk.getLength();
+        }
+        assertEquals(records, rest.toString());
+    }
+
+    public void testRecordLargerThanChunk() throws IOException {
+        String record = "A-1,\"" + new String(new char[100]).replace('\0', 'x') + "\"\n";
+        CSVChunkReader reader = new CSVChunkReader(
+                new ByteArrayInputStream((record + record).getBytes(StandardCharsets.UTF_8)), 16);
+
+        assertEquals(record, text(reader.next()));
+        assertEquals(record, text(reader.next()));
+        assertNull(reader.next());
+    }
+
+    private static String text(CSVChunkReader.RawChunk chunk) {
+        return new String(chunk.getData(), 0, chunk.getLength(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,379 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+import com.usaccidents.model.AccidentField;
+import junit.framework.TestCase;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.SplitCompressionInputStream;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Unit tests for header-driven parsing of US Accidents CSV files
+ */
+public class CSVParserTest extends TestCase {
+    private static final String HEADER = "ID,Source,Severity,Start_Time,End_Time,Start_Lat,Start_Lng,End_Lat,End_Lng,"
+            + "Distance(mi),Description,Street,City,County,State,Zipcode,Country,Timezone,Airport_Code,"
+            + "Weather_Timestamp,Temperature(F),Wind_Chill(F),Humidity(%),Pressure(in),Visibility(mi),"
+            + "Wind_Direction,Wind_Speed(mph),Precipitation(in),Weather_Condition";
+    private static final String ROW = "A-1,Source2,3,2016-02-08 05:46:00,2016-02-08 11:00:00,39.86,-84.05,,,0.01,"
+            + "\"Accident on I-70, \"\"Exit 41\"\"\",I-70 E,Dayton,Montgomery,OH,45424,US,US/Eastern,KFFO,"
+            + "2016-02-08 05:58:00,36.9,,91.0,29.68,10.0,Calm,,0.02,Light Rain";
+
+    private File csvFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        csvFile = File.createTempFile("accidents", ".csv");
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write(HEADER + "\n" + ROW + "\n");
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        csvFile.delete();
+    }
+
+    public void testColumnsResolvedFromHeader() {
+        List<Accident> accidents = parse(new CSVParser());
+
+        assertEquals(1, accidents.size());
+        Accident accident = accidents.get(0);
+        assertEquals("A-1", accident.getId());
+        assertEquals(3, accident.getSeverity());
+        assertEquals(5, accident.getStartTime().getHour());
+        assertEquals("Dayton", accident.getCity());
+        assertEquals("OH", accident.getState());
+        assertEquals("Light Rain", accident.getWeatherCondition());
+        assertEquals(36.9, accident.getTemperature(), 1e-9);
+    }
+
+    public void testProjectionSkipsOtherFields() {
+        List<Accident> accidents = parse(new CSVParser(EnumSet.of(AccidentField.STATE, AccidentField.SEVERITY)));
+
+        Accident accident = accidents.get(0);
+        assertEquals("OH", accident.getState());
+        assertEquals(3, accident.getSeverity());
+        assertNull(accident.getId());
+        assertNull(accident.getCity());
+        assertNull(accident.getStartTime());
+    }
+
+    public void testMalformedRecordsQuarantined() throws IOException {
+        String shortRow = "A-2,Source2,2,\tbroken";
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write(HEADER + "\n" + shortRow + "\n" + ROW + "\n\n" + ROW.replace("A-1", "A-3") + "\n");
+        }
+        ByteArrayOutputStream sideFile = new ByteArrayOutputStream();
+        QuarantineSink quarantine = new QuarantineSink(sideFile, 1);
+        CSVParser parser = new CSVParser(CSVParser.DEFAULT_PROJECTION, quarantine);
+
+        List<Accident> accidents = new ArrayList<>();
+        parser.parseCSVFile(csvFile, accident -> {
+            if ("A-3".equals(accident.getId())) {
+                throw new IllegalStateException("rejected by consumer");
+            }
+            accidents.add(accident);
+        });
+        quarantine.close();
+
+        assertEquals(1, accidents.size());
+        assertEquals(1, quarantine.getCount(QuarantineSink.Reason.INSUFFICIENT_FIELDS));
+        assertEquals(1, quarantine.getCount(QuarantineSink.Reason.PROCESSING_ERROR));
+        assertEquals(2, quarantine.getTotal());
+
+        String[] lines = new String(sideFile.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        String[] columns = lines[0].split("\t", -1);
+        assertEquals(csvFile.getName(), columns[0]);
+        assertEquals(String.valueOf(HEADER.length() + 1), columns[1]);
+        assertEquals("INSUFFICIENT_FIELDS", columns[2]);
+        assertEquals("A-2,Source2,2,\\tbroken\\n", columns[4]);
+        assertTrue(lines[1].contains("rejected by consumer"));
+    }
+
+    public void testBatchesHoldColumns() throws IOException {
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write(HEADER + "\n" + ROW + "\n" + ROW.replace("A-1,Source2,3", "A-2,Source2,2") + "\n"
+                    + ROW.replace("Dayton", "") + "\n");
+        }
+
+        List<Integer> sizes = new ArrayList<>();
+        List<String> cities = new ArrayList<>();
+        List<Integer> severities = new ArrayList<>();
+        new CSVParser().parseCSVFileBatches(csvFile, 2, batch -> {
+            sizes.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                cities.add(batch.getCityDictionary().decode(batch.getCity()[i]));
+                severities.add(batch.getSeverity()[i]);
+                assertEquals(5, Accident.hourOfDay(batch.getStartEpochSecond()[i]));
+                assertEquals("OH", batch.getStateDictionary().decode(batch.getState()[i]));
+                assertEquals(36.9, batch.getTemperature()[i], 1e-9);
+            }
+        });
+
+        assertEquals(2, sizes.size());
+        assertEquals(2, (int) sizes.get(0));
+        assertEquals(1, (int) sizes.get(1));
+        assertEquals("Dayton", cities.get(0));
+        assertEquals("Dayton", cities.get(1));
+        assertNull(cities.get(2));
+        assertEquals(3, (int) severities.get(0));
+        assertEquals(2, (int) severities.get(1));
+    }
+
+    public void testReusingModeRefillsOneAccident() throws IOException {
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write(HEADER + "\n" + ROW + "\n" + ROW.replace("Dayton,Montgomery,OH", "Austin,Travis,TX")
+                    + "\n" + ROW.substring(0, ROW.indexOf(",I-70 E")) + "\n");
+        }
+
+        CSVParser parser = new CSVParser();
+        List<Accident> seen = new ArrayList<>();
+        List<String> states = new ArrayList<>();
+        List<String> streets = new ArrayList<>();
+        parser.parseCSVFileReusing(csvFile, accident -> {
+            seen.add(accident);
+            states.add(accident.getState());
+            streets.add(accident.getStreet());
+        });
+
+        assertEquals(3, seen.size());
+        assertSame(seen.get(0), seen.get(1));
+        assertSame(seen.get(1), seen.get(2));
+        assertEquals("OH", states.get(0));
+        assertEquals("TX", states.get(1));
+        // The short last record must not keep the values of the one before
+        assertNull(states.get(2));
+        assertNull(streets.get(2));
+        assertEquals(streets.get(0), streets.get(1));
+        // Streets are not kept in the shared dictionaries, which would grow with their cardinality
+        assertEquals(0, parser.getDictionaries().getStreets().size());
+        assertSame(parser.getDictionaries().getStates().decode(0), states.get(0));
+    }
+
+    public void testParallelChunksMatchSequentialParse() throws IOException {
+        writeMultiLineRecords(300, true);
+        RecordList sequential = new RecordList();
+        CSVParser sequentialParser = new CSVParser();
+        sequentialParser.parseCSVFileRecords(csvFile, sequential);
+
+        for (long chunkSize : new long[]{1, 97, 1000}) {
+            CSVParser parser = new CSVParser();
+            parser.setChunkSize(chunkSize);
+            RecordList parallel = parser.parseCSVFileParallelRecords(csvFile, 4, RecordList::new, RecordList::merge);
+            assertEquals(0, parser.getQuarantine().getTotal());
+            Collections.sort(parallel.records);
+            Collections.sort(sequential.records);
+            assertEquals(300, parallel.records.size());
+            assertEquals(sequential.records, parallel.records);
+        }
+        assertEquals(0, sequentialParser.getQuarantine().getTotal());
+        assertTrue(sequential.records.contains("A-3|Lane closed,\nuse \"detour\"\n|I-70 E"));
+        assertTrue(sequential.records.contains("A-4|Slow traffic|12\" Pipe Rd"));
+    }
+
+    public void testHDFSSplitsMatchSequentialParse() throws IOException {
+        writeMultiLineRecords(300, false);
+        RecordList sequential = new RecordList();
+        new CSVParser().parseCSVFileRecords(csvFile, sequential);
+        Collections.sort(sequential.records);
+
+        HDFSUtils localFiles = new HDFSUtils(FileSystem.getLocal(new Configuration()));
+        List<Path> paths = Collections.singletonList(new Path(csvFile.getAbsolutePath()));
+        for (long maxSplitSize : new long[]{512, 4096}) {
+            CSVParser parser = new CSVParser();
+            RecordList parallel = parser.parseHDFSCSVFilesParallelRecords(paths, localFiles, 4, maxSplitSize,
+                    RecordList::new, RecordList::merge);
+            assertEquals(0, parser.getQuarantine().getTotal());
+            Collections.sort(parallel.records);
+            assertEquals(300, parallel.records.size());
+            assertEquals(sequential.records, parallel.records);
+        }
+    }
+
+    public void testCompressedFilesMatchPlainParse() throws IOException {
+        writeMultiLineRecords(3000, false);
+        RecordList plain = new RecordList();
+        new CSVParser().parseCSVFileRecords(csvFile, plain);
+        Collections.sort(plain.records);
+        assertEquals(3000, plain.records.size());
+
+        for (String extension : new String[]{".csv.gz", ".csv.bz2"}) {
+            File compressed = File.createTempFile("accidents", extension);
+            try {
+                compress(csvFile, compressed);
+                RecordList sequential = new RecordList();
+                new CSVParser().parseCSVFileRecords(compressed, sequential);
+                Collections.sort(sequential.records);
+                assertEquals(extension, plain.records, sequential.records);
+
+                // bzip2 splits start in no block, or in one of the 100k blocks; each record is read once
+                CSVParser parser = new CSVParser();
+                parser.setChunkSize(4096);
+                RecordList parallel = parser.parseCSVFileParallelRecords(compressed, 4, RecordList::new,
+                        RecordList::merge);
+                Collections.sort(parallel.records);
+                assertEquals(extension, plain.records, parallel.records);
+                assertEquals(0, parser.getQuarantine().getTotal());
+            } finally {
+                compressed.delete();
+            }
+        }
+    }
+
+    public void testBzip2SplitsEndingAroundABlockMatchPlainParse() throws IOException {
+        writeMultiLineRecords(3000, false);
+        RecordList plain = new RecordList();
+        new CSVParser().parseCSVFileRecords(csvFile, plain);
+        Collections.sort(plain.records);
+
+        File compressed = File.createTempFile("accidents", ".csv.bz2");
+        try {
+            compress(csvFile, compressed);
+            long block = firstBlockAfter(compressed, 1);
+            // Splits ending just before, on and just past the block's marker each read it exactly once
+            for (long splitSize = block - 2; splitSize <= block + 2; splitSize++) {
+                CSVParser parser = new CSVParser();
+                parser.setChunkSize(splitSize);
+                RecordList parallel = parser.parseCSVFileParallelRecords(compressed, 4, RecordList::new,
+                        RecordList::merge);
+                Collections.sort(parallel.records);
+                assertEquals("split size " + splitSize, plain.records, parallel.records);
+            }
+        } finally {
+            compressed.delete();
+        }
+    }
+
+    public void testCompressedSplitsStartTheirSourceOnce() throws IOException {
+        writeMultiLineRecords(3000, false);
+        File compressed = File.createTempFile("accidents", ".csv.bz2");
+        try {
+            compress(csvFile, compressed);
+            HDFSUtils localFiles = new HDFSUtils(FileSystem.getLocal(new Configuration()));
+            List<Path> paths = Collections.singletonList(new Path(compressed.getAbsolutePath()));
+            int splits = new HDFSSplitPlanner(localFiles, 4096).plan(paths).size();
+            assertTrue(splits > 1);
+
+            SourceList sources = new CSVParser().parseHDFSCSVFilesParallelRecords(paths, localFiles, 2, 4096,
+                    SourceList::new, SourceList::merge);
+            assertEquals(Collections.nCopies(splits, compressed.getName()), sources.sources);
+        } finally {
+            compressed.delete();
+        }
+    }
+
+    /**
+     * Compressed position of the first block a bzip2 split opened at the given offset reads
+     */
+    private static long firstBlockAfter(File compressed, long offset) throws IOException {
+        FSDataInputStream raw = FileSystem.getLocal(new Configuration()).open(new Path(compressed.getAbsolutePath()));
+        try (SplitCompressionInputStream input = new BZip2Codec().createInputStream(raw, null, offset,
+                compressed.length(), SplittableCompressionCodec.READ_MODE.BYBLOCK)) {
+            input.read();
+            return input.getPos();
+        }
+    }
+
+    /**
+     * Compress a file with gzip, or with bzip2 in blocks of 100k so that it has several
+     */
+    private static void compress(File plain, File compressed) throws IOException {
+        try (OutputStream out = new FileOutputStream(compressed)) {
+            if (compressed.getName().endsWith(".gz")) {
+                try (OutputStream gzip = new GZIPOutputStream(out)) {
+                    Files.copy(plain.toPath(), gzip);
+                }
+            } else {
+                // CBZip2OutputStream expects the caller to write the magic bytes
+                out.write('B');
+                out.write('Z');
+                try (OutputStream bzip2 = new CBZip2OutputStream(out, 1)) {
+                    Files.copy(plain.toPath(), bzip2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write records, some with quoted multi-line descriptions or CRLF terminators
+     *
+     * @param strayQuotes whether some streets hold a quote, which is a literal in an unquoted field
+     */
+    private void writeMultiLineRecords(int count, boolean strayQuotes) throws IOException {
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write(HEADER + "\n");
+            for (int i = 0; i < count; i++) {
+                String description = i % 3 == 0 ? "\"Lane closed,\nuse \"\"detour\"\"\n\"" : "Slow traffic";
+                String street = strayQuotes && i % 4 == 0 ? "12\" Pipe Rd" : "I-70 E";
+                writer.write(ROW.replace("A-1", "A-" + i).replace("\"Accident on I-70, \"\"Exit 41\"\"\"", description)
+                        .replace("I-70 E", street) + (i % 5 == 0 ? "\r\n" : "\n"));
+            }
+        }
+    }
+
+    /**
+     * ID, description and street of the records it accepted
+     */
+    private static class RecordList implements CSVParser.RecordConsumer {
+        private final List<String> records = new ArrayList<>();
+
+        @Override
+        public void accept(CSVRecord fields, CSVColumnMap columns) {
+            records.add(fields.field(0) + "|" + fields.field(10) + "|" + fields.field(11));
+        }
+
+        private RecordList merge(RecordList other) {
+            records.addAll(other.records);
+            return this;
+        }
+    }
+
+    /**
+     * Names of the sources it was started on
+     */
+    private static class SourceList implements CSVParser.RecordConsumer, CSVParser.SourceAware {
+        private final List<String> sources = new ArrayList<>();
+
+        @Override
+        public void startSource(String sourceName) {
+            sources.add(sourceName);
+        }
+
+        @Override
+        public void accept(CSVRecord fields, CSVColumnMap columns) {
+        }
+
+        private SourceList merge(SourceList other) {
+            sources.addAll(other.sources);
+            return this;
+        }
+    }
+
+    private List<Accident> parse(CSVParser parser) {
+        List<Accident> accidents = new ArrayList<>();
+        parser.parseCSVFile(csvFile, accidents::add);
+        return accidents;
+    }
+}
@@ -0,0 +1,128 @@
+package com.usaccidents.io;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Unit tests for the CSV tokenizer and record reader
+ */
+public class CSVTokenizerTest extends TestCase {
+
+    public void testQuotedFieldsAndEscapedQuotes() {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.tokenize("A-1, 3 ,\"Main St, Suite \"\"B\"\"\",,\"\"");
+
+        assertEquals(5, tokenizer.fieldCount());
+        assertEquals("A-1", tokenizer.field(0));
+        assertEquals("3", tokenizer.field(1));
+        assertEquals("Main St, Suite \"B\"", tokenizer.field(2));
+        assertTrue(tokenizer.isEmpty(3));
+        assertTrue(tokenizer.isEmpty(4));
+        assertEquals("", tokenizer.field(9));
+    }
+
+    public void testTrailingEmptyField() {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        String data = "a,b,\nc";
+
+        assertEquals(data.indexOf('c'), tokenizer.tokenize(data, 0, data.length(), Integer.MAX_VALUE));
+        assertEquals(3, tokenizer.fieldCount());
+        assertEquals("b", tokenizer.field(1));
+        assertTrue(tokenizer.isEmpty(2));
+
+        tokenizer.tokenize(",");
+        assertEquals(2, tokenizer.fieldCount());
+        assertTrue(tokenizer.isEmpty(0));
+        assertTrue(tokenizer.isEmpty(1));
+    }
+
+    public void testBlanksAroundQuotedFields() {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.tokenize("a, \"b, c\" ,\t\" d \"\t");
+
+        assertEquals(3, tokenizer.fieldCount());
+        assertEquals("b, c", tokenizer.field(1));
+        // Blanks inside the quotes are part of the value
+        assertEquals(" d ", tokenizer.field(2));
+    }
+
+    public void testTextAfterClosingQuoteIsKept() {
+        // Malformed input: the field is kept as written, quotes included
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        tokenizer.tokenize("\"12\" Pipe,\"ab\"cd,e");
+
+        assertEquals(3, tokenizer.fieldCount());
+        assertEquals("\"12\" Pipe", tokenizer.field(0));
+        assertEquals("\"ab\"cd", tokenizer.field(1));
+        assertEquals("e", tokenizer.field(2));
+        assertFalse(tokenizer.hasUnterminatedQuote());
+    }
+
+    public void testBareCarriageReturnEndsRecord() throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        String data = "a,b\rc,d";
+        assertEquals(data.indexOf('c'), tokenizer.tokenize(data, 0, data.length(), Integer.MAX_VALUE));
+        assertEquals("b", tokenizer.field(1));
+
+        try (CSVRecordReader reader = new CSVRecordReader(new StringReader("ID,State\rA-1,OH\rA-2,\r"))) {
+            assertTrue(reader.next());
+            assertTrue(reader.next());
+            assertEquals("OH", reader.tokenizer().field(1));
+            assertTrue(reader.next());
+            assertEquals("A-2", reader.tokenizer().field(0));
+            assertTrue(reader.tokenizer().isEmpty(1));
+            assertFalse(reader.next());
+            assertEquals(3, reader.recordNumber());
+        }
+    }
+
+    public void testUnterminatedQuoteAtEndOfInput() throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        String data = "a,\"open\nstill open";
+        assertEquals(data.length(), tokenizer.tokenize(data, 0, data.length(), Integer.MAX_VALUE));
+        assertTrue(tokenizer.hasUnterminatedQuote());
+        assertEquals(2, tokenizer.fieldCount());
+        assertEquals("open\nstill open", tokenizer.field(1));
+
+        // The reader keeps reading lines for the open quote until the input ends
+        try (CSVRecordReader reader = new CSVRecordReader(new StringReader("ID,Description\nA-1,\"open\nstill open\n"))) {
+            assertTrue(reader.next());
+            assertFalse(reader.tokenizer().hasUnterminatedQuote());
+            assertTrue(reader.next());
+            assertTrue(reader.tokenizer().hasUnterminatedQuote());
+            assertEquals("A-1", reader.tokenizer().field(0));
+            assertFalse(reader.next());
+        }
+    }
+
+    public void testRecordBoundaryInsideRange() {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        String data = "a,\"b\nc\"\r\nd,e";
+
+        int next = tokenizer.tokenize(data, 0, data.length(), Integer.MAX_VALUE);
+        assertEquals(2, tokenizer.fieldCount());
+        assertEquals("b\nc", tokenizer.field(1));
+        assertEquals(data.indexOf('d'), next);
+
+        tokenizer.tokenize(data, next, data.length(), 1);
+        assertEquals(2, tokenizer.fieldCount());
+        assertEquals(1, tokenizer.recordedFieldCount());
+        assertEquals("d", tokenizer.field(0));
+    }
+
+    public void testRecordReaderJoinsMultiLineRecords() throws IOException {
+        String csv = "ID,Description,State\nA-1,\"Lane closed\nuntil noon\",OH\nA-2,Clear,CA\n";
+        try (CSVRecordReader reader = new CSVRecordReader(new StringReader(csv))) {
+            assertTrue(reader.next());
+            assertTrue(reader.next());
+            assertEquals("Lane closed\nuntil noon", reader.tokenizer().field(1));
+            assertEquals("OH", reader.tokenizer().field(2));
+            assertTrue(reader.next());
+            assertEquals("A-2", reader.tokenizer().field(0));
+            assertFalse(reader.next());
+            assertEquals(3, reader.recordNumber());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.usaccidents.io;
+
+import junit.framework.TestCase;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Unit tests for background decompression handing data and failures to the reader
+ */
+public class DecompressingInputStreamTest extends TestCase {
+
+    public void testDataPassesThroughInOrder() throws IOException {
+        byte[] data = new byte[1024 * 1024 + 17];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        byte[] read = new byte[data.length];
+        int length = 0;
+        try (DecompressingInputStream input = new DecompressingInputStream(new FakeCodecStream(data, -1), null,
+                "data", true)) {
+            int count;
+            while ((count = input.read(read, length, Math.min(1000, read.length - length))) > 0) {
+                length += count;
+            }
+            assertEquals(-1, input.read());
+        }
+        assertEquals(data.length, length);
+        assertTrue(Arrays.equals(data, read));
+    }
+
+    public void testCodecRuntimeExceptionReachesReader() throws IOException {
+        byte[] data = new byte[100];
+        try (DecompressingInputStream input = new DecompressingInputStream(new FakeCodecStream(data, 40), null,
+                "corrupt", false)) {
+            byte[] buffer = new byte[data.length];
+            int length = 0;
+            try {
+                int count;
+                while ((count = input.read(buffer, length, buffer.length - length)) > 0) {
+                    length += count;
+                }
+                fail("The failure must not look like the end of the data");
+            } catch (IOException expected) {
+                assertTrue(expected.getCause() instanceof IllegalStateException);
+            }
+            assertEquals(40, length);
+        }
+    }
+
+    /**
+     * Hands out data in reads of at most 40 bytes and throws once failAt bytes are read,
+     * like a codec meeting a corrupt block
+     */
+    private static class FakeCodecStream extends CompressionInputStream {
+        private final byte[] data;
+        private final int failAt;
+        private int position;
+
+        FakeCodecStream(byte[] data, int failAt) throws IOException {
+            super(new ByteArrayInputStream(new byte[0]));
+            this.data = data;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position == failAt) {
+                throw new IllegalStateException("Corrupt block at " + position);
+            }
+            if (position == data.length) {
+                return -1;
+            }
+            int count = Math.min(Math.min(len, 40), data.length - position);
+            System.arraycopy(data, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public void resetState() {
+            position = 0;
+        }
+    }
+}
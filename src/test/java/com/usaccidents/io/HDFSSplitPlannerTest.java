@@ -0,0 +1,44 @@
+package com.usaccidents.io;
+
+import junit.framework.TestCase;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Unit tests for locating record boundaries from arbitrary split offsets
+ */
+public class HDFSSplitPlannerTest extends TestCase {
+
+    public void testRecordStartFromEveryOffset() throws IOException {
+        String header = "ID,Severity,Description,City\n";
+        String first = "A-1,2,\"Desc, with \"\"q\"\"\nmulti line\",Dayton\n";
+        String second = "A-2,3,\"plain\",Columbus\n";
+        String third = "A-3,1,,\"Quoted \"\"\"\"\"\n";
+        String csv = header + first + second + third;
+
+        File file = File.createTempFile("splits", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), csv.getBytes(StandardCharsets.UTF_8));
+
+        int firstStart = header.length();
+        int secondStart = firstStart + first.length();
+        int thirdStart = secondStart + second.length();
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        try (FSDataInputStream input = fs.open(new Path(file.getAbsolutePath()))) {
+            for (int offset = 1; offset <= csv.length(); offset++) {
+                long expected = offset <= firstStart ? firstStart
+                        : offset <= secondStart ? secondStart
+                        : offset <= thirdStart ? thirdStart
+                        : csv.length();
+                assertEquals("offset " + offset, expected, HDFSSplitPlanner.findRecordStart(input, offset));
+            }
+        }
+    }
+}
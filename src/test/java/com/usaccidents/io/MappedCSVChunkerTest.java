@@ -0,0 +1,104 @@
+package com.usaccidents.io;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Unit tests for cutting memory-mapped CSV files into chunks of whole records
+ */
+public class MappedCSVChunkerTest extends TestCase {
+    private static final String HEADER = "ID,Description,Street\r\n";
+    // Quoted line breaks, an escaped quote, a literal quote in an unquoted field, CRLF and bare CR
+    private static final String RECORDS = "A-1,\"Lane closed,\nuse \"\"detour\"\"\r\n\",I-70 E\r\n"
+            + "A-2,Slow traffic,12\" Pipe Rd\n"
+            + "A-3, \"Ramp\" ,\"\n\"\r\n"
+            + "A-4,Stalled car,Main St\r"
+            + "A-5,\"a\"\"\n\",\"\"\n"
+            + "A-6,Last,\"Oak Ave\"";
+
+    private File csvFile;
+    private ForkJoinPool pool;
+
+    @Override
+    protected void setUp() throws Exception {
+        csvFile = File.createTempFile("accidents", ".csv");
+        Files.write(csvFile.toPath(), (HEADER + RECORDS).getBytes(StandardCharsets.UTF_8));
+        pool = new ForkJoinPool(4);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pool.shutdown();
+        csvFile.delete();
+    }
+
+    public void testHeaderEndsAfterItsTerminator() throws IOException {
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            assertEquals(HEADER.length(), new MappedCSVChunker(channel).headerEnd());
+        }
+    }
+
+    public void testChunksOfEverySizeStartOnRecords() throws IOException {
+        List<Integer> recordStarts = recordStarts();
+        int fileSize = HEADER.length() + RECORDS.length();
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            // Nominal offsets fall in quoted line breaks and between CR and LF for some sizes
+            for (int chunkSize = 1; chunkSize <= RECORDS.length() + 1; chunkSize++) {
+                MappedCSVChunker chunker = new MappedCSVChunker(channel, chunkSize);
+                List<MappedCSVChunker.Chunk> chunks = chunker.plan(HEADER.length(), pool);
+
+                long expectedStart = HEADER.length();
+                for (MappedCSVChunker.Chunk chunk : chunks) {
+                    assertEquals("chunk size " + chunkSize, expectedStart, chunk.getStart());
+                    assertTrue("chunk size " + chunkSize + " cut at " + chunk.getStart(),
+                            recordStarts.contains((int) chunk.getStart()));
+                    expectedStart = chunk.getEnd();
+                }
+                assertEquals("chunk size " + chunkSize, fileSize, expectedStart);
+            }
+        }
+    }
+
+    public void testCutsOnlyAfterLineFeeds() throws IOException {
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            List<MappedCSVChunker.Chunk> chunks = new MappedCSVChunker(channel, 1).plan(HEADER.length(), pool);
+            String data = HEADER + RECORDS;
+            List<String> texts = new ArrayList<>();
+            for (MappedCSVChunker.Chunk chunk : chunks) {
+                texts.add(data.substring((int) chunk.getStart(), (int) chunk.getEnd()));
+            }
+            // A-4 ends with a bare CR, so A-5 shares its chunk; no CRLF is split
+            List<String> expected = new ArrayList<>();
+            expected.add("A-1,\"Lane closed,\nuse \"\"detour\"\"\r\n\",I-70 E\r\n");
+            expected.add("A-2,Slow traffic,12\" Pipe Rd\n");
+            expected.add("A-3, \"Ramp\" ,\"\n\"\r\n");
+            expected.add("A-4,Stalled car,Main St\rA-5,\"a\"\"\n\",\"\"\n");
+            expected.add("A-6,Last,\"Oak Ave\"");
+            assertEquals(expected, texts);
+        }
+    }
+
+    /**
+     * Offsets of the records in the file, as found by the tokenizer
+     */
+    private static List<Integer> recordStarts() {
+        String data = HEADER + RECORDS;
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        List<Integer> starts = new ArrayList<>();
+        int offset = tokenizer.tokenize(data, 0, data.length(), Integer.MAX_VALUE);
+        while (offset < data.length()) {
+            starts.add(offset);
+            offset = tokenizer.tokenize(data, offset, data.length(), Integer.MAX_VALUE);
+        }
+        return starts;
+    }
+}
@@ -0,0 +1,89 @@
+package com.usaccidents.io;
+
+import com.usaccidents.model.Accident;
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Unit tests for decoding timestamps into wall-clock epoch seconds
+ */
+public class TimestampDecoderTest extends TestCase {
+
+    public void testFixedLayoutMatchesLocalDateTime() {
+        // Every day from 1899 to 2101 at a time that varies with the day
+        LocalDateTime time = LocalDateTime.of(1899, 1, 1, 0, 0, 0);
+        while (time.getYear() < 2102) {
+            assertDecodes(time.toEpochSecond(ZoneOffset.UTC), text(time));
+            time = time.plusDays(1).plusSeconds(3607);
+        }
+    }
+
+    public void testLeapDays() {
+        assertDecodes(LocalDateTime.of(2016, 2, 29, 23, 59, 59).toEpochSecond(ZoneOffset.UTC), "2016-02-29 23:59:59");
+        assertDecodes(LocalDateTime.of(2000, 2, 29, 0, 0).toEpochSecond(ZoneOffset.UTC), "2000-02-29 00:00:00");
+        assertDecodes(Accident.NO_TIME, "2017-02-29 00:00:00");
+        // Century years are only leap years every 400 years
+        assertDecodes(Accident.NO_TIME, "1900-02-29 00:00:00");
+        assertDecodes(Accident.NO_TIME, "2100-02-29 12:00:00");
+    }
+
+    public void testFractionalSecondsAreTruncated() {
+        long second = LocalDateTime.of(2016, 2, 8, 5, 46, 0).toEpochSecond(ZoneOffset.UTC);
+        assertDecodes(second, "2016-02-08 05:46:00.0");
+        assertDecodes(second, "2016-02-08 05:46:00.5");
+        assertDecodes(second, "2016-02-08 05:46:00.999999999");
+        // A point without digits is left to the fallback, which accepts it
+        assertDecodes(second, "2016-02-08 05:46:00.");
+        // More than nanosecond precision does not match any layout
+        assertDecodes(Accident.NO_TIME, "2016-02-08 05:46:00.9999999999");
+        assertDecodes(Accident.NO_TIME, "2016-02-08 05:46:00.5x");
+    }
+
+    public void testMalformedTimestamps() {
+        assertDecodes(Accident.NO_TIME, "");
+        assertDecodes(Accident.NO_TIME, "not a time");
+        assertDecodes(Accident.NO_TIME, "2016-13-08 05:46:00");
+        assertDecodes(Accident.NO_TIME, "2016-04-31 05:46:00");
+        assertDecodes(Accident.NO_TIME, "2016-02-08 24:00:00");
+        assertDecodes(Accident.NO_TIME, "2016-02-08 05:60:00");
+        assertDecodes(Accident.NO_TIME, "2016-02-08 05:46:60");
+        assertDecodes(Accident.NO_TIME, "2016-02-08 05:4a:00");
+        assertDecodes(Accident.NO_TIME, "2016/02/08 05:46:00");
+        assertDecodes(Accident.NO_TIME, "2016-02-08 05:46:00 EST");
+    }
+
+    public void testFallbackFormats() {
+        assertDecodes(LocalDateTime.of(2016, 2, 8, 5, 46, 0).toEpochSecond(ZoneOffset.UTC), "2016-02-08T05:46:00");
+        assertDecodes(LocalDateTime.of(2016, 2, 8, 5, 46).toEpochSecond(ZoneOffset.UTC), "2016-2-8 5:46");
+        assertDecodes(LocalDateTime.of(2016, 2, 8, 5, 46, 7).toEpochSecond(ZoneOffset.UTC), "2016-02-08 5:46:07.25");
+        assertDecodes(LocalDateTime.of(1969, 12, 31, 23, 0).toEpochSecond(ZoneOffset.UTC), "1969-12-31T23:00");
+        // The fallback is strict as well
+        assertDecodes(Accident.NO_TIME, "2015-2-29 05:46");
+    }
+
+    public void testFromFields() {
+        assertEquals(0, TimestampDecoder.fromFields(1970, 1, 1, 0, 0, 0));
+        assertEquals(-86400, TimestampDecoder.fromFields(1969, 12, 31, 0, 0, 0));
+        assertEquals(Accident.NO_TIME, TimestampDecoder.fromFields(2016, 0, 1, 0, 0, 0));
+        assertEquals(Accident.NO_TIME, TimestampDecoder.fromFields(-1, 1, 1, 0, 0, 0));
+    }
+
+    /**
+     * Decode a timestamp both from text and from bytes in the middle of a buffer
+     */
+    private static void assertDecodes(long expected, String text) {
+        assertEquals(text, expected, TimestampDecoder.decode(text));
+
+        byte[] bytes = ("x," + text + ",y").getBytes(StandardCharsets.UTF_8);
+        assertEquals(text, expected, TimestampDecoder.decode(ByteBuffer.wrap(bytes), 2, bytes.length - 2));
+    }
+
+    private static String text(LocalDateTime time) {
+        return String.format("%04d-%02d-%02d %02d:%02d:%02d", time.getYear(), time.getMonthValue(),
+                time.getDayOfMonth(), time.getHour(), time.getMinute(), time.getSecond());
+    }
+}
@@ -0,0 +1,74 @@
+package com.usaccidents.model;
+
+import junit.framework.TestCase;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+
+/**
+ * Unit tests for the columnar accident table
+ */
+public class AccidentTableTest extends TestCase {
+
+    public void testRowsRoundTripAcrossChunks() {
+        AccidentTable table = new AccidentTable();
+        int rows = AccidentTable.CHUNK_SIZE + 10;
+        for (int i = 0; i < rows; i++) {
+            table.add(accident(i));
+        }
+
+        assertEquals(rows, table.size());
+        assertEquals(2, table.chunkCount());
+        assertEquals(10, table.chunkLength(1));
+        assertEquals(2, table.dictionary(AccidentField.STATE).size());
+
+        for (int i : new int[]{0, 1, AccidentTable.CHUNK_SIZE - 1, AccidentTable.CHUNK_SIZE, rows - 1}) {
+            Accident expected = accident(i);
+            Accident actual = table.row(i).toAccident();
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getSeverity(), actual.getSeverity());
+            assertEquals(expected.getStartTime(), actual.getStartTime());
+            assertEquals(expected.getState(), actual.getState());
+            assertEquals(expected.getStartLat(), actual.getStartLat(), 0.0);
+            assertEquals(expected.isTrafficSignal(), actual.isTrafficSignal());
+            assertNull(actual.getEndTime());
+            assertNull(actual.getCity());
+        }
+    }
+
+    public void testProjectionAndBatchAppend() {
+        AccidentTable table = new AccidentTable(EnumSet.of(AccidentField.STATE, AccidentField.SEVERITY,
+                AccidentField.COUNTY));
+        AccidentBatch batch = new AccidentBatch(4);
+        batch.add(accident(0));
+        batch.add(accident(1));
+        batch.add(accident(2));
+        table.addAll(batch);
+        table.add(accident(3));
+
+        assertEquals(4, table.size());
+        assertEquals("CA", table.row(1).getState());
+        assertEquals("OH", table.row(2).getState());
+        assertEquals(2, table.row(1).getSeverity());
+        assertNull(table.row(0).getCounty());
+        assertNull(table.row(0).getId());
+        assertEquals(Accident.NO_TIME, table.row(0).getStartEpochSecond());
+        try {
+            table.longChunk(AccidentField.START_TIME, 0);
+            fail("START_TIME is not stored");
+        } catch (IllegalArgumentException expected) {
+            // Not in the projection
+        }
+    }
+
+    private static Accident accident(int i) {
+        Accident accident = new Accident();
+        accident.setId("A-" + i);
+        accident.setSeverity(1 + i % 4);
+        accident.setStartTime(LocalDateTime.of(2016, 1, 1, 0, 0).plusMinutes(i));
+        accident.setState(i % 2 == 0 ? "OH" : "CA");
+        accident.setStartLat(39.0 + i * 1e-6);
+        accident.setTrafficSignal(i % 3 == 0);
+        return accident;
+    }
+}
@@ -0,0 +1,88 @@
+package com.usaccidents.model;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * Unit tests for the off-heap accident store
+ */
+public class OffHeapAccidentStoreTest extends TestCase {
+
+    public void testRecordsRoundTripAcrossSegments() throws Exception {
+        try (OffHeapAccidentStore store = new OffHeapAccidentStore()) {
+            int rows = OffHeapAccidentStore.SEGMENT_RECORDS + 10;
+            for (int i = 0; i < rows; i++) {
+                assertEquals(i, store.add(accident(i)));
+            }
+            store.add(new Accident());
+
+            assertEquals(rows + 1, store.size());
+            OffHeapAccidentStore.Record record = store.record();
+            for (int i : new int[]{0, 1, OffHeapAccidentStore.SEGMENT_RECORDS, rows - 1}) {
+                assertSameAccident(accident(i), record.moveTo(i));
+            }
+
+            record.moveTo(rows);
+            assertNull(record.getId());
+            assertNull(record.getState());
+            assertNull(record.getStartTime());
+            assertEquals(-1, record.getStartHour());
+            try {
+                record.moveTo(rows + 1);
+                fail("Only " + (rows + 1) + " records are stored");
+            } catch (IndexOutOfBoundsException expected) {
+                // Past the last record
+            }
+        }
+    }
+
+    public void testMappedStore() throws Exception {
+        Path directory = Files.createTempDirectory("accident-store");
+        try (OffHeapAccidentStore store = OffHeapAccidentStore.mapped(directory, new AccidentDictionaries())) {
+            for (int i = 0; i < 100; i++) {
+                store.add(accident(i));
+            }
+            OffHeapAccidentStore.Record record = store.record();
+            assertSameAccident(accident(42), record.moveTo(42));
+            assertEquals("A-42", record.toAccident().getId());
+        } finally {
+            for (File file : directory.toFile().listFiles()) {
+                file.delete();
+            }
+            directory.toFile().delete();
+        }
+    }
+
+    private static void assertSameAccident(Accident expected, OffHeapAccidentStore.Record actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getSeverity(), actual.getSeverity());
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getStartHour(), actual.getStartHour());
+        assertNull(actual.getEndTime());
+        assertEquals(expected.getStartLat(), actual.getStartLat(), 0.0);
+        assertEquals(expected.getTemperature(), actual.getTemperature(), 0.0);
+        assertEquals(expected.getState(), actual.getState());
+        assertEquals(expected.getCity(), actual.getCity());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.isTrafficSignal(), actual.isTrafficSignal());
+        assertNull(actual.getCounty());
+    }
+
+    private static Accident accident(int i) {
+        Accident accident = new Accident();
+        accident.setId("A-" + i);
+        accident.setSeverity(1 + i % 4);
+        accident.setStartTime(LocalDateTime.of(2016, 1, 1, 0, 0).plusMinutes(i));
+        accident.setState(i % 2 == 0 ? "OH" : "CA");
+        accident.setCity(i % 3 == 0 ? "Dayton" : "Zürich");
+        accident.setDescription("Accident on I-" + i + " \"near\" exit");
+        accident.setStartLat(39.0 + i * 1e-6);
+        accident.setTemperature(-3.5 + i % 50);
+        accident.setTrafficSignal(i % 3 == 0);
+        return accident;
+    }
+}
@@ -0,0 +1,83 @@
+package com.usaccidents.model;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit tests for the string dictionary
+ */
+public class StringDictionaryTest extends TestCase {
+
+    public void testBytesAndStringsShareCodes() {
+        StringDictionary dictionary = new StringDictionary();
+        byte[] bytes = "x,São Paulo,OH".getBytes(StandardCharsets.UTF_8);
+        int cityEnd = bytes.length - 3;
+
+        int city = dictionary.encode(ByteBuffer.wrap(bytes), 2, cityEnd);
+        int state = dictionary.encode(ByteBuffer.wrap(bytes), cityEnd + 1, bytes.length);
+
+        assertEquals(0, city);
+        assertEquals(1, state);
+        assertEquals("São Paulo", dictionary.decode(city));
+        assertEquals(city, dictionary.encode("São Paulo"));
+        assertEquals(state, dictionary.encode("OH"));
+        assertEquals(StringDictionary.NULL_CODE, dictionary.encode(""));
+        assertEquals(StringDictionary.NULL_CODE, dictionary.encode(ByteBuffer.wrap(bytes), 1, 1));
+        assertNull(dictionary.decode(StringDictionary.NULL_CODE));
+        assertEquals(2, dictionary.size());
+    }
+
+    public void testClearForgetsValues() {
+        StringDictionary dictionary = new StringDictionary();
+        for (int i = 0; i < 100; i++) {
+            dictionary.encode("street-" + i);
+        }
+        dictionary.clear();
+
+        assertEquals(0, dictionary.size());
+        assertEquals(0, dictionary.encode("street-99"));
+        assertEquals(1, dictionary.encode("street-0"));
+        assertEquals("street-99", dictionary.decode(0));
+        assertEquals(0, dictionary.encode("street-99"));
+    }
+
+    public void testConcurrentEncodingAssignsOneCodePerValue() throws Exception {
+        StringDictionary dictionary = new StringDictionary();
+        int values = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int offset = t;
+                results.add(executor.submit(() -> {
+                    int[] codes = new int[values];
+                    for (int i = 0; i < values; i++) {
+                        // Each thread walks the values in a different order
+                        int value = (i * 7 + offset * 1013) % values;
+                        codes[value] = dictionary.encode("value-" + value);
+                    }
+                    return codes;
+                }));
+            }
+
+            int[] expected = results.get(0).get();
+            for (Future<int[]> result : results) {
+                int[] codes = result.get();
+                for (int value = 0; value < values; value++) {
+                    assertEquals(expected[value], codes[value]);
+                    assertEquals("value-" + value, dictionary.decode(codes[value]));
+                }
+            }
+            assertEquals(values, dictionary.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+import com.usaccidents.model.AccidentDictionaries;
+import com.usaccidents.model.AccidentTable;
+import junit.framework.TestCase;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the record-at-a-time and batch entry points of the analyzer, and for
+ * merging partial analyzers
+ */
+public class AccidentAnalyzerTest extends TestCase {
+    private static final String[] STATES = {"OH", "CA", "TX", ""};
+    private static final String[] CITIES = {"Dayton", "Los Angeles", "Houston", null, "Columbus"};
+    private static final String[] WEATHER = {"Rain", "Clear", "Fog"};
+
+    public void testBatchMatchesRecordAtATime() {
+        AccidentAnalyzer perRecord = new AccidentAnalyzer();
+        AccidentAnalyzer batched = new AccidentAnalyzer();
+        AccidentBatch batch = new AccidentBatch(7);
+
+        for (int i = 0; i < 100; i++) {
+            Accident accident = accident(i);
+            perRecord.processAccident(accident);
+            batch.add(accident);
+            if (batch.isFull()) {
+                batched.processBatch(batch);
+                batch.clear();
+            }
+        }
+        batched.processBatch(batch);
+
+        assertResultsEqual(perRecord, batched);
+    }
+
+    public void testTableMatchesRecordAtATime() {
+        AccidentAnalyzer perRecord = new AccidentAnalyzer();
+        AccidentTable table = new AccidentTable(AccidentAnalyzer.REQUIRED_FIELDS);
+        for (int i = 0; i < 100; i++) {
+            Accident accident = accident(i);
+            perRecord.processAccident(accident);
+            table.add(accident);
+        }
+        AccidentAnalyzer scanned = new AccidentAnalyzer();
+        scanned.processTable(table);
+
+        assertResultsEqual(perRecord, scanned);
+    }
+
+    public void testMergedPartialsMatchSingleAnalyzer() {
+        AccidentAnalyzer single = new AccidentAnalyzer();
+        // Two partials fed batches sharing dictionaries, one fed batches with its own, one records
+        AccidentDictionaries shared = new AccidentDictionaries();
+        AccidentAnalyzer[] partials = new AccidentAnalyzer[4];
+        AccidentBatch[] batches = {new AccidentBatch(5, shared), new AccidentBatch(5, shared),
+                new AccidentBatch(5), null};
+        for (int p = 0; p < partials.length; p++) {
+            partials[p] = new AccidentAnalyzer();
+        }
+
+        for (int i = 0; i < 200; i++) {
+            Accident accident = accident(i);
+            single.processAccident(accident);
+            int p = i % partials.length;
+            if (batches[p] == null) {
+                partials[p].processAccident(accident);
+                continue;
+            }
+            batches[p].add(accident);
+            if (batches[p].isFull()) {
+                partials[p].processBatch(batches[p]);
+                batches[p].clear();
+            }
+        }
+        for (int p = 0; p < partials.length; p++) {
+            if (batches[p] != null) {
+                partials[p].processBatch(batches[p]);
+            }
+        }
+
+        AccidentAnalyzer merged = new AccidentAnalyzer();
+        for (AccidentAnalyzer partial : partials) {
+            assertSame(merged, merged.merge(partial));
+        }
+        assertResultsEqual(single, merged);
+        assertEquals(200, merged.getTotalAccidents());
+        // Merging leaves the partials' own results unchanged
+        assertEquals(50, partials[0].getTotalAccidents());
+        assertResultsEqual(partials[0], new AccidentAnalyzer().merge(partials[0]));
+    }
+
+    private static void assertResultsEqual(AccidentAnalyzer expectedAnalyzer, AccidentAnalyzer actualAnalyzer) {
+        Map<String, Object> expected = expectedAnalyzer.getResults();
+        Map<String, Object> actual = actualAnalyzer.getResults();
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String key : expected.keySet()) {
+            assertEquals(key, normalize(expected.get(key)), normalize(actual.get(key)));
+        }
+    }
+
+    /**
+     * Top-N lists as maps, since entries with equal counts may come in any order
+     */
+    @SuppressWarnings("unchecked")
+    private static Object normalize(Object result) {
+        if (result instanceof List) {
+            Map<Object, Object> entries = new HashMap<>();
+            for (Map.Entry<Object, Object> entry : (List<Map.Entry<Object, Object>>) result) {
+                entries.put(entry.getKey(), entry.getValue());
+            }
+            return entries;
+        }
+        return result;
+    }
+
+    private static Accident accident(int i) {
+        Accident accident = new Accident();
+        accident.setSeverity(i % 11 == 0 ? 12 : 1 + i % 4);
+        accident.setState(STATES[i % STATES.length]);
+        accident.setCity(CITIES[i % CITIES.length]);
+        accident.setWeatherCondition(WEATHER[i % WEATHER.length]);
+        if (i % 5 != 0) {
+            accident.setStreet("I-" + i % 7 + " E");
+        }
+        accident.setCounty(i % 2 == 0 ? "Montgomery" : "Franklin");
+        if (i % 9 != 0) {
+            accident.setStartTime(LocalDateTime.of(2016, 2, 8, i % 24, 30));
+            if (i % 6 != 0) {
+                accident.setEndTime(LocalDateTime.of(2016, 2, 8, i % 24, 30).plusMinutes(7 * (i % 13)));
+            }
+        }
+        accident.setTemperature(20 + i % 45 + 0.5);
+        accident.setVisibility(i % 10);
+        if (i % 7 != 0) {
+            accident.setStartLat(39.75 + (i % 6) * 0.01);
+            accident.setStartLng(-84.19 - (i % 4) * 0.2);
+        }
+        return accident;
+    }
+}
@@ -0,0 +1,313 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.io.OutputWriter;
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+import com.usaccidents.model.AccidentField;
+import com.usaccidents.model.AccidentTable;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for grouping-set aggregation in one pass, its batch and table entry points,
+ * merging, and the configured breakdowns of the analyzer
+ */
+public class AccidentCubeTest extends TestCase {
+    private static final String[] STATES = {"OH", "CA", "TX", ""};
+    private static final String[] WEATHER = {"Rain", "Clear", null};
+    private static final Set<CubeMeasure> MEASURES =
+            EnumSet.of(CubeMeasure.DURATION_MINUTES, CubeMeasure.TEMPERATURE);
+
+    public void testRollupAggregatesEveryLevel() {
+        AccidentCube cube = new AccidentCube(
+                AccidentCube.rollup(CubeDimension.STATE, CubeDimension.SEVERITY), MEASURES);
+        Map<List<Object>, Long> expectedCounts = new HashMap<>();
+        double maxDuration = 0;
+        for (int i = 0; i < 120; i++) {
+            Accident accident = accident(i);
+            cube.add(accident);
+            String state = accident.getState().isEmpty() ? null : accident.getState();
+            expectedCounts.merge(Arrays.asList(state, accident.getSeverity()), 1L, Long::sum);
+            double duration = CubeMeasure.DURATION_MINUTES.valueOf(accident);
+            if (!Double.isNaN(duration)) {
+                maxDuration = Math.max(maxDuration, duration);
+            }
+        }
+
+        assertEquals(3, cube.getGroupingSets().size());
+        Map<List<Object>, Long> counts = new HashMap<>();
+        for (AccidentCube.Cell cell : cube.cells(EnumSet.of(CubeDimension.STATE, CubeDimension.SEVERITY))) {
+            counts.put(cell.getValues(), cell.getCount());
+        }
+        assertEquals(expectedCounts, counts);
+
+        long stateTotal = 0;
+        for (AccidentCube.Cell cell : cube.cells(EnumSet.of(CubeDimension.STATE))) {
+            assertNull(cell.getValue(CubeDimension.SEVERITY));
+            stateTotal += cell.getCount();
+            assertEquals(cell.getValue(CubeDimension.STATE) == null, cell.hasMissingValue());
+        }
+        assertEquals(120, stateTotal);
+
+        List<AccidentCube.Cell> total = cube.cells(EnumSet.noneOf(CubeDimension.class));
+        assertEquals(1, total.size());
+        assertEquals(120, total.get(0).getCount());
+        assertEquals(120, total.get(0).getValueCount(CubeMeasure.TEMPERATURE));
+        assertEquals(20.5, total.get(0).getMin(CubeMeasure.TEMPERATURE));
+        assertEquals(maxDuration, total.get(0).getMax(CubeMeasure.DURATION_MINUTES));
+        // Accidents without both times have no duration
+        assertTrue(total.get(0).getValueCount(CubeMeasure.DURATION_MINUTES) < 120);
+
+        try {
+            total.get(0).getSum(CubeMeasure.VISIBILITY);
+            fail("Visibility is not aggregated");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    public void testBatchAndTableMatchRecordAtATime() {
+        List<Set<CubeDimension>> groupingSets = AccidentCube.cube(
+                CubeDimension.STATE, CubeDimension.WEATHER_CONDITION, CubeDimension.HOUR);
+        AccidentCube perRecord = new AccidentCube(groupingSets, MEASURES);
+        AccidentCube batched = new AccidentCube(groupingSets, MEASURES);
+        AccidentCube scanned = new AccidentCube(groupingSets, MEASURES);
+        AccidentBatch batch = new AccidentBatch(7);
+        AccidentTable table = new AccidentTable(EnumSet.of(AccidentField.STATE, AccidentField.WEATHER_CONDITION,
+                AccidentField.START_TIME, AccidentField.END_TIME, AccidentField.TEMPERATURE));
+
+        for (int i = 0; i < 150; i++) {
+            Accident accident = accident(i);
+            perRecord.add(accident);
+            table.add(accident);
+            batch.add(accident);
+            if (batch.isFull()) {
+                batched.addBatch(batch);
+                batch.clear();
+            }
+        }
+        batched.addBatch(batch);
+        scanned.addTable(table);
+
+        assertEquals(8, perRecord.getGroupingSets().size());
+        assertEquals(cells(perRecord), cells(batched));
+        assertEquals(cells(perRecord), cells(scanned));
+    }
+
+    public void testMergeMatchesSingleCube() {
+        List<Set<CubeDimension>> groupingSets = AccidentCube.parseGroupingSets("state, severity; rollup(STATE, HOUR)");
+        AccidentCube single = new AccidentCube(groupingSets, MEASURES);
+        AccidentCube[] partials = {new AccidentCube(groupingSets, MEASURES), new AccidentCube(groupingSets, MEASURES)};
+        AccidentBatch batch = new AccidentBatch(5);
+        for (int i = 0; i < 100; i++) {
+            Accident accident = accident(i);
+            single.add(accident);
+            if (i % 2 == 0) {
+                partials[0].add(accident);
+                continue;
+            }
+            batch.add(accident);
+            if (batch.isFull()) {
+                partials[1].addBatch(batch);
+                batch.clear();
+            }
+        }
+        partials[1].addBatch(batch);
+
+        AccidentCube merged = new AccidentCube(groupingSets, MEASURES);
+        merged.merge(partials[1]);
+        merged.merge(partials[0]);
+        assertEquals(cells(single), cells(merged));
+
+        try {
+            merged.merge(new AccidentCube(AccidentCube.rollup(CubeDimension.STATE), MEASURES));
+            fail("Cubes of other grouping sets cannot be merged");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    public void testAnalyzerReportsConfiguredGroupingSets() {
+        List<Set<CubeDimension>> groupingSets = AccidentCube.parseGroupingSets("STATE,SEVERITY,HOUR; ()");
+        assertEquals(Arrays.asList(EnumSet.of(CubeDimension.STATE, CubeDimension.SEVERITY, CubeDimension.HOUR),
+                EnumSet.noneOf(CubeDimension.class)), groupingSets);
+        AccidentAnalyzer analyzer = new AccidentAnalyzer(AccidentAnalyzer.DEFAULT_DISTINCT_PRECISION,
+                EnumSet.noneOf(AccidentAnalyzer.QuantileMetric.class),
+                EnumSet.noneOf(AccidentAnalyzer.QuantileGrouping.class), groupingSets);
+        for (int i = 0; i < 40; i++) {
+            analyzer.processAccident(accident(i));
+        }
+
+        Map<String, Object> results = analyzer.getResults();
+        @SuppressWarnings("unchecked")
+        Map<List<Object>, Long> byStateSeverityHour =
+                (Map<List<Object>, Long>) results.get("breakdownByStateAndSeverityAndHour");
+        // Accidents 1 and 25 are in CA at severity 2 and hour 1
+        assertEquals(Long.valueOf(2), byStateSeverityHour.get(Arrays.<Object>asList("CA", 2, 1)));
+        for (List<Object> values : byStateSeverityHour.keySet()) {
+            assertFalse(values.contains(null));
+        }
+        assertEquals(Collections.singletonMap(Collections.emptyList(), 40L), results.get("breakdownInTotal"));
+
+        try {
+            AccidentCube.parseGroupingSets("STATE, ZIP");
+            fail("Unknown dimension");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    public void testSetsWiderThanAKey() {
+        // 92 initial bits: the set's keys are not packed into a long
+        Set<CubeDimension> wide = EnumSet.of(CubeDimension.STREET, CubeDimension.CITY, CubeDimension.COUNTY,
+                CubeDimension.WEATHER_CONDITION, CubeDimension.STATE, CubeDimension.TIMEZONE);
+        Set<CubeDimension> street = EnumSet.of(CubeDimension.STREET);
+        List<Set<CubeDimension>> groupingSets = Arrays.asList(wide, street,
+                EnumSet.of(CubeDimension.COUNTY, CubeDimension.TIMEZONE), EnumSet.noneOf(CubeDimension.class));
+        AccidentCube cube = new AccidentCube(groupingSets, MEASURES);
+        AccidentCube other = new AccidentCube(groupingSets, MEASURES);
+        for (int i = 0; i < 200; i++) {
+            Accident accident = accident(i);
+            accident.setStreet("Street " + i % 30);
+            accident.setCity("City " + i % 7);
+            accident.setCounty("County " + i % 3);
+            accident.setTimezone("US/Eastern");
+            cube.add(accident);
+            other.add(accident);
+        }
+
+        Map<List<Object>, Long> byStreet = new HashMap<>();
+        for (AccidentCube.Cell cell : cube.cells(street)) {
+            byStreet.put(cell.getValues(), cell.getCount());
+        }
+        assertEquals(30, byStreet.size());
+        assertEquals(Long.valueOf(7), byStreet.get(Collections.<Object>singletonList("Street 0")));
+        long wideTotal = 0;
+        for (AccidentCube.Cell cell : cube.cells(wide)) {
+            wideTotal += cell.getCount();
+        }
+        assertEquals(200, wideTotal);
+
+        cube.merge(other);
+        assertEquals(400, cube.cells(EnumSet.noneOf(CubeDimension.class)).get(0).getCount());
+        assertEquals(30, cube.cells(street).size());
+    }
+
+    public void testDimensionsOutgrowTheirInitialWidth() throws IOException {
+        // SEVERITY starts at 6 bits, HOUR at 6; 1000 severities need 10
+        List<Set<CubeDimension>> groupingSets = AccidentCube.parseGroupingSets("SEVERITY; SEVERITY, HOUR; HOUR");
+        AccidentCube cube = new AccidentCube(groupingSets, MEASURES);
+        AccidentCube batched = new AccidentCube(groupingSets, MEASURES);
+        AccidentBatch batch = new AccidentBatch(64);
+        for (int i = 0; i < 3000; i++) {
+            Accident accident = accident(i);
+            accident.setSeverity(i % 1000);
+            cube.add(accident);
+            batch.add(accident);
+            if (batch.isFull()) {
+                batched.addBatch(batch);
+                batch.clear();
+            }
+        }
+        batched.addBatch(batch);
+
+        Map<List<Object>, Long> bySeverity = new HashMap<>();
+        for (AccidentCube.Cell cell : cube.cells(EnumSet.of(CubeDimension.SEVERITY))) {
+            bySeverity.put(cell.getValues(), cell.getCount());
+        }
+        assertEquals(1000, bySeverity.size());
+        for (Long count : bySeverity.values()) {
+            assertEquals(Long.valueOf(3), count);
+        }
+        assertEquals(cells(cube), cells(batched));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        cube.writeTo(new DataOutputStream(bytes));
+        AccidentCube read = AccidentCube.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(cells(cube), cells(read));
+    }
+
+    public void testSingleDimensionBreakdownsKeepBuiltInResults() throws IOException {
+        AccidentAnalyzer analyzer = new AccidentAnalyzer(AccidentAnalyzer.DEFAULT_DISTINCT_PRECISION,
+                EnumSet.noneOf(AccidentAnalyzer.QuantileMetric.class),
+                EnumSet.noneOf(AccidentAnalyzer.QuantileGrouping.class),
+                AccidentCube.parseGroupingSets("SEVERITY; STATE"));
+        for (int i = 0; i < 40; i++) {
+            analyzer.processAccident(accident(i));
+        }
+
+        Map<String, Object> results = analyzer.getResults();
+        assertEquals(Long.valueOf(10), ((Map<?, ?>) results.get("accidentsBySeverity")).get(2));
+        assertEquals(Long.valueOf(10), ((Map<?, ?>) results.get("breakdownBySeverity")).get(Arrays.asList(2)));
+        assertTrue(results.get("breakdownByState") instanceof Map);
+
+        File directory = Files.createTempDirectory("breakdowns").toFile();
+        try {
+            new OutputWriter(directory.getPath()).writeResults(results);
+            String[] names = directory.list();
+            assertEquals(1, count(names, "accidents_by_state_"));
+            assertEquals(1, count(names, "breakdown_by_state_"));
+            assertEquals(1, count(names, "breakdown_by_severity_"));
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private static int count(String[] names, String prefix) {
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Every cell of every grouping set with its aggregates, for comparing cubes
+     */
+    private static Map<List<Object>, List<Object>> cells(AccidentCube cube) {
+        Map<List<Object>, List<Object>> cells = new HashMap<>();
+        for (Set<CubeDimension> groupingSet : cube.getGroupingSets()) {
+            cube.forEachCell(groupingSet, cell -> cells.put(
+                    Arrays.asList(groupingSet, cell.getValues(), cell.hasMissingValue()),
+                    Arrays.asList(cell.getCount(),
+                            cell.getSum(CubeMeasure.DURATION_MINUTES), cell.getValueCount(CubeMeasure.DURATION_MINUTES),
+                            cell.getMin(CubeMeasure.TEMPERATURE), cell.getMax(CubeMeasure.TEMPERATURE))));
+        }
+        return cells;
+    }
+
+    private static Accident accident(int i) {
+        Accident accident = new Accident();
+        accident.setSeverity(1 + i % 4);
+        accident.setState(STATES[i % STATES.length]);
+        accident.setWeatherCondition(WEATHER[i % WEATHER.length]);
+        if (i % 9 != 0) {
+            accident.setStartTime(LocalDateTime.of(2016, 2, 8, i % 24, 30));
+            if (i % 6 != 0) {
+                accident.setEndTime(LocalDateTime.of(2016, 2, 8, i % 24, 30).plusMinutes(7 * (i % 13)));
+            }
+        }
+        accident.setTemperature(20 + i % 45 + 0.5);
+        return accident;
+    }
+}
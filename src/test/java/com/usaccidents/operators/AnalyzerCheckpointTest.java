@@ -0,0 +1,183 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.io.CSVParser;
+import com.usaccidents.io.HDFSUtils;
+import junit.framework.TestCase;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for analyzer snapshots and incremental runs over new input files
+ */
+public class AnalyzerCheckpointTest extends TestCase {
+    private static final String HEADER = "ID,Severity,Start_Time,End_Time,Start_Lat,Start_Lng,Street,City,County,"
+            + "State,Temperature(F),Visibility(mi),Weather_Condition";
+    private static final String[] STATES = {"OH", "CA", "TX"};
+    private static final String[] CITIES = {"Dayton", "Los Angeles", "Houston", "Columbus"};
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("checkpoint").toFile();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    public void testSnapshotRoundTrip() throws IOException {
+        AccidentAnalyzer analyzer = new AccidentAnalyzer(AccidentAnalyzer.DEFAULT_DISTINCT_PRECISION,
+                EnumSet.allOf(AccidentAnalyzer.QuantileMetric.class), EnumSet.of(AccidentAnalyzer.QuantileGrouping.STATE),
+                AccidentCube.parseGroupingSets("STATE,SEVERITY,HOUR"));
+        CSVParser parser = new CSVParser(AccidentAnalyzer.REQUIRED_FIELDS);
+        analyzer.startSource("a.csv");
+        parser.parseCSVFileReusing(writeCsv("a.csv", 0, 300), analyzer);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        analyzer.writeTo(new DataOutputStream(bytes));
+        AccidentAnalyzer read = AccidentAnalyzer.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(300, read.getTotalAccidents());
+        assertEquals(normalize(analyzer.getResults()), normalize(read.getResults()));
+        // The configuration is restored, so the read analyzer merges with its origin
+        read.merge(analyzer);
+        assertEquals(600, read.getTotalAccidents());
+
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() / 2);
+        try {
+            AccidentAnalyzer.readFrom(new DataInputStream(new ByteArrayInputStream(truncated)));
+            fail("Truncated snapshot");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    public void testIncrementalRunMatchesFullRun() throws IOException {
+        List<File> files = new ArrayList<>(Arrays.asList(writeCsv("2016-01.csv", 0, 200), writeCsv("2016-02.csv", 200, 250)));
+        String path = new File(directory, "analyzer.checkpoint").getPath();
+        CSVParser parser = new CSVParser(AccidentAnalyzer.REQUIRED_FIELDS);
+
+        AnalyzerCheckpoint first = AnalyzerCheckpoint.loadOrCreate(path, AccidentAnalyzer::new);
+        assertEquals(2, first.processNewFiles(files, parser));
+        first.save(path);
+
+        // The next run finds one new file and skips the two it has seen
+        files.add(writeCsv("2016-03.csv", 450, 150));
+        AnalyzerCheckpoint second = AnalyzerCheckpoint.loadOrCreate(path, AccidentAnalyzer::new);
+        assertEquals(files.get(0).getAbsolutePath(), second.getProcessedInputs().keySet().iterator().next());
+        assertEquals(1, second.processNewFiles(files, parser));
+        assertEquals(0, second.processNewFiles(files, parser));
+        second.save(path);
+        assertFalse(new File(path + ".tmp").exists());
+
+        AccidentAnalyzer full = new AccidentAnalyzer();
+        for (File file : files) {
+            parser.parseCSVFileReusing(file, full);
+        }
+        AnalyzerCheckpoint loaded = AnalyzerCheckpoint.loadOrCreate(path, AccidentAnalyzer::new);
+        assertEquals(600, loaded.getAnalyzer().getTotalAccidents());
+        assertEquals(3, loaded.getProcessedInputs().size());
+        assertEquals(normalize(full.getResults()), normalize(loaded.getAnalyzer().getResults()));
+    }
+
+    public void testHDFSSaveReplacesSnapshot() throws IOException {
+        HDFSUtils hdfsUtils = new HDFSUtils(FileSystem.getLocal(new Configuration()));
+        String path = new File(directory, "analyzer.checkpoint").getAbsolutePath();
+        CSVParser parser = new CSVParser(AccidentAnalyzer.REQUIRED_FIELDS);
+        List<File> files = new ArrayList<>(Collections.singletonList(writeCsv("2016-01.csv", 0, 200)));
+
+        AnalyzerCheckpoint first = AnalyzerCheckpoint.loadOrCreate(path, hdfsUtils, AccidentAnalyzer::new);
+        first.processNewFiles(files, parser);
+        first.save(path, hdfsUtils);
+        files.add(writeCsv("2016-02.csv", 200, 100));
+        first.processNewFiles(files, parser);
+        first.save(path, hdfsUtils);
+
+        // An incomplete temporary file of a failed save is ignored
+        Files.write(new File(path + ".tmp").toPath(), new byte[]{1, 2, 3});
+        AnalyzerCheckpoint loaded = AnalyzerCheckpoint.loadOrCreate(path, hdfsUtils, AccidentAnalyzer::new);
+        assertEquals(300, loaded.getAnalyzer().getTotalAccidents());
+        assertEquals(2, loaded.getProcessedInputs().size());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testEveryParsePathAttributesIdsToItsFile() throws IOException {
+        File file = writeCsv("2016-01.csv", 0, 3000);
+        CSVParser parser = new CSVParser();
+        parser.setChunkSize(4096);
+
+        AccidentAnalyzer sequential = new AccidentAnalyzer();
+        parser.parseCSVFile(file, sequential);
+        AccidentAnalyzer parallel = parser.parseCSVFileParallel(file, 4, AccidentAnalyzer::new,
+                AccidentAnalyzer::merge);
+        ConcurrentAccidentAnalyzer shared = new ConcurrentAccidentAnalyzer();
+        parser.parseCSVFileParallel(file, 4, () -> shared, (a, b) -> a);
+
+        for (Map<String, Object> results : Arrays.asList(sequential.getResults(), parallel.getResults(),
+                shared.getResults())) {
+            Map<String, Long> idsBySource = (Map<String, Long>) results.get("distinctAccidentIdsBySource");
+            assertEquals(Collections.singleton("2016-01.csv"), idsBySource.keySet());
+            assertEquals(3000, idsBySource.get("2016-01.csv"), 3000 * 0.1);
+        }
+    }
+
+    private File writeCsv(String name, int first, int rows) throws IOException {
+        File file = new File(directory, name);
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(HEADER + "\n");
+            for (int i = first; i < first + rows; i++) {
+                int hour = i % 24;
+                writer.write("A-" + i + "," + (1 + i % 4) + ",2016-02-08 " + String.format("%02d", hour) + ":15:00,"
+                        + (i % 5 == 0 ? "" : String.format("2016-02-08 %02d:%02d:00", hour, 20 + i % 30)) + ","
+                        + (i % 7 == 0 ? "," : (39.7 + (i % 9) * 0.1) + "," + (-84.2 - (i % 4) * 0.3) + ",")
+                        + "I-" + (i % 11) + " E," + CITIES[i % CITIES.length] + ",County" + (i % 3) + ","
+                        + STATES[i % STATES.length] + "," + (30 + i % 50) + "," + (i % 10) + ","
+                        + (i % 2 == 0 ? "Rain" : "Clear") + "\n");
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Results with top-N lists as maps, since entries with equal counts may come in any order
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> normalize(Map<String, Object> results) {
+        Map<String, Object> normalized = new HashMap<>();
+        results.forEach((key, result) -> {
+            if (result instanceof List) {
+                Map<Object, Object> entries = new HashMap<>();
+                for (Map.Entry<Object, Object> entry : (List<Map.Entry<Object, Object>>) result) {
+                    entries.put(entry.getKey(), entry.getValue());
+                }
+                result = entries;
+            }
+            normalized.put(key, result);
+        });
+        return normalized;
+    }
+}
@@ -0,0 +1,138 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+import junit.framework.TestCase;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for counting into one analyzer from many threads
+ */
+public class ConcurrentAccidentAnalyzerTest extends TestCase {
+    private static final String[] STATES = {"OH", "CA", "TX", "FL", ""};
+    private static final String[] CITIES = {"Dayton", "Los Angeles", "Houston", "Miami", null};
+
+    public void testConcurrentProducersMatchSingleAnalyzer() throws Exception {
+        int threads = 8;
+        int perThread = 5000;
+        AccidentAnalyzer expected = new AccidentAnalyzer();
+        for (int i = 0; i < threads * perThread; i++) {
+            expected.processAccident(accident(i));
+        }
+
+        ConcurrentAccidentAnalyzer concurrent = new ConcurrentAccidentAnalyzer();
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t * perThread;
+            boolean batched = t % 2 == 0;
+            producers.add(new Thread(() -> {
+                AccidentBatch batch = new AccidentBatch(64);
+                for (int i = first; i < first + perThread; i++) {
+                    if (!batched) {
+                        concurrent.processAccident(accident(i));
+                        continue;
+                    }
+                    batch.add(accident(i));
+                    if (batch.isFull()) {
+                        concurrent.processBatch(batch);
+                        batch.clear();
+                    }
+                }
+                concurrent.processBatch(batch);
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals(threads * perThread, concurrent.getTotalAccidents());
+        assertEquals(normalize(expected.getResults()), normalize(concurrent.getResults()));
+
+        concurrent.reset();
+        assertEquals(0, concurrent.getTotalAccidents());
+    }
+
+    public void testCountsOfEndedProducersAreKept() throws Exception {
+        int threads = 40;
+        int perThread = 50;
+        AccidentAnalyzer expected = new AccidentAnalyzer();
+        ConcurrentAccidentAnalyzer concurrent = new ConcurrentAccidentAnalyzer();
+        for (int t = 0; t < threads; t++) {
+            int first = t * perThread;
+            for (int i = first; i < first + perThread; i++) {
+                expected.processAccident(accident(i));
+            }
+            Thread producer = new Thread(() -> {
+                for (int i = first; i < first + perThread; i++) {
+                    concurrent.processAccident(accident(i));
+                }
+            });
+            producer.start();
+            producer.join();
+            if (t % 2 == 0) {
+                // Reading folds the producers that have ended, once
+                assertEquals((t + 1) * perThread, concurrent.getTotalAccidents());
+            }
+        }
+
+        assertEquals(threads * perThread, concurrent.getTotalAccidents());
+        assertEquals(normalize(expected.getResults()), normalize(concurrent.getResults()));
+        assertEquals(normalize(expected.getResults()), normalize(concurrent.getResults()));
+    }
+
+    public void testMergeAddsPartial() {
+        AccidentAnalyzer partial = new AccidentAnalyzer();
+        for (int i = 0; i < 100; i++) {
+            partial.processAccident(accident(i));
+        }
+        ConcurrentAccidentAnalyzer concurrent = new ConcurrentAccidentAnalyzer();
+        concurrent.merge(partial);
+        concurrent.merge(partial);
+
+        AccidentAnalyzer expected = new AccidentAnalyzer().merge(partial).merge(partial);
+        assertEquals(200, concurrent.getTotalAccidents());
+        assertEquals(normalize(expected.getResults()), normalize(concurrent.getResults()));
+    }
+
+    /**
+     * Results with top-N lists as maps, since entries with equal counts may come in any order
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> normalize(Map<String, Object> results) {
+        Map<String, Object> normalized = new HashMap<>();
+        for (Map.Entry<String, Object> result : results.entrySet()) {
+            Object value = result.getValue();
+            if (value instanceof List) {
+                Map<Object, Object> entries = new HashMap<>();
+                for (Map.Entry<Object, Object> entry : (List<Map.Entry<Object, Object>>) value) {
+                    entries.put(entry.getKey(), entry.getValue());
+                }
+                value = entries;
+            }
+            normalized.put(result.getKey(), value);
+        }
+        return normalized;
+    }
+
+    private static Accident accident(int i) {
+        Accident accident = new Accident();
+        accident.setSeverity(i % 13 == 0 ? 9 : 1 + i % 4);
+        accident.setState(STATES[i % STATES.length]);
+        accident.setCity(CITIES[i % CITIES.length]);
+        accident.setWeatherCondition(i % 3 == 0 ? "Rain" : "Clear");
+        accident.setStreet("I-" + i % 10 + " E");
+        accident.setCounty("County " + i % 3);
+        if (i % 7 != 0) {
+            accident.setStartTime(LocalDateTime.of(2016, 2, 8, i % 24, 30));
+        }
+        return accident;
+    }
+}
@@ -0,0 +1,49 @@
+package com.usaccidents.operators;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for the Count-Min frequency sketch
+ */
+public class CountMinSketchTest extends TestCase {
+
+    public void testEstimatesWithinErrorBound() {
+        CountMinSketch left = CountMinSketch.withErrorBounds(0.001, 0.01);
+        CountMinSketch right = CountMinSketch.withErrorBounds(0.001, 0.01);
+        assertEquals(2719, left.getWidth());
+        assertEquals(5, left.getDepth());
+
+        Random random = new Random(3);
+        Map<String, Long> exact = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            String city = "City " + (int) Math.floor(Math.pow(20000, random.nextDouble()));
+            (i % 2 == 0 ? left : right).add(city);
+            exact.merge(city, 1L, Long::sum);
+        }
+        left.merge(right);
+
+        assertEquals(200000, left.getTotal());
+        int overBound = 0;
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            long estimate = left.estimate(entry.getKey());
+            assertTrue(entry.getKey(), estimate >= entry.getValue());
+            if (estimate - entry.getValue() > left.getErrorBound()) {
+                overBound++;
+            }
+        }
+        // At most a fraction delta of the estimates may exceed the bound
+        assertTrue("Estimates over the bound: " + overBound, overBound <= exact.size() * 0.01);
+    }
+
+    public void testMergeRequiresSameDimensions() {
+        try {
+            new CountMinSketch(100, 4).merge(new CountMinSketch(200, 4));
+            fail("Sketches of different widths hash differently");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.model.Accident;
+import com.usaccidents.model.AccidentBatch;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for geohash cells and per-cell hotspot counts
+ */
+public class GeoHotspotsTest extends TestCase {
+
+    public void testGeohashMatchesReferenceEncoding() {
+        // Reference geohashes of Jutland, Denmark and Los Angeles City Hall
+        assertEquals("u4pruydqqvj", Geohash.toString(Geohash.encode(57.64911, 10.40744, 11), 11));
+        assertEquals("9q5ctr", Geohash.toString(Geohash.encode(34.0537, -118.2428, 6), 6));
+
+        long cell = Geohash.encode(34.0537, -118.2428);
+        for (int precision = 1; precision <= Geohash.MAX_PRECISION; precision++) {
+            long truncated = Geohash.truncate(cell, precision);
+            assertEquals(Geohash.encode(34.0537, -118.2428, precision), truncated);
+            // The center of a cell lies in the same cell
+            assertEquals(truncated, Geohash.encode(Geohash.latitude(truncated, precision),
+                    Geohash.longitude(truncated, precision), precision));
+        }
+        assertEquals(34.0537, Geohash.latitude(cell, Geohash.MAX_PRECISION), 1e-6);
+        assertEquals(-118.2428, Geohash.longitude(cell, Geohash.MAX_PRECISION), 1e-6);
+
+        assertTrue(Geohash.isValid(90, 180));
+        assertFalse(Geohash.isValid(0, 0));
+        assertFalse(Geohash.isValid(Double.NaN, -84.2));
+        assertFalse(Geohash.isValid(91, -84.2));
+    }
+
+    public void testHotspotsWithSeverityMix() {
+        GeoHotspots hotspots = new GeoHotspots(6, 4);
+        for (int i = 0; i < 300; i++) {
+            // 400 accidents downtown, 150 in a cell each and 20 without coordinates
+            hotspots.add(34.0537, -118.2428, 1 + i % 4);
+            if (i % 2 == 0) {
+                hotspots.add(35 + i * 0.05, -100 + i * 0.05, 2);
+            }
+            if (i % 15 == 0) {
+                hotspots.add(0, 0, 3);
+            }
+            if (i % 3 == 0) {
+                hotspots.add(34.0537, -118.2428, 9);
+            }
+        }
+
+        assertEquals(550, hotspots.getLocated());
+        assertEquals(20, hotspots.getWithoutLocation());
+        List<GeoHotspots.Hotspot> top = hotspots.hotspots(6, 3);
+        assertEquals(3, top.size());
+        GeoHotspots.Hotspot downtown = top.get(0);
+        assertEquals("9q5ctr", downtown.getGeohash());
+        assertEquals(400, downtown.getCount());
+        assertEquals(75, downtown.getSeverityCount(1));
+        assertEquals(0, downtown.getSeverityCount(9));
+        assertEquals(Long.valueOf(100), downtown.getSeverityMix().get("other"));
+        assertEquals(1, top.get(1).getCount());
+        assertEquals(34.0537, downtown.getLatitude(), 0.01);
+        assertEquals(downtown.getCount(), hotspots.count(34.0537, -118.2428, 6));
+        assertEquals(151, hotspots.cellCount(6));
+        assertTrue(hotspots.cellCount(4) < 151);
+
+        try {
+            hotspots.hotspots(5, 3);
+            fail("Precision 5 is not counted");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    public void testBatchesAndMergeMatchSinglePass() throws IOException {
+        GeoHotspots single = new GeoHotspots();
+        GeoHotspots batched = new GeoHotspots();
+        GeoHotspots perRecord = new GeoHotspots();
+        AccidentBatch batch = new AccidentBatch(16);
+        for (int i = 0; i < 1000; i++) {
+            Accident accident = new Accident();
+            accident.setSeverity(1 + i % 4);
+            if (i % 10 != 0) {
+                accident.setStartLat(25 + (i * 7919 % 2400) / 100.0);
+                accident.setStartLng(-124 + (i * 104729 % 5700) / 100.0);
+            }
+            single.add(accident);
+            if (i % 2 == 0) {
+                perRecord.add(accident);
+                continue;
+            }
+            batch.add(accident);
+            if (batch.isFull()) {
+                batched.addBatch(batch);
+                batch.clear();
+            }
+        }
+        batched.addBatch(batch);
+
+        GeoHotspots merged = new GeoHotspots();
+        merged.merge(perRecord);
+        merged.merge(batched);
+        assertEquals(single.getLocated(), merged.getLocated());
+        assertEquals(single.getWithoutLocation(), merged.getWithoutLocation());
+        for (int precision : GeoHotspots.DEFAULT_PRECISIONS) {
+            assertEquals(single.cellCount(precision), merged.cellCount(precision));
+            assertEquals(cells(single, precision), cells(merged, precision));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        merged.writeTo(new DataOutputStream(bytes));
+        GeoHotspots read = GeoHotspots.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(merged.getLocated(), read.getLocated());
+        for (int precision : GeoHotspots.DEFAULT_PRECISIONS) {
+            assertEquals(merged.cellCount(precision), read.cellCount(precision));
+            assertEquals(cells(merged, precision), cells(read, precision));
+        }
+
+        try {
+            merged.merge(new GeoHotspots(5));
+            fail("Hotspots of other precisions cannot be merged");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * Every cell of a precision by geohash, since cells with equal counts may come in any order
+     */
+    private static Map<String, GeoHotspots.Hotspot> cells(GeoHotspots hotspots, int precision) {
+        Map<String, GeoHotspots.Hotspot> cells = new HashMap<>();
+        for (GeoHotspots.Hotspot hotspot : hotspots.hotspots(precision, hotspots.cellCount(precision))) {
+            cells.put(hotspot.getGeohash(), hotspot);
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,105 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.model.Accident;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Unit tests for HyperLogLog distinct counts and their use in the analyzer
+ */
+public class HyperLogLogTest extends TestCase {
+
+    public void testEstimateWithinStandardError() {
+        for (int distinct : new int[]{10, 1000, 200000}) {
+            HyperLogLog sketch = new HyperLogLog(12);
+            for (int i = 0; i < distinct; i++) {
+                // Every value twice: duplicates must not count
+                sketch.add("A-" + i);
+                sketch.add("A-" + i);
+            }
+            double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+            assertTrue(distinct + " estimated as " + sketch.estimate(), error < 3 * sketch.getStandardError());
+        }
+        assertEquals(0, new HyperLogLog(12).estimate());
+    }
+
+    public void testMergeEqualsUnion() throws IOException {
+        HyperLogLog left = new HyperLogLog(11);
+        HyperLogLog right = new HyperLogLog(11);
+        HyperLogLog union = new HyperLogLog(11);
+        for (int i = 0; i < 50000; i++) {
+            // Overlapping halves
+            (i < 30000 ? left : right).add("Street " + i);
+            if (i >= 20000 && i < 30000) {
+                right.add("Street " + i);
+            }
+            union.add("Street " + i);
+        }
+        left.merge(right);
+        assertEquals(union.estimate(), left.estimate());
+
+        HyperLogLog copy = HyperLogLog.fromBytes(left.toBytes());
+        assertEquals(11, copy.getPrecision());
+        assertEquals(left.estimate(), copy.estimate());
+
+        try {
+            left.merge(new HyperLogLog(12));
+            fail("Sketches of different precision cannot be merged");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testDistinctCountsRoundTrip() throws IOException {
+        DistinctCounts counts = new DistinctCounts(10);
+        for (int i = 0; i < 300; i++) {
+            counts.add(i % 3 == 0 ? "OH" : "CA", "City " + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        counts.writeTo(new DataOutputStream(bytes));
+        DistinctCounts copy = DistinctCounts.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(counts.estimates(), copy.estimates());
+        // Linear counting is close to exact at small cardinalities
+        assertEquals(100, copy.estimate("OH"), 3);
+        assertEquals(200, copy.estimate("CA"), 6);
+        assertEquals(0, copy.estimate("TX"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testAnalyzerDistinctCounts() {
+        AccidentAnalyzer first = new AccidentAnalyzer();
+        AccidentAnalyzer second = new AccidentAnalyzer();
+        first.startSource("2016.csv");
+        second.startSource("2017.csv");
+        for (int i = 0; i < 1000; i++) {
+            Accident accident = new Accident();
+            accident.setId("A-" + i);
+            accident.setState(i % 2 == 0 ? "OH" : "CA");
+            accident.setCity("City " + i % 40);
+            accident.setCounty("County " + i % 5);
+            accident.setStreet("Street " + i % 100);
+            (i < 600 ? first : second).processAccident(accident);
+        }
+        Map<String, Object> results = first.merge(second).getResults();
+
+        // Even city numbers are in OH, odd ones in CA
+        Map<String, Long> citiesByState = (Map<String, Long>) results.get("distinctCitiesByState");
+        assertEquals(20L, citiesByState.get("OH").longValue());
+        assertEquals(20L, citiesByState.get("CA").longValue());
+        Map<String, Long> streetsByCounty = (Map<String, Long>) results.get("distinctStreetsByCounty");
+        // Counties are told apart by state: County 0 has even streets in OH and odd ones in CA
+        assertEquals(10, streetsByCounty.size());
+        assertEquals(10L, streetsByCounty.get("County 0, OH").longValue());
+        assertEquals(10L, streetsByCounty.get("County 0, CA").longValue());
+        Map<String, Long> idsBySource = (Map<String, Long>) results.get("distinctAccidentIdsBySource");
+        assertEquals(600, idsBySource.get("2016.csv"), 600 * 0.1);
+        assertEquals(400, idsBySource.get("2017.csv"), 400 * 0.1);
+    }
+}
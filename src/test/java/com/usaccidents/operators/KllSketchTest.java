@@ -0,0 +1,170 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.io.CSVParser;
+import com.usaccidents.model.Accident;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for KLL quantile sketches and the analyzer's quantiles per group, which skip
+ * missing values
+ */
+public class KllSketchTest extends TestCase {
+
+    public void testQuantilesWithinRankError() {
+        Random random = new Random(5);
+        int n = 200000;
+        double[] values = new double[n];
+        KllSketch left = new KllSketch();
+        KllSketch right = new KllSketch();
+        for (int i = 0; i < n; i++) {
+            // Skewed like accident durations
+            values[i] = Math.exp(random.nextGaussian() * 1.5 + 3);
+            (i % 3 == 0 ? left : right).add(values[i]);
+        }
+        left.merge(right);
+        Arrays.sort(values);
+
+        assertEquals(n, left.getCount());
+        assertTrue("Retained " + left.getRetained(), left.getRetained() < 4 * KllSketch.DEFAULT_K);
+        assertEquals(values[0], left.quantile(0));
+        assertEquals(values[n - 1], left.quantile(1));
+        for (double q : new double[]{0.01, 0.25, 0.5, 0.9, 0.99}) {
+            double estimate = left.quantile(q);
+            // Rank of the estimate among the exact values
+            int rank = Arrays.binarySearch(values, estimate);
+            assertTrue("p" + q + " estimated as " + estimate, rank >= 0);
+            assertEquals("Rank of p" + q, q, (double) rank / n, 0.02);
+        }
+    }
+
+    public void testSmallSketchIsExactAndSkipsNaN() throws IOException {
+        KllSketch sketch = new KllSketch();
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        for (int i = 100; i >= 1; i--) {
+            sketch.add(i);
+        }
+        sketch.add(Double.NaN);
+        assertEquals(100, sketch.getCount());
+        assertEquals(50.0, sketch.quantile(0.5));
+        assertEquals(90.0, sketch.quantile(0.9));
+        assertEquals(99.0, sketch.quantile(0.99));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        KllSketch copy = KllSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(sketch.getCount(), copy.getCount());
+        assertTrue(Arrays.equals(sketch.quantiles(0, 0.5, 0.9, 1), copy.quantiles(0, 0.5, 0.9, 1)));
+    }
+
+    public void testGroupedQuantilesRoundTrip() throws IOException {
+        GroupedQuantiles quantiles = new GroupedQuantiles();
+        for (int i = 1; i <= 300; i++) {
+            quantiles.add(i % 3 == 0 ? "OH" : "CA", i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        quantiles.writeTo(new DataOutputStream(bytes));
+        GroupedQuantiles copy = GroupedQuantiles.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        Map<String, Map<String, Double>> summaries = copy.summaries(0.5, 0.9, 0.999);
+        assertEquals(quantiles.summaries(0.5, 0.9, 0.999), summaries);
+        assertEquals(150.0, summaries.get("OH").get("p50"));
+        assertEquals(270.0, summaries.get("OH").get("p90"));
+        assertTrue(summaries.get("CA").containsKey("p99.9"));
+        assertTrue(Double.isNaN(copy.quantile("TX", 0.5)));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testAnalyzerQuantilesPerGroup() {
+        AccidentAnalyzer analyzer = new AccidentAnalyzer(AccidentAnalyzer.DEFAULT_DISTINCT_PRECISION,
+                EnumSet.of(AccidentAnalyzer.QuantileMetric.DURATION_MINUTES),
+                EnumSet.allOf(AccidentAnalyzer.QuantileGrouping.class));
+        LocalDateTime start = LocalDateTime.of(2016, 2, 8, 6, 0);
+        for (int i = 1; i <= 100; i++) {
+            Accident accident = new Accident();
+            accident.setState(i % 2 == 0 ? "OH" : "CA");
+            accident.setSeverity(2);
+            accident.setStartTime(start);
+            accident.setEndTime(start.plusMinutes(i));
+            analyzer.processAccident(accident);
+        }
+        // Without an end time there is no duration
+        Accident open = new Accident();
+        open.setState("OH");
+        open.setStartTime(start);
+        analyzer.processAccident(open);
+
+        Map<String, Object> results = analyzer.getResults();
+        assertFalse(results.containsKey("temperatureQuantilesByState"));
+        Map<String, Map<String, Double>> byState =
+                (Map<String, Map<String, Double>>) results.get("durationMinutesQuantilesByState");
+        assertEquals(50.0, byState.get("OH").get("p50"));
+        assertEquals(49.0, byState.get("CA").get("p50"));
+        Map<String, Map<String, Double>> bySeverity =
+                (Map<String, Map<String, Double>>) results.get("durationMinutesQuantilesBySeverity");
+        assertEquals(90.0, bySeverity.get("2").get("p90"));
+        assertEquals(99.0, bySeverity.get("2").get("p99"));
+        assertFalse(bySeverity.containsKey("0"));
+
+        try {
+            analyzer.merge(new AccidentAnalyzer());
+            fail("Analyzers tracking other quantiles cannot be merged");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testMissingWeatherLeftOutOfQuantiles() throws IOException {
+        File file = File.createTempFile("weather", ".csv");
+        try {
+            StringBuilder csv = new StringBuilder("ID,Severity,Start_Time,End_Time,Start_Lat,Start_Lng,Street,City,"
+                    + "County,State,Temperature(F),Visibility(mi),Weather_Condition\n");
+            for (int i = 1; i <= 9; i++) {
+                // Every third accident has no readings; they must not count as 0
+                String readings = i % 3 == 0 ? "," : (40 + i) + "," + i;
+                csv.append("A-").append(i).append(",2,2016-02-08 06:00:00,,39.8,-84.0,Main St,Dayton,Montgomery,OH,")
+                        .append(readings).append(",Clear\n");
+            }
+            Files.write(file.toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+
+            Set<AccidentAnalyzer.QuantileMetric> metrics = EnumSet.of(AccidentAnalyzer.QuantileMetric.TEMPERATURE,
+                    AccidentAnalyzer.QuantileMetric.VISIBILITY);
+            AccidentAnalyzer perRecord = new AccidentAnalyzer(AccidentAnalyzer.DEFAULT_DISTINCT_PRECISION, metrics,
+                    EnumSet.of(AccidentAnalyzer.QuantileGrouping.STATE));
+            AccidentAnalyzer batched = new AccidentAnalyzer(AccidentAnalyzer.DEFAULT_DISTINCT_PRECISION, metrics,
+                    EnumSet.of(AccidentAnalyzer.QuantileGrouping.STATE));
+            CSVParser parser = new CSVParser(AccidentAnalyzer.REQUIRED_FIELDS);
+            parser.parseCSVFile(file, perRecord::processAccident);
+            parser.parseCSVFileBatches(file, 4, batched::processBatch);
+
+            for (AccidentAnalyzer analyzer : Arrays.asList(perRecord, batched)) {
+                Map<String, Object> results = analyzer.getResults();
+                Map<String, Map<String, Double>> temperature =
+                        (Map<String, Map<String, Double>>) results.get("temperatureQuantilesByState");
+                // Readings 41, 42, 44, 45, 47, 48
+                assertEquals(44.0, temperature.get("OH").get("p50"));
+                Map<String, Map<String, Double>> visibility =
+                        (Map<String, Map<String, Double>>) results.get("visibilityQuantilesByState");
+                assertEquals(4.0, visibility.get("OH").get("p50"));
+                assertEquals(8.0, visibility.get("OH").get("p99"));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
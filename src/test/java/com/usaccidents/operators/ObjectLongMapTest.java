@@ -0,0 +1,46 @@
+package com.usaccidents.operators;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for the primitive long counting map
+ */
+public class ObjectLongMapTest extends TestCase {
+
+    public void testCountsMatchHashMapThroughGrowth() {
+        ObjectLongMap<String> counts = new ObjectLongMap<>();
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            String key = "key" + (i * 31 % 1000);
+            long value = counts.addTo(key, i);
+            expected.merge(key, (long) i, Long::sum);
+            assertEquals(expected.get(key).longValue(), value);
+        }
+
+        assertEquals(expected.size(), counts.size());
+        for (Map.Entry<String, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().longValue(), counts.get(entry.getKey()));
+        }
+        assertEquals(0, counts.get("missing"));
+
+        Map<String, Long> entries = new HashMap<>();
+        for (Map.Entry<String, Long> entry : counts.entries()) {
+            entries.put(entry.getKey(), entry.getValue());
+        }
+        assertEquals(expected, entries);
+    }
+
+    public void testClear() {
+        ObjectLongMap<Integer> counts = new ObjectLongMap<>();
+        counts.addTo(12, 3);
+        counts.addTo(-1, 1);
+        counts.clear();
+        assertTrue(counts.isEmpty());
+        assertEquals(0, counts.get(12));
+        assertEquals(5, counts.addTo(12, 5));
+        assertEquals(1, counts.size());
+    }
+}
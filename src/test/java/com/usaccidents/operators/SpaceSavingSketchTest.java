@@ -0,0 +1,120 @@
+package com.usaccidents.operators;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for the Space-Saving heavy-hitter sketch and exact Top-K selection
+ */
+public class SpaceSavingSketchTest extends TestCase {
+    private static final int CAPACITY = 50;
+
+    public void testHeavyHittersWithinErrorBound() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(CAPACITY);
+        Map<String, Long> exact = new HashMap<>();
+        for (String street : skewedStream(new Random(42), 100000)) {
+            sketch.add(street);
+            exact.merge(street, 1L, Long::sum);
+        }
+
+        assertEquals(100000, sketch.getTotal());
+        assertEquals(CAPACITY, sketch.size());
+        assertTrue(sketch.getErrorBound() <= sketch.getTotal() / CAPACITY);
+        assertBoundsHold(sketch, exact);
+
+        // The heaviest streets occur far more often than the error bound, so they rank first
+        List<Map.Entry<String, Long>> top = sketch.topEntries(3);
+        assertEquals("Street 0", top.get(0).getKey());
+        assertEquals("Street 1", top.get(1).getKey());
+        assertEquals("Street 2", top.get(2).getKey());
+    }
+
+    public void testMergedSketchesKeepErrorBound() {
+        Random random = new Random(7);
+        Map<String, Long> exact = new HashMap<>();
+        SpaceSavingSketch<String> merged = new SpaceSavingSketch<>(CAPACITY);
+        for (int part = 0; part < 4; part++) {
+            SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(CAPACITY);
+            for (String street : skewedStream(random, 25000)) {
+                sketch.add(street);
+                exact.merge(street, 1L, Long::sum);
+            }
+            merged.merge(sketch);
+        }
+
+        assertEquals(100000, merged.getTotal());
+        assertTrue(merged.getErrorBound() <= merged.getTotal() / CAPACITY);
+        assertBoundsHold(merged, exact);
+        assertEquals("Street 0", merged.topEntries(1).get(0).getKey());
+    }
+
+    public void testExactWhileUnderCapacity() {
+        SpaceSavingSketch<String> left = new SpaceSavingSketch<>(CAPACITY);
+        SpaceSavingSketch<String> right = new SpaceSavingSketch<>(CAPACITY);
+        left.add("A", 5);
+        left.add("B", 2);
+        right.add("B", 4);
+        right.add("C", 1);
+        left.merge(right);
+
+        assertEquals(0, left.getErrorBound());
+        assertEquals(5, left.estimate("A"));
+        assertEquals(6, left.estimate("B"));
+        assertEquals(1, left.estimate("C"));
+        assertEquals(0, left.estimate("D"));
+        assertEquals("B", left.top(1).get(0).getKey());
+        assertEquals(0, left.top(1).get(0).getError());
+    }
+
+    public void testExactTopK() {
+        ObjectLongMap<String> counts = new ObjectLongMap<>();
+        for (int i = 0; i < 1000; i++) {
+            counts.addTo("City " + i, i % 100 == 0 ? 10000 + i : i % 100);
+        }
+
+        List<Map.Entry<String, Long>> top = TopK.exact(counts, 3);
+        assertEquals(3, top.size());
+        assertEquals("City 900", top.get(0).getKey());
+        assertEquals(10900L, top.get(0).getValue().longValue());
+        assertEquals("City 800", top.get(1).getKey());
+        assertEquals("City 700", top.get(2).getKey());
+        assertEquals(1000, TopK.exact(counts, 5000).size());
+        assertTrue(TopK.exact(counts, 0).isEmpty());
+    }
+
+    /**
+     * Every monitored count overestimates by at most its error, and no unmonitored key
+     * occurred more often than the error bound
+     */
+    private static void assertBoundsHold(SpaceSavingSketch<String> sketch, Map<String, Long> exact) {
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            if (estimate == 0) {
+                assertTrue(entry.getKey(), entry.getValue() <= sketch.getErrorBound());
+            } else {
+                assertTrue(entry.getKey(), estimate >= entry.getValue());
+            }
+        }
+        for (SpaceSavingSketch.Estimate<String> estimate : sketch.top(CAPACITY)) {
+            long count = exact.get(estimate.getKey());
+            assertTrue(estimate.toString(), estimate.getGuaranteedCount() <= count);
+            assertTrue(estimate.toString(), estimate.getError() <= sketch.getErrorBound());
+        }
+    }
+
+    /**
+     * Street names with Zipf-like frequencies over 5000 distinct streets
+     */
+    private static String[] skewedStream(Random random, int length) {
+        String[] stream = new String[length];
+        for (int i = 0; i < length; i++) {
+            int rank = (int) Math.floor(Math.pow(5000, random.nextDouble())) - 1;
+            stream[i] = "Street " + rank;
+        }
+        return stream;
+    }
+}
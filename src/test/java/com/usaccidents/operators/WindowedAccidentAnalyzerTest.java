@@ -0,0 +1,140 @@
+package com.usaccidents.operators;
+
+import com.usaccidents.model.Accident;
+import junit.framework.TestCase;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Unit tests for event-time windows over the analyzer
+ */
+public class WindowedAccidentAnalyzerTest extends TestCase {
+    private static final LocalDateTime BASE = LocalDateTime.of(2016, 2, 8, 6, 0);
+    private static final long MINUTE = 60000;
+
+    /**
+     * A closed window's bounds and accident count
+     */
+    private static final class Window {
+        private final long start;
+        private final long end;
+        private final long accidents;
+
+        private Window(long start, long end, long accidents) {
+            this.start = start;
+            this.end = end;
+            this.accidents = accidents;
+        }
+    }
+
+    private final List<Window> windows = new ArrayList<>();
+
+    private void record(long windowStart, long windowEnd, AccidentAnalyzer window) {
+        windows.add(new Window(windowStart, windowEnd, window.getTotalAccidents()));
+    }
+
+    public void testTumblingWindowsInOrder() {
+        WindowedAccidentAnalyzer analyzer = new WindowedAccidentAnalyzer(5 * MINUTE, 0, this::record);
+        // Three accidents a minute for 20 minutes
+        for (int minute = 0; minute < 20; minute++) {
+            for (int i = 0; i < 3; i++) {
+                analyzer.processAccident(accidentAt(minute));
+            }
+        }
+        // Windows close when an accident of the next one arrives
+        assertEquals(3, windows.size());
+        analyzer.flush();
+        assertEquals(4, windows.size());
+        for (int w = 0; w < 4; w++) {
+            assertEquals(millis(5 * w), windows.get(w).start);
+            assertEquals(millis(5 * w + 5), windows.get(w).end);
+            assertEquals(15, windows.get(w).accidents);
+        }
+        assertEquals(0, analyzer.getOpenPaneCount());
+    }
+
+    public void testSlidingWindowsCountEachAccidentPerWindow() {
+        WindowedAccidentAnalyzer analyzer = new WindowedAccidentAnalyzer(10 * MINUTE, 5 * MINUTE, 0,
+                AccidentAnalyzer::new, this::record);
+        for (int minute = 0; minute < 20; minute++) {
+            analyzer.processAccident(accidentAt(minute));
+            // Open panes: those of the windows not yet closed
+            assertTrue(analyzer.getOpenPaneCount() <= 2);
+        }
+        analyzer.flush();
+
+        // Windows starting every 5 minutes from the first one spanning minute 0
+        long[] starts = {-5, 0, 5, 10, 15};
+        long[] counts = {5, 10, 10, 10, 5};
+        assertEquals(starts.length, windows.size());
+        for (int w = 0; w < starts.length; w++) {
+            assertEquals(millis(starts[w]), windows.get(w).start);
+            assertEquals(counts[w], windows.get(w).accidents);
+        }
+    }
+
+    public void testLatenessBoundsOutOfOrderInput() {
+        WindowedAccidentAnalyzer analyzer = new WindowedAccidentAnalyzer(5 * MINUTE, 3 * MINUTE, this::record);
+        analyzer.processAccident(accidentAt(1));
+        analyzer.processAccident(accidentAt(7));
+        // Within the lateness: [0, 5) stays open until the watermark reaches minute 5
+        analyzer.processAccident(accidentAt(2));
+        assertEquals(0, windows.size());
+        analyzer.processAccident(accidentAt(9));
+        assertEquals(1, windows.size());
+        assertEquals(2, windows.get(0).accidents);
+        // Too late: its only window has been emitted
+        analyzer.processAccident(accidentAt(4));
+        assertEquals(1, analyzer.getLateAccidents());
+        // Gaps produce no empty windows
+        analyzer.processAccident(accidentAt(60));
+        assertEquals(2, windows.size());
+        assertEquals(millis(5), windows.get(1).start);
+        assertEquals(2, windows.get(1).accidents);
+
+        analyzer.processAccident(new Accident());
+        assertEquals(1, analyzer.getAccidentsWithoutTime());
+        analyzer.flush();
+        assertEquals(3, windows.size());
+        assertEquals(3, analyzer.getWindowsEmitted());
+    }
+
+    public void testConfiguredFromProperties() {
+        Properties properties = new Properties();
+        properties.setProperty(WindowedAccidentAnalyzer.WINDOW_DURATION_PROPERTY, "300000");
+        WindowedAccidentAnalyzer tumbling = WindowedAccidentAnalyzer.fromProperties(properties, this::record);
+        assertEquals(300000, tumbling.getSlideMillis());
+        assertEquals(0, tumbling.getAllowedLatenessMillis());
+
+        properties.setProperty(WindowedAccidentAnalyzer.WINDOW_SLIDE_PROPERTY, "70000");
+        try {
+            WindowedAccidentAnalyzer.fromProperties(properties, this::record);
+            fail("The slide must divide the window size");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testConfiguredFromApplicationProperties() {
+        // The windows the app's windowed mode runs with
+        WindowedAccidentAnalyzer windows = WindowedAccidentAnalyzer.fromApplicationProperties(this::record);
+        assertEquals(300000, windows.getWindowSizeMillis());
+        assertEquals(300000, windows.getSlideMillis());
+        assertEquals(3600000, windows.getAllowedLatenessMillis());
+    }
+
+    private static Accident accidentAt(int minute) {
+        Accident accident = new Accident();
+        accident.setState("OH");
+        accident.setSeverity(2);
+        accident.setStartTime(BASE.plusMinutes(minute));
+        return accident;
+    }
+
+    private static long millis(long minute) {
+        return BASE.plusMinutes(minute).toEpochSecond(ZoneOffset.UTC) * 1000;
+    }
+}
@@ -0,0 +1,44 @@
+package com.usaccidents.utils;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for the tokenizer benchmark
+ */
+public class CSVTokenizerBenchmarkTest extends TestCase {
+
+    public void testTokenizerCountsTheFieldsOfTheRegexSplit() {
+        List<String> lines = CSVTokenizerBenchmark.syntheticLines(100);
+        assertEquals(100 * 46, CSVTokenizerBenchmark.runTokenizer(lines));
+        assertEquals(CSVTokenizerBenchmark.runRegex(lines), CSVTokenizerBenchmark.runTokenizer(lines));
+    }
+
+    public void testRunsOnSampleFile() throws Exception {
+        File file = File.createTempFile("accidents", ".csv");
+        PrintStream out = System.out;
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        try {
+            Files.write(file.toPath(), Arrays.asList("ID,Description,State", "A-1,\"Lane closed, \"\"I-70\"\"\",OH",
+                    "A-2,,CA"), StandardCharsets.UTF_8);
+            System.setOut(new PrintStream(report, true, "UTF-8"));
+            CSVTokenizerBenchmark.main(new String[]{file.getPath()});
+        } finally {
+            System.setOut(out);
+            file.delete();
+        }
+
+        String text = new String(report.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(text, text.startsWith("Benchmarking 2 lines"));
+        assertTrue(text, text.contains("CSVTokenizer"));
+        assertTrue(text, text.contains("Speedup:"));
+        assertFalse(text, text.contains("field counts differ"));
+    }
+}